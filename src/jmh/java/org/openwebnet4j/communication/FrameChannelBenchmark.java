@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for {@link FrameChannel} extraction of frames from a byte stream. Each operation reads all the frames in
+ * a block of data, as received from a busy MON connection.
+ *
+ * @author M. Valla - Initial contribution
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-jmh.xml")
+@State(Scope.Benchmark)
+public class FrameChannelBenchmark {
+
+    private static final String[] FRAMES = { "*1*1*21##", "*#4*1*0*0215##", "*2*1000#1*51##", "*#18*51*113*1234##",
+            "*#*1##", "*1*0*0311#4#01##", "*#13**16*1*2*3##" };
+
+    @Param({ "1", "100" })
+    public int frames; // number of frames in the stream
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < frames; i++) {
+            sb.append(FRAMES[i % FRAMES.length]);
+        }
+        data = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public void readFrames(Blackhole bh) throws IOException {
+        FrameChannel ch = new FrameChannel(new ByteArrayInputStream(data), null, "BENCH");
+        String frame;
+        while ((frame = ch.readFrames()) != null) {
+            bh.consume(frame);
+        }
+    }
+}
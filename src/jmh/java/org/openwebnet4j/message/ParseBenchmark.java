@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.message;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for {@link BaseOpenMessage#parse(String)} over a mix of frames for every supported WHO, as received on
+ * MON and CMD connections. Each operation parses the whole mix.
+ *
+ * @author M. Valla - Initial contribution
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-jmh.xml")
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    static final String[] FRAMES = { //
+            "*#*1##", // ACK
+            "*0*14*95##", // SCENARIO
+            "*1*1*21##", "*1*0*0311#4#01##", "*#1*51*4*1*45##", "*1*1000#1*21##", // LIGHTING
+            "*2*1*51##", "*#2*55*10*10*100*0*0##", // AUTOMATION
+            "*#4*1*0*0215##", "*#4*3#1*#14*0210*3##", "*4*303*1##", "*#4*1*20*1##", // THERMOREGULATION
+            "*5*6*##", "*#5*#12*1##", // BURGLAR_ALARM
+            "*9*1*1##", // AUX
+            "*#13**16*1*2*3##", "*#13**12*13*45*26*001##", // GATEWAY_MANAGEMENT
+            "*15*1*21##", // CEN_SCENARIO_SCHEDULER
+            "*#18*51*113*1234##", "*#18*51*54*120##", // ENERGY_MANAGEMENT
+            "*22*0#1*3#1#0##", "*#22*3#1#0*1##", // SOUND_SYSTEM
+            "*25*21#1*213##", // CEN_PLUS_SCENARIO_SCHEDULER
+            "*#1004*1*7*1##", // THERMOREGULATION_DIAGNOSTIC
+            "*#1018*51*7*0##" // ENERGY_MANAGEMENT_DIAGNOSTIC
+    };
+
+    /** Parses the frames only */
+    @Benchmark
+    public void parse(Blackhole bh) throws FrameException {
+        for (String frame : FRAMES) {
+            bh.consume(BaseOpenMessage.parse(frame));
+        }
+    }
+
+    /** Parses the frames and reads WHO, WHERE and WHAT or DIM with its values, as a typical event handler does */
+    @Benchmark
+    public void parseAndRead(Blackhole bh) throws FrameException {
+        for (String frame : FRAMES) {
+            OpenMessage msg = BaseOpenMessage.parse(frame);
+            if (msg instanceof BaseOpenMessage) {
+                BaseOpenMessage bmsg = (BaseOpenMessage) msg;
+                bh.consume(bmsg.getWho());
+                bh.consume(bmsg.getWhere());
+                if (bmsg.isCommand()) {
+                    bh.consume(bmsg.getWhat());
+                } else {
+                    bh.consume(bmsg.getDim());
+                    bh.consume(bmsg.getDimValues());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.message;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for the <code>String.format</code> based methods building request messages
+ *
+ * @author M. Valla - Initial contribution
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configurationFile=log4j2-jmh.xml")
+@State(Scope.Benchmark)
+public class RequestBuildBenchmark {
+
+    @Benchmark
+    public Lighting lightingTurnOn() {
+        return Lighting.requestTurnOn("51");
+    }
+
+    @Benchmark
+    public Lighting lightingStatus() {
+        return Lighting.requestStatus("51");
+    }
+
+    @Benchmark
+    public Automation automationMoveUp() {
+        return Automation.requestMoveUp("53");
+    }
+
+    @Benchmark
+    public Thermoregulation thermoWriteSetpoint() throws MalformedFrameException {
+        return Thermoregulation.requestWriteSetpointTemperature("1", 21.5, Thermoregulation.Function.HEATING);
+    }
+
+    @Benchmark
+    public EnergyManagement energyActivePower() {
+        return EnergyManagement.requestActivePower("51");
+    }
+}
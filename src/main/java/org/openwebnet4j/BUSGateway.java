@@ -14,7 +14,16 @@
  */
 package org.openwebnet4j;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.openwebnet4j.communication.BUSConnector;
+import org.openwebnet4j.communication.BUSNioConnector;
+import org.openwebnet4j.communication.NioEventLoop;
 import org.openwebnet4j.communication.OWNException;
 import org.openwebnet4j.communication.Response;
 import org.openwebnet4j.message.*;
@@ -38,6 +47,13 @@ public class BUSGateway extends OpenGateway {
     private int port = DEFAULT_PORT;
     private String host;
     private String pwd;
+    private NioEventLoop eventLoop = null; // if set, a non-blocking BUSNioConnector is used
+    private int cmdPoolSize = BUSConnector.DEFAULT_CMD_POOL_SIZE;
+    private boolean cmdStandby = false;
+
+    // devices found by discoveries (key: WHO/WHERE/device type)
+    private final Map<String, Boolean> discoveredDevices = new ConcurrentHashMap<>();
+    private volatile boolean incrementalDiscovery = false;
 
     /**
      * Creates a new BUSGateway instance with host, port and password.
@@ -79,132 +95,268 @@ public class BUSGateway extends OpenGateway {
         return pwd;
     }
 
+    /**
+     * Returns the {@link NioEventLoop} used by this gateway connection, or null if a blocking connection is used.
+     *
+     * @return the event loop, or null
+     */
+    public NioEventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    /**
+     * Sets the {@link NioEventLoop} to be used for the connection to the gateway. If set, a non-blocking
+     * {@link BUSNioConnector} driven by the given event loop is used instead of the default blocking
+     * {@link BUSConnector}: the same event loop (for example {@link NioEventLoop#getDefault()}) can be shared by
+     * many gateways. Must be called before {@link #connect()}.
+     *
+     * @param eventLoop the event loop to use, or null to use the default blocking connection
+     */
+    public void setEventLoop(NioEventLoop eventLoop) {
+        this.eventLoop = eventLoop;
+    }
+
+    /**
+     * Returns the max number of CMD connections opened in parallel to the gateway.
+     *
+     * @return the CMD connections pool size
+     */
+    public int getCmdPoolSize() {
+        return cmdPoolSize;
+    }
+
+    /**
+     * Sets the max number of CMD connections opened in parallel to the gateway, to send up to this number of commands
+     * in parallel (default: {@link BUSConnector#DEFAULT_CMD_POOL_SIZE}). Some gateways (for example F454 and MH202)
+     * accept several concurrent CMD sessions. Used only by the default blocking connection, see
+     * {@link BUSConnector#setCmdPoolSize(int)}.
+     * <p>
+     * The discovery requests for the different WHOs are also sent in parallel only if the pool size is &gt; 1: with
+     * the default pool size of 1, {@link #discoverDevices()} scans the WHOs one after the other, and a pool size of
+     * at least 7 is needed to scan all of them at once.
+     *
+     * @param cmdPoolSize the CMD connections pool size (must be &gt; 0)
+     */
+    public void setCmdPoolSize(int cmdPoolSize) {
+        if (cmdPoolSize <= 0) {
+            throw new IllegalArgumentException("CMD pool size must be > 0");
+        }
+        this.cmdPoolSize = cmdPoolSize;
+        if (connector instanceof BUSConnector) {
+            ((BUSConnector) connector).setCmdPoolSize(cmdPoolSize);
+        }
+    }
+
+    /**
+     * Returns true if a standby CMD connection is kept ready.
+     *
+     * @return true if standby CMD connection is enabled
+     */
+    public boolean isCmdStandby() {
+        return cmdStandby;
+    }
+
+    /**
+     * Enables a standby CMD connection, already handshaken and refreshed in background, so that commands never wait
+     * for a new CMD connection to be opened (default: false). Uses one more connection to the gateway. Used only by
+     * the default blocking connection, see {@link BUSConnector#setCmdStandby(boolean)}.
+     *
+     * @param enabled true to enable the standby CMD connection
+     */
+    public void setCmdStandby(boolean enabled) {
+        this.cmdStandby = enabled;
+        if (connector instanceof BUSConnector) {
+            ((BUSConnector) connector).setCmdStandby(enabled);
+        }
+    }
+
     @Override
     protected void initConnector() {
-        connector = new BUSConnector(host, port, pwd);
-        logger.info("##BUS## Init BUS ({}:{})...", host, port);
+        if (eventLoop != null) {
+            connector = new BUSNioConnector(host, port, pwd, eventLoop);
+            logger.info("##BUS## Init BUS ({}:{}) using non-blocking connector...", host, port);
+        } else {
+            BUSConnector busConnector = new BUSConnector(host, port, pwd);
+            busConnector.setCmdPoolSize(cmdPoolSize);
+            busConnector.setCmdStandby(cmdStandby);
+            connector = busConnector;
+            logger.info("##BUS## Init BUS ({}:{}) with {} CMD connection(s)...", host, port, cmdPoolSize);
+        }
+    }
+
+    /**
+     * Returns true if incremental discovery is enabled.
+     *
+     * @return true if a new discovery notifies only devices not found by previous discoveries
+     */
+    public boolean isIncrementalDiscovery() {
+        return incrementalDiscovery;
+    }
+
+    /**
+     * Enables incremental discovery: if enabled, {@link #discoverDevices()} notifies with
+     * {@link GatewayListener#onNewDevice} only devices that were not found by previous discoveries (default: false,
+     * all devices found are notified). Use {@link #clearDiscoveredDevices()} to notify all devices again.
+     *
+     * @param incremental true to enable incremental discovery
+     */
+    public void setIncrementalDiscovery(boolean incremental) {
+        this.incrementalDiscovery = incremental;
+    }
+
+    /**
+     * Returns the number of devices found by the discoveries performed so far
+     *
+     * @return number of discovered devices
+     */
+    public int getDiscoveredDevicesCount() {
+        return discoveredDevices.size();
+    }
+
+    /** Clears the devices found by the discoveries performed so far */
+    public void clearDiscoveredDevices() {
+        discoveredDevices.clear();
     }
 
+    /*
+     * Each WHO family is discovered by a separate status/diagnostic request. Requests are all sent at once using
+     * sendAsync, so that they are sent in parallel on the CMD connections of the pool and the discovery takes as long
+     * as the slowest scan: with the default pool size of 1 they are still sent one after the other, a pool of at
+     * least 7 connections (one per request) is needed to scan all WHOs at once. Each scan notifies its devices and its
+     * progress as soon as its response is received, independently of the others.
+     */
     @Override
     protected void discoverDevicesInternal() throws OWNException {
-        Response res;
-        logger.debug("##BUS## ----- ### STARTING A NEW DISCOVERY...");
         try {
-            // DISCOVER LIGHTS - request status for all lights: *#1*0##
-            logger.debug("##BUS## ----- LIGHTS discovery -----");
-            res = sendInternal(Lighting.requestStatus(WhereLightAutom.GENERAL.value()));
-            for (OpenMessage msg : res.getResponseMessages()) {
-                if (msg instanceof Lighting) {
-                    Lighting lmsg = ((Lighting) msg);
-                    OpenDeviceType type = lmsg.detectDeviceType();
-                    if (type != null) {
-                        Where w = lmsg.getWhere();
-                        notifyListeners((listener) -> listener.onNewDevice(w, type, lmsg));
+            discoverAll();
+        } finally {
+            isDiscovering = false;
+        }
+    }
+
+    private void discoverAll() throws OWNException {
+        logger.debug("##BUS## ----- ### STARTING A NEW DISCOVERY...");
+        BaseOpenMessage[] requests = new BaseOpenMessage[] {
+                // DISCOVER LIGHTS - request status for all lights: *#1*0##
+                Lighting.requestStatus(WhereLightAutom.GENERAL.value()),
+                // DISCOVER AUTOMATION - request status for all automations: *#2*0##
+                Automation.requestStatus(WhereLightAutom.GENERAL.value()),
+                // DISCOVER ENERGY MANAGEMENT - request diagnostic for all energy devices: *#1018*0*7##
+                // response <<<< *#1018*WHERE*7*BITS##
+                EnergyManagementDiagnostic.requestDiagnostic(WhereEnergyManagement.GENERAL.value()),
+                // DISCOVER THERMOREGULATION - request diagnostic for all thermoregulation devices:
+                // *#1004*0*7##
+                // response <<<< *#1004*WHERE*7*BITS##
+                ThermoregulationDiagnostic.requestDiagnostic(WhereThermo.ALL_MASTER_PROBES.value()),
+                // DISCOVER DRY CONTACT / IR SENSOR - request: *#25*30##
+                // response <<<< *25*WHAT#0*WHERE##
+                CENPlusScenario.requestStatus("30"), // TODO use WhereScenario
+                // DISCOVER AUX request:*#9*0##
+                // response <<<< *9*WHAT*0
+                Auxiliary.requestStatus(WhereAuxiliary.GENERAL.value()),
+                // DISCOVER ALARM - request: *#5*0##
+                Alarm.requestSystemStatus() };
+        CompletableFuture<?>[] scans = new CompletableFuture<?>[requests.length];
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < requests.length; i++) {
+            final BaseOpenMessage request = requests[i];
+            final Who who = request.getWho();
+            logger.debug("##BUS## ----- {} discovery: {}", who, request);
+            scans[i] = sendAsync(request).handle((res, e) -> {
+                OWNException error = null;
+                int found = 0;
+                if (e != null) {
+                    Throwable cause = (e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    error = (cause instanceof OWNException ? (OWNException) cause
+                            : new OWNException("Error during " + who + " discovery", cause));
+                } else if (!res.isSuccess()) {
+                    error = new OWNException(who + " discovery request returned: " + res.getFinalResponse());
+                } else {
+                    try {
+                        found = handleDiscoveryResponse(who, res);
+                    } catch (RuntimeException re) { // fails this WHO only, not the whole discovery
+                        error = new OWNException("Error during " + who + " discovery: " + re.getMessage(), re);
                     }
                 }
-            }
-            // DISCOVER AUTOMATION - request status for all automations: *#2*0##
-            logger.debug("##BUS## ----- AUTOMATION discovery -----");
-            res = sendInternal(Automation.requestStatus(WhereLightAutom.GENERAL.value()));
-            for (OpenMessage msg : res.getResponseMessages()) {
-                if (msg instanceof Automation) {
-                    Automation amsg = ((Automation) msg);
-                    OpenDeviceType type = amsg.detectDeviceType();
-                    if (type != null) {
-                        Where w = amsg.getWhere();
-                        notifyListeners((listener) -> listener.onNewDevice(w, type, amsg));
-                    }
+                if (error != null) {
+                    failed.incrementAndGet();
+                    logger.warn("##BUS## ----- # {} discovery FAILED: {}", who, error.getMessage());
+                } else {
+                    logger.debug("##BUS## ----- {} discovery completed: {} devices", who, found);
                 }
+                final int devicesFound = found;
+                final OWNException err = error;
+                notifyListeners((listener) -> listener.onDiscoveryProgress(who, devicesFound, err));
+                return null;
+            });
+        }
+        try {
+            CompletableFuture.allOf(scans).get();
+        } catch (InterruptedException e) {
+            for (CompletableFuture<?> scan : scans) {
+                scan.cancel(false);
             }
-            // DISCOVER ENERGY MANAGEMENT - request diagnostic for all energy devices: *#1018*0*7##
-            // response <<<< *#1018*WHERE*7*BITS##
-            logger.debug("##BUS## ----- ENERGY MANAGEMENT discovery -----");
-            res = sendInternal(EnergyManagementDiagnostic.requestDiagnostic(WhereEnergyManagement.GENERAL.value()));
-            for (OpenMessage msg : res.getResponseMessages()) {
-                if (msg instanceof EnergyManagementDiagnostic) {
-                    EnergyManagementDiagnostic edmsg = ((EnergyManagementDiagnostic) msg);
-                    OpenDeviceType type = edmsg.detectDeviceType();
-                    if (type != null) {
-                        Where w = edmsg.getWhere();
-                        notifyListeners((listener) -> listener.onNewDevice(w, type, edmsg));
-                    }
-                }
+            Thread.currentThread().interrupt();
+            throw new OWNException("Interrupted while discovering devices", e);
+        } catch (ExecutionException e) {
+            throw new OWNException("Error while discovering devices: " + e.getCause().getMessage(), e.getCause());
+        }
+        // finished discovery
+        if (failed.get() == requests.length) {
+            logger.error("##BUS## ----- # all discovery requests FAILED");
+            throw new OWNException("Error while discovering devices: all discovery requests failed");
+        }
+        logger.debug("##BUS## ----- ### DISCOVERY COMPLETED ({} / {} WHO discovered)", requests.length - failed.get(),
+                requests.length);
+        notifyListeners((listener) -> listener.onDiscoveryCompleted());
+    }
+
+    /*
+     * notifies the devices found in the response to a discovery request of the given WHO and returns their number
+     */
+    private int handleDiscoveryResponse(Who who, Response res) {
+        int found = 0;
+        boolean foundAlarmCentralUnit = false; // to notify central unit only once
+        for (OpenMessage msg : res.getResponseMessages()) {
+            if (!(msg instanceof BaseOpenMessage) || ((BaseOpenMessage) msg).getWho() != who) {
+                continue;
             }
-            // DISCOVER THERMOREGULATION - request diagnostic for all thermoregulation devices:
-            // *#1004*0*7##
-            // response <<<< *#1004*WHERE*7*BITS##
-            logger.debug("##BUS## ----- THERMOREGULATION discovery");
-            res = sendInternal(ThermoregulationDiagnostic.requestDiagnostic(WhereThermo.ALL_MASTER_PROBES.value()));
-            for (OpenMessage msg : res.getResponseMessages()) {
-                if (msg instanceof ThermoregulationDiagnostic) {
-                    ThermoregulationDiagnostic tdMsg = ((ThermoregulationDiagnostic) msg);
-                    OpenDeviceType type = tdMsg.detectDeviceType();
-                    if (type != null) {
-                        Where w = tdMsg.getWhere();
-                        notifyListeners((listener) -> listener.onNewDevice(w, type, tdMsg));
-                    }
-                }
+            BaseOpenMessage bmsg = (BaseOpenMessage) msg;
+            OpenDeviceType type;
+            try {
+                type = bmsg.detectDeviceType();
+            } catch (FrameException e) {
+                logger.debug("##BUS## ----- # cannot detect device type for {}: {}", bmsg, e.getMessage());
+                continue;
             }
-            // DISCOVER DRY CONTACT / IR SENSOR - request: *#25*30##
-            // response <<<< *25*WHAT#0*WHERE##
-            logger.debug("##BUS## ----- DRY CONTACT / IR sensor discovery");
-            res = sendInternal(CENPlusScenario.requestStatus("30")); // TODO use WhereScenario
-            for (OpenMessage msg : res.getResponseMessages()) {
-                if (msg instanceof CENPlusScenario) {
-                    CENPlusScenario cenMsg = ((CENPlusScenario) msg);
-                    OpenDeviceType type = cenMsg.detectDeviceType();
-                    if (type != null) {
-                        Where w = cenMsg.getWhere();
-                        notifyListeners((listener) -> listener.onNewDevice(w, type, cenMsg));
-                    }
-                }
+            if (type == null) {
+                continue;
             }
-            // DISCOVER AUX request:*#9*0##
-            // response <<<< *9*WHAT*0
-            logger.debug("##BUS## ----- AUX discovery");
-            res = sendInternal(Auxiliary.requestStatus(WhereAuxiliary.GENERAL.value()));
-            for (OpenMessage msg : res.getResponseMessages()) {
-                if (msg instanceof Auxiliary) {
-                    Auxiliary auxMsg = (Auxiliary) msg;
-                    OpenDeviceType type = auxMsg.detectDeviceType();
-                    if (type != null) {
-                        Where w = auxMsg.getWhere();
-                        notifyListeners((listener) -> listener.onNewDevice(w, type, auxMsg));
+            Where w = bmsg.getWhere();
+            if (who == Who.BURGLAR_ALARM) {
+                if (type == OpenDeviceType.SCS_ALARM_CENTRAL_UNIT) {
+                    if (foundAlarmCentralUnit) {
+                        continue;
                     }
+                    foundAlarmCentralUnit = true;
+                    w = null;
+                } else if (type != OpenDeviceType.SCS_ALARM_ZONE) {
+                    continue;
                 }
             }
-            // DISCOVER ALARM - request: *#5*0##
-            logger.debug("##BUS## ----- ALARM discovery");
-            res = sendInternal(Alarm.requestSystemStatus());
-            boolean foundAlarmCentralUnit = false; // to notify central unit only once
-            for (OpenMessage msg : res.getResponseMessages()) {
-                if (msg instanceof Alarm) {
-                    Alarm alarmMsg = ((Alarm) msg);
-                    OpenDeviceType type = alarmMsg.detectDeviceType();
-                    if (type != null) {
-                        if (type == OpenDeviceType.SCS_ALARM_CENTRAL_UNIT) {
-                            if (!foundAlarmCentralUnit) {
-                                foundAlarmCentralUnit = true;
-                                notifyListeners((listener) -> listener.onNewDevice(null, type, alarmMsg));
-                            }
-                        } else if (type == OpenDeviceType.SCS_ALARM_ZONE) {
-                            Where w = alarmMsg.getWhere();
-                            notifyListeners((listener) -> listener.onNewDevice(w, type, alarmMsg));
-                        }
-                    }
-                }
+            found++;
+            String key = who.value() + "/" + (w == null ? "" : w.value()) + "/" + type;
+            if (discoveredDevices.put(key, Boolean.TRUE) == null || !incrementalDiscovery) {
+                final Where where = w;
+                notifyListeners((listener) -> listener.onNewDevice(where, type, bmsg));
             }
-
-        } catch (OWNException e) {
-            logger.error("##BUS## ----- # OWNException while discovering devices: {}", e.getMessage());
-            isDiscovering = false;
-            throw e;
         }
+        return found;
+    }
 
-        // finished discovery
-        isDiscovering = false;
-        logger.debug("##BUS## ----- ### DISCOVERY COMPLETED");
-        notifyListeners((listener) -> listener.onDiscoveryCompleted());
+    @Override
+    protected boolean isParallelConnectSupported() {
+        return true;
     }
 
     @Override
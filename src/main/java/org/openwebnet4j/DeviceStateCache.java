@@ -0,0 +1,423 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.communication.Response;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.CENPlusScenario;
+import org.openwebnet4j.message.Dim;
+import org.openwebnet4j.message.FrameException;
+import org.openwebnet4j.message.Lighting.WhatLighting;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.What;
+import org.openwebnet4j.message.Where;
+import org.openwebnet4j.message.WhereLightAutom;
+import org.openwebnet4j.message.Who;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory store of the last known state of devices, fed by the events received from the MON connection of an
+ * {@link OpenGateway} and by the responses to queries. The state of a device is stored by WHO, WHERE and DIM: for
+ * command messages (<code>*WHO*WHAT*WHERE##</code>) the last message received is the device state, for dimension
+ * messages (<code>*#WHO*WHERE*DIM*...##</code>) the last message for each DIM is stored.
+ * <p>
+ * Only messages carrying a device state are stored: CEN/CEN+ button pressures, scenario activations and relative
+ * commands (dimmer up/down/toggle) are not. Lighting and automation commands sent to an area, a group or to the
+ * general WHERE change the state of several devices: they are not stored, and remove from the cache the states of
+ * the devices they address (all the devices of the WHO for groups and general).
+ * <p>
+ * Status requests (<code>*#WHO*WHERE##</code>) and dimension requests (<code>*#WHO*WHERE*DIM##</code>) can be
+ * answered from the cache with {@link #query(BaseOpenMessage, long)}: if a fresh state is available no message is
+ * sent to the gateway, otherwise the request is sent and the response merged into the cache. Since events can be lost
+ * while the MON connection is down, the cache is cleared when the MON connection is disconnected.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class DeviceStateCache {
+
+    public static final long DEFAULT_MAX_AGE = 60000; // ms
+
+    private static final int STATE = -1; // used as DIM in the key of device states from command messages
+
+    private final Logger logger = LoggerFactory.getLogger(DeviceStateCache.class);
+
+    private final OpenGateway gateway;
+    private final ConcurrentHashMap<Key, Entry> states = new ConcurrentHashMap<>();
+    private volatile long defaultMaxAge = DEFAULT_MAX_AGE;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Key of a device state */
+    private static final class Key {
+        private final Who who;
+        private final String where;
+        private final int dim;
+
+        private Key(Who who, String where, int dim) {
+            this.who = who;
+            this.where = where;
+            this.dim = dim;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return who == k.who && dim == k.dim && where.equals(k.where);
+        }
+
+        @Override
+        public int hashCode() {
+            return (who.hashCode() * 31 + where.hashCode()) * 31 + dim;
+        }
+
+        @Override
+        public String toString() {
+            return who + "/" + where + (dim == STATE ? "" : "/" + dim);
+        }
+    }
+
+    /** A device state and the time it has been received */
+    private static final class Entry {
+        private final BaseOpenMessage msg;
+        private final long ts;
+
+        private Entry(BaseOpenMessage msg, long ts) {
+            this.msg = msg;
+            this.ts = ts;
+        }
+    }
+
+    DeviceStateCache(OpenGateway gateway) {
+        this.gateway = gateway;
+    }
+
+    /**
+     * Updates the cache with a message received from the gateway. ACK/NACK messages, dimension requests and dimension
+     * writings are ignored.
+     *
+     * @param msg the received {@link OpenMessage}
+     */
+    void update(OpenMessage msg) {
+        if (msg instanceof BaseOpenMessage) {
+            store((BaseOpenMessage) msg, System.currentTimeMillis());
+        }
+    }
+
+    /* stores the state carried by msg, or removes the states msg makes unknown. Returns the key of the stored state */
+    private Key store(BaseOpenMessage msg, long ts) {
+        if (msg.isCommand()) {
+            Where w = msg.getWhere();
+            if ((msg.getWho() == Who.LIGHTING || msg.getWho() == Who.AUTOMATION) && w instanceof WhereLightAutom
+                    && ((WhereLightAutom) w).getPoint() < 0) {
+                invalidateAddressed(msg.getWho(), (WhereLightAutom) w);
+                return null;
+            }
+            if (isRelativeCommand(msg)) {
+                invalidate(msg.getWho(), whereOf(msg));
+                return null;
+            }
+        }
+        Key key = stateKey(msg);
+        if (key != null) {
+            states.put(key, new Entry(msg, ts));
+        }
+        return key;
+    }
+
+    /* removes the states of the devices addressed by an area, group or general WHERE */
+    private void invalidateAddressed(Who who, WhereLightAutom where) {
+        int area = where.getArea();
+        if (area < 0 || WhereLightAutom.GENERAL.equals(where)) { // general or group: group members are not known
+            states.keySet().removeIf(k -> k.who == who);
+        } else {
+            states.keySet().removeIf(k -> k.who == who && areaOf(k.where) == area);
+        }
+        logger.debug("##GW## state cache: {} states invalidated by {}", who, where);
+    }
+
+    private static int areaOf(String where) {
+        try {
+            return WhereLightAutom.of(where).getArea();
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /* dimmer up/down/toggle: the new state is not known until the device sends it */
+    private static boolean isRelativeCommand(BaseOpenMessage msg) {
+        What what = msg.getWhat();
+        return what == WhatLighting.DIMMER_LEVEL_UP || what == WhatLighting.DIMMER_LEVEL_DOWN
+                || what == WhatLighting.DIMMER_TOGGLE;
+    }
+
+    /* returns true if command messages of msg WHO carry a device state, and not button pressures or scenarios */
+    private static boolean isStateCommand(BaseOpenMessage msg) {
+        switch (msg.getWho()) {
+            case SCENARIO:
+            case CEN_SCENARIO_SCHEDULER:
+            case SCENARIO_PROGRAMMING:
+            case GATEWAY_MANAGEMENT:
+                return false;
+            case CEN_PLUS_SCENARIO_SCHEDULER:
+                return msg instanceof CENPlusScenario && ((CENPlusScenario) msg).isDryContactIR();
+            default:
+                return true;
+        }
+    }
+
+    /* returns the key of the state carried by msg, or null if msg does not carry a state */
+    private Key stateKey(BaseOpenMessage msg) {
+        String where = whereOf(msg);
+        if (msg.isCommand()) {
+            return (isStateCommand(msg) ? new Key(msg.getWho(), where, STATE) : null);
+        }
+        String[] values = dimValuesOf(msg);
+        if (values == null || values.length == 0 || msg.isDimWriting()) {
+            return null; // not a dimension response/event
+        }
+        Dim dim = msg.getDim();
+        return (dim != null ? new Key(msg.getWho(), where, dim.value()) : null);
+    }
+
+    /* returns the key of the state requested by a status or dimension request, or null if msg is not a request */
+    private Key requestKey(BaseOpenMessage request) {
+        if (request.isCommand()) {
+            return null;
+        }
+        String[] values = dimValuesOf(request);
+        if (values != null && values.length > 0) {
+            return null;
+        }
+        String where = whereOf(request);
+        if (values == null) { // status request *#WHO*WHERE##
+            return new Key(request.getWho(), where, STATE);
+        }
+        Dim dim = request.getDim();
+        return (dim != null && !request.isDimWriting() ? new Key(request.getWho(), where, dim.value()) : null);
+    }
+
+    private static String[] dimValuesOf(BaseOpenMessage msg) {
+        try {
+            return msg.getDimValues();
+        } catch (FrameException e) {
+            return null;
+        }
+    }
+
+    private static String whereOf(BaseOpenMessage msg) {
+        Where w = msg.getWhere();
+        return (w != null ? w.value() : "");
+    }
+
+    /**
+     * Returns the last known state of a device received with a command message (<code>*WHO*WHAT*WHERE##</code>)
+     *
+     * @param who the device {@link Who}
+     * @param where the device WHERE
+     * @return the last message received, or null if not known
+     */
+    public BaseOpenMessage getState(Who who, String where) {
+        Entry e = states.get(new Key(who, where, STATE));
+        return (e != null ? e.msg : null);
+    }
+
+    /**
+     * Returns the last known value of a dimension of a device (<code>*#WHO*WHERE*DIM*...##</code>)
+     *
+     * @param who the device {@link Who}
+     * @param where the device WHERE
+     * @param dim the {@link Dim}
+     * @return the last message received for the dimension, or null if not known
+     */
+    public BaseOpenMessage getState(Who who, String where, Dim dim) {
+        Entry e = states.get(new Key(who, where, dim.value()));
+        return (e != null ? e.msg : null);
+    }
+
+    /**
+     * Returns the state requested by a status or dimension request from the cache only
+     *
+     * @param request the status request <code>*#WHO*WHERE##</code> or dimension request
+     *            <code>*#WHO*WHERE*DIM##</code>
+     * @param maxAge (ms) the max age of the cached state
+     * @return the cached state, or null if the state is not known or older than maxAge
+     * @throws IllegalArgumentException if request is not a status or dimension request
+     */
+    public BaseOpenMessage getCached(BaseOpenMessage request, long maxAge) {
+        Entry e = states.get(checkedRequestKey(request));
+        if (e != null && System.currentTimeMillis() - e.ts <= maxAge) {
+            return e.msg;
+        }
+        return null;
+    }
+
+    /**
+     * Same as {@link #query(BaseOpenMessage, long)} using the default max age
+     *
+     * @param request the status request or dimension request
+     * @return the state of the device, or null if the gateway did not return it
+     * @throws OWNException in case the request has to be sent and an error occurs
+     */
+    public BaseOpenMessage query(BaseOpenMessage request) throws OWNException {
+        return query(request, defaultMaxAge);
+    }
+
+    /**
+     * Returns the state requested by a status or dimension request: if the cached state is not older than maxAge it
+     * is returned without contacting the gateway, otherwise the request is sent and all the messages in the response
+     * are merged into the cache.
+     * For status requests of a single device (<code>*#WHO*WHERE##</code>) the state is the last command message
+     * (<code>*WHO*WHAT*WHERE##</code>) received for the device.
+     * <p>
+     * Status requests for an area, a group or the general WHERE (for example <code>*#1*0##</code>) are always sent:
+     * the gateway answers with the state of each single device, which is merged into the cache, and null is
+     * returned. Use {@link #getState(Who, String)} to read the merged states.
+     *
+     * @param request the status request <code>*#WHO*WHERE##</code> or dimension request
+     *            <code>*#WHO*WHERE*DIM##</code>
+     * @param maxAge (ms) the max age of the cached state
+     * @return the state of the device, or null if the gateway did not return it (always null for an area, group or
+     *         general request)
+     * @throws OWNException in case the request has to be sent and an error occurs
+     * @throws IllegalArgumentException if request is not a status or dimension request
+     */
+    public BaseOpenMessage query(BaseOpenMessage request, long maxAge) throws OWNException {
+        Key key = checkedRequestKey(request);
+        Entry e = states.get(key);
+        if (e != null && System.currentTimeMillis() - e.ts <= maxAge) {
+            hits.incrementAndGet();
+            return e.msg;
+        }
+        misses.incrementAndGet();
+        return merge(key, gateway.send(request));
+    }
+
+    /**
+     * Same as {@link #query(BaseOpenMessage, long)}, without waiting for the response if the request has to be sent
+     *
+     * @param request the status request or dimension request
+     * @param maxAge (ms) the max age of the cached state
+     * @return a {@link CompletableFuture} completed with the state of the device (null if the gateway did not return
+     *         it), or exceptionally with an {@link OWNException}
+     * @throws IllegalArgumentException if request is not a status or dimension request
+     */
+    public CompletableFuture<BaseOpenMessage> queryAsync(BaseOpenMessage request, long maxAge) {
+        Key key = checkedRequestKey(request);
+        Entry e = states.get(key);
+        if (e != null && System.currentTimeMillis() - e.ts <= maxAge) {
+            hits.incrementAndGet();
+            return CompletableFuture.completedFuture(e.msg);
+        }
+        misses.incrementAndGet();
+        return gateway.sendAsync(request).thenApply(res -> merge(key, res));
+    }
+
+    private Key checkedRequestKey(BaseOpenMessage request) {
+        Key key = requestKey(Objects.requireNonNull(request, "request is null"));
+        if (key == null) {
+            throw new IllegalArgumentException("Not a status or dimension request: " + request);
+        }
+        return key;
+    }
+
+    /* merges response messages into the cache and returns the requested state, if it was in the response */
+    private BaseOpenMessage merge(Key key, Response res) {
+        BaseOpenMessage found = null;
+        long now = System.currentTimeMillis();
+        for (OpenMessage msg : res.getResponseMessages()) {
+            if (msg instanceof BaseOpenMessage) {
+                BaseOpenMessage bmsg = (BaseOpenMessage) msg;
+                Key k = store(bmsg, now);
+                if (key.equals(k)) {
+                    found = bmsg;
+                }
+            }
+        }
+        logger.debug("##GW## state cache: {} {} in response to {}", key, (found != null ? "found" : "not found"),
+                res.getRequest());
+        return found;
+    }
+
+    /**
+     * Removes all the states of a device
+     *
+     * @param who the device {@link Who}
+     * @param where the device WHERE
+     */
+    public void invalidate(Who who, String where) {
+        states.keySet().removeIf(k -> k.who == who && k.where.equals(where));
+    }
+
+    /** Removes all the states from the cache */
+    public void clear() {
+        states.clear();
+    }
+
+    /**
+     * Returns the number of states in the cache
+     *
+     * @return the number of states
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Returns the number of queries answered from the cache
+     *
+     * @return number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of queries that had to be sent to the gateway
+     *
+     * @return number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the max age used by {@link #query(BaseOpenMessage)}
+     *
+     * @return (ms) the default max age
+     */
+    public long getDefaultMaxAge() {
+        return defaultMaxAge;
+    }
+
+    /**
+     * Sets the max age used by {@link #query(BaseOpenMessage)} (default {@link #DEFAULT_MAX_AGE})
+     *
+     * @param maxAge (ms) the default max age
+     */
+    public void setDefaultMaxAge(long maxAge) {
+        this.defaultMaxAge = maxAge;
+    }
+}
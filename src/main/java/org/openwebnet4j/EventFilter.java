@@ -0,0 +1,298 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.Dim;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.What;
+import org.openwebnet4j.message.Where;
+import org.openwebnet4j.message.WhereLightAutom;
+import org.openwebnet4j.message.Who;
+
+/**
+ * Immutable filter selecting which event messages are delivered to a {@link GatewayListener} subscribed with
+ * {@link OpenGateway#subscribe(EventFilter, GatewayListener)}. A filter can select messages by WHO, by WHERE (exact
+ * value or prefix), by the area or group of a lighting/automation WHERE and by a set of WHATs and/or DIMs. Parts not
+ * set match any message.
+ *
+ * <pre>
+ * EventFilter.forWho(Who.LIGHTING).area(2);
+ * EventFilter.forWho(Who.THERMOREGULATION).where("1").dim(DimThermo.TEMPERATURE);
+ * </pre>
+ *
+ * @author M. Valla - Initial contribution
+ */
+public final class EventFilter {
+
+    /** Filter matching all messages */
+    public static final EventFilter ALL = new EventFilter(null, null, false, -1, -1, Collections.emptySet(),
+            Collections.emptySet());
+
+    private final Who who;
+    private final String where;
+    private final boolean wherePrefix;
+    private final int area;
+    private final int group;
+    private final Set<What> whats;
+    private final Set<Dim> dims;
+
+    private EventFilter(Who who, String where, boolean wherePrefix, int area, int group, Set<What> whats,
+            Set<Dim> dims) {
+        this.who = who;
+        this.where = where;
+        this.wherePrefix = wherePrefix;
+        this.area = area;
+        this.group = group;
+        this.whats = whats;
+        this.dims = dims;
+    }
+
+    /**
+     * Returns a filter matching all messages with the given WHO
+     *
+     * @param who the {@link Who} to match
+     * @return the new filter
+     */
+    public static EventFilter forWho(Who who) {
+        return new EventFilter(Objects.requireNonNull(who, "who is null"), null, false, -1, -1,
+                Collections.emptySet(), Collections.emptySet());
+    }
+
+    /**
+     * Returns a copy of this filter matching only messages with the given WHERE
+     *
+     * @param where the WHERE value to match (for example "51" or "765432#9")
+     * @return the new filter
+     */
+    public EventFilter where(String where) {
+        return new EventFilter(who, Objects.requireNonNull(where, "where is null"), false, -1, -1, whats, dims);
+    }
+
+    /**
+     * Returns a copy of this filter matching only messages with the given WHERE
+     *
+     * @param where the {@link Where} to match
+     * @return the new filter
+     */
+    public EventFilter where(Where where) {
+        return where(where.value());
+    }
+
+    /**
+     * Returns a copy of this filter matching only messages with a WHERE starting with the given prefix. The prefix is
+     * compared as a string (for example "1" matches also WHERE "1001" of area 10): use {@link #area(int)} and
+     * {@link #group(int)} to select the lights and automations of an area or group.
+     *
+     * @param prefix the WHERE prefix to match
+     * @return the new filter
+     */
+    public EventFilter whereStartsWith(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            throw new IllegalArgumentException("WHERE prefix cannot be null or empty");
+        }
+        return new EventFilter(who, prefix, true, -1, -1, whats, dims);
+    }
+
+    /**
+     * Returns a copy of this filter matching only lighting/automation messages addressed to the given area: the area
+     * itself and its light points, in any form (for example "21", "0201" and "2" for area 2, "1001"-"1015" and "10"
+     * for area 10)
+     *
+     * @param area the area [0-10] to match
+     * @return the new filter
+     */
+    public EventFilter area(int area) {
+        if (area < 0 || area > 10) {
+            throw new IllegalArgumentException("area must be between 0 and 10: " + area);
+        }
+        return new EventFilter(who, null, false, area, -1, whats, dims);
+    }
+
+    /**
+     * Returns a copy of this filter matching only lighting/automation messages addressed to the given group (WHERE
+     * "#G")
+     *
+     * @param group the group [1-255] to match
+     * @return the new filter
+     */
+    public EventFilter group(int group) {
+        if (group < 1 || group > 255) {
+            throw new IllegalArgumentException("group must be between 1 and 255: " + group);
+        }
+        return new EventFilter(who, null, false, -1, group, whats, dims);
+    }
+
+    /**
+     * Returns a copy of this filter matching also messages with one of the given WHATs. If WHATs and/or DIMs are set,
+     * a message matches if its WHAT or DIM is among them.
+     *
+     * @param what the WHATs to match
+     * @return the new filter
+     */
+    public EventFilter what(What... what) {
+        Set<What> newWhats = new HashSet<>(whats);
+        newWhats.addAll(Arrays.asList(what));
+        return new EventFilter(who, where, wherePrefix, area, group, Collections.unmodifiableSet(newWhats), dims);
+    }
+
+    /**
+     * Returns a copy of this filter matching also messages with one of the given DIMs. If WHATs and/or DIMs are set,
+     * a message matches if its WHAT or DIM is among them.
+     *
+     * @param dim the DIMs to match
+     * @return the new filter
+     */
+    public EventFilter dim(Dim... dim) {
+        Set<Dim> newDims = new HashSet<>(dims);
+        newDims.addAll(Arrays.asList(dim));
+        return new EventFilter(who, where, wherePrefix, area, group, whats, Collections.unmodifiableSet(newDims));
+    }
+
+    /**
+     * Returns the WHO of this filter
+     *
+     * @return the WHO to match, or null if any WHO is matched
+     */
+    public Who getWho() {
+        return who;
+    }
+
+    /**
+     * Returns the WHERE (or WHERE prefix) of this filter
+     *
+     * @return the WHERE to match, or null if any WHERE is matched
+     */
+    public String getWhere() {
+        return where;
+    }
+
+    /**
+     * Check if the WHERE of this filter is a prefix
+     *
+     * @return true if messages with a WHERE starting with {@link #getWhere()} are matched
+     */
+    public boolean isWherePrefix() {
+        return wherePrefix;
+    }
+
+    /**
+     * Returns the lighting/automation area of this filter
+     *
+     * @return the area to match, or -1 if messages are not selected by area
+     */
+    public int getArea() {
+        return area;
+    }
+
+    /**
+     * Returns the lighting/automation group of this filter
+     *
+     * @return the group to match, or -1 if messages are not selected by group
+     */
+    public int getGroup() {
+        return group;
+    }
+
+    /**
+     * Check if a message is matched by this filter
+     *
+     * @param msg the {@link OpenMessage} to check
+     * @return true if the message is matched
+     */
+    public boolean matches(OpenMessage msg) {
+        if (who == null && where == null && area < 0 && group < 0 && whats.isEmpty() && dims.isEmpty()) {
+            return true;
+        }
+        if (!(msg instanceof BaseOpenMessage)) {
+            return false;
+        }
+        BaseOpenMessage bmsg = (BaseOpenMessage) msg;
+        if (who != null && who != bmsg.getWho()) {
+            return false;
+        }
+        if (where != null) {
+            Where w = bmsg.getWhere();
+            if (w == null || !matchesWhere(w.value())) {
+                return false;
+            }
+        }
+        if (area >= 0 || group >= 0) {
+            Where w = bmsg.getWhere();
+            if (!(w instanceof WhereLightAutom) || !matchesAreaGroup((WhereLightAutom) w)) {
+                return false;
+            }
+        }
+        return matchesWhatDim(bmsg);
+    }
+
+    /* checks only the area/group part of the filter, which must be set */
+    boolean matchesAreaGroup(WhereLightAutom w) {
+        return area >= 0 ? areaOf(w) == area : w.getGroup() == group;
+    }
+
+    /* returns the area addressed by a lighting/automation WHERE, or -1 for general and group WHEREs */
+    static int areaOf(WhereLightAutom w) {
+        return WhereLightAutom.GENERAL.equals(w) ? -1 : w.getArea();
+    }
+
+    /* checks only the WHERE part of the filter, which must be set */
+    boolean matchesWhere(String msgWhere) {
+        return wherePrefix ? msgWhere.startsWith(where) : msgWhere.equals(where);
+    }
+
+    /* checks only the WHAT/DIM part of the filter */
+    boolean matchesWhatDim(BaseOpenMessage msg) {
+        if (whats.isEmpty() && dims.isEmpty()) {
+            return true;
+        }
+        if (msg.isCommand()) {
+            return whats.contains(msg.getWhat());
+        } else {
+            return !dims.isEmpty() && dims.contains(msg.getDim());
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventFilter)) {
+            return false;
+        }
+        EventFilter f = (EventFilter) o;
+        return who == f.who && wherePrefix == f.wherePrefix && Objects.equals(where, f.where) && area == f.area
+                && group == f.group && whats.equals(f.whats) && dims.equals(f.dims);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(who, where, wherePrefix, area, group, whats, dims);
+    }
+
+    @Override
+    public String toString() {
+        return "EventFilter[who=" + who + (where == null ? "" : ", where=" + where + (wherePrefix ? "*" : ""))
+                + (area < 0 ? "" : ", area=" + area) + (group < 0 ? "" : ", group=" + group)
+                + (whats.isEmpty() ? "" : ", whats=" + whats) + (dims.isEmpty() ? "" : ", dims=" + dims) + "]";
+    }
+}
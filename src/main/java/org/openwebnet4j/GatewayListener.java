@@ -18,6 +18,7 @@ import org.openwebnet4j.communication.OWNException;
 import org.openwebnet4j.message.BaseOpenMessage;
 import org.openwebnet4j.message.OpenMessage;
 import org.openwebnet4j.message.Where;
+import org.openwebnet4j.message.Who;
 
 /**
  * Interface {@link GatewayListener} to listen to event and changes in a {@link OpenGateway}
@@ -52,6 +53,16 @@ public interface GatewayListener {
     /** This method is called after the connection with gateway has been re-connected */
     public void onReconnected();
 
+    /**
+     * This method is called after {@link OpenGateway#reconnect} or {@link OpenGateway#reconnectAsync} is called, each
+     * time a new reconnect attempt is scheduled. Default implementation does nothing.
+     *
+     * @param attempt the attempt number, starting from 1
+     * @param delay (ms) the time before the attempt
+     */
+    default void onReconnectScheduled(int attempt, long delay) {
+    }
+
     /**
      * This method is called when a new OpenWebNet message is received on the gateway MON session
      *
@@ -69,6 +80,17 @@ public interface GatewayListener {
      */
     public void onNewDevice(Where where, OpenDeviceType deviceType, BaseOpenMessage message);
 
+    /**
+     * After {@link OpenGateway#discoverDevices} is called, this method is called each time the discovery of a family
+     * of devices (WHO) has been completed, successfully or not. Default implementation does nothing.
+     *
+     * @param who the {@link Who} whose discovery has been completed
+     * @param devicesFound number of devices found for this WHO
+     * @param error the {@link OWNException} if the discovery for this WHO failed, null otherwise
+     */
+    default void onDiscoveryProgress(Who who, int devicesFound, OWNException error) {
+    }
+
     /**
      * This method is called after {@link OpenGateway#discoverDevices} is called when device
      * discovery has been completed successfully
@@ -0,0 +1,493 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.openwebnet4j.communication.OWNThreads;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.Where;
+import org.openwebnet4j.message.WhereLightAutom;
+import org.openwebnet4j.message.Who;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches events to the {@link GatewayListener}s of an {@link OpenGateway} using a bounded pool of threads.
+ * Each listener receives events in the same order they have been generated, one at a time, while different
+ * listeners can be notified in parallel. The total number of events waiting to be delivered is limited: when the limit
+ * is reached, new events are handled according to the {@link QueuePolicy}.
+ * Event messages are routed only to the listeners whose {@link EventFilter}s match them, using an index by WHO and
+ * WHERE (or lighting/automation area and group) rebuilt each time listeners change, so that routing a message does
+ * not require checking every listener.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class ListenerDispatcher {
+
+    /** What to do with a new event when the max number of events waiting to be delivered has been reached */
+    public enum QueuePolicy {
+        /** the thread generating the event waits until there is room for it */
+        BLOCK,
+        /** the new event is discarded */
+        DISCARD
+    }
+
+    public static final int DEFAULT_POOL_SIZE = 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+
+    private static final int MAX_BATCH = 32; // max events delivered to a listener before giving way to others
+
+    private final Logger logger = LoggerFactory.getLogger(ListenerDispatcher.class);
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private volatile FilterIndex index = new FilterIndex(Collections.emptyList());
+    private final ThreadPoolExecutor executor;
+
+    private final Object capacityLock = new Object();
+    private int queued = 0; // events waiting to be delivered, guarded by capacityLock
+    private volatile int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private volatile QueuePolicy queuePolicy = QueuePolicy.BLOCK;
+    private final AtomicLong discarded = new AtomicLong();
+
+    /** A listener, with its queue of events to be delivered */
+    private class Subscriber {
+        private final GatewayListener listener;
+        private final List<EventFilter> filters = new ArrayList<>(1); // guarded by subscribers
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>(); // guarded by this
+        private boolean scheduled = false; // true if a drain() is scheduled or running, guarded by this
+
+        private Subscriber(GatewayListener listener) {
+            this.listener = listener;
+        }
+
+        private void enqueue(Runnable task) {
+            boolean schedule;
+            synchronized (this) {
+                pending.add(task);
+                schedule = !scheduled;
+                scheduled = true;
+            }
+            if (schedule) {
+                execute(this::drain);
+            }
+        }
+
+        /* delivers pending events in order; reschedules itself after MAX_BATCH events to be fair with others */
+        private void drain() {
+            for (int n = 0; n < MAX_BATCH; n++) {
+                Runnable task;
+                synchronized (this) {
+                    task = pending.poll();
+                    if (task == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    logger.warn("##GW## Error while notifying listener {}: {}", listener, e.getMessage(), e);
+                } finally {
+                    release();
+                }
+            }
+            execute(this::drain);
+        }
+    }
+
+    /** A filter of a subscriber, as stored in the index */
+    private static class IndexEntry {
+        private final EventFilter filter;
+        private final Subscriber subscriber;
+
+        private IndexEntry(EventFilter filter, Subscriber subscriber) {
+            this.filter = filter;
+            this.subscriber = subscriber;
+        }
+    }
+
+    /** Filters with the same WHO, indexed by WHERE, area or group */
+    private static class WhoIndex {
+        private final List<IndexEntry> anyWhere = new ArrayList<>();
+        private final Map<String, List<IndexEntry>> byWhere = new HashMap<>();
+        private final Map<String, List<IndexEntry>> byWherePrefix = new HashMap<>(); // to build prefixes
+        private String[] prefixes = new String[0]; // distinct WHERE prefixes, same order as prefixEntries
+        private List<IndexEntry>[] prefixEntries;
+        private List<IndexEntry>[] byArea; // indexed by area, null if no area filters
+        private List<IndexEntry>[] byGroup; // indexed by group, null if no group filters
+
+        private boolean hasWhereFilters() {
+            return !byWhere.isEmpty() || prefixes.length > 0 || byArea != null || byGroup != null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<IndexEntry>[] add(List<IndexEntry>[] table, int size, int i, IndexEntry e) {
+            List<IndexEntry>[] t = (table != null ? table : new List[size]);
+            if (t[i] == null) {
+                t[i] = new ArrayList<>();
+            }
+            t[i].add(e);
+            return t;
+        }
+    }
+
+    /**
+     * Immutable index of subscriber filters: filters with a WHO are found with a lookup by WHO and then by WHERE
+     * (exact or prefix), area or group; only filters without a WHO must be checked one by one
+     */
+    private static class FilterIndex {
+        private final List<IndexEntry> anyWho = new ArrayList<>();
+        private final Map<Who, WhoIndex> byWho = new EnumMap<>(Who.class);
+
+        private FilterIndex(List<Subscriber> subscribers) {
+            for (Subscriber s : subscribers) {
+                for (EventFilter f : s.filters) {
+                    IndexEntry e = new IndexEntry(f, s);
+                    if (f.getWho() == null) {
+                        anyWho.add(e);
+                        continue;
+                    }
+                    WhoIndex wi = byWho.computeIfAbsent(f.getWho(), w -> new WhoIndex());
+                    if (f.getArea() >= 0) {
+                        wi.byArea = WhoIndex.add(wi.byArea, 11, f.getArea(), e);
+                    } else if (f.getGroup() >= 0) {
+                        wi.byGroup = WhoIndex.add(wi.byGroup, 256, f.getGroup(), e);
+                    } else if (f.getWhere() == null) {
+                        wi.anyWhere.add(e);
+                    } else if (f.isWherePrefix()) {
+                        wi.byWherePrefix.computeIfAbsent(f.getWhere(), w -> new ArrayList<>()).add(e);
+                    } else {
+                        wi.byWhere.computeIfAbsent(f.getWhere(), w -> new ArrayList<>()).add(e);
+                    }
+                }
+            }
+            for (WhoIndex wi : byWho.values()) {
+                wi.prefixes = wi.byWherePrefix.keySet().toArray(new String[0]);
+                @SuppressWarnings("unchecked")
+                List<IndexEntry>[] entries = new List[wi.prefixes.length];
+                for (int i = 0; i < entries.length; i++) {
+                    entries[i] = wi.byWherePrefix.get(wi.prefixes[i]);
+                }
+                wi.prefixEntries = entries;
+            }
+        }
+
+        /* returns the subscribers with at least one filter matching msg, each one only once */
+        private List<Subscriber> lookup(OpenMessage msg) {
+            List<Subscriber> found = new ArrayList<>(4);
+            for (IndexEntry e : anyWho) {
+                if (e.filter.matches(msg)) {
+                    addOnce(found, e.subscriber);
+                }
+            }
+            if (msg instanceof BaseOpenMessage && !byWho.isEmpty()) {
+                BaseOpenMessage bmsg = (BaseOpenMessage) msg;
+                WhoIndex wi = byWho.get(bmsg.getWho());
+                if (wi != null) {
+                    addMatching(found, wi.anyWhere, bmsg);
+                    if (wi.hasWhereFilters()) {
+                        Where w = bmsg.getWhere();
+                        if (w != null) {
+                            String where = w.value();
+                            addMatching(found, wi.byWhere.get(where), bmsg);
+                            for (int i = 0; i < wi.prefixes.length; i++) { // no substring allocated per event
+                                if (where.startsWith(wi.prefixes[i])) {
+                                    addMatching(found, wi.prefixEntries[i], bmsg);
+                                }
+                            }
+                            if (w instanceof WhereLightAutom) {
+                                WhereLightAutom wla = (WhereLightAutom) w;
+                                int area = EventFilter.areaOf(wla);
+                                if (wi.byArea != null && area >= 0 && area < wi.byArea.length) {
+                                    addMatching(found, wi.byArea[area], bmsg);
+                                }
+                                int group = wla.getGroup();
+                                if (wi.byGroup != null && group >= 0 && group < wi.byGroup.length) {
+                                    addMatching(found, wi.byGroup[group], bmsg);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return found;
+        }
+
+        private static void addMatching(List<Subscriber> found, List<IndexEntry> entries, BaseOpenMessage msg) {
+            if (entries != null) {
+                for (IndexEntry e : entries) {
+                    if (e.filter.matchesWhatDim(msg)) {
+                        addOnce(found, e.subscriber);
+                    }
+                }
+            }
+        }
+
+        private static void addOnce(List<Subscriber> found, Subscriber s) {
+            for (Subscriber f : found) {
+                if (f == s) {
+                    return;
+                }
+            }
+            found.add(s);
+        }
+    }
+
+    /** Marks threads of the dispatcher pools (they can be virtual threads, that cannot be subclassed) */
+    private static final ThreadLocal<Boolean> DISPATCHER_THREAD = new ThreadLocal<>();
+
+    /** Creates a new dispatcher with default pool size and queue capacity */
+    public ListenerDispatcher() {
+        ThreadFactory factory = OWNThreads.newThreadFactory("OWN-Listener");
+        executor = new ThreadPoolExecutor(DEFAULT_POOL_SIZE, DEFAULT_POOL_SIZE, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), // never holds more than one task for each listener
+                r -> factory.newThread(() -> {
+                    DISPATCHER_THREAD.set(Boolean.TRUE);
+                    r.run();
+                }));
+        executor.allowCoreThreadTimeOut(true); // no threads left when there are no events
+    }
+
+    /**
+     * Adds a listener receiving all event messages
+     *
+     * @param listener the {@link GatewayListener} to add
+     * @return false if the listener was already registered
+     */
+    boolean add(GatewayListener listener) {
+        return add(EventFilter.ALL, listener);
+    }
+
+    /**
+     * Adds a listener receiving only event messages matched by filter. The same listener can be added with more
+     * filters: it will receive messages matched by any of them, once.
+     *
+     * @param filter the {@link EventFilter} selecting event messages
+     * @param listener the {@link GatewayListener} to add
+     * @return false if the listener was already registered with the same filter
+     */
+    boolean add(EventFilter filter, GatewayListener listener) {
+        synchronized (subscribers) {
+            Subscriber sub = null;
+            for (Subscriber s : subscribers) {
+                if (s.listener == listener) {
+                    sub = s;
+                    break;
+                }
+            }
+            if (sub == null) {
+                sub = new Subscriber(listener);
+                subscribers.add(sub);
+            } else if (sub.filters.contains(filter)) {
+                return false;
+            }
+            sub.filters.add(filter);
+            index = new FilterIndex(subscribers);
+            return true;
+        }
+    }
+
+    /**
+     * Removes a listener, with all its filters. Events already queued for the listener are still delivered.
+     *
+     * @param listener the {@link GatewayListener} to remove
+     */
+    void remove(GatewayListener listener) {
+        synchronized (subscribers) {
+            if (subscribers.removeIf(s -> s.listener == listener)) {
+                index = new FilterIndex(subscribers);
+            }
+        }
+    }
+
+    /**
+     * Queues an event to be delivered to all registered listeners calling 'method' on each one of them
+     *
+     * @param method the listener method to call
+     */
+    void dispatch(Consumer<? super GatewayListener> method) {
+        for (Subscriber s : subscribers) { // iterates on a snapshot of the array, no copy is made
+            if (acquire()) {
+                GatewayListener l = s.listener;
+                s.enqueue(() -> method.accept(l));
+            }
+        }
+    }
+
+    /**
+     * Queues an event message to be delivered, calling {@link GatewayListener#onEventMessage(OpenMessage)}, only to
+     * listeners with a filter matching it
+     *
+     * @param msg the event message
+     */
+    void dispatchMessage(OpenMessage msg) {
+        for (Subscriber s : index.lookup(msg)) {
+            if (acquire()) {
+                GatewayListener l = s.listener;
+                s.enqueue(() -> l.onEventMessage(msg));
+            }
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.warn("##GW## listener dispatcher rejected task: {}", e.getMessage());
+        }
+    }
+
+    /* reserves room for a new event, according to queue policy */
+    private boolean acquire() {
+        synchronized (capacityLock) {
+            // a listener generating events must not wait for itself: in that case capacity can be exceeded
+            while (queued >= queueCapacity && DISPATCHER_THREAD.get() == null) {
+                if (queuePolicy == QueuePolicy.DISCARD) {
+                    long d = discarded.incrementAndGet();
+                    if (d == 1 || d % 1000 == 0) {
+                        logger.warn("##GW## listener queue full ({} events): {} events discarded so far", queued, d);
+                    }
+                    return false;
+                }
+                try {
+                    capacityLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    discarded.incrementAndGet();
+                    return false;
+                }
+            }
+            queued++;
+            return true;
+        }
+    }
+
+    private void release() {
+        synchronized (capacityLock) {
+            queued--;
+            capacityLock.notify();
+        }
+    }
+
+    /**
+     * Returns the max number of threads used to notify listeners
+     *
+     * @return the pool size
+     */
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * Sets the max number of threads used to notify listeners in parallel (default {@link #DEFAULT_POOL_SIZE}).
+     * Events for the same listener are always delivered by one thread at a time.
+     *
+     * @param poolSize the pool size (must be &gt; 0)
+     */
+    public synchronized void setPoolSize(int poolSize) {
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("poolSize must be > 0");
+        }
+        if (poolSize > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(poolSize);
+            executor.setCorePoolSize(poolSize);
+        } else {
+            executor.setCorePoolSize(poolSize);
+            executor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    /**
+     * Returns the max number of events waiting to be delivered to listeners
+     *
+     * @return the queue capacity
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the max number of events waiting to be delivered to listeners (default {@link #DEFAULT_QUEUE_CAPACITY}).
+     * An event delivered to N listeners counts N.
+     *
+     * @param queueCapacity the queue capacity (must be &gt; 0)
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be > 0");
+        }
+        synchronized (capacityLock) {
+            this.queueCapacity = queueCapacity;
+            capacityLock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the {@link QueuePolicy} applied when the queue is full
+     *
+     * @return the queue policy
+     */
+    public QueuePolicy getQueuePolicy() {
+        return queuePolicy;
+    }
+
+    /**
+     * Sets the {@link QueuePolicy} applied when the queue is full (default {@link QueuePolicy#BLOCK})
+     *
+     * @param queuePolicy the queue policy
+     */
+    public void setQueuePolicy(QueuePolicy queuePolicy) {
+        synchronized (capacityLock) {
+            this.queuePolicy = queuePolicy;
+            capacityLock.notifyAll();
+        }
+    }
+
+    /**
+     * Returns the number of events waiting to be delivered to listeners
+     *
+     * @return number of queued events
+     */
+    public int getQueuedEvents() {
+        synchronized (capacityLock) {
+            return queued;
+        }
+    }
+
+    /**
+     * Returns the number of events discarded because the queue was full
+     *
+     * @return number of discarded events
+     */
+    public long getDiscardedEvents() {
+        return discarded.get();
+    }
+}
@@ -75,23 +75,19 @@ public enum OpenDeviceType {
     SCS_ALARM_ZONE(5200);
 
     private final Integer value;
-    private static Map<Integer, OpenDeviceType> mapping;
+    private static final Map<Integer, OpenDeviceType> MAPPING = new HashMap<>();
 
-    private OpenDeviceType(int value) {
-        this.value = value;
-    }
-
-    private static void initMapping() {
-        mapping = new HashMap<Integer, OpenDeviceType>();
+    static {
         for (OpenDeviceType t : values()) {
-            mapping.put(t.value, t);
+            MAPPING.put(t.value, t);
         }
     }
 
+    private OpenDeviceType(int value) {
+        this.value = value;
+    }
+
     public static OpenDeviceType fromValue(int value) {
-        if (mapping == null) {
-            initMapping();
-        }
-        return mapping.get(value);
+        return MAPPING.get(value);
     }
 }
@@ -15,17 +15,31 @@
 package org.openwebnet4j;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
+import org.openwebnet4j.communication.CommandPriority;
+import org.openwebnet4j.communication.CommandQueue;
+import org.openwebnet4j.communication.CommandTimeouts;
 import org.openwebnet4j.communication.ConnectorListener;
+import org.openwebnet4j.communication.FrameCapture;
 import org.openwebnet4j.communication.OWNAuthException;
 import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.communication.OWNScheduler;
+import org.openwebnet4j.communication.OWNTimeoutException;
 import org.openwebnet4j.communication.OpenConnector;
 import org.openwebnet4j.communication.Response;
 import org.openwebnet4j.message.Dim;
 import org.openwebnet4j.message.FrameException;
 import org.openwebnet4j.message.GatewayMgmt;
 import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.metrics.OWNMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,13 +55,35 @@ public abstract class OpenGateway implements ConnectorListener {
     protected boolean isConnected = false;
     protected boolean isDiscovering = false; // if true: we have already started a device discovery session
 
+    /**
+     * @deprecated listeners are now managed by the {@link ListenerDispatcher} (see {@link #getListenerDispatcher()}).
+     *             This list is kept in sync by {@link #subscribe(GatewayListener)} and
+     *             {@link #unsubscribe(GatewayListener)} for reading only (synchronize on it): listeners added to it
+     *             directly are not notified.
+     */
+    @Deprecated
     protected final ArrayList<GatewayListener> listeners = new ArrayList<GatewayListener>();
+
+    protected final ListenerDispatcher listenerDispatcher = new ListenerDispatcher();
     protected OpenConnector connector;
+    protected final CommandTimeouts commandTimeouts = new CommandTimeouts();
+    protected final DeviceStateCache stateCache = new DeviceStateCache(this);
+    private boolean coalesceRequests = true;
+
+    /** What to do with the rest of a batch when a message in the batch gets a NACK or fails */
+    public enum BatchPolicy {
+        /** go on sending the other messages */
+        CONTINUE_ON_NACK,
+        /** do not send messages not yet sent */
+        STOP_ON_NACK
+    }
+
+    public static final int DEFAULT_BATCH_WINDOW = 8;
 
-    private static final int RECONNECT_RETRY_AFTER = 2500; // ms
-    private static final int RECONNECT_RETRY_AFTER_MAX = 60000; // ms
-    private static final int RECONNECT_RETRY_MULTIPLIER = 2;
-    private boolean connectionCloseRequested = false;
+    private volatile boolean connectionCloseRequested = false;
+    ReconnectManager reconnectManager = new ReconnectManager(this); // replaced only by tests
+    private volatile OWNMetrics metrics = OWNMetrics.NOOP;
+    private volatile FrameCapture frameCapture;
 
     protected byte[] macAddr;
     private String firmwareVersion = null;
@@ -68,6 +104,10 @@ public abstract class OpenGateway implements ConnectorListener {
         connectionCloseRequested = false;
         initConnector();
         connector.setListener(this);
+        connector.setCommandTimeouts(commandTimeouts);
+        connector.setMetrics(metrics);
+        connector.setFrameCapture(frameCapture);
+        connector.setCoalesceRequests(coalesceRequests);
         try {
             connector.openMonConn();
             if (connector.isMonConnected()) {
@@ -100,47 +140,127 @@ public abstract class OpenGateway implements ConnectorListener {
      * Tries to reconnect to the OpenWebNet gateway, waiting increasing time intervals. {@link
      * GatewayListener#onConnectionError} is called each time a connection is tried and fails {@link
      * GatewayListener#onReconnected} is called when reconnection is successful. To stop trying,
-     * call {@link #closeConnection()}.
+     * call {@link #closeConnection()}. The calling thread waits until reconnection succeeds or is stopped, see
+     * {@link #reconnectAsync()} to reconnect without blocking.
      *
      * @throws OWNAuthException in case of auth error (reconnect is stopped)
      */
     public void reconnect() throws OWNAuthException {
-        int retry = RECONNECT_RETRY_AFTER;
-        while (!isConnected && !connectionCloseRequested) {
-            try {
-                logger.debug("--Sleeping {}ms before re-connecting...", retry);
-                Thread.sleep(retry);
-            } catch (InterruptedException e1) {
-                logger.warn("--reconnect cycle interrupted. Exception:{}", e1);
-            }
-            if (!connectionCloseRequested) {
-                logger.info("--...slept {}ms, now trying to re-connect...", retry);
-                try {
-                    connector.openMonConn();
-                    if (connector.isMonConnected()) {
-                        connector.openCmdConn();
-                        if (connector.isCmdConnected()) {
-                            handleManagementDimensions(sendInternal(GatewayMgmt.requestMACAddress()));
-                            handleManagementDimensions(sendInternal(GatewayMgmt.requestFirmwareVersion()));
-                            isConnected = true;
-                            notifyListeners((listener) -> listener.onReconnected());
-                        }
-                    }
-                } catch (OWNAuthException ae) { // in case of auth exception, we stop re-trying
-                    logger.warn("--Re-connect FAILED. OWNAuthException: {}", ae.getMessage());
-                    throw ae;
-                } catch (OWNException e) {
-                    logger.debug("--Error while re-connecting: {}", e.getMessage());
-                    retry = retry * RECONNECT_RETRY_MULTIPLIER;
-                    if (retry >= RECONNECT_RETRY_AFTER_MAX) {
-                        retry = RECONNECT_RETRY_AFTER_MAX;
-                    }
-                    notifyListeners((listener) -> listener.onConnectionError(e));
-                }
+        try {
+            reconnectAsync().get();
+        } catch (InterruptedException e) {
+            logger.warn("--reconnect cycle interrupted. Exception:{}", e);
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            logger.debug("--reconnect cycle stopped");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OWNAuthException) {
+                throw (OWNAuthException) e.getCause();
             }
+            logger.warn("--reconnect cycle failed. Exception:{}", e.getCause());
+        }
+    }
+
+    /**
+     * Same as {@link #reconnect()}, but connection attempts are scheduled on the shared {@link OWNScheduler} and the
+     * calling thread is not blocked. The interval between attempts grows exponentially and is randomised (see
+     * {@link #setReconnectJitter(double)}); {@link GatewayListener#onReconnectScheduled} is called before each
+     * attempt. If a reconnect is already in progress, its future is returned.
+     *
+     * @return a {@link CompletableFuture} completed when reconnection is successful, completed exceptionally with an
+     *         {@link OWNAuthException} in case of auth error, or cancelled if {@link #closeConnection()} is called
+     */
+    public CompletableFuture<Void> reconnectAsync() {
+        return reconnectManager.start();
+    }
+
+    /**
+     * Returns the jitter applied to the interval between reconnect attempts
+     *
+     * @return the jitter, between 0 and 1
+     */
+    public double getReconnectJitter() {
+        return reconnectManager.getJitter();
+    }
+
+    /**
+     * Sets the jitter applied to the interval between reconnect attempts: each interval is a random value between
+     * (1-jitter) and 1 times the exponential backoff interval (default: 0.5). With 0 all gateways disconnected at the
+     * same time retry at the same moments.
+     *
+     * @param jitter the jitter, between 0 and 1
+     */
+    public void setReconnectJitter(double jitter) {
+        reconnectManager.setJitter(jitter);
+    }
+
+    /**
+     * Returns the {@link OWNMetrics} receiving measurements from this gateway
+     *
+     * @return the metrics
+     */
+    public OWNMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link OWNMetrics} receiving measurements from this gateway and its connector: command latencies by
+     * WHO and outcome, events received by WHO, invalid frames, notifier queue depth, reconnect attempts and handshake
+     * durations (default: {@link OWNMetrics#NOOP}). See {@link org.openwebnet4j.metrics.MicrometerMetrics}.
+     *
+     * @param metrics the metrics
+     */
+    public void setMetrics(OWNMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics, "metrics is null");
+        if (connector != null) {
+            connector.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Returns the {@link FrameCapture} recording the frames exchanged with the gateway
+     *
+     * @return the capture, or null if frames are not captured
+     */
+    public FrameCapture getFrameCapture() {
+        return frameCapture;
+    }
+
+    /**
+     * Sets a {@link FrameCapture} to record all frames sent and received on the connections to the gateway opened
+     * after this call; the capture can be replayed with {@link org.openwebnet4j.communication.FrameReplayer}. To
+     * record also the MON connection, set it before {@link #connect()}.
+     *
+     * @param capture the capture, or null to stop capturing frames of new connections
+     */
+    public void setFrameCapture(FrameCapture capture) {
+        this.frameCapture = capture;
+        if (connector != null) {
+            connector.setFrameCapture(capture);
         }
     }
 
+    /* completes a reconnect after MON and CMD connections have been re-opened */
+    void completeReconnect() throws OWNException {
+        handleManagementDimensions(sendInternal(GatewayMgmt.requestMACAddress()));
+        handleManagementDimensions(sendInternal(GatewayMgmt.requestFirmwareVersion()));
+        isConnected = true;
+        notifyListeners((listener) -> listener.onReconnected());
+    }
+
+    boolean isConnectionCloseRequested() {
+        return connectionCloseRequested;
+    }
+
+    /**
+     * Returns true if MON and CMD connections to this gateway can be opened in parallel when reconnecting
+     *
+     * @return true if connections can be opened in parallel (default: false)
+     */
+    protected boolean isParallelConnectSupported() {
+        return false;
+    }
+
     /**
      * Send a command message, and returns the response messages
      *
@@ -149,28 +269,233 @@ public abstract class OpenGateway implements ConnectorListener {
      * @throws OWNException on send/response reading error
      */
     public Response send(OpenMessage msg) throws OWNException {
-        if (isConnected) {
-            return sendInternal(msg);
-        } else {
-            throw new OWNException("Error while sending message: the gateway is not connected");
-        }
+        return send(msg, CommandPriority.NORMAL);
     }
 
     /**
-     * Send a command message with high priority, and returns the response messages
+     * Send a command message with high priority, and returns the response messages. The message will be sent before
+     * any other waiting message with lower priority.
      *
      * @param msg the {@link OpenMessage} to be sent
      * @return the {@link Response} messages received as response
      * @throws OWNException on send/response reading error
      */
     public Response sendHighPriority(OpenMessage msg) throws OWNException {
-        // TODO sendHighPriority method
-        logger.debug("------< sendHighPriority NOT YET IMPLEMENTED, using normal SEND >------");
-        return send(msg);
+        return send(msg, CommandPriority.HIGH);
+    }
+
+    /**
+     * Send a command message with the given priority, and returns the response messages
+     *
+     * @param msg the {@link OpenMessage} to be sent
+     * @param priority the {@link CommandPriority} of the message
+     * @return the {@link Response} messages received as response
+     * @throws OWNException on send/response reading error
+     */
+    public Response send(OpenMessage msg, CommandPriority priority) throws OWNException {
+        if (isConnected) {
+            return sendInternal(msg, priority);
+        } else {
+            throw new OWNException("Error while sending message: the gateway is not connected");
+        }
     }
 
     protected Response sendInternal(OpenMessage msg) throws OWNException {
-        return connector.sendCommandSynch(msg.getFrameValue());
+        return sendInternal(msg, CommandPriority.NORMAL);
+    }
+
+    protected Response sendInternal(OpenMessage msg, CommandPriority priority) throws OWNException {
+        return connector.sendCommandSynch(msg.getFrameValue(), priority);
+    }
+
+    /**
+     * Send a command message without waiting for the response. The returned {@link CompletableFuture} is completed
+     * with the response messages, or exceptionally with an {@link OWNException} on send/response reading error.
+     * Cancelling the future before the message has been sent will prevent it from being sent.
+     *
+     * @param msg the {@link OpenMessage} to be sent
+     * @return a {@link CompletableFuture} for the {@link Response} messages received as response
+     */
+    public CompletableFuture<Response> sendAsync(OpenMessage msg) {
+        return sendAsync(msg, CommandPriority.NORMAL);
+    }
+
+    /**
+     * Same as {@link #sendAsync(OpenMessage)}, with the given priority
+     *
+     * @param msg the {@link OpenMessage} to be sent
+     * @param priority the {@link CommandPriority} of the message
+     * @return a {@link CompletableFuture} for the {@link Response} messages received as response
+     */
+    public CompletableFuture<Response> sendAsync(OpenMessage msg, CommandPriority priority) {
+        if (isConnected) {
+            return connector.sendCommandAsync(msg.getFrameValue(), priority);
+        } else {
+            return notConnectedFuture();
+        }
+    }
+
+    /**
+     * Same as {@link #sendAsync(OpenMessage)}, but the returned future is completed exceptionally with a
+     * {@link OWNTimeoutException} if the response is not received within the given timeout
+     *
+     * @param msg the {@link OpenMessage} to be sent
+     * @param timeout the timeout
+     * @param unit the {@link TimeUnit} of the timeout
+     * @return a {@link CompletableFuture} for the {@link Response} messages received as response
+     */
+    public CompletableFuture<Response> sendAsync(OpenMessage msg, long timeout, TimeUnit unit) {
+        if (isConnected) {
+            return connector.sendCommandAsync(msg.getFrameValue(), timeout, unit);
+        } else {
+            return notConnectedFuture();
+        }
+    }
+
+    /**
+     * Same as {@link #sendBatch(List, int, BatchPolicy)} with {@link #DEFAULT_BATCH_WINDOW} and
+     * {@link BatchPolicy#CONTINUE_ON_NACK}
+     *
+     * @param msgs the messages to be sent
+     * @return the {@link Response} for each message, in the same order
+     * @throws OWNException if the gateway is not connected or the thread is interrupted
+     */
+    public List<Response> sendBatch(List<? extends OpenMessage> msgs) throws OWNException {
+        return sendBatch(msgs, DEFAULT_BATCH_WINDOW, BatchPolicy.CONTINUE_ON_NACK);
+    }
+
+    /**
+     * Sends a list of messages and returns their responses in the same order. Messages are streamed to the command
+     * queue keeping at most 'window' messages waiting to be sent or waiting for their response, so that the next
+     * message is sent as soon as a response is received (or in parallel, if more CMD connections are available)
+     * without leaving other senders waiting behind the whole batch.
+     * If a message gets a NACK or fails and policy is {@link BatchPolicy#STOP_ON_NACK}, messages not yet sent are
+     * discarded; messages already sent in parallel will still complete.
+     *
+     * @param msgs the messages to be sent
+     * @param window max number of messages outstanding at the same time (must be &gt; 0)
+     * @param policy the {@link BatchPolicy} in case of NACK
+     * @return the {@link Response} for each message, in the same order. The response is null for messages that
+     *         failed (for example because of a timeout) or that have not been sent because the batch was stopped.
+     * @throws OWNException if the gateway is not connected or the thread is interrupted
+     */
+    public List<Response> sendBatch(List<? extends OpenMessage> msgs, int window, BatchPolicy policy)
+            throws OWNException {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be > 0");
+        }
+        if (!isConnected) {
+            throw new OWNException("Error while sending batch: the gateway is not connected");
+        }
+        int size = msgs.size();
+        Response[] responses = new Response[size];
+        List<CompletableFuture<Response>> futures = new ArrayList<>(size);
+        int done = 0; // messages with a response
+        boolean stopped = false;
+        try {
+            while (done < size) {
+                while (!stopped && futures.size() < size && futures.size() - done < window) {
+                    futures.add(connector.sendCommandAsync(msgs.get(futures.size()).getFrameValue()));
+                }
+                if (done == futures.size()) {
+                    break; // batch stopped: no more messages will be sent
+                }
+                try {
+                    responses[done] = futures.get(done).get();
+                } catch (ExecutionException e) {
+                    logger.debug("##GW## batch message {} failed: {}", msgs.get(done), e.getCause().getMessage());
+                } catch (CancellationException e) {
+                    logger.debug("##GW## batch message {} was cancelled", msgs.get(done));
+                }
+                if (policy == BatchPolicy.STOP_ON_NACK && !stopped
+                        && (responses[done] == null || !responses[done].isSuccess())) {
+                    logger.debug("##GW## batch stopped after message {} of {}", done + 1, size);
+                    stopped = true;
+                    for (int i = done + 1; i < futures.size(); i++) {
+                        // messages already sent are not cancelled: their response is still collected
+                        connector.cancelQueued(futures.get(i));
+                    }
+                }
+                done++;
+                while (stopped && done < futures.size() && futures.get(done).isCancelled()) {
+                    done++;
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(false));
+            Thread.currentThread().interrupt();
+            throw new OWNException("Interrupted while sending batch", e);
+        }
+        return Arrays.asList(responses);
+    }
+
+    /**
+     * Returns the {@link CommandTimeouts} used by this gateway, to set how long to wait for the response to each type
+     * of message before failing with a {@link OWNTimeoutException}
+     *
+     * @return the {@link CommandTimeouts}
+     */
+    public CommandTimeouts getCommandTimeouts() {
+        return commandTimeouts;
+    }
+
+    /**
+     * Returns the {@link CommandQueue} of messages waiting to be sent to the gateway, with its depth and wait-time
+     * statistics for each {@link CommandPriority}
+     *
+     * @return the {@link CommandQueue}, or null if the gateway connector has not been initialized yet
+     */
+    public CommandQueue getCommandQueue() {
+        return (connector != null ? connector.getCommandQueue() : null);
+    }
+
+    /**
+     * Enables/disables coalescing of status and dimension requests (default: enabled). When enabled, a request sent
+     * while the same request is still waiting for its response is not sent again to the gateway: all callers receive
+     * the same {@link Response}. Requests sent with a timeout are never coalesced.
+     *
+     * @param coalesce true to enable coalescing
+     */
+    public void setCoalesceRequests(boolean coalesce) {
+        coalesceRequests = coalesce;
+        if (connector != null) {
+            connector.setCoalesceRequests(coalesce);
+        }
+    }
+
+    /**
+     * Check if coalescing of status and dimension requests is enabled
+     *
+     * @return true if enabled
+     */
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    /**
+     * Returns the number of status and dimension requests that have not been sent to the gateway because they have
+     * been coalesced with the same request already in-flight
+     *
+     * @return number of coalesced requests
+     */
+    public long getCoalescedRequests() {
+        return (connector != null ? connector.getCoalescedRequests() : 0);
+    }
+
+    /**
+     * Returns the {@link DeviceStateCache} with the last known state of devices, updated from events received by this
+     * gateway. It can be used to answer status and dimension requests without sending them to the gateway.
+     *
+     * @return the {@link DeviceStateCache}
+     */
+    public DeviceStateCache getStateCache() {
+        return stateCache;
+    }
+
+    private CompletableFuture<Response> notConnectedFuture() {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        future.completeExceptionally(new OWNException("Error while sending message: the gateway is not connected"));
+        return future;
     }
 
     /**
@@ -183,12 +508,19 @@ public abstract class OpenGateway implements ConnectorListener {
 
     @Override
     public void onMessage(OpenMessage message) {
-        notifyListeners((listener) -> listener.onEventMessage(message));
+        try {
+            stateCache.update(message);
+        } catch (RuntimeException e) {
+            // a cache problem must never cost listeners an event
+            logger.debug("##GW## state cache not updated for {}: {}", message, e.toString());
+        }
+        listenerDispatcher.dispatchMessage(message);
     }
 
     @Override
     public void onMonDisconnected(OWNException e) {
         logger.debug("##GW## onMonDisconnected() OWNException={}", e.getMessage());
+        stateCache.clear(); // events may be lost until MON is reconnected
         notifyListeners((listener) -> listener.onDisconnected(e));
         isConnected = false;
     }
@@ -228,47 +560,64 @@ public abstract class OpenGateway implements ConnectorListener {
      * @param listener the {@link GatewayListener} to add
      */
     public void subscribe(GatewayListener listener) {
+        if (!listenerDispatcher.add(listener)) {
+            logger.debug("Event Listener {} already registered", listener);
+        }
+        addToListeners(listener);
+    }
+
+    /**
+     * Add a listener for events from this OpenGateway, receiving only event messages matched by filter (connection
+     * and discovery events are always notified). The same listener can be subscribed with more filters.
+     *
+     * @param filter the {@link EventFilter} selecting event messages for this listener
+     * @param listener the {@link GatewayListener} to add
+     */
+    public void subscribe(EventFilter filter, GatewayListener listener) {
+        if (!listenerDispatcher.add(filter, listener)) {
+            logger.debug("Event Listener {} already registered with {}", listener, filter);
+        }
+        addToListeners(listener);
+    }
+
+    private void addToListeners(GatewayListener listener) {
         synchronized (listeners) {
-            // check if this listener is already registered
-            if (listeners.contains(listener)) {
-                logger.debug("Event Listener {} already registered", listener);
-                return;
+            if (!listeners.contains(listener)) {
+                listeners.add(listener);
             }
-            listeners.add(listener);
         }
     }
 
     /**
-     * Remove a listener for events from this OpenGateway.
+     * Remove a listener (with all its filters) for events from this OpenGateway.
      *
      * @param listener the {@link GatewayListener} to remove.
      */
     public void unsubscribe(GatewayListener listener) {
+        listenerDispatcher.remove(listener);
         synchronized (listeners) {
             listeners.remove(listener);
         }
     }
 
     /**
-     * Generic method to notify registered OpenListener about 'method' event. Thread safe. A
-     * (single) notification thread is used.
+     * Returns the {@link ListenerDispatcher} used to notify events to listeners, to configure its pool size and
+     * queue policy
+     *
+     * @return the {@link ListenerDispatcher}
+     */
+    public ListenerDispatcher getListenerDispatcher() {
+        return listenerDispatcher;
+    }
+
+    /**
+     * Generic method to notify registered OpenListener about 'method' event. Thread safe. Events are delivered
+     * by the {@link ListenerDispatcher}, each listener receives events in the same order they are notified.
      *
      * @param method the method to be notified
      */
     protected void notifyListeners(Consumer<? super GatewayListener> method) {
-        ArrayList<GatewayListener> listenersCopy;
-        synchronized (listeners) {
-            listenersCopy = new ArrayList<GatewayListener>(listeners);
-        }
-        // TODO use notifierExecutor instead of Thread, like in OpenConnector
-        // Execute 'method' on each of the listeners, using a new notifier Thread
-        Thread notifier = new Thread(new Runnable() {
-            @Override
-            public void run() {
-                listenersCopy.forEach(method);
-            }
-        });
-        notifier.start();
+        listenerDispatcher.dispatch(method);
     }
 
     /**
@@ -333,6 +682,7 @@ public abstract class OpenGateway implements ConnectorListener {
     /** Closes connection to the gateway and releases resources */
     public void closeConnection() {
         connectionCloseRequested = true;
+        reconnectManager.stop();
         connector.disconnect();
         isConnected = false;
     }
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openwebnet4j.communication.OWNAuthException;
+import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.communication.OWNScheduler;
+import org.openwebnet4j.communication.OpenConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reconnects an {@link OpenGateway} in background: reconnect attempts are scheduled on the {@link OWNScheduler}
+ * with an exponential backoff, randomised with a jitter so that many gateways disconnected at the same time do not
+ * all retry at the same moments. No thread is blocked while waiting for the next attempt. For gateways that support
+ * it, MON and CMD connections are re-opened in parallel.
+ *
+ * @author M. Valla - Initial contribution
+ */
+class ReconnectManager {
+
+    static final int RETRY_AFTER = 2500; // ms
+    static final int RETRY_AFTER_MAX = 60000; // ms
+    static final int RETRY_MULTIPLIER = 2;
+    static final double DEFAULT_JITTER = 0.5;
+
+    private final Logger logger = LoggerFactory.getLogger(ReconnectManager.class);
+
+    private final OpenGateway gateway;
+    private final AttemptScheduler scheduler;
+    private final DoubleSupplier random; // random values between 0 (included) and 1 (excluded)
+    private volatile double jitter = DEFAULT_JITTER;
+
+    private CompletableFuture<Void> cycle; // current reconnect cycle, guarded by this
+    private CompletableFuture<Void> nextAttempt; // next scheduled attempt, guarded by this
+    private int attempts; // attempts in the current cycle, guarded by this
+
+    /**
+     * Schedules reconnect attempts and the parallel opening of CMD connections: on the {@link OWNScheduler}, or driven
+     * by tests
+     */
+    interface AttemptScheduler {
+        /**
+         * Schedules a task to be executed after a delay
+         *
+         * @param task the task
+         * @param delay (ms) the delay
+         * @return a future completed when the task has been executed; cancelling it prevents the execution
+         */
+        CompletableFuture<Void> schedule(Runnable task, long delay);
+    }
+
+    ReconnectManager(OpenGateway gateway) {
+        this(gateway, (task, delay) -> OWNScheduler.scheduleBlocking(task, delay, TimeUnit.MILLISECONDS),
+                () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    ReconnectManager(OpenGateway gateway, AttemptScheduler scheduler, DoubleSupplier random) {
+        this.gateway = gateway;
+        this.scheduler = scheduler;
+        this.random = random;
+    }
+
+    double getJitter() {
+        return jitter;
+    }
+
+    void setJitter(double jitter) {
+        if (jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1");
+        }
+        this.jitter = jitter;
+    }
+
+    /**
+     * Starts a reconnect cycle, if not already started
+     *
+     * @return the future of the current reconnect cycle
+     */
+    synchronized CompletableFuture<Void> start() {
+        if (cycle == null || cycle.isDone()) {
+            cycle = new CompletableFuture<>();
+            attempts = 0;
+            scheduleAttempt(cycle, RETRY_AFTER);
+        }
+        return cycle;
+    }
+
+    /** Stops the current reconnect cycle, if any */
+    synchronized void stop() {
+        if (nextAttempt != null) {
+            nextAttempt.cancel(false);
+        }
+        if (cycle != null) {
+            cycle.cancel(false);
+        }
+    }
+
+    /* returns the delay before the next attempt: a random value between (1-jitter)*retry and retry */
+    long jittered(int retry) {
+        return retry - (long) (retry * jitter * random.getAsDouble());
+    }
+
+    private synchronized void scheduleAttempt(CompletableFuture<Void> result, int retry) {
+        if (result.isDone() || result != cycle) {
+            return;
+        } else if (gateway.isConnected()) {
+            result.complete(null);
+        } else if (gateway.isConnectionCloseRequested()) {
+            result.cancel(false);
+        } else {
+            final int attempt = ++attempts;
+            final long delay = jittered(retry);
+            logger.debug("--Waiting {}ms before re-connecting (attempt {})...", delay, attempt);
+            try {
+                gateway.notifyListeners((listener) -> listener.onReconnectScheduled(attempt, delay));
+                nextAttempt = scheduler.schedule(() -> attempt(result, retry, delay), delay);
+            } catch (RuntimeException e) { // the cycle must not be left pending with no attempt scheduled
+                logger.warn("--Cannot schedule re-connect attempt: {}", e.getMessage());
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /* a reconnect attempt, executed by the AttemptScheduler (on a OWNScheduler worker thread) */
+    private void attempt(CompletableFuture<Void> result, int retry, long delay) {
+        if (gateway.isConnectionCloseRequested()) {
+            result.cancel(false);
+            return;
+        } else if (result.isDone()) {
+            return;
+        }
+        logger.info("--...waited {}ms, now trying to re-connect...", delay);
+        OpenConnector connector = gateway.connector;
+        CompletableFuture<Void> open;
+        if (gateway.isParallelConnectSupported()) {
+            // CMD is opened on another worker, without waiting for it here: the result is combined when both complete
+            CompletableFuture<Void> cmd = scheduler.schedule(() -> openCmd(connector), 0);
+            CompletableFuture<Void> mon = new CompletableFuture<>();
+            try {
+                openMon(connector);
+                mon.complete(null);
+            } catch (CompletionException e) {
+                mon.completeExceptionally(e.getCause());
+            }
+            open = mon.thenCombine(cmd, (m, c) -> (Void) null);
+        } else {
+            open = new CompletableFuture<>();
+            try {
+                openMon(connector);
+                if (connector.isMonConnected()) {
+                    openCmd(connector);
+                }
+                open.complete(null);
+            } catch (CompletionException e) {
+                open.completeExceptionally(e.getCause());
+            }
+        }
+        open.whenComplete((r, e) -> {
+            int nextRetry = retry;
+            try {
+                if (e != null) {
+                    Throwable cause = (e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+                    throw (cause instanceof OWNException ? (OWNException) cause
+                            : new OWNException("Error while re-connecting", cause));
+                }
+                if (connector.isMonConnected() && connector.isCmdConnected()) {
+                    gateway.completeReconnect();
+                }
+                recordAttempt(gateway.isConnected());
+            } catch (OWNAuthException ae) { // in case of auth exception, we stop re-trying
+                logger.warn("--Re-connect FAILED. OWNAuthException: {}", ae.getMessage());
+                recordAttempt(false);
+                result.completeExceptionally(ae);
+                return;
+            } catch (OWNException oe) {
+                recordAttempt(false);
+                logger.debug("--Error while re-connecting: {}", oe.getMessage());
+                nextRetry = Math.min(retry * RETRY_MULTIPLIER, RETRY_AFTER_MAX);
+                gateway.notifyListeners((listener) -> listener.onConnectionError(oe));
+            } catch (RuntimeException re) { // unexpected error: keep re-trying, otherwise the cycle never completes
+                logger.warn("--Unexpected error while re-connecting: {}", re.getMessage(), re);
+                recordAttempt(false);
+                nextRetry = Math.min(retry * RETRY_MULTIPLIER, RETRY_AFTER_MAX);
+            }
+            scheduleAttempt(result, nextRetry);
+        });
+    }
+
+    private void recordAttempt(boolean success) {
+        try {
+            gateway.getMetrics().reconnectAttempted(success);
+        } catch (RuntimeException e) {
+            logger.debug("--Error while recording re-connect attempt: {}", e.getMessage());
+        }
+    }
+
+    private static void openMon(OpenConnector connector) {
+        try {
+            connector.openMonConn();
+        } catch (OWNException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static void openCmd(OpenConnector connector) {
+        try {
+            connector.openCmdConn();
+        } catch (OWNException e) {
+            throw new CompletionException(e);
+        }
+    }
+}
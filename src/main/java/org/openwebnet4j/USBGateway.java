@@ -15,7 +15,10 @@
 package org.openwebnet4j;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.openwebnet4j.communication.CommandPriority;
 import org.openwebnet4j.communication.OWNException;
 import org.openwebnet4j.communication.Response;
 import org.openwebnet4j.communication.USBConnector;
@@ -36,9 +39,24 @@ public class USBGateway extends OpenGateway {
     private final Logger logger = LoggerFactory.getLogger(USBGateway.class);
 
     private String serialPortName;
-    private int discoveredProducts = 0; // number of products returned from the last SCAN command
-    private int receivedProducts = 0; // number of products returned from PRODUCT INFORMATION
-    // requests during a device discovery
+    private static final int DISCOVERY_WINDOW = 4; // max product info requests queued at the same time
+
+    private volatile DiscoverySession discovery; // current discovery session, null if none
+
+    /*
+     * Counters of a device discovery, started by a NB_NETW_PROD event. Each discovery has its own session, so that
+     * product info requests of an older discovery still in flight cannot change the counters of the current one.
+     */
+    private static final class DiscoverySession {
+        private final int products; // number of products returned by the SCAN command
+        private final AtomicInteger received = new AtomicInteger(); // product info requests completed
+        private final AtomicInteger next = new AtomicInteger(); // next product index to be requested
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private DiscoverySession(int products) {
+            this.products = products;
+        }
+    }
 
     public USBGateway(String serialPortName) {
         this.serialPortName = serialPortName;
@@ -63,8 +81,7 @@ public class USBGateway extends OpenGateway {
     protected void discoverDevicesInternal() throws OWNException {
         Response res;
         logger.debug("##USB## ----- ### STARTING A NEW DISCOVERY...");
-        receivedProducts = 0;
-        discoveredProducts = 0;
+        discovery = null; // completions of a previous discovery are ignored from now on
         try {
             res = send(GatewayMgmt.requestScanNetwork());
             if (!res.isSuccess()) {
@@ -87,27 +104,78 @@ public class USBGateway extends OpenGateway {
     }
 
     /*
-     * handle a discovery event msg (number of products in the network)
+     * handle a discovery event msg (number of products in the network). Product info requests are sent
+     * asynchronously, keeping at most DISCOVERY_WINDOW of them in the command queue, so that the notifier thread
+     * calling this method is not blocked and events keep being delivered during the discovery.
      */
     private void handleDiscoveryEvent(GatewayMgmt message) {
         if (message.getDim() == GatewayMgmt.DimGatewayMgmt.NB_NETW_PROD) {
+            int products;
             try {
-                discoveredProducts = Integer.parseInt(message.getDimValues()[0]);
-                logger.debug("##USB## ----- # {} products found!", discoveredProducts);
-                // request product infos, starting from index 0
-                for (int p = 0; p < discoveredProducts; p++) {
-                    handleDiscoveryResponse(sendInternal(GatewayMgmt.requestProductInfo(p)));
-                    receivedProducts++;
-                    logger.debug("##USB## ----- # DISCOVERED {} / {} products", receivedProducts, discoveredProducts);
-                }
-                logger.debug("##USB## ----- ### DISCOVERY COMPLETED - DISCOVERED {} / {} products", receivedProducts,
-                        discoveredProducts);
-                notifyListeners((listener) -> listener.onDiscoveryCompleted());
+                products = Integer.parseInt(message.getDimValues()[0]);
             } catch (Exception e) {
                 logger.debug("##USB## ----- # Error while discovering devices: " + e.getMessage());
+                discovery = null;
+                isDiscovering = false;
+                return;
             }
-            isDiscovering = false;
+            logger.debug("##USB## ----- # {} products found!", products);
+            DiscoverySession session = new DiscoverySession(products);
+            discovery = session;
+            if (products == 0) {
+                discoveryCompleted(session);
+                return;
+            }
+            // request product infos, starting from index 0
+            for (int i = 0; i < Math.min(DISCOVERY_WINDOW, products); i++) {
+                requestNextProductInfo(session);
+            }
+        }
+    }
+
+    /*
+     * sends the product info request for the next product index of the session. When the response is received, new
+     * devices are notified and the request for the following index is sent, unless a new discovery has started
+     */
+    private void requestNextProductInfo(DiscoverySession session) {
+        final int p = session.next.getAndIncrement();
+        if (p >= session.products) {
+            return;
+        }
+        sendAsync(GatewayMgmt.requestProductInfo(p), CommandPriority.LOW).whenComplete((res, e) -> {
+            if (session != discovery) {
+                logger.debug("##USB## ----- # ignoring info of product {} from a previous discovery", p);
+                return;
+            }
+            if (e != null) {
+                logger.debug("##USB## ----- # Error while requesting info of product {}: {}", p, e.getMessage());
+            } else {
+                try {
+                    handleDiscoveryResponse(res);
+                } catch (Exception ex) {
+                    logger.debug("##USB## ----- # Error while handling info of product {}: {}", p, ex.getMessage());
+                }
+            }
+            int received = session.received.incrementAndGet();
+            logger.debug("##USB## ----- # DISCOVERED {} / {} products (product {})", received, session.products, p);
+            if (received >= session.products) {
+                discoveryCompleted(session);
+            } else {
+                requestNextProductInfo(session);
+            }
+        });
+    }
+
+    /* completes the discovery of session, once, if it is still the current one */
+    private void discoveryCompleted(DiscoverySession session) {
+        if (session != discovery || !session.completed.compareAndSet(false, true)) {
+            return;
         }
+        logger.debug("##USB## ----- ### DISCOVERY COMPLETED - DISCOVERED {} / {} products", session.received.get(),
+                session.products);
+        discovery = null;
+        isDiscovering = false;
+        notifyListeners((listener) -> listener.onDiscoveryCompleted());
     }
 
     /*
@@ -118,7 +186,7 @@ public class USBGateway extends OpenGateway {
         int i = 0;
         // get messages in the response and notify all endpoints in the response, before last
         // ACK/NACK
-        while (r.getResponseMessages().get(i) instanceof GatewayMgmt) {
+        while (i < r.getResponseMessages().size() && r.getResponseMessages().get(i) instanceof GatewayMgmt) {
             gMsg = (GatewayMgmt) r.getResponseMessages().get(i);
             if (gMsg != null && gMsg.getDim() == GatewayMgmt.DimGatewayMgmt.PRODUCT_INFO) {
                 WhereZigBee w = (WhereZigBee) (gMsg.getWhere());
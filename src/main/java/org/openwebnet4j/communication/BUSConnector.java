@@ -15,13 +15,17 @@
 package org.openwebnet4j.communication;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.openwebnet4j.message.BaseOpenMessage;
 import org.openwebnet4j.message.FrameException;
@@ -57,6 +61,10 @@ public class BUSConnector extends OpenConnector {
      * - MON_SOCKET_READ_TIMEOUT to wait for new events from MON socket, if it expires something could be wrong with the
      * MON connection with gateway not receiving events anymore, so we send a CMD to check if gw is still reachable
      * - HANDSHAKE_TIMEOUT to wait for the handshake process to be completed
+     * - CMD_SESSION_IDLE_TIMEOUT to evict from the pool CMD connections not used recently, before the gateway closes
+     * them
+     * - CMD_STANDBY_REFRESH to replace the standby CMD connection before the gateway closes it, checked every
+     * CMD_STANDBY_CHECK_PERIOD
      */
     static final int SOCKET_CONNECT_TIMEOUT = 5000; // (ms) time to wait while connecting a new socket to the
     // gateway
@@ -68,13 +76,37 @@ public class BUSConnector extends OpenConnector {
 
     public static final int HANDSHAKE_TIMEOUT = 2000; // (ms) timeout before handshake must be completed
 
+    static final int CMD_SESSION_IDLE_TIMEOUT = 110000; // (ms) CMD connections idle for longer are not re-used
+
+    static final int CMD_STANDBY_REFRESH = 90000; // (ms) standby CMD connection older than this is replaced
+    static final int CMD_STANDBY_CHECK_PERIOD = 10000; // (ms) period to check the standby CMD connection
+
+    public static final int DEFAULT_CMD_POOL_SIZE = 1; // default number of parallel CMD connections
+
     public static final String HMAC_SHA1 = "*98*1##";
     public static final String HMAC_SHA2 = "*98*2##";
 
-    private Socket cmdSk;
     private Socket monSk;
 
-    private Timer monKeepaliveTimer;
+    // pool of CMD connections: sessions not currently used by a sender are in idleCmdSessions
+    private final Set<CmdSession> cmdSessions = new HashSet<>(); // guarded by itself
+    private final ArrayDeque<CmdSession> idleCmdSessions = new ArrayDeque<>(); // guarded by cmdSessions
+    private int cmdSessionsOpening = 0; // guarded by cmdSessions
+    private int cmdSessionSeq = 0; // guarded by cmdSessions
+    private volatile int cmdPoolSize = DEFAULT_CMD_POOL_SIZE;
+    private volatile long cmdSessionIdleTimeout = CMD_SESSION_IDLE_TIMEOUT; // (ms) changed only by tests
+
+    // spare CMD connection, already handshaken, used when a new CMD connection is needed
+    private volatile boolean cmdStandby = false;
+    private CmdSession standbySession; // guarded by cmdSessions
+    private boolean standbyOpening = false; // guarded by cmdSessions
+    private ScheduledFuture<?> standbyTimer; // guarded by cmdSessions
+    private volatile long cmdStandbyRefresh = CMD_STANDBY_REFRESH; // (ms) changed only by tests
+    private volatile long cmdStandbyCheckPeriod = CMD_STANDBY_CHECK_PERIOD; // (ms) changed only by tests
+
+    private ScheduledFuture<?> monKeepaliveTimer; // guarded by keepaliveLock
+    private volatile CompletableFuture<Void> monKeepaliveSend; // last keepalive write, executed on a worker thread
+    private final Object keepaliveLock = new Object();
 
     int port;
     String host;
@@ -86,6 +118,19 @@ public class BUSConnector extends OpenConnector {
     private final Logger kaLogger = LoggerFactory.getLogger(logger.getName() + ".keepalive");
     private final Logger hsLogger = LoggerFactory.getLogger(logger.getName() + ".handshake");
 
+    /** A CMD connection to the gateway, used by one sender at a time */
+    private static class CmdSession {
+        private final Socket sk;
+        private final FrameChannel ch;
+        private long lastUsedTs = -1; // -1 if no command has been sent yet on this session
+        private final long createdTs = System.currentTimeMillis();
+
+        private CmdSession(Socket sk, FrameChannel ch) {
+            this.sk = sk;
+            this.ch = ch;
+        }
+    }
+
     public BUSConnector(String host, int port, String pwd) {
         super();
         this.host = host;
@@ -93,15 +138,168 @@ public class BUSConnector extends OpenConnector {
         this.pwd = pwd;
     }
 
+    /**
+     * Returns the max number of CMD connections opened in parallel to the gateway
+     *
+     * @return the CMD connections pool size
+     */
+    public int getCmdPoolSize() {
+        return cmdPoolSize;
+    }
+
+    /**
+     * Sets the max number of CMD connections opened in parallel to the gateway: up to this number of commands are
+     * sent in parallel, each one on its own CMD connection. Default is {@link #DEFAULT_CMD_POOL_SIZE}. Check how many
+     * concurrent sessions are accepted by the gateway before using values &gt; 1.
+     *
+     * @param size the CMD connections pool size (must be &gt; 0)
+     */
+    public void setCmdPoolSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("CMD pool size must be > 0");
+        }
+        cmdPoolSize = size;
+        setCmdDispatcherThreads(size);
+        synchronized (cmdSessions) {
+            cmdSessions.notifyAll();
+        }
+    }
+
+    /**
+     * Sets the time after which idle CMD connections in the pool are not re-used. Default is
+     * {@link #CMD_SESSION_IDLE_TIMEOUT}, shorter than the time after which the gateway closes them.
+     *
+     * @param timeout (ms) the idle timeout
+     */
+    void setCmdSessionIdleTimeout(long timeout) {
+        cmdSessionIdleTimeout = timeout;
+    }
+
+    /**
+     * Sets the age after which the standby CMD connection is replaced and the period to check it. Defaults are
+     * {@link #CMD_STANDBY_REFRESH} and {@link #CMD_STANDBY_CHECK_PERIOD}. Must be called before enabling the standby
+     * CMD connection.
+     *
+     * @param refresh (ms) the standby CMD connection refresh time
+     * @param checkPeriod (ms) the check period
+     */
+    void setCmdStandbyRefresh(long refresh, long checkPeriod) {
+        cmdStandbyRefresh = refresh;
+        cmdStandbyCheckPeriod = checkPeriod;
+    }
+
+    /**
+     * Returns true if a standby CMD connection is kept ready
+     *
+     * @return true if standby CMD connection is enabled
+     */
+    public boolean isCmdStandby() {
+        return cmdStandby;
+    }
+
+    /**
+     * Enables a standby CMD connection: a spare CMD connection, already handshaken, is kept open and refreshed in
+     * background before the gateway closes it, so that when a new CMD connection is needed (first command, idle or
+     * dropped connection) commands do not wait for a new connection and handshake. Uses one more connection to the
+     * gateway in addition to the CMD connections pool. Default is disabled.
+     *
+     * @param enabled true to enable the standby CMD connection
+     */
+    public void setCmdStandby(boolean enabled) {
+        cmdStandby = enabled;
+        if (enabled) {
+            startStandby();
+        } else {
+            stopStandby();
+        }
+    }
+
+    private void startStandby() {
+        synchronized (cmdSessions) {
+            if (!cmdStandby || !isCmdConnected || standbyTimer != null) {
+                return;
+            }
+            standbyTimer = OWNScheduler.scheduleAtFixedRate(this::refillStandby, 0, cmdStandbyCheckPeriod,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void stopStandby() {
+        CmdSession old;
+        synchronized (cmdSessions) {
+            if (standbyTimer != null) {
+                standbyTimer.cancel(false);
+                standbyTimer = null;
+            }
+            old = standbySession;
+            standbySession = null;
+        }
+        if (old != null) {
+            closeCmdSession(old);
+        }
+    }
+
+    /* opens a new standby CMD connection in background, if missing or about to expire */
+    private void refillStandby() {
+        synchronized (cmdSessions) {
+            if (!cmdStandby || !isCmdConnected || standbyOpening || (standbySession != null
+                    && System.currentTimeMillis() - standbySession.createdTs <= cmdStandbyRefresh
+                    && isReusable(standbySession))) {
+                return;
+            }
+            standbyOpening = true;
+        }
+        OWNScheduler.scheduleBlocking(() -> {
+            CmdSession session = null;
+            try {
+                session = openCmdSession();
+                logger.debug("##BUS-conn## standby {} connection ready", session.ch.getName());
+            } catch (OWNException e) {
+                logger.debug("##BUS-conn## could not open standby CMD connection: {}", e.getMessage());
+            }
+            CmdSession toClose = session;
+            synchronized (cmdSessions) {
+                standbyOpening = false;
+                if (session != null && cmdStandby && isCmdConnected) {
+                    toClose = standbySession;
+                    standbySession = session;
+                }
+            }
+            if (toClose != null) {
+                closeCmdSession(toClose);
+            }
+        }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * Removes and returns the standby CMD connection, or null if missing. Must be called holding cmdSessions lock; if
+     * not usable (see isUsableStandby()) the caller must close it after releasing the lock.
+     */
+    private CmdSession takeStandby() {
+        CmdSession session = standbySession;
+        standbySession = null;
+        return session;
+    }
+
+    private boolean isUsableStandby(CmdSession session) {
+        return System.currentTimeMillis() - session.createdTs <= cmdSessionIdleTimeout && isReusable(session);
+    }
+
     @Override
     public void openCmdConn() throws OWNException {
         if (isCmdConnected) {
             logger.debug("##BUS-conn## CMD is already open");
             return;
         }
-        openConnection(CMD_TYPE);
+        CmdSession session = openCmdSession();
+        synchronized (cmdSessions) {
+            cmdSessions.add(session);
+            idleCmdSessions.push(session);
+        }
+        setCmdDispatcherThreads(cmdPoolSize);
         isCmdConnected = true;
         logger.info("##BUS-conn## ============ CMD CONNECTED ============");
+        startStandby();
     }
 
     @Override
@@ -110,89 +308,264 @@ public class BUSConnector extends OpenConnector {
             logger.debug("##BUS-conn## CMD is already open");
             return;
         }
-        openConnection(MON_TYPE);
+        logger.debug("##BUS-conn## Establishing {} connection to BUS Gateway on {}:{}...", MON_TYPE, host, port);
+        long start = System.nanoTime();
+        try {
+            monSk = connectSocket(MON_TYPE);
+            monChannel = new FrameChannel(monSk.getInputStream(), monSk.getOutputStream(), "BUS-" + MON_TYPE);
+            monChannel.setCapture(frameCapture);
+            doHandshake(monChannel, MON_TYPE);
+            metrics.handshakeCompleted(MON_TYPE, System.nanoTime() - start, true);
+        } catch (IOException e) {
+            metrics.handshakeCompleted(MON_TYPE, System.nanoTime() - start, false);
+            throw new OWNException("Could not open BUS-" + MON_TYPE + " connection to " + host + ":" + port
+                    + " (IOException: " + e.getMessage() + ")", e);
+        } catch (OWNException e) {
+            metrics.handshakeCompleted(MON_TYPE, System.nanoTime() - start, false);
+            throw e;
+        }
         isMonConnected = true;
         logger.info("##BUS-conn## ============ MON CONNECTED ============");
         monRcvThread = new OWNReceiveThread("BUS-MON-Rcv");
-        monRcvThread.start();
+        startReceiveThread(monRcvThread);
         startMonKeepaliveTimer();
     }
 
-    /** establishes a connection based on type */
-    private void openConnection(String type) throws OWNException {
-        logger.debug("##BUS-conn## Establishing {} connection to BUS Gateway on {}:{}...", type, host, port);
+    /* establishes a new CMD connection, including handshake */
+    private CmdSession openCmdSession() throws OWNException {
+        logger.debug("##BUS-conn## Establishing {} connection to BUS Gateway on {}:{}...", CMD_TYPE, host, port);
+        String name = "BUS-" + CMD_TYPE;
+        if (cmdPoolSize > 1) {
+            synchronized (cmdSessions) {
+                name += "-" + (++cmdSessionSeq);
+            }
+        }
+        Socket sk = null;
+        long start = System.nanoTime();
         try {
-            FrameChannel ch = connectSocket(type);
-            doHandshake(ch, type);
+            sk = connectSocket(CMD_TYPE);
+            FrameChannel ch = new FrameChannel(sk.getInputStream(), sk.getOutputStream(), name);
+            ch.setCapture(frameCapture);
+            doHandshake(ch, CMD_TYPE);
+            metrics.handshakeCompleted(CMD_TYPE, System.nanoTime() - start, true);
+            return new CmdSession(sk, ch);
         } catch (IOException e) {
-            throw new OWNException("Could not open BUS-" + type + " connection to " + host + ":" + port
+            metrics.handshakeCompleted(CMD_TYPE, System.nanoTime() - start, false);
+            closeSocket(sk);
+            throw new OWNException("Could not open BUS-" + CMD_TYPE + " connection to " + host + ":" + port
                     + " (IOException: " + e.getMessage() + ")", e);
+        } catch (OWNException e) {
+            metrics.handshakeCompleted(CMD_TYPE, System.nanoTime() - start, false);
+            closeSocket(sk);
+            throw e;
         }
     }
 
     @Override
-    protected synchronized Response sendCommandSynchInternal(String frame) throws IOException, FrameException {
+    protected Response sendCommandSynchInternal(String frame, long timeout) throws IOException, FrameException {
+        OpenMessage msg = BaseOpenMessage.parse(frame);
+        long deadline = System.currentTimeMillis() + timeout;
+        CmdSession session = borrowCmdSession(false);
+        boolean reused = session.lastUsedTs > 0;
         try {
-            Response r = sendCmdAndReadResp(frame, false);
-            logger.debug("##BUS-conn## ^^^^^^^^ REUSED    CONNECTION    ^^^^^^^^");
+            Response r = sendCmdAndReadResp(session, msg, false, deadline);
+            logger.debug("##BUS-conn## ^^^^^^^^ {}    CONNECTION    ^^^^^^^^", (reused ? "REUSED" : "USED NEW"));
+            releaseCmdSession(session, true);
             return r;
+        } catch (FrameException | SocketTimeoutException e) {
+            // after a timeout a late response could arrive on this connection: do not re-use it
+            releaseCmdSession(session, false);
+            throw e;
         } catch (IOException ie) {
             logger.debug("##BUS-conn## Exception: {}", ie.getMessage());
             // CMD session could have been closed by gateway, let's close this one an try with
             // another CMD connection
-            cmdSk.close();
-            isCmdConnected = false;
+            releaseCmdSession(session, false);
             logger.info("##BUS-conn## trying NEW CMD connection...");
+            session = borrowCmdSession(true);
             try {
-                openCmdConn();
-            } catch (OWNException oe) {
-                logger.warn(
-                        "##BUS-conn## openCommandConnection() returned exception ({}) while opening NEW CMD connection",
-                        oe.getMessage());
-                throw new IOException("Cannot create NEW CMD connection to send message " + frame, oe);
-            }
-
-            try {
-                Response r = sendCmdAndReadResp(frame, true);
+                Response r = sendCmdAndReadResp(session, msg, true, deadline);
                 logger.debug("##BUS-conn## ^^^^^^^^ USED NEW    CONNECTION    ^^^^^^^^");
+                releaseCmdSession(session, true);
                 return r;
             } catch (IOException | FrameException e) {
                 logger.warn("##BUS-conn## sendCmdAndReadResp() returned exception ({}) using NEW connection",
                         e.getMessage());
+                releaseCmdSession(session, false);
                 throw (e);
             }
         }
     }
 
     /** helper method for sendCommandSynchInternal() */
-    private Response sendCmdAndReadResp(String frame, boolean reopen) throws IOException, FrameException {
-        // TODO add timeout? or CMD_SOCKET_READ_TIMEOUT is enough?
-        Response res = new Response(BaseOpenMessage.parse(frame));
-        cmdChannel.sendFrame(frame);
+    private Response sendCmdAndReadResp(CmdSession session, OpenMessage msg, boolean reopen, long deadline)
+            throws IOException, FrameException {
+        String frame = msg.getFrameValue();
+        Response res = new Response(msg);
+        FrameChannel ch = session.ch;
+        ch.sendFrame(frame);
         lastCmdFrameSentTs = System.currentTimeMillis();
-        msgLogger.info("BUS-CMD ====>>>> {}" + (reopen ? " [ REOPEN ]" : ""), frame);
+        session.lastUsedTs = lastCmdFrameSentTs;
+        if (reopen) {
+            msgLogger.info("{} ====>>>> {} [ REOPEN ]", ch.getName(), frame);
+        } else {
+            msgLogger.info("{} ====>>>> {}", ch.getName(), frame);
+        }
         String fr;
         while (!res.hasFinalResponse()) {
             logger.trace("now reading new frame...");
-            fr = cmdChannel.readFrames();
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                msgLogger.info("{} <<<<==== X [timeout]", ch.getName());
+                throw new SocketTimeoutException("Timeout while reading responses to command " + frame);
+            }
+            session.sk.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+            try {
+                fr = ch.readFrames();
+            } catch (SocketTimeoutException e) {
+                msgLogger.info("{} <<<<==== X [timeout]", ch.getName());
+                throw e;
+            }
             if (fr != null) {
                 try {
                     res.addResponse(BaseOpenMessage.parse(fr));
-                    msgLogger.debug("BUS-CMD   <<==   {}", fr);
+                    msgLogger.debug("{}   <<==   {}", ch.getName(), fr);
                 } catch (UnsupportedFrameException ufe) {
-                    msgLogger.debug("BUS-CMD   <<=X   {} ignoring unsupported response frame ({})", fr,
-                            ufe.getMessage());
+                    if (msgLogger.isDebugEnabled()) {
+                        msgLogger.debug("{}   <<=X   {} ignoring unsupported response frame ({})", ch.getName(), fr,
+                                ufe.getMessage());
+                    }
                 }
             } else {
-                msgLogger.info("BUS-CMD <<<<==== X [no frames]");
+                msgLogger.info("{} <<<<==== X [no frames]", ch.getName());
                 throw new IOException("Received null frame while reading responses to command");
             }
         }
-        msgLogger.info("BUS-CMD <<<<==== {}", res.getResponseMessages());
+        msgLogger.info("{} <<<<==== {}", ch.getName(), res.getResponseMessages());
 
         return res;
     }
 
+    /*
+     * Returns a CMD session to send a command: an idle session in the pool that is still usable, or a new one if
+     * less than cmdPoolSize sessions are open. If all sessions are in use, waits for a session to be released.
+     * If onlyNew is true, idle sessions are not used.
+     */
+    private CmdSession borrowCmdSession(boolean onlyNew) throws IOException {
+        CmdSession expiredStandby = null;
+        synchronized (cmdSessions) {
+            while (true) {
+                if (!isCmdConnected) {
+                    throw new IOException("CMD is not connected");
+                }
+                if (!onlyNew) {
+                    CmdSession session;
+                    while ((session = idleCmdSessions.pollFirst()) != null) {
+                        if (isReusable(session)) {
+                            return session;
+                        }
+                        cmdSessions.remove(session);
+                        closeCmdSession(session);
+                    }
+                }
+                if (cmdSessions.size() + cmdSessionsOpening < cmdPoolSize) {
+                    CmdSession standby = takeStandby();
+                    if (standby != null) {
+                        refillStandby(); // only schedules the new connection
+                        if (isUsableStandby(standby)) {
+                            logger.debug("##BUS-conn## using standby {} connection", standby.ch.getName());
+                            cmdSessions.add(standby);
+                            return standby;
+                        }
+                        expiredStandby = standby;
+                    }
+                    cmdSessionsOpening++;
+                    break;
+                }
+                try {
+                    cmdSessions.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a CMD connection");
+                }
+            }
+        }
+        if (expiredStandby != null) {
+            closeCmdSession(expiredStandby);
+        }
+        // opening a new session takes time: do it outside the lock
+        CmdSession session = null;
+        try {
+            session = openCmdSession();
+        } catch (OWNException oe) {
+            logger.warn("##BUS-conn## openCmdSession() returned exception ({}) while opening NEW CMD connection",
+                    oe.getMessage());
+            throw new IOException("Cannot create NEW CMD connection to send message", oe);
+        } finally {
+            synchronized (cmdSessions) {
+                cmdSessionsOpening--;
+                if (session != null) {
+                    cmdSessions.add(session);
+                }
+                cmdSessions.notifyAll();
+            }
+        }
+        return session;
+    }
+
+    /* health check of an idle CMD session, before re-using it */
+    private boolean isReusable(CmdSession session) {
+        long idle = System.currentTimeMillis() - session.lastUsedTs;
+        if (session.lastUsedTs > 0 && idle > cmdSessionIdleTimeout) {
+            logger.debug("##BUS-conn## evicting {} idle for {}ms", session.ch.getName(), idle);
+            return false;
+        }
+        if (session.sk.isClosed() || session.sk.isInputShutdown() || session.sk.isOutputShutdown()) {
+            logger.debug("##BUS-conn## evicting {}: socket is closed", session.ch.getName());
+            return false;
+        }
+        try {
+            if (session.ch.hasPendingData() || session.sk.getInputStream().available() > 0) {
+                // unexpected data on an idle CMD session (for example a late response to a previous command)
+                logger.debug("##BUS-conn## evicting {}: unexpected data received", session.ch.getName());
+                return false;
+            }
+        } catch (IOException e) {
+            logger.debug("##BUS-conn## evicting {}: {}", session.ch.getName(), e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /* gives back a CMD session to the pool; if ok is false the session is closed */
+    private void releaseCmdSession(CmdSession session, boolean ok) {
+        synchronized (cmdSessions) {
+            if (ok && isCmdConnected && cmdSessions.size() <= cmdPoolSize) {
+                idleCmdSessions.push(session); // last used session will be re-used first
+            } else {
+                cmdSessions.remove(session);
+                closeCmdSession(session);
+            }
+            cmdSessions.notifyAll();
+        }
+    }
+
+    private void closeCmdSession(CmdSession session) {
+        session.ch.disconnect();
+        closeSocket(session.sk);
+        logger.debug("##BUS-conn## {} connection CLOSED", session.ch.getName());
+    }
+
+    private void closeSocket(Socket sk) {
+        if (sk != null) {
+            try {
+                sk.close();
+            } catch (IOException e) {
+                logger.debug("##BUS-conn## IOException while closing socket: {}", e.getMessage());
+            }
+        }
+    }
+
     @Override
     protected void processFrame(String newFrame) {
         eventLogger.info("BUS-MON <<<<<<<< {}", newFrame);
@@ -202,47 +575,64 @@ public class BUSConnector extends OpenConnector {
             notifyListener(msg);
         } catch (UnsupportedFrameException e) {
             logger.debug("UNSUPPORTED FRAME: {}, skipping it", newFrame);
+            metrics.frameParseFailed(true);
         } catch (FrameException e) {
             logger.warn("INVALID FRAME: {}, skipping it", newFrame);
+            metrics.frameParseFailed(false);
         }
     }
 
     private void startMonKeepaliveTimer() {
         logger.debug("##BUS-conn## starting MON keepalive timer");
-        // cancel previous keepalive timer
-        if (monKeepaliveTimer != null) {
-            logger.debug("##BUS-conn## cancelling previuos keepalive timer");
-            monKeepaliveTimer.cancel();
-        }
-        monKeepaliveTimer = new Timer();
-        monKeepaliveTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                if (monSk.isClosed()) {
-                    logger.debug("##BUS-conn## socket is closed, cancelling keepalive timer: {}",
-                            java.lang.Thread.currentThread().getName());
-                    this.cancel();
-                    return;
-                }
-                logger.trace("##BUS-conn## sending MON keepalive ACK");
-                try {
-                    monChannel.sendFrame(OpenMessage.FRAME_ACK);
-                    kaLogger.info("BUS-MON =KA=>>>> {}", OpenMessage.FRAME_ACK);
-                } catch (IOException e) {
-                    logger.debug("##BUS-conn## could not send MON keepalive ACK: exception={}", e.getMessage());
-                }
+        final Socket sk = monSk;
+        final FrameChannel ch = monChannel;
+        synchronized (keepaliveLock) {
+            // cancel previous keepalive timer
+            if (monKeepaliveTimer != null) {
+                logger.debug("##BUS-conn## cancelling previuos keepalive timer");
+                monKeepaliveTimer.cancel(false);
             }
-        }, MON_KEEPALIVE_TIMER, MON_KEEPALIVE_TIMER);
+            monKeepaliveTimer = OWNScheduler.scheduleAtFixedRate(() -> sendMonKeepalive(sk, ch), MON_KEEPALIVE_TIMER,
+                    MON_KEEPALIVE_TIMER, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /* executed on the scheduler thread: the socket write can block on a half-dead socket, so it is handed off */
+    private void sendMonKeepalive(Socket sk, FrameChannel ch) {
+        if (sk.isClosed()) {
+            if (sk == monSk) { // otherwise the timer has already been replaced by the one of the new MON socket
+                logger.debug("##BUS-conn## socket is closed, cancelling keepalive timer");
+                stopMonKeepaliveTimer();
+            }
+            return;
+        }
+        CompletableFuture<Void> previous = monKeepaliveSend;
+        if (previous != null && !previous.isDone()) {
+            logger.debug("##BUS-conn## previous MON keepalive ACK still blocked, skipping");
+            return;
+        }
+        monKeepaliveSend = OWNScheduler.scheduleBlocking(() -> {
+            logger.trace("##BUS-conn## sending MON keepalive ACK");
+            try {
+                ch.sendFrame(OpenMessage.FRAME_ACK);
+                kaLogger.info("BUS-MON =KA=>>>> {}", OpenMessage.FRAME_ACK);
+            } catch (IOException e) {
+                logger.debug("##BUS-conn## could not send MON keepalive ACK: exception={}", e.getMessage());
+            }
+        }, 0, TimeUnit.MILLISECONDS);
     }
 
     private void stopMonKeepaliveTimer() {
-        if (monKeepaliveTimer != null) {
-            logger.debug("##BUS-conn## stop keepalive timer");
-            monKeepaliveTimer.cancel();
+        synchronized (keepaliveLock) {
+            if (monKeepaliveTimer != null) {
+                logger.debug("##BUS-conn## stop keepalive timer");
+                monKeepaliveTimer.cancel(false);
+                monKeepaliveTimer = null;
+            }
         }
     }
 
-    private FrameChannel connectSocket(String type) throws IOException {
+    private Socket connectSocket(String type) throws IOException {
         Socket sk = new Socket();
         SocketAddress endpoint = new InetSocketAddress(host, port);
         if (type.equals(MON_TYPE)) {
@@ -252,176 +642,34 @@ public class BUSConnector extends OpenConnector {
         }
         sk.connect(endpoint, SOCKET_CONNECT_TIMEOUT);
         logger.debug("##BUS-conn## {} socket connected", type);
-        if (type.equals(MON_TYPE)) {
-            monChannel = new FrameChannel(sk.getInputStream(), sk.getOutputStream(), "BUS-" + MON_TYPE);
-            monSk = sk;
-            return monChannel;
-        } else {
-            cmdChannel = new FrameChannel(sk.getInputStream(), sk.getOutputStream(), "BUS-" + CMD_TYPE);
-            cmdSk = sk;
-            return cmdChannel;
-        }
-    }
-
-    private void startHandshakeTimeout(FrameChannel frCh) throws OWNAuthException {
-        Timer handshakeTimeout = new Timer();
-        handshakeTimeout.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                if (!frCh.handshakeCompleted) {
-                    logger.warn("(HS) ... handshake not completed but timeout expired, closing {} channel",
-                            frCh.getName());
-                    frCh.disconnect();
-                    // TODO close also MON/CMD sockets ?
-                }
+        return sk;
+    }
+
+    private ScheduledFuture<?> startHandshakeTimeout(FrameChannel frCh) {
+        return OWNScheduler.schedule(() -> {
+            if (!frCh.handshakeCompleted) {
+                logger.warn("(HS) ... handshake not completed but timeout expired, closing {} channel", frCh.getName());
+                frCh.disconnect();
+                // TODO close also MON/CMD sockets ?
             }
-        }, HANDSHAKE_TIMEOUT);
+        }, HANDSHAKE_TIMEOUT, TimeUnit.MILLISECONDS);
     }
 
     private void doHandshake(FrameChannel frCh, String type) throws IOException, OWNAuthException {
         logger.debug("(HS) starting HANDSHAKE on channel {}... ", frCh.getName());
-        startHandshakeTimeout(frCh);
-        String fr;
-        // STEP-1: wait for ACK from GW
-        hsLogger.debug("(HS) ... STEP-1: receive ACK from GW");
-        fr = frCh.readFrames();
-        hsLogger.info("(HS) {} <<<<==HS {}", frCh.getName(), fr);
-        if (!(OpenMessage.FRAME_ACK.equals(fr))) {
-            hsLogger.warn("(HS) ... STEP-1: HANDSHAKE FAILED, no ACK recevied, received: {}", fr);
-            throw new OWNAuthException("Could not open BUS-" + type + " connection to " + host + ":" + port
-                    + " (no ACK received at STEP-1, received: " + fr + ")");
-        }
-        hsLogger.debug("(HS) ... STEP-1: first ACK received");
-        // STEP-2: send session request and check for ACK/NACK/NONCE/HMAC from GW
-        String session = (type == MON_TYPE ? MON_SESSION : CMD_SESSION);
-        hsLogger.debug("(HS) ... STEP-2: send session request {} ... ", session);
-        frCh.sendFrame(session);
-        hsLogger.info("(HS) BUS-{} HS==>>>> {}", type, session);
-        fr = frCh.readFrames();
-        hsLogger.info("(HS) {} <<<<==HS {}", frCh.getName(), fr);
-        if (OpenMessage.FRAME_NACK.equals(fr) && type == CMD_TYPE) {
-            // try alt CMD session
-            hsLogger.debug("(HS) ... STEP-2: received NACK, trying CMD_SESSION_ALT ...");
-            frCh.sendFrame(CMD_SESSION_ALT);
-            hsLogger.info("(HS) {} HS==>>>> {}", frCh.getName(), CMD_SESSION_ALT);
-            fr = frCh.readFrames();
-            hsLogger.info("(HS) {} <<<<==HS {}", frCh.getName(), fr);
-        }
-        if (OpenMessage.FRAME_ACK.equals(fr)) {
-            // STEP-2: NO_AUTH - Free beer and party, the connection is unauthenticated!
-            frCh.handshakeCompleted = true;
-            hsLogger.debug("(HS) ... STEP-2: NO_AUTH: second ACK received, GW has no pwd ==HANDSHAKE COMPLETED==");
-        } else if (fr.matches("\\*#\\d+##")) {
-            // STEP-2: OPEN_AUTH passwd nonce received
-            doOPENHandshake(fr, frCh);
-            frCh.handshakeCompleted = true;
-        } else if (fr.equals(HMAC_SHA1) || fr.equals(HMAC_SHA2)) {
-            // STEP-2: HMAC_AUTH type received
-            doHMACHandshake(fr, frCh);
-            frCh.handshakeCompleted = true;
-        } else {
-            hsLogger.warn("(HS) ... STEP-2: cannot authenticate with gateway (unexpected answer: {})", fr);
-            throw new OWNAuthException(
-                    "Cannot authenticate with gateway: handshake failed at STEP-2 (unexpected answer: " + fr + ")");
-        }
-    }
-
-    private void doOPENHandshake(String nonceFrame, FrameChannel frCh) throws IOException, OWNAuthException {
-        String nonce = nonceFrame.substring(2, nonceFrame.length() - 2);
-        hsLogger.debug("(HS) ... STEP-2: OPEN_AUTH: received nonce={} ... ", nonce);
-        // STEP-3: send pwd and check ACK
-        String pwdMessage;
+        ScheduledFuture<?> handshakeTimeout = startHandshakeTimeout(frCh);
         try {
-            pwdMessage = OpenMessage.FRAME_START_DIM + Auth.calcOpenPass(pwd, nonce) + OpenMessage.FRAME_END;
-        } catch (NumberFormatException e) {
-            hsLogger.warn("(HS) ... STEP-3: OPEN_AUTH: invalid gateway password. Password must contain only digits");
-            throw new OWNAuthException("Invalid gateway password. Password must contain only digits (OPEN_AUTH)");
-        }
-        hsLogger.debug("(HS) ... STEP-3: OPEN_AUTH: sending encoded pwd ... ");
-        frCh.sendFrame(pwdMessage);
-        hsLogger.info("(HS) {} HS==>>>> {}", frCh.getName(), pwdMessage);
-        String fr = frCh.readFrames();
-        hsLogger.info("(HS) {} <<<<==HS {}", frCh.getName(), fr);
-        if (OpenMessage.FRAME_ACK.equals(fr)) {
-            hsLogger.debug("(HS) ... STEP-3: OPEN_AUTH: pwd accepted ==HANDSHAKE COMPLETED==");
-            return;
-        } else {
-            hsLogger.warn("(HS) ... STEP-3: OPEN_AUTH: pwd NOT ACCEPTED");
-            throw new OWNAuthException("Password not accepted by gateway, check password configuration (OPEN_AUTH)");
-        }
-    }
-
-    private void doHMACHandshake(String hmacType, FrameChannel frCh) throws IOException, OWNAuthException {
-        hsLogger.debug("(HS) ... STEP-2: HMAC_AUTH: HMAC type received: {}, sending ACK ... ", hmacType);
-
-        // STEP-3: send ACK, wait for HMAC Ra and -based on that- calculate HMAC-encoded pwd
-        frCh.sendFrame(OpenMessage.FRAME_ACK);
-        hsLogger.info("(HS) {} HS==>>>> {}", frCh.getName(), OpenMessage.FRAME_ACK);
-        String fr = frCh.readFrames();
-        hsLogger.info("(HS) {} <<<<==HS {}", frCh.getName(), fr);
-        Pattern pattern = Pattern.compile("\\*#(\\d{80,128})##");
-        Matcher matcher = pattern.matcher(fr);
-        if (matcher.find()) {
-            // STEP-3: HMAC Ra received, calculate HMAC-encoded pwd
-            String raDigits = matcher.group(1);
-            hsLogger.debug("(HS) ... STEP-3: HMAC_AUTH: Ra digits received: {} ...", raDigits);
-            String ra = Auth.digitToHex(raDigits);
-            hsLogger.trace("(HS) ...       Ra  = {}", ra);
-            String rb = Auth.calcHmacRb();
-            hsLogger.trace("(HS) ...       Rb  = {}", rb);
-            String a = "736F70653E";
-            logger.trace("(HS) ...       A   = {}", a);
-            String b = "636F70653E";
-            hsLogger.trace("(HS) ...       B   = {}", b);
-            hsLogger.trace("(HS) ...       pwd = {}", pwd);
-            String kab = Auth.calcSHA256(pwd);
-            hsLogger.trace("(HS) ...       Kab = {}", kab);
-            String hmacRaRbABKab = Auth.calcSHA256(ra + rb + a + b + kab);
-            hsLogger.trace("(HS) ... STEP-3: HMAC_AUTH: HMAC(Ra,Rb,A,B,Kab) = {}", hmacRaRbABKab);
-
-            // STEP-4: send calculated HMAC-encoded pwd and check final hash
-            String hmacMessage = OpenMessage.FRAME_START_DIM + Auth.hexToDigit(rb) + "*"
-                    + Auth.hexToDigit(hmacRaRbABKab) + OpenMessage.FRAME_END;
-            hsLogger.debug("(HS) ... STEP-4: HMAC_AUTH: sending <Rb, HMAC(Ra,Rb,A,B,Kab)> ... ");
-            frCh.sendFrame(hmacMessage);
-            hsLogger.info("(HS) {} HS==>>>> {}", frCh.getName(), hmacMessage);
-            fr = frCh.readFrames();
-            hsLogger.info("(HS) {} <<<<==HS {}", frCh.getName(), fr);
-
-            if (OpenMessage.FRAME_NACK.equals(fr)) {
-                hsLogger.warn("(HS) ... STEP-4: HMAC_AUTH: pwd NOT ACCEPTED");
-                throw new OWNAuthException("Password not accepted by gateway, check password configuration (HMAC)");
-            } else {
-                matcher = pattern.matcher(fr);
-                if (matcher.find()) {
-                    // STEP-4: verify final hash
-                    String hmacRaRbKab = Auth.digitToHex(matcher.group(1));
-                    hsLogger.trace("(HS) ... STEP-4: HMAC_AUTH: final hash HMAC(Ra, Rb, Kab) received: {} ...",
-                            hmacRaRbKab);
-                    if (Auth.calcSHA256(ra + rb + kab).equals(hmacRaRbKab)) {
-                        hsLogger.trace("(HS) ... STEP-4: HMAC_AUTH:  HMAC(Ra, Rb, Kab) --MATCH--, sending ACK ...");
-                        frCh.sendFrame(OpenMessage.FRAME_ACK);
-                        hsLogger.info("(HS) {} HS==>>>> {}", frCh.getName(), OpenMessage.FRAME_ACK);
-                        hsLogger.debug("(HS) ... STEP-4: HMAC_AUTH: final ACK sent ==HANDSHAKE COMPLETED==");
-                        return;
-                    } else {
-                        hsLogger.warn(
-                                "(HS) ... STEP-4: HMAC_AUTH: HANDSHAKE FAILED, final HMAC(Ra, Rb, Kab) does not match. Received HMAC(Ra, Rb, Kab)={}",
-                                hmacRaRbKab);
-                        throw new OWNAuthException(
-                                "Handshake failed, final HMAC(Ra, Rb, Kab) does not match (HMAC_AUTH STEP-4)");
-                    }
-                } else {
-                    hsLogger.warn(
-                            "(HS) ... STEP-4: HMAC_AUTH: HANDSHAKE FAILED, invalid HMAC(Ra, Rb, Kab) received. Response={}",
-                            fr);
-                    throw new OWNAuthException(
-                            "Handshake failed, invalid HMAC(Ra, Rb, Kab) received from GW at HMAC STEP-4: " + fr);
+            BUSHandshake handshake = new BUSHandshake(type, frCh.getName(), host, port, pwd);
+            hsLogger.debug("(HS) ... STEP-1: receive ACK from GW");
+            while (!handshake.isCompleted()) {
+                String fr = frCh.readFrames();
+                for (String toSend : handshake.onFrame(fr)) {
+                    frCh.sendFrame(toSend);
                 }
             }
-        } else {
-            hsLogger.warn("(HS) ... STEP-3: HMAC_AUTH: HANDSHAKE FAILED, invalid Ra received. Response={}", fr);
-            throw new OWNAuthException("Handshake failed, no Ra received from GW at HMAC STEP-3: " + fr);
+            frCh.handshakeCompleted = true;
+        } finally {
+            handshakeTimeout.cancel(false);
         }
     }
 
@@ -431,15 +679,26 @@ public class BUSConnector extends OpenConnector {
         stopMonKeepaliveTimer();
     }
 
+    @Override
+    protected void disconnectCmdChannel() {
+        isCmdConnected = false;
+        stopStandby();
+        synchronized (cmdSessions) {
+            // closing sockets also unblocks senders waiting for a response
+            for (CmdSession session : cmdSessions) {
+                closeCmdSession(session);
+            }
+            cmdSessions.clear();
+            idleCmdSessions.clear();
+            cmdSessions.notifyAll();
+        }
+    }
+
     @Override
     public void disconnect() {
         stopMonKeepaliveTimer();
         super.disconnect();
         try {
-            if (cmdSk != null) {
-                cmdSk.close();
-                cmdSk = null;
-            }
             if (monSk != null) {
                 monSk.close();
                 monSk = null;
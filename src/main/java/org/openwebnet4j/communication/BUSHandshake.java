@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openwebnet4j.message.OpenMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * State machine implementing the client side of the OpenWebNet handshake with a BUS gateway (NO_AUTH, OPEN_AUTH
+ * and HMAC_AUTH). Each frame received from the gateway is passed to {@link #onFrame(String)}, which returns the
+ * frames that must be sent back to the gateway. The handshake does not perform any I/O, so it can be driven both by
+ * blocking and by non-blocking connectors.
+ *
+ * @author M. Valla - Initial contribution
+ */
+class BUSHandshake {
+
+    private enum Step {
+        WAIT_ACK, // STEP-1: wait for first ACK from GW
+        WAIT_SESSION_ANSWER, // STEP-2: wait for answer to session request
+        WAIT_SESSION_ALT_ANSWER, // STEP-2: wait for answer to alternative CMD session request
+        WAIT_OPEN_PWD_ANSWER, // STEP-3: OPEN_AUTH, wait for answer to encoded pwd
+        WAIT_HMAC_RA, // STEP-3: HMAC_AUTH, wait for Ra
+        WAIT_HMAC_FINAL_HASH, // STEP-4: HMAC_AUTH, wait for final hash
+        COMPLETED
+    }
+
+    private static final Pattern HMAC_PATTERN = Pattern.compile("\\*#(\\d{80,128})##");
+    private static final String HMAC_A = "736F70653E";
+    private static final String HMAC_B = "636F70653E";
+
+    private final Logger hsLogger = LoggerFactory.getLogger(BUSConnector.class.getName() + ".handshake");
+
+    private final String type;
+    private final String chName;
+    private final String host;
+    private final int port;
+    private final String pwd;
+
+    private Step step = Step.WAIT_ACK;
+
+    // HMAC values
+    private String ra;
+    private String rb;
+    private String kab;
+
+    /**
+     * Creates a new handshake for a channel
+     *
+     * @param type the connection type ({@link BUSConnector#MON_TYPE} or {@link BUSConnector#CMD_TYPE})
+     * @param chName the channel name, used for logging
+     * @param host the gateway host, used in error messages
+     * @param port the gateway port, used in error messages
+     * @param pwd the gateway password
+     */
+    BUSHandshake(String type, String chName, String host, int port, String pwd) {
+        this.type = type;
+        this.chName = chName;
+        this.host = host;
+        this.port = port;
+        this.pwd = pwd;
+    }
+
+    /**
+     * Returns true if the handshake has been completed successfully
+     *
+     * @return true if handshake is completed
+     */
+    boolean isCompleted() {
+        return step == Step.COMPLETED;
+    }
+
+    /**
+     * Process a frame received from the gateway during handshake
+     *
+     * @param fr the frame received, null if no frame could be read
+     * @return the list of frames to be sent to the gateway (possibly empty)
+     * @throws OWNAuthException if the handshake failed
+     */
+    List<String> onFrame(String fr) throws OWNAuthException {
+        hsLogger.info("(HS) {} <<<<==HS {}", chName, fr);
+        switch (step) {
+            case WAIT_ACK:
+                if (!(OpenMessage.FRAME_ACK.equals(fr))) {
+                    hsLogger.warn("(HS) ... STEP-1: HANDSHAKE FAILED, no ACK recevied, received: {}", fr);
+                    throw new OWNAuthException("Could not open BUS-" + type + " connection to " + host + ":" + port
+                            + " (no ACK received at STEP-1, received: " + fr + ")");
+                }
+                hsLogger.debug("(HS) ... STEP-1: first ACK received");
+                // STEP-2: send session request and check for ACK/NACK/NONCE/HMAC from GW
+                String session = (BUSConnector.MON_TYPE.equals(type) ? BUSConnector.MON_SESSION
+                        : BUSConnector.CMD_SESSION);
+                hsLogger.debug("(HS) ... STEP-2: send session request {} ... ", session);
+                step = Step.WAIT_SESSION_ANSWER;
+                return send(session);
+            case WAIT_SESSION_ANSWER:
+            case WAIT_SESSION_ALT_ANSWER:
+                if (OpenMessage.FRAME_NACK.equals(fr) && step == Step.WAIT_SESSION_ANSWER
+                        && BUSConnector.CMD_TYPE.equals(type)) {
+                    // try alt CMD session
+                    hsLogger.debug("(HS) ... STEP-2: received NACK, trying CMD_SESSION_ALT ...");
+                    step = Step.WAIT_SESSION_ALT_ANSWER;
+                    return send(BUSConnector.CMD_SESSION_ALT);
+                }
+                return onSessionAnswer(fr);
+            case WAIT_OPEN_PWD_ANSWER:
+                if (OpenMessage.FRAME_ACK.equals(fr)) {
+                    hsLogger.debug("(HS) ... STEP-3: OPEN_AUTH: pwd accepted ==HANDSHAKE COMPLETED==");
+                    step = Step.COMPLETED;
+                    return Collections.emptyList();
+                } else {
+                    hsLogger.warn("(HS) ... STEP-3: OPEN_AUTH: pwd NOT ACCEPTED");
+                    throw new OWNAuthException(
+                            "Password not accepted by gateway, check password configuration (OPEN_AUTH)");
+                }
+            case WAIT_HMAC_RA:
+                return onHMACRa(fr);
+            case WAIT_HMAC_FINAL_HASH:
+                return onHMACFinalHash(fr);
+            default:
+                hsLogger.debug("(HS) handshake already completed, ignoring frame {}", fr);
+                return Collections.emptyList();
+        }
+    }
+
+    private List<String> onSessionAnswer(String fr) throws OWNAuthException {
+        if (OpenMessage.FRAME_ACK.equals(fr)) {
+            // STEP-2: NO_AUTH - Free beer and party, the connection is unauthenticated!
+            hsLogger.debug("(HS) ... STEP-2: NO_AUTH: second ACK received, GW has no pwd ==HANDSHAKE COMPLETED==");
+            step = Step.COMPLETED;
+            return Collections.emptyList();
+        } else if (fr != null && fr.matches("\\*#\\d+##")) {
+            // STEP-2: OPEN_AUTH passwd nonce received
+            String nonce = fr.substring(2, fr.length() - 2);
+            hsLogger.debug("(HS) ... STEP-2: OPEN_AUTH: received nonce={} ... ", nonce);
+            // STEP-3: send pwd and check ACK
+            String pwdMessage;
+            try {
+                pwdMessage = OpenMessage.FRAME_START_DIM + Auth.calcOpenPass(pwd, nonce) + OpenMessage.FRAME_END;
+            } catch (NumberFormatException e) {
+                hsLogger.warn(
+                        "(HS) ... STEP-3: OPEN_AUTH: invalid gateway password. Password must contain only digits");
+                throw new OWNAuthException("Invalid gateway password. Password must contain only digits (OPEN_AUTH)");
+            }
+            hsLogger.debug("(HS) ... STEP-3: OPEN_AUTH: sending encoded pwd ... ");
+            step = Step.WAIT_OPEN_PWD_ANSWER;
+            return send(pwdMessage);
+        } else if (BUSConnector.HMAC_SHA1.equals(fr) || BUSConnector.HMAC_SHA2.equals(fr)) {
+            // STEP-2: HMAC_AUTH type received
+            hsLogger.debug("(HS) ... STEP-2: HMAC_AUTH: HMAC type received: {}, sending ACK ... ", fr);
+            // STEP-3: send ACK, wait for HMAC Ra and -based on that- calculate HMAC-encoded pwd
+            step = Step.WAIT_HMAC_RA;
+            return send(OpenMessage.FRAME_ACK);
+        } else {
+            hsLogger.warn("(HS) ... STEP-2: cannot authenticate with gateway (unexpected answer: {})", fr);
+            throw new OWNAuthException(
+                    "Cannot authenticate with gateway: handshake failed at STEP-2 (unexpected answer: " + fr + ")");
+        }
+    }
+
+    private List<String> onHMACRa(String fr) throws OWNAuthException {
+        Matcher matcher = (fr != null ? HMAC_PATTERN.matcher(fr) : null);
+        if (matcher == null || !matcher.find()) {
+            hsLogger.warn("(HS) ... STEP-3: HMAC_AUTH: HANDSHAKE FAILED, invalid Ra received. Response={}", fr);
+            throw new OWNAuthException("Handshake failed, no Ra received from GW at HMAC STEP-3: " + fr);
+        }
+        // STEP-3: HMAC Ra received, calculate HMAC-encoded pwd
+        String raDigits = matcher.group(1);
+        hsLogger.debug("(HS) ... STEP-3: HMAC_AUTH: Ra digits received: {} ...", raDigits);
+        ra = Auth.digitToHex(raDigits);
+        hsLogger.trace("(HS) ...       Ra  = {}", ra);
+        rb = Auth.calcHmacRb();
+        hsLogger.trace("(HS) ...       Rb  = {}", rb);
+        hsLogger.trace("(HS) ...       A   = {}", HMAC_A);
+        hsLogger.trace("(HS) ...       B   = {}", HMAC_B);
+        hsLogger.trace("(HS) ...       pwd = {}", pwd);
+        kab = Auth.calcSHA256(pwd);
+        hsLogger.trace("(HS) ...       Kab = {}", kab);
+        String hmacRaRbABKab = Auth.calcSHA256(ra + rb + HMAC_A + HMAC_B + kab);
+        hsLogger.trace("(HS) ... STEP-3: HMAC_AUTH: HMAC(Ra,Rb,A,B,Kab) = {}", hmacRaRbABKab);
+
+        // STEP-4: send calculated HMAC-encoded pwd and check final hash
+        String hmacMessage = OpenMessage.FRAME_START_DIM + Auth.hexToDigit(rb) + "*" + Auth.hexToDigit(hmacRaRbABKab)
+                + OpenMessage.FRAME_END;
+        hsLogger.debug("(HS) ... STEP-4: HMAC_AUTH: sending <Rb, HMAC(Ra,Rb,A,B,Kab)> ... ");
+        step = Step.WAIT_HMAC_FINAL_HASH;
+        return send(hmacMessage);
+    }
+
+    private List<String> onHMACFinalHash(String fr) throws OWNAuthException {
+        if (OpenMessage.FRAME_NACK.equals(fr)) {
+            hsLogger.warn("(HS) ... STEP-4: HMAC_AUTH: pwd NOT ACCEPTED");
+            throw new OWNAuthException("Password not accepted by gateway, check password configuration (HMAC)");
+        }
+        Matcher matcher = (fr != null ? HMAC_PATTERN.matcher(fr) : null);
+        if (matcher == null || !matcher.find()) {
+            hsLogger.warn("(HS) ... STEP-4: HMAC_AUTH: HANDSHAKE FAILED, invalid HMAC(Ra, Rb, Kab) received. Response={}",
+                    fr);
+            throw new OWNAuthException(
+                    "Handshake failed, invalid HMAC(Ra, Rb, Kab) received from GW at HMAC STEP-4: " + fr);
+        }
+        // STEP-4: verify final hash
+        String hmacRaRbKab = Auth.digitToHex(matcher.group(1));
+        hsLogger.trace("(HS) ... STEP-4: HMAC_AUTH: final hash HMAC(Ra, Rb, Kab) received: {} ...", hmacRaRbKab);
+        if (Auth.calcSHA256(ra + rb + kab).equals(hmacRaRbKab)) {
+            hsLogger.trace("(HS) ... STEP-4: HMAC_AUTH:  HMAC(Ra, Rb, Kab) --MATCH--, sending ACK ...");
+            hsLogger.debug("(HS) ... STEP-4: HMAC_AUTH: final ACK sent ==HANDSHAKE COMPLETED==");
+            step = Step.COMPLETED;
+            return send(OpenMessage.FRAME_ACK);
+        } else {
+            hsLogger.warn(
+                    "(HS) ... STEP-4: HMAC_AUTH: HANDSHAKE FAILED, final HMAC(Ra, Rb, Kab) does not match. Received HMAC(Ra, Rb, Kab)={}",
+                    hmacRaRbKab);
+            throw new OWNAuthException("Handshake failed, final HMAC(Ra, Rb, Kab) does not match (HMAC_AUTH STEP-4)");
+        }
+    }
+
+    private List<String> send(String frame) {
+        hsLogger.info("(HS) {} HS==>>>> {}", chName, frame);
+        return Collections.singletonList(frame);
+    }
+}
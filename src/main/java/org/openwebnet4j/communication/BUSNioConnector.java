@@ -0,0 +1,601 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.FrameException;
+import org.openwebnet4j.message.GatewayMgmt;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.UnsupportedFrameException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class for communicating with a BUS OpenWebNet gateway using non-blocking {@link SocketChannel}s. MON and CMD
+ * connections, handshakes, keepalives and timeouts are all driven by a {@link NioEventLoop}, that can be shared by
+ * many gateways: no thread is created for each gateway connection. Commands are queued and responses are read by the
+ * event loop, which completes the futures returned by {@link #sendCommandAsync(String)}; threads calling
+ * {@link #sendCommandSynch(String)} just wait for that future.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class BUSNioConnector extends OpenConnector {
+
+    private final Logger logger = LoggerFactory.getLogger(BUSNioConnector.class);
+    private final Logger msgLogger = LoggerFactory.getLogger(logger.getName() + ".message");
+    private final Logger eventLogger = LoggerFactory.getLogger(logger.getName() + ".message.event");
+    private final Logger kaLogger = LoggerFactory.getLogger(logger.getName() + ".keepalive");
+
+    private final NioEventLoop loop;
+    private final String host;
+    private final int port;
+    private final String pwd;
+
+    private volatile NioSession monSession;
+    private volatile NioSession cmdSession;
+
+    private volatile InetSocketAddress address;
+
+    private NioEventLoop.ScheduledTask monKeepaliveTask;
+    private NioEventLoop.ScheduledTask monReadTimeoutTask;
+
+    // CMD pipeline state, accessed only by the event loop thread
+    private PendingCommand cmdInFlight;
+    private NioEventLoop.ScheduledTask cmdTimeoutTask;
+    private boolean cmdOpening = false;
+
+    /**
+     * Creates a new non-blocking connector to a BUS gateway
+     *
+     * @param host the gateway host name or IP
+     * @param port the gateway port
+     * @param pwd the gateway password
+     * @param loop the {@link NioEventLoop} that will drive the connections to the gateway
+     */
+    public BUSNioConnector(String host, int port, String pwd, NioEventLoop loop) {
+        super();
+        this.host = host;
+        this.port = port;
+        this.pwd = pwd;
+        this.loop = loop;
+    }
+
+    @Override
+    public void openCmdConn() throws OWNException {
+        if (isCmdConnected) {
+            logger.debug("##BUS-nio## CMD is already open");
+            return;
+        }
+        cmdSession = openSession(BUSConnector.CMD_TYPE);
+        isCmdConnected = true;
+        logger.info("##BUS-nio## ============ CMD CONNECTED ============");
+    }
+
+    @Override
+    public void openMonConn() throws OWNException {
+        if (isMonConnected) {
+            logger.debug("##BUS-nio## MON is already open");
+            return;
+        }
+        monSession = openSession(BUSConnector.MON_TYPE);
+        isMonConnected = true;
+        logger.info("##BUS-nio## ============ MON CONNECTED ============");
+        startMonTimers();
+    }
+
+    /* opens a new session of the given type and waits until handshake is completed */
+    private NioSession openSession(String type) throws OWNException {
+        logger.debug("##BUS-nio## Establishing {} connection to BUS Gateway on {}:{}...", type, host, port);
+        NioSession session = new NioSession(type);
+        try {
+            InetSocketAddress addr = new InetSocketAddress(host, port); // resolved here, not on the event loop
+            address = addr;
+            loop.execute(() -> session.connect(addr));
+            session.handshakeDone.get();
+            return session;
+        } catch (ExecutionException e) {
+            session.close();
+            Throwable cause = e.getCause();
+            if (cause instanceof OWNException) {
+                throw (OWNException) cause;
+            }
+            throw new OWNException("Could not open BUS-" + type + " connection to " + host + ":" + port + " ("
+                    + cause.getClass().getSimpleName() + ": " + cause.getMessage() + ")", cause);
+        } catch (InterruptedException e) {
+            session.close();
+            Thread.currentThread().interrupt();
+            throw new OWNException("Interrupted while opening BUS-" + type + " connection to " + host + ":" + port,
+                    e);
+        }
+    }
+
+    @Override
+    protected Response sendCommandSynchInternal(String frame, long timeout) throws IOException, FrameException {
+        CompletableFuture<Response> future = sendCommandAsync(frame, CommandPriority.HIGH, timeout,
+                TimeUnit.MILLISECONDS);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OWNTimeoutException) {
+                throw new SocketTimeoutException(e.getCause().getMessage());
+            }
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting response to command " + frame);
+        }
+    }
+
+    /**
+     * Commands are sent one at a time by the event loop, which completes their futures as soon as the final response
+     * is read: no thread is waiting for the response.
+     */
+    @Override
+    protected void commandQueued() {
+        loop.execute(this::dispatchCommands);
+    }
+
+    /* sends next queued command if no command is waiting for response: must be called on the event loop thread */
+    private void dispatchCommands() {
+        while (cmdInFlight == null && !cmdQueue.isEmpty()) {
+            if (!isCmdConnected) {
+                failQueuedCommands(new OWNException("CMD is not connected"));
+                return;
+            }
+            NioSession session = cmdSession;
+            if (session == null || session.closed) {
+                openCmdSessionAsync();
+                return;
+            }
+            PendingCommand cmd = cmdQueue.poll();
+            if (cmd == null) {
+                return; // all remaining commands were cancelled or timed out
+            }
+            if (cmd.msg == null) {
+                try {
+                    cmd.msg = BaseOpenMessage.parse(cmd.frame);
+                } catch (FrameException e) {
+                    logger.warn("##BUS-nio## FrameException while sending frame {}: {}", cmd.frame, e.getMessage());
+                    cmd.future.completeExceptionally(new OWNException("FrameException while sending frame "
+                            + cmd.frame + " or reading response: " + e.getMessage(), e));
+                    continue;
+                }
+            }
+            long timeout = getCommandTimeout(cmd);
+            if (timeout <= 0) {
+                cmd.future.completeExceptionally(
+                        new OWNTimeoutException("Deadline expired before sending command " + cmd.frame));
+                continue;
+            }
+            cmd.response = new Response(cmd.msg);
+            cmd.sentOn = session;
+            cmdInFlight = cmd;
+            session.write(cmd.frame);
+            lastCmdFrameSentTs = System.currentTimeMillis();
+            if (cmd.retried) {
+                msgLogger.info("BUS-CMD ====>>>> {} [ REOPEN ]", cmd.frame);
+            } else {
+                msgLogger.info("BUS-CMD ====>>>> {}", cmd.frame);
+            }
+            cmdTimeoutTask = loop.schedule(() -> {
+                if (cmdInFlight == cmd) {
+                    msgLogger.info("BUS-CMD <<<<==== X [timeout]");
+                    cmdInFlight = null;
+                    session.close(); // late responses must not be taken as responses to next command
+                    completeCommand(cmd, new OWNTimeoutException(
+                            "Timeout (" + timeout + "ms) while waiting response to command " + cmd.frame));
+                    dispatchCommands();
+                }
+            }, timeout);
+        }
+    }
+
+    /* opens a new CMD session without blocking: must be called on the event loop thread */
+    private void openCmdSessionAsync() {
+        if (cmdOpening) {
+            return;
+        }
+        cmdOpening = true;
+        logger.info("##BUS-nio## trying NEW CMD connection...");
+        NioSession session = new NioSession(BUSConnector.CMD_TYPE);
+        session.handshakeDone.whenComplete((v, e) -> loop.execute(() -> {
+            cmdOpening = false;
+            if (e == null && isCmdConnected) {
+                cmdSession = session;
+                dispatchCommands();
+            } else {
+                session.close();
+                String reason = (e != null ? e.getMessage() : "CMD is not connected");
+                logger.warn("##BUS-nio## exception ({}) while opening NEW CMD connection", reason);
+                failQueuedCommands(new OWNException("Cannot create NEW CMD connection to send message: " + reason, e));
+            }
+        }));
+        session.connect(address);
+    }
+
+    /* called on the event loop thread when a CMD session has been closed */
+    private void onCmdSessionClosed(NioSession session) {
+        PendingCommand cmd = cmdInFlight;
+        if (cmd != null && cmd.sentOn == session) {
+            cmdInFlight = null;
+            if (!cmd.retried && isCmdConnected && !cmd.isDone()) {
+                // CMD session could have been closed by gateway, let's try again with another CMD connection
+                logger.debug("##BUS-nio## CMD connection closed while waiting response to {}", cmd.frame);
+                cmd.retried = true;
+                cmdQueue.addFirst(cmd);
+            } else {
+                msgLogger.info("BUS-CMD <<<<==== X [connection closed]");
+                completeCommand(cmd, new OWNException("IOException while sending frame " + cmd.frame
+                        + " or reading response: CMD connection closed while reading responses to command"));
+            }
+        }
+        dispatchCommands();
+    }
+
+    private void failQueuedCommands(OWNException e) {
+        for (PendingCommand cmd : cmdQueue.drain()) {
+            cmd.future.completeExceptionally(e);
+        }
+    }
+
+    private void completeCommand(PendingCommand cmd, OWNException e) {
+        if (cmdTimeoutTask != null) {
+            cmdTimeoutTask.cancel();
+            cmdTimeoutTask = null;
+        }
+        if (e == null) {
+            msgLogger.info("BUS-CMD <<<<==== {}", cmd.response.getResponseMessages());
+            cmd.future.complete(cmd.response);
+        } else {
+            cmd.future.completeExceptionally(e);
+        }
+    }
+
+    @Override
+    protected void processFrame(String newFrame) {
+        eventLogger.info("BUS-MON <<<<<<<< {}", newFrame);
+        OpenMessage msg;
+        try {
+            msg = BaseOpenMessage.parse(newFrame);
+            notifyListener(msg);
+        } catch (UnsupportedFrameException e) {
+            logger.debug("UNSUPPORTED FRAME: {}, skipping it", newFrame);
+            metrics.frameParseFailed(true);
+        } catch (FrameException e) {
+            logger.warn("INVALID FRAME: {}, skipping it", newFrame);
+            metrics.frameParseFailed(false);
+        }
+    }
+
+    /* processes a frame received on the CMD session as response to the command in flight */
+    private void processCmdFrame(NioSession session, String fr) {
+        PendingCommand cmd = cmdInFlight;
+        if (cmd == null || cmd.sentOn != session) {
+            msgLogger.debug("BUS-CMD   <<=X   {} ignoring frame received without a request waiting", fr);
+            return;
+        }
+        Response res = cmd.response;
+        try {
+            res.addResponse(BaseOpenMessage.parse(fr));
+            msgLogger.debug("BUS-CMD   <<==   {}", fr);
+        } catch (UnsupportedFrameException ufe) {
+            msgLogger.debug("BUS-CMD   <<=X   {} ignoring unsupported response frame ({})", fr, ufe.getMessage());
+        } catch (FrameException fe) {
+            msgLogger.warn("BUS-CMD   <<=X   {} ignoring invalid response frame ({})", fr, fe.getMessage());
+        }
+        if (res.hasFinalResponse()) {
+            cmdInFlight = null;
+            completeCommand(cmd, null);
+            dispatchCommands();
+        }
+    }
+
+    private void startMonTimers() {
+        stopMonTimers();
+        logger.debug("##BUS-nio## starting MON keepalive timer");
+        monKeepaliveTask = loop.scheduleAtFixedRate(() -> {
+            NioSession session = monSession;
+            if (session == null || session.closed) {
+                return;
+            }
+            session.write(OpenMessage.FRAME_ACK);
+            kaLogger.info("BUS-MON =KA=>>>> {}", OpenMessage.FRAME_ACK);
+        }, BUSConnector.MON_KEEPALIVE_TIMER, BUSConnector.MON_KEEPALIVE_TIMER);
+        scheduleMonReadTimeout(BUSConnector.MON_SOCKET_READ_TIMEOUT);
+    }
+
+    /*
+     * If nothing has been received on MON for MON_SOCKET_READ_TIMEOUT, something could be wrong with the MON
+     * connection: we send a CMD to check if gw is still reachable
+     */
+    private void scheduleMonReadTimeout(long delay) {
+        monReadTimeoutTask = loop.schedule(() -> {
+            NioSession session = monSession;
+            if (session == null || session.closed || !isMonConnected) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - session.lastReadTs;
+            if (idle < BUSConnector.MON_SOCKET_READ_TIMEOUT) {
+                scheduleMonReadTimeout(BUSConnector.MON_SOCKET_READ_TIMEOUT - idle);
+                return;
+            }
+            logger.info("BUS-MON - no data received for {}ms, sending CMD message to see if gw is still reachable...",
+                    idle);
+            // sending a command is blocking, so it must not be done on the event loop thread
+            notifierExecutor.submit(() -> {
+                try {
+                    Response res = sendCommandSynchInternal(GatewayMgmt.requestModel().getFrameValue());
+                    if (res.isSuccess()) {
+                        logger.debug("BUS-MON - gw is still reachable!");
+                        session.lastReadTs = System.currentTimeMillis();
+                        // monReadTimeoutTask is confined to the event loop: re-arm it there
+                        loop.execute(() -> {
+                            if (isMonConnected && monSession == session) {
+                                scheduleMonReadTimeout(BUSConnector.MON_SOCKET_READ_TIMEOUT);
+                            }
+                        });
+                    } else {
+                        handleMonDisconnect(
+                                new OWNException("BUS-MON - gw response while checking if still reachable: " + res));
+                    }
+                } catch (IOException | FrameException e) {
+                    logger.debug("BUS-MON - Exception while checking if gw is still reachable: {}", e.getMessage());
+                    handleMonDisconnect(new OWNException(
+                            "BUS-MON - exception while checking if gw is still reachable: " + e.getMessage(), e));
+                }
+            });
+        }, delay);
+    }
+
+    private void stopMonTimers() {
+        if (monKeepaliveTask != null) {
+            monKeepaliveTask.cancel();
+            monKeepaliveTask = null;
+        }
+        if (monReadTimeoutTask != null) {
+            monReadTimeoutTask.cancel();
+            monReadTimeoutTask = null;
+        }
+    }
+
+    @Override
+    protected void disconnectMonChannel() {
+        isMonConnected = false;
+        stopMonTimers();
+        NioSession session = monSession;
+        if (session != null) {
+            session.close();
+            monSession = null;
+        }
+    }
+
+    @Override
+    protected void disconnectCmdChannel() {
+        isCmdConnected = false;
+        NioSession session = cmdSession;
+        if (session != null) {
+            session.close();
+            cmdSession = null;
+        }
+        loop.execute(() -> failQueuedCommands(new OWNException("CMD is not connected")));
+    }
+
+    /**
+     * A non-blocking MON or CMD connection to the gateway, driven by the event loop.
+     */
+    private class NioSession implements NioEventLoop.SelectionHandler {
+        private final String type;
+        private final String name;
+        private final BUSHandshake handshake;
+        private final FrameDecoder decoder = new FrameDecoder();
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        private final CompletableFuture<Void> handshakeDone = new CompletableFuture<>();
+        private final FrameCapture capture = frameCapture;
+
+        private SocketChannel ch;
+        private SelectionKey key;
+        private NioEventLoop.ScheduledTask handshakeTimeout;
+
+        private volatile boolean closed = false;
+        private volatile long lastReadTs = System.currentTimeMillis();
+
+        private NioSession(String type) {
+            this.type = type;
+            this.name = "BUS-" + type;
+            this.handshake = new BUSHandshake(type, name, host, port, pwd);
+        }
+
+        /* starts connection to the gateway: must be called on the event loop thread */
+        private void connect(InetSocketAddress address) {
+            if (closed) {
+                return;
+            }
+            final long start = System.nanoTime();
+            handshakeDone.whenComplete(
+                    (v, e) -> metrics.handshakeCompleted(type, System.nanoTime() - start, e == null));
+            handshakeTimeout = loop.schedule(() -> {
+                if (!handshakeDone.isDone()) {
+                    logger.warn("(HS) ... handshake not completed but timeout expired, closing {} channel", name);
+                    fail(new OWNException("Could not open BUS-" + type + " connection to " + host + ":" + port
+                            + " (timeout while connecting or waiting for handshake)"));
+                }
+            }, BUSConnector.SOCKET_CONNECT_TIMEOUT + BUSConnector.HANDSHAKE_TIMEOUT);
+            try {
+                ch = SocketChannel.open();
+                ch.configureBlocking(false);
+                if (ch.connect(address)) {
+                    key = loop.register(ch, SelectionKey.OP_READ, this);
+                    logger.debug("##BUS-nio## {} socket connected", type);
+                } else {
+                    key = loop.register(ch, SelectionKey.OP_CONNECT, this);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onSelected(SelectionKey k) {
+            try {
+                if (k.isConnectable()) {
+                    ch.finishConnect();
+                    k.interestOps(SelectionKey.OP_READ);
+                    logger.debug("##BUS-nio## {} socket connected", type);
+                    logger.debug("(HS) starting HANDSHAKE on channel {}... ", name);
+                    return;
+                }
+                if (k.isReadable()) {
+                    read();
+                }
+                if (!closed && k.isValid() && k.isWritable()) {
+                    flush();
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void read() throws IOException {
+            int n;
+            while ((n = decoder.fill(ch)) > 0) {
+                lastReadTs = System.currentTimeMillis();
+                String fr;
+                while ((fr = decoder.nextFrame()) != null) {
+                    onFrame(fr);
+                    if (closed) {
+                        return;
+                    }
+                }
+            }
+            if (n < 0) {
+                logger.debug("##BUS-nio## {} connection closed by gateway", name);
+                fail(new IOException(name + " connection closed by gateway"));
+            }
+        }
+
+        private void onFrame(String fr) {
+            WireTrace.received(name, fr);
+            if (capture != null) {
+                capture.record(name, false, !handshakeDone.isDone(), fr);
+            }
+            if (!handshakeDone.isDone()) {
+                try {
+                    for (String toSend : handshake.onFrame(fr)) {
+                        write(toSend);
+                    }
+                    if (handshake.isCompleted()) {
+                        handshakeTimeout.cancel();
+                        handshakeDone.complete(null);
+                    }
+                } catch (OWNAuthException e) {
+                    fail(e);
+                }
+            } else if (BUSConnector.MON_TYPE.equals(type)) {
+                processFrame(fr);
+            } else {
+                processCmdFrame(this, fr);
+            }
+        }
+
+        /*
+         * queues a frame to be sent on this session; can be called from any thread. If the session is closed the
+         * frame is discarded: whoever waits for a response is notified by close()
+         */
+        private void write(String frame) {
+            if (closed) {
+                logger.debug("##BUS-nio## cannot send frame {}, {} connection is closed", frame, name);
+                return;
+            }
+            writeQueue.add(ByteBuffer.wrap(frame.getBytes()));
+            WireTrace.sent(name, frame);
+            if (capture != null) {
+                capture.record(name, true, !handshakeDone.isDone(), frame);
+            }
+            loop.execute(() -> {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        private void flush() throws IOException {
+            if (closed || key == null || !ch.isConnected()) {
+                return;
+            }
+            ByteBuffer buf;
+            while ((buf = writeQueue.peek()) != null) {
+                ch.write(buf);
+                if (buf.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                writeQueue.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /* closes the session after an error, notifying whoever is waiting on it */
+        private void fail(Exception e) {
+            boolean wasOpen = !closed;
+            close();
+            if (handshakeDone.completeExceptionally(e)) {
+                return; // error during handshake: it will be handled by openSession()
+            }
+            if (wasOpen && this == monSession && isMonConnected) {
+                handleMonDisconnect(new OWNException(name + " got exception: " + e.getMessage(), e));
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (handshakeTimeout != null) {
+                handshakeTimeout.cancel();
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                if (ch != null) {
+                    ch.close();
+                }
+            } catch (IOException e) {
+                logger.debug("##BUS-nio## IOException while closing {}: {}", name, e.getMessage());
+            }
+            if (BUSConnector.CMD_TYPE.equals(type)) {
+                loop.execute(() -> onCmdSessionClosed(this)); // re-send or fail the command waiting for response
+            }
+            logger.debug("##BUS-nio## {} connection CLOSED", name);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+/**
+ * Priority of a command sent to the gateway, used by {@link CommandQueue} to choose which command is sent next
+ *
+ * @author M. Valla - Initial contribution
+ */
+public enum CommandPriority {
+    /** user-facing commands (for example: a light switched from the UI) */
+    HIGH,
+    /** default priority */
+    NORMAL,
+    /** background traffic (for example: periodic polling of energy meters or thermo status) */
+    LOW
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Multi-level queue of commands waiting to be sent to the gateway, one FIFO queue for each {@link CommandPriority}.
+ * Higher priority commands are sent first, with two protections against starvation of lower priority commands:
+ * <ul>
+ * <li>a command waiting for more than {@link #getMaxWaitTime()} ms is sent first, whatever its priority</li>
+ * <li>after {@link #getMaxBurst()} consecutive commands of higher priority, a waiting lower priority command is
+ * sent</li>
+ * </ul>
+ * The queue also collects depth and wait-time statistics for each priority level.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class CommandQueue {
+
+    public static final int DEFAULT_MAX_WAIT_TIME = 5000; // ms
+    public static final int DEFAULT_MAX_BURST = 8;
+
+    private static final CommandPriority[] LEVELS = CommandPriority.values();
+
+    private final ArrayList<ArrayDeque<PendingCommand>> queues = new ArrayList<>(LEVELS.length);
+    private final int[] burst = new int[LEVELS.length]; // consecutive commands sent from each level while lower
+                                                        // levels were waiting
+
+    private final long[] sentCount = new long[LEVELS.length];
+    private final long[] totalWaitTime = new long[LEVELS.length];
+    private final long[] maxWaitTime = new long[LEVELS.length];
+
+    private volatile long maxWait = DEFAULT_MAX_WAIT_TIME;
+    private volatile int maxBurst = DEFAULT_MAX_BURST;
+
+    CommandQueue() {
+        for (int i = 0; i < LEVELS.length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Adds a command at the end of the queue of its priority
+     *
+     * @param cmd the command to add
+     */
+    synchronized void add(PendingCommand cmd) {
+        queues.get(cmd.priority.ordinal()).addLast(cmd);
+    }
+
+    /**
+     * Adds back a command at the head of the queue of its priority, so that it will be the next one of its priority
+     * to be sent (for example to re-send it on a new connection)
+     *
+     * @param cmd the command to add
+     */
+    synchronized void addFirst(PendingCommand cmd) {
+        queues.get(cmd.priority.ordinal()).addFirst(cmd);
+    }
+
+    /**
+     * Removes a command from the queue, if it has not been sent yet
+     *
+     * @param cmd the command to remove
+     * @return true if the command was in the queue and has been removed
+     */
+    synchronized boolean remove(PendingCommand cmd) {
+        return queues.get(cmd.priority.ordinal()).removeFirstOccurrence(cmd);
+    }
+
+    /**
+     * Removes the command completing the given future from the queue, if it has not been sent yet
+     *
+     * @param future the future of the command
+     * @return the removed command, or null if no command in queue completes the future
+     */
+    synchronized PendingCommand remove(CompletableFuture<Response> future) {
+        for (ArrayDeque<PendingCommand> q : queues) {
+            for (Iterator<PendingCommand> it = q.iterator(); it.hasNext();) {
+                PendingCommand cmd = it.next();
+                if (cmd.future == future) {
+                    it.remove();
+                    return cmd;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes and returns the next command to be sent. Commands already completed (cancelled or timed out while
+     * waiting) are discarded.
+     *
+     * @return the next command to send, or null if queue is empty
+     */
+    synchronized PendingCommand poll() {
+        PendingCommand cmd;
+        while ((cmd = pollNext()) != null) {
+            if (!cmd.isDone()) {
+                int l = cmd.priority.ordinal();
+                updateBurst(l);
+                long wait = System.currentTimeMillis() - cmd.createdTs;
+                sentCount[l]++;
+                totalWaitTime[l] += wait;
+                if (wait > maxWaitTime[l]) {
+                    maxWaitTime[l] = wait;
+                }
+                return cmd;
+            }
+        }
+        return null;
+    }
+
+    private PendingCommand pollNext() {
+        // 1. a command waiting for too long is sent first, older first
+        long now = System.currentTimeMillis();
+        int level = -1;
+        long oldest = Long.MAX_VALUE;
+        for (int l = 1; l < LEVELS.length; l++) {
+            PendingCommand head = queues.get(l).peekFirst();
+            if (head != null && now - head.createdTs > maxWait && head.createdTs < oldest) {
+                oldest = head.createdTs;
+                level = l;
+            }
+        }
+        if (level < 0) {
+            // 2. otherwise highest priority, unless it has already sent maxBurst commands while others waited
+            for (int l = 0; l < LEVELS.length; l++) {
+                if (!queues.get(l).isEmpty()) {
+                    if (level < 0) {
+                        level = l;
+                    } else if (burst[level] >= maxBurst) {
+                        level = l;
+                        break;
+                    } else {
+                        break;
+                    }
+                }
+            }
+            if (level < 0) {
+                return null;
+            }
+        }
+        return queues.get(level).pollFirst();
+    }
+
+    private void updateBurst(int level) {
+        boolean lowerWaiting = false;
+        for (int l = level + 1; l < LEVELS.length; l++) {
+            lowerWaiting |= !queues.get(l).isEmpty();
+        }
+        burst[level] = (lowerWaiting ? burst[level] + 1 : 0);
+        for (int l = 0; l < level; l++) {
+            burst[l] = 0; // higher levels gave way: they can start a new burst
+        }
+    }
+
+    /**
+     * Removes and returns all commands in the queue
+     *
+     * @return the list of removed commands
+     */
+    synchronized List<PendingCommand> drain() {
+        List<PendingCommand> all = new ArrayList<>();
+        for (ArrayDeque<PendingCommand> q : queues) {
+            all.addAll(q);
+            q.clear();
+        }
+        return all;
+    }
+
+    /**
+     * Check if the queue is empty
+     *
+     * @return true if no command is waiting
+     */
+    public synchronized boolean isEmpty() {
+        for (ArrayDeque<PendingCommand> q : queues) {
+            if (!q.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of commands waiting to be sent with the given priority
+     *
+     * @param priority the {@link CommandPriority}
+     * @return the queue depth
+     */
+    public synchronized int getDepth(CommandPriority priority) {
+        return queues.get(priority.ordinal()).size();
+    }
+
+    /**
+     * Returns the number of commands with the given priority that have been sent so far
+     *
+     * @param priority the {@link CommandPriority}
+     * @return the number of commands sent
+     */
+    public synchronized long getSentCount(CommandPriority priority) {
+        return sentCount[priority.ordinal()];
+    }
+
+    /**
+     * Returns the average time commands with the given priority have waited in queue before being sent
+     *
+     * @param priority the {@link CommandPriority}
+     * @return (ms) average wait time, or 0 if no command has been sent yet
+     */
+    public synchronized long getAverageWaitTime(CommandPriority priority) {
+        int l = priority.ordinal();
+        return (sentCount[l] == 0 ? 0 : totalWaitTime[l] / sentCount[l]);
+    }
+
+    /**
+     * Returns the maximum time a command with the given priority has waited in queue before being sent
+     *
+     * @param priority the {@link CommandPriority}
+     * @return (ms) max wait time
+     */
+    public synchronized long getMaxWaitTime(CommandPriority priority) {
+        return maxWaitTime[priority.ordinal()];
+    }
+
+    /** Resets wait-time statistics */
+    public synchronized void resetStats() {
+        for (int l = 0; l < LEVELS.length; l++) {
+            sentCount[l] = 0;
+            totalWaitTime[l] = 0;
+            maxWaitTime[l] = 0;
+        }
+    }
+
+    /**
+     * Returns the max time a lower priority command can wait before being sent ahead of higher priority commands
+     *
+     * @return (ms) max wait time
+     */
+    public long getMaxWaitTime() {
+        return maxWait;
+    }
+
+    /**
+     * Sets the max time a lower priority command can wait before being sent ahead of higher priority commands
+     *
+     * @param maxWait (ms) max wait time
+     */
+    public void setMaxWaitTime(long maxWait) {
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Returns the max number of consecutive higher priority commands sent while lower priority commands are waiting
+     *
+     * @return max burst
+     */
+    public int getMaxBurst() {
+        return maxBurst;
+    }
+
+    /**
+     * Sets the max number of consecutive higher priority commands sent while lower priority commands are waiting
+     *
+     * @param maxBurst max burst (must be &gt; 0)
+     */
+    public void setMaxBurst(int maxBurst) {
+        if (maxBurst <= 0) {
+            throw new IllegalArgumentException("maxBurst must be > 0");
+        }
+        this.maxBurst = maxBurst;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("CommandQueue[");
+        for (int l = 0; l < LEVELS.length; l++) {
+            if (l > 0) {
+                sb.append(", ");
+            }
+            sb.append(LEVELS[l]).append(": depth=").append(queues.get(l).size()).append(" sent=")
+                    .append(sentCount[l]).append(" avgWait=").append(getAverageWaitTime(LEVELS[l]))
+                    .append("ms maxWait=").append(maxWaitTime[l]).append("ms");
+        }
+        return sb.append("]").toString();
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openwebnet4j.message.GatewayMgmt;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.Who;
+
+/**
+ * Time allowed to receive the response (ACK/NACK) to a command after it has been sent, that can be set for a specific
+ * message, for all messages of a {@link Who} or as default for all messages. If the response is not received in time,
+ * the command fails with an {@link OWNTimeoutException} and the connection used to send it is recycled.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class CommandTimeouts {
+
+    public static final long DEFAULT_TIMEOUT = 30000; // ms
+    public static final long SCAN_NETWORK_TIMEOUT = 120000; // ms, a ZigBee network scan can take long
+
+    private final Map<String, Long> frameTimeouts = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> whoTimeouts = new ConcurrentHashMap<>();
+    private volatile long defaultTimeout = DEFAULT_TIMEOUT;
+
+    public CommandTimeouts() {
+        frameTimeouts.put(GatewayMgmt.requestScanNetwork().getFrameValue(), SCAN_NETWORK_TIMEOUT);
+    }
+
+    /**
+     * Returns the default timeout, used for messages without a specific timeout
+     *
+     * @return (ms) the default timeout
+     */
+    public long getDefaultTimeout() {
+        return defaultTimeout;
+    }
+
+    /**
+     * Sets the default timeout, used for messages without a specific timeout
+     *
+     * @param timeout (ms) the default timeout (must be &gt; 0)
+     */
+    public void setDefaultTimeout(long timeout) {
+        defaultTimeout = checkTimeout(timeout);
+    }
+
+    /**
+     * Sets the timeout for all messages of a {@link Who}
+     *
+     * @param who the {@link Who}
+     * @param timeout (ms) the timeout (must be &gt; 0)
+     */
+    public void setTimeout(Who who, long timeout) {
+        whoTimeouts.put(who.value(), checkTimeout(timeout));
+    }
+
+    /**
+     * Sets the timeout for a specific message (same frame)
+     *
+     * @param msg the {@link OpenMessage}
+     * @param timeout (ms) the timeout (must be &gt; 0)
+     */
+    public void setTimeout(OpenMessage msg, long timeout) {
+        frameTimeouts.put(msg.getFrameValue(), checkTimeout(timeout));
+    }
+
+    /**
+     * Removes the specific timeout for a {@link Who}, default timeout will be used
+     *
+     * @param who the {@link Who}
+     */
+    public void removeTimeout(Who who) {
+        whoTimeouts.remove(who.value());
+    }
+
+    /**
+     * Removes the specific timeout for a message
+     *
+     * @param msg the {@link OpenMessage}
+     */
+    public void removeTimeout(OpenMessage msg) {
+        frameTimeouts.remove(msg.getFrameValue());
+    }
+
+    /**
+     * Returns the timeout for a command frame: the timeout set for the same frame, or for its WHO, or the default
+     * timeout
+     *
+     * @param frame the command frame
+     * @return (ms) the timeout
+     */
+    public long getTimeout(String frame) {
+        Long t = frameTimeouts.get(frame);
+        if (t == null && !whoTimeouts.isEmpty()) {
+            t = whoTimeouts.get(parseWho(frame));
+        }
+        return (t != null ? t : defaultTimeout);
+    }
+
+    /* returns the WHO number of a frame *WHO*... or *#WHO*..., or -1 if not found */
+    private static int parseWho(String frame) {
+        int i = (frame.startsWith("*#") ? 2 : 1);
+        int who = -1;
+        while (i < frame.length()) {
+            char c = frame.charAt(i++);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            who = (who < 0 ? 0 : who * 10) + (c - '0');
+        }
+        return who;
+    }
+
+    private static long checkTimeout(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout must be > 0");
+        }
+        return timeout;
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the frames sent and received on the gateway channels into a compact append-only binary file, to be replayed
+ * later with {@link FrameReplayer}. Set a capture on a gateway with
+ * {@link org.openwebnet4j.OpenGateway#setFrameCapture(FrameCapture)}: all connections opened afterwards are recorded.
+ * <p>
+ * File format: the {@link #MAGIC} bytes followed by records, each starting with a tag byte:
+ * <ul>
+ * <li>{@link #TAG_SESSION}: start of a capture session, followed by the wall clock time (long, ms); timestamps of
+ * following frames are relative to it</li>
+ * <li>{@link #TAG_CHANNEL}: channel definition, followed by channel id (byte) and channel name (UTF)</li>
+ * <li>otherwise a frame: tag is {@code channelId << 2 | handshake << 1 | sent}, followed by the nanoseconds elapsed
+ * since the previous record of the session (varint), frame length (varint) and frame bytes</li>
+ * </ul>
+ * Data is written through a buffer flushed every second and on {@link #close()}. Appending to an existing capture
+ * file starts a new session.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class FrameCapture implements Closeable {
+
+    static final byte[] MAGIC = { 'O', 'W', 'N', 'C', 'A', 'P', 1 };
+    static final int TAG_SESSION = 0xFF;
+    static final int TAG_CHANNEL = 0xFE;
+    static final int MAX_CHANNELS = 63; // channel ids 0-62 keep frame tags below TAG_CHANNEL
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long FLUSH_PERIOD = 1000; // ms
+
+    private final Logger logger = LoggerFactory.getLogger(FrameCapture.class);
+
+    private final Path file;
+    private final DataOutputStream out;
+    private final Map<String, Integer> channels = new HashMap<>(); // guarded by this
+    private final ScheduledFuture<?> flushTask;
+    private volatile CompletableFuture<Void> pendingFlush;
+    private long lastTs; // guarded by this
+    private long frames = 0; // guarded by this
+    private boolean closed = false; // guarded by this
+
+    /**
+     * Opens a capture file, creating it if it does not exist
+     *
+     * @param file the capture file
+     * @throws IOException if the file cannot be opened or is not a capture file
+     */
+    public FrameCapture(Path file) throws IOException {
+        this.file = file;
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        if (exists) {
+            try (InputStream in = Files.newInputStream(file)) {
+                checkMagic(in);
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), BUFFER_SIZE));
+        if (!exists) {
+            out.write(MAGIC);
+        }
+        out.writeByte(TAG_SESSION);
+        out.writeLong(System.currentTimeMillis());
+        lastTs = System.nanoTime();
+        flushTask = OWNScheduler.scheduleAtFixedRate(this::scheduleFlush, FLUSH_PERIOD, FLUSH_PERIOD,
+                TimeUnit.MILLISECONDS);
+        logger.info("##CAPTURE## capturing frames to {}", file);
+    }
+
+    /**
+     * Checks that the stream starts with the capture file magic bytes
+     *
+     * @param in the stream
+     * @throws IOException if the stream is not a capture file
+     */
+    static void checkMagic(InputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        new DataInputStream(in).readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a frame capture file (or unsupported version)");
+        }
+    }
+
+    /**
+     * Returns the capture file
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of frames recorded so far
+     *
+     * @return number of frames
+     */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Records a frame. I/O errors stop the capture, so that they never affect communication with the gateway.
+     *
+     * @param channel the channel name
+     * @param sent true if the frame was sent to the gateway, false if received
+     * @param handshake true if the frame belongs to the connection handshake
+     * @param frame the frame
+     */
+    synchronized void record(String channel, boolean sent, boolean handshake, String frame) {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        try {
+            Integer id = channels.get(channel);
+            if (id == null) {
+                if (channels.size() >= MAX_CHANNELS) {
+                    return;
+                }
+                id = channels.size();
+                channels.put(channel, id);
+                out.writeByte(TAG_CHANNEL);
+                out.writeByte(id);
+                out.writeUTF(channel);
+            }
+            out.writeByte(id << 2 | (handshake ? 2 : 0) | (sent ? 1 : 0));
+            writeVarLong(Math.max(0, now - lastTs));
+            lastTs = now;
+            byte[] bytes = frame.getBytes(StandardCharsets.ISO_8859_1);
+            writeVarLong(bytes.length);
+            out.write(bytes);
+            frames++;
+        } catch (IOException e) {
+            logger.warn("##CAPTURE## error writing to {}, capture stopped: {}", file, e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    private void writeVarLong(long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) (v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    /**
+     * Writes buffered data to the file
+     *
+     * @throws IOException in case of I/O errors
+     */
+    public synchronized void flush() throws IOException {
+        if (!closed) {
+            out.flush();
+        }
+    }
+
+    /* executed on the scheduler thread: file I/O can block, so the flush is handed off */
+    private void scheduleFlush() {
+        CompletableFuture<Void> previous = pendingFlush;
+        if (previous != null && !previous.isDone()) {
+            return; // previous flush still running
+        }
+        pendingFlush = OWNScheduler.scheduleBlocking(this::flushQuietly, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            logger.warn("##CAPTURE## error flushing {}: {}", file, e.getMessage());
+        }
+    }
+
+    /** Stops the capture and closes the file */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        flushTask.cancel(false);
+        out.close();
+        logger.info("##CAPTURE## capture to {} closed: {} frames", file, frames);
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            logger.debug("##CAPTURE## error closing {}: {}", file, e.getMessage());
+        }
+    }
+}
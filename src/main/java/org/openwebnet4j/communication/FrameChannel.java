@@ -19,6 +19,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.openwebnet4j.message.OpenMessage;
 import org.slf4j.Logger;
@@ -33,12 +34,16 @@ public class FrameChannel {
 
     protected Queue<String> readFrames = new LinkedList<>(); // the list of frames already read from InputStream
 
+    private final FrameDecoder decoder = new FrameDecoder(); // buffer used to read data from InputStream
+
     private OutputStream out;
     private InputStream in;
     private String name;
     protected boolean handshakeCompleted = false;
+    private volatile FrameCapture capture; // null if frames are not captured
+    private final ReentrantLock sendLock = new ReentrantLock();
 
-    private final Logger logger = LoggerFactory.getLogger(FrameChannel.class);
+    private static final Logger logger = LoggerFactory.getLogger(FrameChannel.class);
 
     protected FrameChannel(InputStream in, OutputStream out, String name) {
         this.name = name;
@@ -50,119 +55,150 @@ public class FrameChannel {
         return name;
     }
 
+    /**
+     * Sets the {@link FrameCapture} where frames sent and received on this channel are recorded
+     *
+     * @param capture the capture, or null to stop recording
+     */
+    void setCapture(FrameCapture capture) {
+        this.capture = capture;
+    }
+
     /**
      * Sends a frame on the channel
      *
      * @param frame the frame
      * @throws IOException in case of problems while writing on the OutputStream
      */
-    protected synchronized void sendFrame(String frame) throws IOException {
-        if (out != null) {
+    protected void sendFrame(String frame) throws IOException {
+        // a lock instead of synchronized, so that virtual threads are not pinned while writing
+        sendLock.lock();
+        try {
+            if (out == null) {
+                throw new IOException("Cannot sendFrame, OutputStream is null");
+            }
             out.write(frame.getBytes());
             out.flush();
-            logger.info("-FC-{} -------> {}", name, frame);
-        } else {
-            throw new IOException("Cannot sendFrame, OutputStream is null");
+            WireTrace.sent(name, frame);
+            FrameCapture c = capture;
+            if (c != null) {
+                c.record(name, true, !handshakeCompleted, frame);
+            }
+        } finally {
+            sendLock.unlock();
         }
     }
 
     /**
-     * Returns the first frame String from the {@link readFrames} queue. If queue is empty, tries to
-     * read (blocking read) available data from InputStream and extract all frames terminated with
-     * "##" putting them in the {@link readFrames} queue. If no new frame can be read from
-     * InputStream because end of steam reached, returns null.
+     * Returns the first frame String from the {@link readFrames} queue. If queue is empty, returns the next frame
+     * terminated with "##" from the receiving buffer, reading (blocking bulk read) available data from InputStream if
+     * no complete frame is buffered yet. If no new frame can be read from InputStream because end of steam reached,
+     * returns null.
      *
      * @return the first frame already in the receiving queue, or the first new frame read from
      *         InputStream, or null if end of steam reached
      * @throws IOException in case of problems while reading frames from InputStream
      */
     protected String readFrames() throws IOException {
-        if (readFrames.isEmpty()) { // no frames in queue, try reading from stream
-            byte[] buf = new byte[1024];
-            int size = readUntilDelimiter(in, buf);
-            if (size > 0) {
-                String longFrame = new String(buf, 0, size);
-                logger.trace("-FC-{}   <---   {}", name, longFrame);
-                // This is a fix to a bug on older Zigbee gateways in the response to device info
-                // 2-UNITS where an ACK is added after each unit and not just at the end
-                if (longFrame.contains("#9*66*")) { // it's a response to device info
-                    // perform another read to receive more 2-UNITS info, if any
-                    if ((size = readUntilDelimiter(in, buf)) > 0) {
-                        String otherFrame = new String(buf, 0, size);
-                        logger.trace("-FC-{}   <---   {}", name, otherFrame);
-                        longFrame += otherFrame;
-                        if (OpenMessage.FRAME_ACK.equals(otherFrame) && (size = readUntilDelimiter(in, buf)) > 0) {
-                            otherFrame = new String(buf, 0, size);
+        if (!readFrames.isEmpty()) {
+            return readFrames.remove();
+        }
+        // no frames in queue, try reading from buffer/stream
+        String frame = readUntilDelimiter();
+        if (frame == null) {
+            logger.debug("-FC-{} |<--     NO DATA", name);
+            return null;
+        }
+        logger.trace("-FC-{}   <---   {}", name, frame);
+        // This is a fix to a bug on older Zigbee gateways in the response to device info
+        // 2-UNITS where an ACK is added after each unit and not just at the end
+        if (frame.contains("#9*66*")) { // it's a response to device info
+            String longFrame = frame;
+            // perform another read to receive more 2-UNITS info, if any
+            String otherFrame = readUntilDelimiter();
+            if (otherFrame != null) {
+                logger.trace("-FC-{}   <---   {}", name, otherFrame);
+                longFrame += otherFrame;
+                if (OpenMessage.FRAME_ACK.equals(otherFrame) && (otherFrame = readUntilDelimiter()) != null) {
+                    logger.trace("-FC-{}   <---   {}", name, otherFrame);
+                    longFrame += otherFrame;
+                    if (longFrame.regionMatches(0, otherFrame, 0, 12)) {
+                        // frames refer to same ZigBee device: remove first ACK
+                        logger.debug("-FC- BUGFIX!!! Removing ACK from device info response");
+                        longFrame = longFrame.replace(OpenMessage.FRAME_ACK, "");
+                        // read final ACK
+                        if ((otherFrame = readUntilDelimiter()) != null) {
                             logger.trace("-FC-{}   <---   {}", name, otherFrame);
                             longFrame += otherFrame;
-                            if (longFrame.regionMatches(0, otherFrame, 0, 12)) {
-                                // frames refer to same ZigBee device: remove first ACK
-                                logger.debug("-FC- BUGFIX!!! Removing ACK from device info response");
-                                longFrame = longFrame.replace(OpenMessage.FRAME_ACK, "");
-                                // read final ACK
-                                if ((size = readUntilDelimiter(in, buf)) > 0) {
-                                    otherFrame = new String(buf, 0, size);
-                                    logger.trace("-FC-{}   <---   {}", name, otherFrame);
-                                    longFrame += otherFrame;
-                                }
-                            }
                         }
                     }
                 }
-                // end-of-fix
-
-                if (longFrame.contains(OpenMessage.FRAME_END)) {
-                    logger.trace("-FC-{} <------- {}", name, longFrame);
-                    String[] frames = longFrame.split(OpenMessage.FRAME_END);
-                    // add each single frame to the queue
-                    for (String singleFrame : frames) {
-                        readFrames.add(singleFrame + OpenMessage.FRAME_END);
-                    }
-                } else {
-                    throw new IOException("Error in readFrames(): no delimiter found on stream: " + longFrame);
-                }
-                logger.info("-FC-{} <------- {}", name, readFrames.toString());
-                return readFrames.remove();
-            } else {
-                logger.debug("-FC-{} |<--     NO DATA (size={})", name, size);
-                return null;
             }
-        } else {
+            logger.trace("-FC-{} <------- {}", name, longFrame);
+            // add each single frame to the queue
+            int from = 0;
+            int pos;
+            while ((pos = longFrame.indexOf(OpenMessage.FRAME_END, from)) >= 0) {
+                String fr = longFrame.substring(from, pos + 2);
+                readFrames.add(fr);
+                captureReceived(fr);
+                from = pos + 2;
+            }
+            if (readFrames.isEmpty()) {
+                throw new IOException("Error in readFrames(): no delimiter found on stream: " + longFrame);
+            }
+            WireTrace.received(name, readFrames);
             return readFrames.remove();
         }
+        // end-of-fix
+
+        if (!frame.endsWith(OpenMessage.FRAME_END)) {
+            throw new IOException("Error in readFrames(): no delimiter found on stream: " + frame);
+        }
+        WireTrace.received(name, frame);
+        captureReceived(frame);
+        return frame;
+    }
+
+    private void captureReceived(String frame) {
+        FrameCapture c = capture;
+        if (c != null) {
+            c.record(name, false, !handshakeCompleted, frame);
+        }
     }
 
     /**
-     * Reads from InputStream until delimiter ('##'), putting data into buffer
+     * Returns next frame terminated by delimiter ('##') from the receiving buffer, reading a new block of data from
+     * InputStream only when the buffer does not contain a complete frame
      *
-     * @return number of bytes read, or -1 in case of end of stream
+     * @return the frame, or data read before end of stream (not terminated by delimiter), or null if no data could be
+     *         read
      * @throws IOException in case of problems with the InputStream
      */
-    private int readUntilDelimiter(InputStream is, byte[] buffer) throws IOException {
-        logger.trace("-FC-{} Trying readUntilDelimiter...", name);
-        int numBytes = 0;
-        int cint = 0;
-        char cchar = ' ';
-        Boolean hashFound = false;
-        // reads one char each cycle and stop when the sequence ends with ## (OpenWebNet delimiter)
-        do {
-            cint = is.read();
-            if (cint == -1) {
+    private String readUntilDelimiter() throws IOException {
+        String frame = decoder.nextFrame();
+        while (frame == null) {
+            logger.trace("-FC-{} Trying bulk read from InputStream...", name);
+            int size = decoder.fill(in);
+            if (size < 0) {
                 logger.trace("-FC-{} read() in readUntilDelimiter() returned -1 (end of stream)", name);
-                return numBytes;
-            } else {
-                buffer[numBytes++] = (byte) cint;
-                cchar = (char) cint;
-                if (cchar == '#' && hashFound == false) { // Found first #
-                    hashFound = true;
-                } else if (cchar == '#') { // Found second #, frame terminated correctly -> EXIT
-                    break;
-                } else if (cchar != '#') { // Append char and start again finding the first #
-                    hashFound = false;
-                }
+                return decoder.remaining();
+            } else if (size == 0) {
+                // no data available now: keep partial data (if any) in the buffer for next read
+                return null;
             }
-        } while (true);
-        return numBytes;
+            frame = decoder.nextFrame();
+        }
+        return frame;
+    }
+
+    /**
+     * Check if frames or partial data have been received and not yet returned by {@link #readFrames()}
+     *
+     * @return true if there are pending data
+     */
+    protected boolean hasPendingData() {
+        return !readFrames.isEmpty() || decoder.hasData();
     }
 
     protected void disconnect() {
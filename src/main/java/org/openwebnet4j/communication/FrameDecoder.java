@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered decoder to extract OpenWebNet frames terminated with "##" from a stream of bytes. Data is read in blocks
+ * into a single reusable buffer which is then scanned for delimiters, so that each frame costs one String allocation
+ * and (on a busy stream) much less than one read() call.
+ *
+ * @author M. Valla - Initial contribution
+ */
+class FrameDecoder {
+
+    static final int BUFFER_SIZE = 4096; // must be able to contain at least a full frame (OWN max frame is 1024)
+
+    private final byte[] buf;
+    private ByteBuffer byteBuffer; // wraps buf, used only when reading from a channel
+    private int start = 0; // position of first byte not yet returned as frame
+    private int end = 0; // position after last valid byte in buffer
+    private int scan = 0; // position from which delimiter scanning must continue
+
+    FrameDecoder() {
+        this(BUFFER_SIZE);
+    }
+
+    FrameDecoder(int size) {
+        buf = new byte[size];
+    }
+
+    /**
+     * Returns the next complete frame (terminated with "##") already in the buffer, without reading new data
+     *
+     * @return the next frame, or null if no complete frame is in the buffer
+     */
+    String nextFrame() {
+        int i = Math.max(scan, start + 1);
+        while (i < end) {
+            if (buf[i] == '#' && buf[i - 1] == '#') {
+                String frame = new String(buf, start, i + 1 - start, StandardCharsets.ISO_8859_1);
+                start = i + 1;
+                scan = start + 1;
+                return frame;
+            }
+            i++;
+        }
+        scan = end;
+        return null;
+    }
+
+    /**
+     * Performs a single (blocking) bulk read from the InputStream appending data to the buffer
+     *
+     * @param in the InputStream to read from
+     * @return number of bytes read, or -1 in case of end of stream
+     * @throws IOException in case of problems with the InputStream, or if buffer is full and no delimiter was found
+     */
+    int fill(InputStream in) throws IOException {
+        makeRoom();
+        int n = in.read(buf, end, buf.length - end);
+        if (n > 0) {
+            end += n;
+        }
+        return n;
+    }
+
+    /**
+     * Performs a single (non-blocking) bulk read from the channel appending data to the buffer
+     *
+     * @param ch the channel to read from
+     * @return number of bytes read (possibly 0), or -1 in case of end of stream
+     * @throws IOException in case of problems with the channel, or if buffer is full and no delimiter was found
+     */
+    int fill(ReadableByteChannel ch) throws IOException {
+        makeRoom();
+        if (byteBuffer == null) {
+            byteBuffer = ByteBuffer.wrap(buf);
+        }
+        // cast to Buffer to keep binary compatibility with Java 8
+        ((Buffer) byteBuffer).limit(buf.length);
+        ((Buffer) byteBuffer).position(end);
+        int n = ch.read(byteBuffer);
+        if (n > 0) {
+            end += n;
+        }
+        return n;
+    }
+
+    /**
+     * Returns and removes from the buffer the data not terminated with a delimiter, if any
+     *
+     * @return the remaining partial data, or null if buffer has no data
+     */
+    String remaining() {
+        String rem = null;
+        if (end > start) {
+            rem = new String(buf, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        clear();
+        return rem;
+    }
+
+    /**
+     * Check if there are data in the buffer not yet returned as frames
+     *
+     * @return true if buffer contains data
+     */
+    boolean hasData() {
+        return end > start;
+    }
+
+    /** Discards all data in the buffer */
+    void clear() {
+        start = 0;
+        end = 0;
+        scan = 0;
+    }
+
+    /* moves not consumed data at the beginning of the buffer, if needed, to have room for new data */
+    private void makeRoom() throws IOException {
+        if (start == end) {
+            clear();
+        } else if (end == buf.length) {
+            if (start == 0) {
+                throw new IOException("Frame too long: no delimiter found in " + buf.length + " bytes");
+            }
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            scan -= start;
+            start = 0;
+        }
+    }
+}
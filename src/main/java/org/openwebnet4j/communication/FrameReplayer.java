@@ -0,0 +1,202 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a capture file recorded by {@link FrameCapture}, feeding the received frames to
+ * {@link OpenConnector#processFrame(String)} at the original speed, accelerated, or as fast as possible. Frames sent
+ * to the gateway and handshake frames are skipped.
+ * <p>
+ * By default frames received on all channels except CMD channels are replayed (that is: MON frames of BUS captures,
+ * all frames of USB captures); use {@link #setChannel(String)} to select a single channel. Sessions appended to the
+ * same file are replayed one after the other, without the time elapsed between them.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class FrameReplayer {
+
+    /** Replay frames as fast as possible */
+    public static final double MAX_SPEED = 0;
+
+    private final Logger logger = LoggerFactory.getLogger(FrameReplayer.class);
+
+    private final Path file;
+    private double speed = 1;
+    private String channel = null;
+
+    /* receives the frames read from a capture file */
+    private interface FrameHandler {
+        void onFrame(long ts, String channel, boolean sent, boolean handshake, String frame)
+                throws InterruptedException;
+    }
+
+    /**
+     * Creates a replayer for a capture file
+     *
+     * @param file the capture file
+     */
+    public FrameReplayer(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Sets the replay speed (default: 1)
+     *
+     * @param speed 1 for original speed, &gt;1 to accelerate (2 = twice as fast), {@link #MAX_SPEED} for no delay
+     *            between frames
+     */
+    public void setSpeed(double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("speed must be >= 0");
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Replays only frames received on the given channel (for example "BUS-MON")
+     *
+     * @param channel the channel name, or null to replay frames of all channels except CMD ones
+     */
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Replays the capture on a connector. Returns when all frames have been passed to the connector (notification to
+     * its listener is asynchronous).
+     *
+     * @param connector the connector
+     * @return number of frames replayed
+     * @throws IOException if the capture file cannot be read
+     * @throws InterruptedException if the thread is interrupted while waiting for the next frame
+     */
+    public long replay(OpenConnector connector) throws IOException, InterruptedException {
+        final double s = speed;
+        final long start = System.nanoTime();
+        final long[] firstTs = { -1 };
+        final long[] count = { 0 };
+        read((ts, ch, sent, handshake, frame) -> {
+            if (sent || handshake || !accept(ch)) {
+                return;
+            }
+            if (firstTs[0] < 0) {
+                firstTs[0] = ts;
+            }
+            if (s > 0) {
+                long wait = start + (long) ((ts - firstTs[0]) / s) - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            connector.processFrame(frame);
+            count[0]++;
+        });
+        logger.debug("##CAPTURE## replayed {} frames from {} in {}ms", count[0], file,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return count[0];
+    }
+
+    private boolean accept(String ch) {
+        if (channel == null) {
+            return ch != null && !ch.contains(BUSConnector.CMD_TYPE);
+        }
+        return channel.equals(ch);
+    }
+
+    /* reads all frames in the capture file. A truncated last record (capture not closed) is ignored */
+    private void read(FrameHandler handler) throws IOException, InterruptedException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            FrameCapture.checkMagic(in);
+            Map<Integer, String> channels = new HashMap<>();
+            long ts = -1; // ns since epoch
+            int tag;
+            try {
+                while ((tag = in.read()) >= 0) {
+                    if (tag == FrameCapture.TAG_SESSION) {
+                        long sessionStart = TimeUnit.MILLISECONDS.toNanos(in.readLong());
+                        // an appended session continues right after the last frame of the previous one: the time
+                        // between capture sessions is not replayed
+                        if (ts < 0) {
+                            ts = sessionStart;
+                        }
+                        channels.clear();
+                    } else if (tag == FrameCapture.TAG_CHANNEL) {
+                        int id = in.readUnsignedByte();
+                        channels.put(id, in.readUTF());
+                    } else {
+                        if (ts < 0) {
+                            throw new IOException("Invalid capture file: frame found before session start");
+                        }
+                        ts += readVarLong(in);
+                        byte[] bytes = new byte[(int) readVarLong(in)];
+                        in.readFully(bytes);
+                        handler.onFrame(ts, channels.get(tag >>> 2), (tag & 1) != 0, (tag & 2) != 0,
+                                new String(bytes, StandardCharsets.ISO_8859_1));
+                    }
+                }
+            } catch (EOFException e) {
+                logger.debug("##CAPTURE## capture file {} is truncated", file);
+            }
+        }
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Invalid capture file: malformed varint");
+    }
+
+    /**
+     * Prints all frames of the capture file, with their time relative to the first frame
+     *
+     * @param ps the stream to print to
+     * @throws IOException if the capture file cannot be read
+     */
+    public void dump(PrintStream ps) throws IOException {
+        final long[] firstTs = { -1 };
+        try {
+            read((ts, ch, sent, handshake, frame) -> {
+                if (firstTs[0] < 0) {
+                    firstTs[0] = ts;
+                }
+                ps.printf("%12.3f ms  %-10s %s %s%n", (ts - firstTs[0]) / 1e6, ch, sent ? "------->" : "<-------",
+                        handshake ? frame + " (HS)" : frame);
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Event loop driving non-blocking connections ({@link BUSNioConnector}) with a single thread and a {@link Selector}.
+ * The same event loop can be shared by the MON and CMD connections of many gateways. Tasks and timers submitted to
+ * the loop are executed on the loop thread and must never block.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class NioEventLoop {
+
+    private static NioEventLoop defaultLoop;
+
+    private static final AtomicLong timerSeq = new AtomicLong();
+
+    private final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<ScheduledTask> timers = new PriorityQueue<>(); // accessed only by loop thread
+    private volatile boolean running = true;
+
+    /** Handler of events on a channel registered with the event loop */
+    interface SelectionHandler {
+
+        /**
+         * Called on the loop thread when the channel is ready for one of the registered operations
+         *
+         * @param key the {@link SelectionKey} of the channel
+         */
+        void onSelected(SelectionKey key);
+    }
+
+    /** A task scheduled on the event loop, that can be cancelled */
+    public static final class ScheduledTask implements Comparable<ScheduledTask> {
+        private final Runnable task;
+        private final long period;
+        private final long seq = timerSeq.incrementAndGet(); // to keep FIFO order for tasks with same time
+        private long time;
+        private volatile boolean cancelled = false;
+
+        private ScheduledTask(Runnable task, long time, long period) {
+            this.task = task;
+            this.time = time;
+            this.period = period;
+        }
+
+        /** Cancels this task: if it has not been executed yet, it will not be executed */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Check if this task has been cancelled
+         *
+         * @return true if cancelled
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask o) {
+            int c = Long.compare(time, o.time);
+            return (c != 0 ? c : Long.compare(seq, o.seq));
+        }
+    }
+
+    /**
+     * Creates and starts a new event loop, with its own thread
+     *
+     * @param name the name of the event loop thread
+     * @throws IOException if the selector cannot be opened
+     */
+    public NioEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the default event loop, shared by all connectors that do not specify one. It is created and started
+     * on first use.
+     *
+     * @return the default {@link NioEventLoop}
+     * @throws IOException if the event loop cannot be created
+     */
+    public static synchronized NioEventLoop getDefault() throws IOException {
+        if (defaultLoop == null || !defaultLoop.isRunning()) {
+            defaultLoop = new NioEventLoop("OWN-NIO-EventLoop");
+        }
+        return defaultLoop;
+    }
+
+    /**
+     * Check if this event loop is running
+     *
+     * @return true if running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns true if the caller is the event loop thread
+     *
+     * @return true if executing on the event loop thread
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Executes a task on the event loop thread
+     *
+     * @param task the task to execute
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Schedules a task to be executed once on the event loop thread after a delay
+     *
+     * @param task the task to execute
+     * @param delay (ms) the delay
+     * @return the {@link ScheduledTask}, that can be used to cancel it
+     */
+    public ScheduledTask schedule(Runnable task, long delay) {
+        return addTimer(new ScheduledTask(task, System.currentTimeMillis() + delay, 0));
+    }
+
+    /**
+     * Schedules a task to be executed periodically on the event loop thread
+     *
+     * @param task the task to execute
+     * @param delay (ms) the delay before first execution
+     * @param period (ms) the period between executions
+     * @return the {@link ScheduledTask}, that can be used to cancel it
+     */
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long delay, long period) {
+        return addTimer(new ScheduledTask(task, System.currentTimeMillis() + delay, period));
+    }
+
+    private ScheduledTask addTimer(ScheduledTask st) {
+        if (inEventLoop()) {
+            timers.add(st);
+        } else {
+            execute(() -> timers.add(st));
+        }
+        return st;
+    }
+
+    /**
+     * Registers a channel with the event loop selector. Must be called on the event loop thread.
+     *
+     * @param ch the channel to register
+     * @param ops the interest set
+     * @param handler the {@link SelectionHandler} that will handle events for the channel
+     * @return the {@link SelectionKey} of the registered channel
+     * @throws ClosedChannelException if the channel is closed
+     */
+    SelectionKey register(SelectableChannel ch, int ops, SelectionHandler handler) throws ClosedChannelException {
+        return ch.register(selector, ops, handler);
+    }
+
+    /** Stops the event loop and closes its selector. Registered channels are not closed. */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void run() {
+        logger.debug("{} - STARTED", thread.getName());
+        while (running) {
+            try {
+                long timeout = runTimers();
+                if (tasks.isEmpty()) {
+                    if (timeout > 0) {
+                        selector.select(timeout);
+                    } else {
+                        selector.select();
+                    }
+                } else {
+                    selector.selectNow();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (key.isValid()) {
+                        try {
+                            ((SelectionHandler) key.attachment()).onSelected(key);
+                        } catch (Exception e) {
+                            logger.warn("{} - Exception while handling channel event: {}", thread.getName(),
+                                    e.getMessage(), e);
+                        }
+                    }
+                }
+                runTasks();
+            } catch (IOException e) {
+                logger.warn("{} - IOException in event loop: {}", thread.getName(), e.getMessage());
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.debug("{} - IOException while closing selector: {}", thread.getName(), e.getMessage());
+        }
+        logger.debug("{} - thread STOPPED", thread.getName());
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.warn("{} - Exception while executing task: {}", thread.getName(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /* runs expired timers and returns time (ms) to wait for next timer, or 0 if there are no timers */
+    private long runTimers() {
+        ScheduledTask st;
+        while ((st = timers.peek()) != null) {
+            if (st.cancelled) {
+                timers.poll();
+                continue;
+            }
+            long wait = st.time - System.currentTimeMillis();
+            if (wait > 0) {
+                return wait;
+            }
+            timers.poll();
+            try {
+                st.task.run();
+            } catch (Exception e) {
+                logger.warn("{} - Exception while executing timer: {}", thread.getName(), e.getMessage(), e);
+            }
+            if (st.period > 0 && !st.cancelled) {
+                st.time += st.period;
+                timers.add(st);
+            }
+        }
+        return 0;
+    }
+}
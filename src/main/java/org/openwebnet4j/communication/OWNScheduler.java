@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scheduler shared by all connectors and gateways for keepalives, handshake timeouts, command timeouts and
+ * reconnects, so that the number of threads does not grow with the number of connected gateways.
+ * <p>
+ * Tasks scheduled with {@link #schedule(Runnable, long, TimeUnit)} and
+ * {@link #scheduleAtFixedRate(Runnable, long, long, TimeUnit)} are executed on the single scheduler thread and must
+ * be short and never block. Tasks that can block (for example opening a connection) must be scheduled with
+ * {@link #scheduleBlocking(Runnable, long, TimeUnit)}, that executes them on a small pool of worker threads.
+ * All threads are daemon threads; worker threads are terminated when idle.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public final class OWNScheduler {
+
+    public static final int WORKER_THREADS = 4; // max number of blocking tasks executed in parallel
+
+    private static final Logger logger = LoggerFactory.getLogger(OWNScheduler.class);
+
+    private static ScheduledThreadPoolExecutor scheduler;
+    private static ThreadPoolExecutor workers;
+
+    private OWNScheduler() {
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "OWN-scheduler");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.setRemoveOnCancelPolicy(true); // do not keep cancelled timeouts in the queue
+        }
+        return scheduler;
+    }
+
+    private static synchronized ThreadPoolExecutor getWorkers() {
+        if (workers == null) {
+            workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), OWNThreads.newThreadFactory("OWN-worker"));
+            workers.allowCoreThreadTimeOut(true); // no threads left when idle
+        }
+        return workers;
+    }
+
+    /**
+     * Schedules a short, non-blocking task to be executed once after the given delay on the scheduler thread
+     *
+     * @param task the task to execute
+     * @param delay the delay
+     * @param unit the {@link TimeUnit} of the delay
+     * @return a {@link ScheduledFuture} that can be used to cancel the task
+     */
+    public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return getScheduler().schedule(guarded(task), delay, unit);
+    }
+
+    /**
+     * Schedules a short, non-blocking task to be executed periodically on the scheduler thread, until it is cancelled
+     *
+     * @param task the task to execute
+     * @param initialDelay the delay before the first execution
+     * @param period the period between executions
+     * @param unit the {@link TimeUnit} of initialDelay and period
+     * @return a {@link ScheduledFuture} that can be used to cancel the task
+     */
+    public static ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period,
+            TimeUnit unit) {
+        return getScheduler().scheduleAtFixedRate(guarded(task), initialDelay, period, unit);
+    }
+
+    /**
+     * Schedules a task that can block to be executed once after the given delay on a worker thread
+     *
+     * @param task the task to execute
+     * @param delay the delay
+     * @param unit the {@link TimeUnit} of the delay
+     * @return a {@link CompletableFuture} completed when the task has been executed, or exceptionally with the
+     *         exception thrown by the task. Cancelling it before the delay expires prevents the task from being
+     *         executed.
+     */
+    public static CompletableFuture<Void> scheduleBlocking(Runnable task, long delay, TimeUnit unit) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        ScheduledFuture<?> timer = getScheduler().schedule(() -> {
+            if (!result.isDone()) {
+                getWorkers().execute(() -> {
+                    if (result.isDone()) {
+                        return; // cancelled while waiting for a worker
+                    }
+                    try {
+                        task.run();
+                        result.complete(null);
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+                });
+            }
+        }, delay, unit);
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                timer.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /* an exception thrown by a periodic task would suppress its next executions: log it instead */
+    private static Runnable guarded(Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.warn("##OPEN-conn## Error in scheduled task: {}", e.getMessage());
+            }
+        };
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads used by the library: receive loops, command dispatchers, listener notifiers and scheduler
+ * workers. On Java 21+ virtual threads can be enabled with {@link #setVirtualThreadsEnabled(boolean)}, so that
+ * blocking receive loops and commands cost almost nothing and a single JVM can hold thousands of gateway connections.
+ * On older Java versions platform threads are always used.
+ * <p>
+ * The Java 21 implementation of this class is provided in {@code META-INF/versions/21} of the multi-release JAR.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public final class OWNThreads {
+
+    private OWNThreads() {
+    }
+
+    /**
+     * Returns true if virtual threads are supported by the running JVM
+     *
+     * @return true on Java 21+
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return false;
+    }
+
+    /**
+     * Returns true if virtual threads are enabled
+     *
+     * @return true if new threads are created as virtual threads
+     */
+    public static boolean isVirtualThreadsEnabled() {
+        return false;
+    }
+
+    /**
+     * Enables virtual threads (default: disabled). Affects only threads and executors created after this call, so it
+     * should be called before creating gateways.
+     *
+     * @param enabled true to create new threads as virtual threads
+     * @throws UnsupportedOperationException if enabled is true and virtual threads are not supported (Java &lt; 21)
+     */
+    public static void setVirtualThreadsEnabled(boolean enabled) {
+        if (enabled) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        }
+    }
+
+    /**
+     * Creates a new (not started) thread
+     *
+     * @param name the thread name
+     * @param task the task executed by the thread
+     * @return the thread
+     */
+    public static Thread newThread(String name, Runnable task) {
+        return new Thread(task, name);
+    }
+
+    /**
+     * Returns a factory of daemon threads named prefix-1, prefix-2, ...
+     *
+     * @param prefix the thread names prefix
+     * @return the thread factory
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        AtomicInteger threadNum = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
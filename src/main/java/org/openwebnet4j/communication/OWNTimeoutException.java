@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+/**
+ * Exception thrown when the response to a command is not received before the command deadline
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class OWNTimeoutException extends OWNException {
+
+    private static final long serialVersionUID = 564111573600047L;
+
+    /** Constructs a new <code>OWNTimeoutException</code> without a detail message. */
+    public OWNTimeoutException() {
+    }
+
+    /**
+     * Constructs a new <code>OWNTimeoutException</code> with the specified detail message.
+     *
+     * @param s the detail message
+     */
+    public OWNTimeoutException(final String s) {
+        super(s);
+    }
+
+    /**
+     * Constructs a new <code>OWNTimeoutException</code> with the specified detail message and cause.
+     *
+     * @param s the detail message
+     * @param cause the cause in form of a throwable object, can be <code>null</code>
+     */
+    public OWNTimeoutException(final String s, final Throwable cause) {
+        super(s, cause);
+    }
+}
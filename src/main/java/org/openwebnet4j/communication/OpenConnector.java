@@ -16,13 +16,24 @@ package org.openwebnet4j.communication;
 
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openwebnet4j.message.AckOpenMessage;
+import org.openwebnet4j.message.BaseOpenMessage;
 import org.openwebnet4j.message.FrameException;
 import org.openwebnet4j.message.GatewayMgmt;
 import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.Who;
+import org.openwebnet4j.metrics.OWNMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -48,8 +59,49 @@ public abstract class OpenConnector {
     protected OWNReceiveThread monRcvThread;
 
     protected ConnectorListener listener;
-    protected ExecutorService notifierExecutor = Executors.newSingleThreadExecutor(); // single thread executor to
-    // notify listener
+    private final LinkedBlockingQueue<Runnable> notifierQueue = new LinkedBlockingQueue<>();
+    protected ExecutorService notifierExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            notifierQueue, OWNThreads.newThreadFactory("OWN-notifier")); // single thread executor to notify listener
+
+    protected volatile OWNMetrics metrics = OWNMetrics.NOOP;
+    protected volatile FrameCapture frameCapture; // null if frames are not captured
+
+    protected final CommandQueue cmdQueue = new CommandQueue();
+    protected CommandTimeouts commandTimeouts = new CommandTimeouts();
+    private ThreadPoolExecutor cmdDispatcher; // executor to send queued commands, created on first use
+    private int cmdDispatcherThreads = 1; // max number of commands sent in parallel by cmdDispatcher
+
+    private volatile boolean coalesceRequests = true;
+    private final ConcurrentHashMap<String, Flight> inFlightRequests = new ConcurrentHashMap<>();
+    private final AtomicLong coalescedRequests = new AtomicLong();
+
+    /** A status/dimension request waiting for its response, shared by all callers sending the same frame */
+    private static class Flight {
+        private final CompletableFuture<Response> future;
+        private PendingCommand cmd; // the command sending the request, replaced when promoted, guarded by this
+        private int waiters = 0; // callers waiting for the response, guarded by this
+
+        private Flight(PendingCommand cmd) {
+            this.future = cmd.future;
+            this.cmd = cmd;
+        }
+
+        /* adds a caller, returns false if the flight cannot be joined anymore */
+        private synchronized boolean join() {
+            if (future.isDone()) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /* removes a caller that does not want the response anymore: the request is cancelled if no one wants it */
+        private synchronized void leave() {
+            if (--waiters == 0) {
+                future.cancel(false); // under lock, so that no one can join a flight being cancelled
+            }
+        }
+    }
 
     /**
      * Opens command (CMD) connection
@@ -109,27 +161,465 @@ public abstract class OpenConnector {
      * @return {@link Response} object with messages received as response
      * @throws OWNException in case of error while sending command frame or reading response
      */
-    // TODO add timeout??
-    public synchronized Response sendCommandSynch(String frame) throws OWNException {
+    public Response sendCommandSynch(String frame) throws OWNException {
+        return sendCommandSynch(frame, CommandPriority.NORMAL);
+    }
+
+    /**
+     * Send a command frame String on the connection with the given priority, waits for a {@link AckOpenMessage}
+     * (ACN/NACK) or timeout and returns the received messages in a {@link Response} object
+     *
+     * @param frame the frame String to send
+     * @param priority the {@link CommandPriority} of the command
+     * @return {@link Response} object with messages received as response
+     * @throws OWNException in case of error while sending command frame or reading response
+     */
+    public Response sendCommandSynch(String frame, CommandPriority priority) throws OWNException {
         if (!isCmdConnected()) {
             throw new OWNException("CMD is not connected");
         }
+        CompletableFuture<Response> future = sendCommandAsync(frame, priority);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OWNException) {
+                throw (OWNException) e.getCause();
+            }
+            throw new OWNException(
+                    "Exception while sending frame " + frame + " or reading response: " + e.getCause().getMessage(),
+                    e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new OWNException("Interrupted while waiting response to command " + frame, e);
+        }
+    }
+
+    /**
+     * Sends a command frame String on the connection and reads the response, without going through the
+     * {@link CommandQueue}. The timeout set in {@link CommandTimeouts} for the frame is used.
+     *
+     * @param frame the frame String to send
+     * @return {@link Response} object with messages received as response
+     * @throws IOException in case of error while sending command frame or reading response
+     * @throws FrameException in case of invalid frame
+     */
+    protected Response sendCommandSynchInternal(String frame) throws IOException, FrameException {
+        return sendCommandSynchInternal(frame, commandTimeouts.getTimeout(frame));
+    }
+
+    /**
+     * Sends a command frame String on the connection and reads the response, without going through the
+     * {@link CommandQueue}. If the final response is not received within timeout, the connection used to send the
+     * command must be recycled (so that a late response is not taken as response to next command) and a
+     * {@link SocketTimeoutException} thrown.
+     *
+     * @param frame the frame String to send
+     * @param timeout (ms) max time to wait for the final response after the frame has been sent
+     * @return {@link Response} object with messages received as response
+     * @throws SocketTimeoutException if the final response is not received within timeout
+     * @throws IOException in case of error while sending command frame or reading response
+     * @throws FrameException in case of invalid frame
+     */
+    protected abstract Response sendCommandSynchInternal(String frame, long timeout)
+            throws IOException, FrameException;
+
+    /**
+     * Send a command frame String on the connection without waiting for the response. The returned
+     * {@link CompletableFuture} is completed with the {@link Response} when a {@link AckOpenMessage} (ACK/NACK) is
+     * received, or exceptionally with an {@link OWNException} in case of error while sending command frame or reading
+     * response. Cancelling the future before the frame has been sent removes the command from the send queue.
+     *
+     * @param frame the frame String to send
+     * @return a {@link CompletableFuture} for the {@link Response}
+     */
+    public CompletableFuture<Response> sendCommandAsync(String frame) {
+        return sendCommandAsync(frame, CommandPriority.NORMAL);
+    }
+
+    /**
+     * Same as {@link #sendCommandAsync(String)}, with the given priority: the command is added to the
+     * {@link CommandQueue} and it will be sent before waiting commands with lower priority.
+     *
+     * @param frame the frame String to send
+     * @param priority the {@link CommandPriority} of the command
+     * @return a {@link CompletableFuture} for the {@link Response}
+     */
+    public CompletableFuture<Response> sendCommandAsync(String frame, CommandPriority priority) {
+        if (coalesceRequests && isReadRequest(frame)) {
+            return sendCoalesced(frame, priority);
+        }
+        return enqueueCommand(new PendingCommand(frame, priority, new CompletableFuture<>()));
+    }
+
+    /* joins the in-flight request with the same frame, or sends a new one; each caller gets its own future */
+    private CompletableFuture<Response> sendCoalesced(String frame, CommandPriority priority) {
+        CompletableFuture<Response> callerFuture = new CompletableFuture<>();
+        Flight flight;
+        while (true) {
+            Flight current = inFlightRequests.get(frame);
+            if (current != null && current.join()) {
+                coalescedRequests.incrementAndGet();
+                logger.debug("##OPEN-conn## request {} coalesced with in-flight request", frame);
+                flight = current;
+                promote(flight, priority);
+                break;
+            }
+            Flight newFlight = new Flight(new PendingCommand(frame, priority, new CompletableFuture<>()));
+            newFlight.join();
+            if (current == null ? inFlightRequests.putIfAbsent(frame, newFlight) == null
+                    : inFlightRequests.replace(frame, current, newFlight)) {
+                flight = newFlight;
+                flight.future.whenComplete((r, e) -> inFlightRequests.remove(frame, newFlight));
+                enqueueCommand(newFlight.cmd);
+                break;
+            }
+        }
+        Flight joined = flight;
+        joined.future.whenComplete((r, e) -> {
+            if (e != null) {
+                callerFuture.completeExceptionally(e);
+            } else {
+                callerFuture.complete(r);
+            }
+        });
+        callerFuture.whenComplete((r, e) -> {
+            if (callerFuture.isCancelled() && !joined.future.isDone()) {
+                joined.leave();
+            }
+        });
+        return callerFuture;
+    }
+
+    /* a caller with higher priority joined the flight: if the request is still in queue, re-queue it with the
+     * caller priority */
+    private void promote(Flight flight, CommandPriority priority) {
+        synchronized (flight) {
+            PendingCommand cmd = flight.cmd;
+            if (priority.ordinal() >= cmd.priority.ordinal() || !cmdQueue.remove(cmd)) {
+                return;
+            }
+            flight.cmd = new PendingCommand(cmd.frame, priority, cmd.future, cmd.createdTs);
+            cmdQueue.add(flight.cmd);
+            logger.debug("##OPEN-conn## request {} promoted from {} to {}", cmd.frame, cmd.priority, priority);
+        }
+        commandQueued();
+    }
+
+    /**
+     * Check if a frame is a request not changing the state of devices, that can be shared by concurrent callers:
+     * a status request <code>*#WHO*WHERE##</code> or a dimension request <code>*#WHO*WHERE*DIM##</code>
+     *
+     * @param frame the frame
+     * @return true if frame is a status or dimension request
+     */
+    static boolean isReadRequest(String frame) {
+        if (!frame.startsWith(OpenMessage.FRAME_START_DIM)
+                || frame.startsWith(OpenMessage.FRAME_ACK_NACK_BUSY_START)) {
+            return false;
+        }
+        int stars = 0;
+        for (int i = 2; i < frame.length(); i++) {
+            if (frame.charAt(i) == '*') {
+                if (++stars > 2 || (i + 1 < frame.length() && frame.charAt(i + 1) == '#')) {
+                    return false; // dimension values or dimension writing
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Enables/disables coalescing of requests (default: enabled). When enabled, a status or dimension request sent
+     * while the same request is already waiting in queue or for its response is not sent again: all callers get the
+     * same response. If the request is still in queue, it is moved to the highest priority among its callers.
+     * Requests sent with a timeout are never coalesced.
+     *
+     * @param coalesce true to enable coalescing
+     */
+    public void setCoalesceRequests(boolean coalesce) {
+        this.coalesceRequests = coalesce;
+    }
+
+    /**
+     * Check if coalescing of requests is enabled
+     *
+     * @return true if enabled
+     */
+    public boolean isCoalesceRequests() {
+        return coalesceRequests;
+    }
+
+    /**
+     * Returns the number of requests that have not been sent because they have been coalesced with the same
+     * in-flight request
+     *
+     * @return number of coalesced requests
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    private CompletableFuture<Response> enqueueCommand(PendingCommand cmd) {
+        if (metrics != OWNMetrics.NOOP) {
+            final long start = System.nanoTime();
+            cmd.future.whenComplete((r, e) -> recordCommand(cmd.frame, r, e, System.nanoTime() - start));
+        }
+        if (!isCmdConnected()) {
+            cmd.future.completeExceptionally(new OWNException("CMD is not connected"));
+        } else {
+            cmdQueue.add(cmd);
+            commandQueued();
+        }
+        return cmd.future;
+    }
+
+    /**
+     * Same as {@link #sendCommandAsync(String)}, but the returned future is completed exceptionally with a
+     * {@link OWNTimeoutException} if the response is not received within the given timeout
+     *
+     * @param frame the frame String to send
+     * @param timeout the timeout
+     * @param unit the {@link TimeUnit} of the timeout
+     * @return a {@link CompletableFuture} for the {@link Response}
+     */
+    public CompletableFuture<Response> sendCommandAsync(String frame, long timeout, TimeUnit unit) {
+        return sendCommandAsync(frame, CommandPriority.NORMAL, timeout, unit);
+    }
+
+    /**
+     * Same as {@link #sendCommandAsync(String, CommandPriority)}, but the returned future is completed exceptionally
+     * with a {@link OWNTimeoutException} if the response is not received within the given timeout, time spent in
+     * queue included. If the timeout expires after the command has been sent, the connection is recycled.
+     *
+     * @param frame the frame String to send
+     * @param priority the {@link CommandPriority} of the command
+     * @param timeout the timeout
+     * @param unit the {@link TimeUnit} of the timeout
+     * @return a {@link CompletableFuture} for the {@link Response}
+     */
+    public CompletableFuture<Response> sendCommandAsync(String frame, CommandPriority priority, long timeout,
+            TimeUnit unit) {
+        PendingCommand cmd = new PendingCommand(frame, priority, new CompletableFuture<>());
+        cmd.deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+        CompletableFuture<Response> future = enqueueCommand(cmd);
+        if (!future.isDone()) {
+            ScheduledFuture<?> timeoutTask = OWNScheduler.schedule(() -> {
+                if (future.completeExceptionally(new OWNTimeoutException(
+                        "Timeout (" + unit.toMillis(timeout) + "ms) while waiting response to command " + frame))) {
+                    logger.debug("##OPEN-conn## timeout expired while waiting response to command {}", frame);
+                }
+            }, timeout, unit);
+            future.whenComplete((r, e) -> timeoutTask.cancel(false));
+        }
+        return future;
+    }
+
+    /**
+     * Cancels a command sent with {@link #sendCommandAsync(String)} only if it is still waiting in the
+     * {@link CommandQueue}: commands already sent, and requests shared with other callers (see
+     * {@link #setCoalesceRequests(boolean)}), are not affected.
+     *
+     * @param future the future returned when sending the command
+     * @return true if the command has been removed from the queue and its future cancelled
+     */
+    public boolean cancelQueued(CompletableFuture<Response> future) {
+        return cmdQueue.remove(future) != null && future.cancel(false);
+    }
+
+    /**
+     * Returns the {@link CommandQueue} of this connector, with its statistics
+     *
+     * @return the {@link CommandQueue}
+     */
+    public CommandQueue getCommandQueue() {
+        return cmdQueue;
+    }
+
+    /**
+     * Returns the {@link CommandTimeouts} used by this connector
+     *
+     * @return the {@link CommandTimeouts}
+     */
+    public CommandTimeouts getCommandTimeouts() {
+        return commandTimeouts;
+    }
+
+    /**
+     * Sets the {@link CommandTimeouts} to be used by this connector
+     *
+     * @param commandTimeouts the {@link CommandTimeouts}
+     */
+    public void setCommandTimeouts(CommandTimeouts commandTimeouts) {
+        this.commandTimeouts = commandTimeouts;
+    }
+
+    /**
+     * Returns the time to wait for the response to a command that is going to be sent: the timeout set in
+     * {@link CommandTimeouts}, or less if the command has a deadline
+     *
+     * @param cmd the command
+     * @return (ms) the timeout, or a value &lt;= 0 if the command deadline has already expired
+     */
+    long getCommandTimeout(PendingCommand cmd) {
+        long timeout = commandTimeouts.getTimeout(cmd.frame);
+        if (cmd.deadline > 0) {
+            timeout = Math.min(timeout, cmd.deadline - System.currentTimeMillis());
+        }
+        return timeout;
+    }
+
+    /**
+     * Called after a command has been added to the {@link CommandQueue}. Default implementation sends commands from
+     * the queue using {@link #sendCommandSynchInternal(String, long)} on dispatcher threads (see
+     * {@link #setCmdDispatcherThreads(int)}); connectors able to complete responses directly from their CMD read
+     * path should override it.
+     */
+    protected void commandQueued() {
+        getCmdDispatcher().execute(this::dispatchNextCommand);
+    }
+
+    /* sends the next command in queue and completes its future: executed on the dispatcher thread */
+    private void dispatchNextCommand() {
+        PendingCommand cmd = cmdQueue.poll();
+        if (cmd == null) {
+            return;
+        }
+        if (!isCmdConnected()) {
+            cmd.future.completeExceptionally(new OWNException("CMD is not connected"));
+            return;
+        }
+        String frame = cmd.frame;
+        long timeout = getCommandTimeout(cmd);
+        if (timeout <= 0) {
+            cmd.future.completeExceptionally(
+                    new OWNTimeoutException("Deadline expired before sending command " + frame));
+            return;
+        }
         try {
-            return sendCommandSynchInternal(frame);
+            cmd.future.complete(sendCommandSynchInternal(frame, timeout));
+        } catch (SocketTimeoutException e) {
+            logger.debug("##OPEN-conn## Timeout ({}ms) while waiting response to command {}", timeout, frame);
+            cmd.future.completeExceptionally(new OWNTimeoutException(
+                    "Timeout (" + timeout + "ms) while waiting response to command " + frame, e));
         } catch (IOException e) {
             logger.debug("##OPEN-conn## IOException while sending frame {} or reading response: {}", frame,
                     e.getMessage());
-            throw new OWNException(
-                    "IOException while sending frame " + frame + " or reading response: " + e.getMessage(), e);
+            cmd.future.completeExceptionally(new OWNException(
+                    "IOException while sending frame " + frame + " or reading response: " + e.getMessage(), e));
         } catch (FrameException e) {
             logger.warn("##OPEN-conn## FrameException while sending frame {} or reading response: {}", frame,
                     e.getMessage());
-            throw new OWNException(
-                    "FrameException while sending frame " + frame + " or reading response: " + e.getMessage(), e);
+            cmd.future.completeExceptionally(new OWNException(
+                    "FrameException while sending frame " + frame + " or reading response: " + e.getMessage(), e));
+        } catch (RuntimeException e) {
+            cmd.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the max number of commands that the default dispatcher sends in parallel, calling
+     * {@link #sendCommandSynchInternal(String, long)} from different threads. Default is 1.
+     *
+     * @param threads number of dispatcher threads (must be &gt; 0)
+     */
+    protected synchronized void setCmdDispatcherThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("CMD dispatcher threads must be > 0");
+        }
+        if (cmdDispatcher != null) {
+            if (threads > cmdDispatcherThreads) {
+                cmdDispatcher.setMaximumPoolSize(threads);
+                cmdDispatcher.setCorePoolSize(threads);
+            } else {
+                cmdDispatcher.setCorePoolSize(threads);
+                cmdDispatcher.setMaximumPoolSize(threads);
+            }
+        }
+        cmdDispatcherThreads = threads;
+    }
+
+    private synchronized ExecutorService getCmdDispatcher() {
+        if (cmdDispatcher == null) {
+            cmdDispatcher = new ThreadPoolExecutor(cmdDispatcherThreads, cmdDispatcherThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), OWNThreads.newThreadFactory("OWN-CMD-dispatcher"));
+            cmdDispatcher.allowCoreThreadTimeOut(true); // no threads left when idle
+        }
+        return cmdDispatcher;
+    }
+
+    private void recordCommand(String frame, Response res, Throwable e, long durationNanos) {
+        OWNMetrics.Outcome outcome;
+        if (e == null) {
+            OpenMessage fin = res.getFinalResponse();
+            if (fin != null && fin.isACK()) {
+                outcome = OWNMetrics.Outcome.ACK;
+            } else if (fin != null && fin.isBUSY_NACK()) {
+                outcome = OWNMetrics.Outcome.BUSY_NACK;
+            } else {
+                outcome = OWNMetrics.Outcome.NACK;
+            }
+        } else if (e instanceof OWNTimeoutException
+                || (e instanceof CompletionException && e.getCause() instanceof OWNTimeoutException)) {
+            outcome = OWNMetrics.Outcome.TIMEOUT;
+        } else {
+            outcome = OWNMetrics.Outcome.ERROR;
         }
+        metrics.commandCompleted(whoOf(frame), outcome, durationNanos);
     }
 
-    protected abstract Response sendCommandSynchInternal(String frame) throws IOException, FrameException;
+    /* returns the WHO of a command or request frame, without parsing the whole frame */
+    static Who whoOf(String frame) {
+        int start = frame.startsWith("*#") ? 2 : 1;
+        int value = 0;
+        int i = start;
+        for (; i < frame.length() && i < start + 5; i++) {
+            char c = frame.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return (i > start && Who.isValidValue(value) ? Who.fromValue(value) : null);
+    }
+
+    /**
+     * Returns the {@link OWNMetrics} of this connector
+     *
+     * @return the metrics
+     */
+    public OWNMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the {@link OWNMetrics} receiving measurements from this connector (default: {@link OWNMetrics#NOOP})
+     *
+     * @param metrics the metrics
+     */
+    public void setMetrics(OWNMetrics metrics) {
+        this.metrics = metrics;
+        metrics.registerNotifierQueue(notifierQueue::size);
+    }
+
+    /**
+     * Returns the {@link FrameCapture} recording frames of this connector
+     *
+     * @return the capture, or null if frames are not captured
+     */
+    public FrameCapture getFrameCapture() {
+        return frameCapture;
+    }
+
+    /**
+     * Sets the {@link FrameCapture} recording frames sent and received on connections opened after this call
+     *
+     * @param capture the capture, or null to not capture frames of new connections
+     */
+    public void setFrameCapture(FrameCapture capture) {
+        this.frameCapture = capture;
+    }
 
     /**
      * Process a frame string received
@@ -145,10 +635,13 @@ public abstract class OpenConnector {
      */
     protected void notifyListener(OpenMessage msg) {
         logger.trace("notifyListener for message: {}", msg);
+        metrics.eventReceived(msg instanceof BaseOpenMessage ? ((BaseOpenMessage) msg).getWho() : null);
         notifierExecutor.submit(() -> {
             try {
-                logger.trace("##OPEN-conn## notifyListener:Executing EXECUTOR : {}, message={}",
-                        Thread.currentThread().getName(), msg);
+                if (logger.isTraceEnabled()) {
+                    logger.trace("##OPEN-conn## notifyListener:Executing EXECUTOR : {}, message={}",
+                            Thread.currentThread().getName(), msg);
+                }
                 listener.onMessage(msg);
             } catch (Exception e) {
                 logger.warn("##OPEN-conn## Error while notifying message {} to listener: {}", msg, e.getMessage());
@@ -157,6 +650,20 @@ public abstract class OpenConnector {
         });
     }
 
+    /**
+     * Starts the receive loop of a {@link OWNReceiveThread}: if virtual threads are enabled (see {@link OWNThreads})
+     * the loop runs on a new virtual thread, otherwise the OWNReceiveThread itself is started
+     *
+     * @param receiveThread the {@link OWNReceiveThread} to start
+     */
+    protected void startReceiveThread(OWNReceiveThread receiveThread) {
+        if (OWNThreads.isVirtualThreadsEnabled()) {
+            OWNThreads.newThread(receiveThread.getName(), receiveThread).start();
+        } else {
+            receiveThread.start();
+        }
+    }
+
     /** OWNReceiveThread is a thread to read frames from MON InputStream */
     protected class OWNReceiveThread extends Thread {
 
@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.openwebnet4j.message.OpenMessage;
+
+/**
+ * A command frame waiting to be sent, or waiting for its response, together with the {@link CompletableFuture} to be
+ * completed when the final response (ACK/NACK) has been received.
+ *
+ * @author M. Valla - Initial contribution
+ */
+class PendingCommand {
+    final String frame;
+    final CommandPriority priority;
+    final CompletableFuture<Response> future;
+    final long createdTs;
+    long deadline = 0; // (ms timestamp) time by which the response must be received, 0 if not set
+
+    OpenMessage msg; // parsed when the frame is actually sent
+    Response response; // created when the frame is actually sent
+    Object sentOn; // the connection the frame has been sent on
+    boolean retried = false; // true if the frame has already been re-sent on a new connection
+
+    PendingCommand(String frame, CommandPriority priority, CompletableFuture<Response> future) {
+        this(frame, priority, future, System.currentTimeMillis());
+    }
+
+    PendingCommand(String frame, CommandPriority priority, CompletableFuture<Response> future, long createdTs) {
+        this.frame = frame;
+        this.priority = priority;
+        this.future = future;
+        this.createdTs = createdTs;
+    }
+
+    /**
+     * Returns true if the command does not need to be sent anymore (it was cancelled or it timed out)
+     *
+     * @return true if the command future is already completed
+     */
+    boolean isDone() {
+        return future.isDone();
+    }
+}
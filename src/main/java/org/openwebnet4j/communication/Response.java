@@ -33,7 +33,7 @@ public class Response {
     private final List<OpenMessage> responses = new ArrayList<>();
     boolean isSuccess;
 
-    private final Logger logger = LoggerFactory.getLogger(Response.class);
+    private static final Logger logger = LoggerFactory.getLogger(Response.class);
 
     /**
      * Creates a {@link Response} object associated to the request message
@@ -93,8 +93,8 @@ public class Response {
     protected synchronized void addResponse(OpenMessage msg) {
         responses.add(msg);
         logger.debug("{}   <<add   {}", requestMessage, msg);
-        logger.debug("now: {}   <<==    {}", requestMessage, getResponseMessages());
-        if (msg.isACK() || msg.isNACK()) { // ACK/NACK -> the response is final
+        logger.trace("now: {}   <<==    {}", requestMessage, responses);
+        if (msg.isACK() || msg.isNACK() || msg.isBUSY_NACK()) { // ACK/NACK/BUSY_NACK -> the response is final
             finalResponse = msg;
             if (msg.isACK()) {
                 isSuccess = true;
@@ -103,9 +103,9 @@ public class Response {
     }
 
     /**
-     * Returns true if an ACK/NACK has been received
+     * Returns true if an ACK/NACK/BUSY_NACK has been received
      *
-     * @return true if an ACK/NACK has been received
+     * @return true if an ACK/NACK/BUSY_NACK has been received
      */
     protected boolean hasFinalResponse() {
         return finalResponse != null;
@@ -121,12 +121,29 @@ public class Response {
                 e.printStackTrace();
             }
         } else {
-            logger.debug("REQ={} has already a final response set (={}) -> no need to wait", requestMessage.toString(),
+            logger.debug("REQ={} has already a final response set (={}) -> no need to wait", requestMessage,
                     finalResponse);
         }
     }
 
+    /**
+     * Waits until an ACK/NACK has been received, or timeout expires
+     *
+     * @param timeout (ms) max time to wait
+     * @return true if an ACK/NACK has been received, false if timeout expired
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    protected synchronized boolean waitResponse(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long remaining = timeout;
+        while (finalResponse == null && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return finalResponse != null;
+    }
+
     protected synchronized void responseReady() {
-        notify();
+        notifyAll();
     }
 }
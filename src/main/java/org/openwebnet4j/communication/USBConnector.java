@@ -15,6 +15,8 @@
 package org.openwebnet4j.communication;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.util.Enumeration;
 import java.util.TooManyListenersException;
 
@@ -154,6 +156,8 @@ public class USBConnector extends OpenConnector implements SerialPortEventListen
         if (serialPort == null) {
             serialPort = connectSerialPort(portN);
             cmdChannel = new FrameChannel(serialPort.getInputStream(), serialPort.getOutputStream(), "USB");
+            cmdChannel.handshakeCompleted = true; // no handshake with USB gateways
+            cmdChannel.setCapture(frameCapture);
         }
         try {
             // send requestKeepConnect to see if USB stick is ready to receive commands
@@ -290,8 +294,8 @@ public class USBConnector extends OpenConnector implements SerialPortEventListen
     }
 
     @Override
-    protected synchronized Response sendCommandSynchInternal(String frame) throws IOException, FrameException {
-        // TODO add timeout?
+    protected synchronized Response sendCommandSynchInternal(String frame, long timeout)
+            throws IOException, FrameException {
         OpenMessage msg = BaseOpenMessage.parse(frame);
         OpenMessage fixedMsg = fixInvertedUpDownBug(msg);
         synchronized (requestSentSynchObj) {
@@ -302,14 +306,27 @@ public class USBConnector extends OpenConnector implements SerialPortEventListen
             lastCmdFrameSentTs = System.currentTimeMillis();
             msgLogger.info("USB-CMD ====>>>> {}", frameSend);
         }
+        final Response res = currentResponse;
+        boolean complete = false;
         try {
-            currentResponse.waitResponse();
+            complete = res.waitResponse(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (requestSentSynchObj) {
+                currentResponse = null; // a late ACK/NACK will be discarded by processFrame()
+            }
+        }
+        if (!complete) {
+            msgLogger.info("USB-CMD <<<<==== X [timeout]");
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted while waiting response to command " + frame);
+            }
+            throw new SocketTimeoutException("Timeout while waiting response to command " + frame);
+        }
+        if (logger.isDebugEnabled()) {
             logger.debug("##USB-conn## [{}] response COMPLETE!", Thread.currentThread().getName());
-        } catch (IllegalMonitorStateException e) {
-            e.printStackTrace();
         }
-        final Response res = currentResponse;
-        currentResponse = null;
         msgLogger.info("USB-CMD <<<<==== {}", res.getResponseMessages());
         return res;
     }
@@ -322,9 +339,11 @@ public class USBConnector extends OpenConnector implements SerialPortEventListen
             msg = BaseOpenMessage.parse(newFrame);
         } catch (UnsupportedFrameException e) {
             logger.info("##USB-conn## UNSUPPORTED FRAME: {}, skipping it", newFrame);
+            metrics.frameParseFailed(true);
             return;
         } catch (FrameException e) {
             logger.warn("##USB-conn## INVALID FRAME: {}, skipping it", newFrame);
+            metrics.frameParseFailed(false);
             return;
         }
         synchronized (requestSentSynchObj) {
@@ -345,7 +364,6 @@ public class USBConnector extends OpenConnector implements SerialPortEventListen
                     eventLogger.info("USB-MON <<<<<<<< {}", msg.getFrameValue());
                     notifyListener(msg);
                 } else { // add them to the response object
-                    // TODO handle the BUSY_NACK case
                     msgLogger.debug("USB-CMD   <<==   {}", newFrame);
                     currentResponse.addResponse(msg);
                 }
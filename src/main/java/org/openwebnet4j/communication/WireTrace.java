@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-frame traffic trace: every frame written to or read from a gateway channel is logged at DEBUG level to the
+ * dedicated {@value #LOGGER_NAME} logger, so that wire traffic can be enabled independently from the connector logs.
+ * To avoid flooding the log on busy installations at most {@link #getMaxFramesPerSecond()} frames per second are
+ * traced; the number of frames skipped is logged when the next second starts.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public final class WireTrace {
+
+    public static final String LOGGER_NAME = "org.openwebnet4j.wire";
+
+    public static final int DEFAULT_MAX_FRAMES_PER_SECOND = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private static volatile int maxFramesPerSecond = DEFAULT_MAX_FRAMES_PER_SECOND;
+
+    // rate limit window, guarded by WireTrace.class
+    private static long windowStart = 0;
+    private static int tracedInWindow = 0;
+    private static int skippedInWindow = 0;
+
+    private WireTrace() {
+    }
+
+    /**
+     * Returns the maximum number of frames traced per second
+     *
+     * @return frames per second, 0 means no limit
+     */
+    public static int getMaxFramesPerSecond() {
+        return maxFramesPerSecond;
+    }
+
+    /**
+     * Sets the maximum number of frames traced per second (default: {@value #DEFAULT_MAX_FRAMES_PER_SECOND})
+     *
+     * @param max frames per second, 0 means no limit
+     */
+    public static void setMaxFramesPerSecond(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("max frames per second must be >= 0");
+        }
+        maxFramesPerSecond = max;
+    }
+
+    /**
+     * Returns true if the wire trace is enabled
+     *
+     * @return true if the wire trace logger is enabled at DEBUG level
+     */
+    static boolean isEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    /**
+     * Traces a frame sent on a channel
+     *
+     * @param channel the channel name
+     * @param frame the frame
+     */
+    static void sent(String channel, String frame) {
+        if (logger.isDebugEnabled() && acquire()) {
+            logger.debug("-FC-{} -------> {}", channel, frame);
+        }
+    }
+
+    /**
+     * Traces a frame received on a channel
+     *
+     * @param channel the channel name
+     * @param frame the frame
+     */
+    static void received(String channel, Object frame) {
+        if (logger.isDebugEnabled() && acquire()) {
+            logger.debug("-FC-{} <------- {}", channel, frame);
+        }
+    }
+
+    private static boolean acquire() {
+        int max = maxFramesPerSecond;
+        if (max == 0) {
+            return true;
+        }
+        int skipped = 0;
+        boolean traced;
+        synchronized (WireTrace.class) {
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= 1000) {
+                skipped = skippedInWindow;
+                windowStart = now;
+                tracedInWindow = 0;
+                skippedInWindow = 0;
+            }
+            traced = tracedInWindow < max;
+            if (traced) {
+                tracedInWindow++;
+            } else {
+                skippedInWindow++;
+            }
+        }
+        if (skipped > 0) {
+            logger.debug("-FC- {} frames not traced (limit: {} frames/s)", skipped, max);
+        }
+        return traced;
+    }
+}
@@ -16,9 +16,6 @@ package org.openwebnet4j.message;
 
 import static java.lang.String.format;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -54,7 +51,7 @@ public class Alarm extends BaseOpenMessage {
         STOP_PROGRAMMING(27),
         ZONE_ALARM_SILENT(31);
 
-        private static Map<Integer, WhatAlarm> mapping;
+        private static final ValueLookup<WhatAlarm> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -62,18 +59,18 @@ public class Alarm extends BaseOpenMessage {
             this.value = value;
         }
 
+        /**
+         * Does nothing: the mapping from values is now built when the enum is initialised
+         *
+         * @deprecated not needed anymore, will be removed in a future version
+         */
+        @Deprecated
         public static void initMapping() {
-            mapping = new HashMap<Integer, WhatAlarm>();
-            for (WhatAlarm w : values()) {
-                mapping.put(w.value, w);
-            }
+            // mapping is built at class initialisation
         }
 
         public static WhatAlarm fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -113,7 +110,7 @@ public class Alarm extends BaseOpenMessage {
     @Override
     protected void parseWhere() throws FrameException {
         if (whereStr != null) {
-            where = new WhereAlarm(whereStr);
+            where = WhereAlarm.of(whereStr);
         }
     }
 
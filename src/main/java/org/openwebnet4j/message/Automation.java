@@ -16,9 +16,6 @@ package org.openwebnet4j.message;
 
 import static java.lang.String.format;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -33,7 +30,7 @@ public class Automation extends BaseOpenMessage {
         UP(1),
         DOWN(2);
 
-        private static Map<Integer, WhatAutomation> mapping;
+        private static final ValueLookup<WhatAutomation> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -41,18 +38,8 @@ public class Automation extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatAutomation>();
-            for (WhatAutomation w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatAutomation fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -70,7 +57,7 @@ public class Automation extends BaseOpenMessage {
         SHUTTER_STATUS(10),
         GOTO_LEVEL(11);
 
-        private static Map<Integer, DimAutomation> mapping;
+        private static final ValueLookup<DimAutomation> LOOKUP = ValueLookup.of(values(), d -> d.value);
 
         private final int value;
 
@@ -78,18 +65,8 @@ public class Automation extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, DimAutomation>();
-            for (DimAutomation d : values()) {
-                mapping.put(d.value, d);
-            }
-        }
-
         public static DimAutomation fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -212,9 +189,9 @@ public class Automation extends BaseOpenMessage {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
             if (whereStr.endsWith(WhereZigBee.ZB_NETWORK)) {
-                where = new WhereZigBee(whereStr);
+                where = WhereZigBee.of(whereStr);
             } else {
-                where = new WhereLightAutom(whereStr);
+                where = WhereLightAutom.of(whereStr);
             }
         }
     }
@@ -17,9 +17,6 @@ package org.openwebnet4j.message;
 import static java.lang.String.format;
 import static org.openwebnet4j.message.Who.AUX;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -43,7 +40,7 @@ public class Auxiliary extends BaseOpenMessage {
         RESET_BI(9),
         RESET_TRI(10);
 
-        private static Map<Integer, WhatAuxiliary> mapping;
+        private static final ValueLookup<WhatAuxiliary> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -51,18 +48,18 @@ public class Auxiliary extends BaseOpenMessage {
             this.value = value;
         }
 
+        /**
+         * Does nothing: the mapping from values is now built when the enum is initialised
+         *
+         * @deprecated not needed anymore, will be removed in a future version
+         */
+        @Deprecated
         public static void initMapping() {
-            mapping = new HashMap<Integer, WhatAuxiliary>();
-            for (WhatAuxiliary w : values()) {
-                mapping.put(w.value, w);
-            }
+            // mapping is built at class initialisation
         }
 
         public static WhatAuxiliary fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -140,9 +137,9 @@ public class Auxiliary extends BaseOpenMessage {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
             if (whereStr.endsWith(WhereZigBee.ZB_NETWORK)) {
-                where = new WhereZigBee(whereStr);
+                where = WhereZigBee.of(whereStr);
             } else {
-                where = new WhereAuxiliary(whereStr);
+                where = WhereAuxiliary.of(whereStr);
             }
         }
     }
@@ -27,7 +27,7 @@ import org.slf4j.LoggerFactory;
  */
 public abstract class BaseOpenMessage extends OpenMessage {
 
-    private final Logger logger = LoggerFactory.getLogger(BaseOpenMessage.class);
+    private static final Logger logger = LoggerFactory.getLogger(BaseOpenMessage.class);
 
     protected static final int MAX_FRAME_LENGTH = 1024; // max OWN frame length
 
@@ -62,6 +62,12 @@ public abstract class BaseOpenMessage extends OpenMessage {
     private String[] dimValues = null; // list of dimension values VAL1...VALn in the frame
     // *#WHO*WHERE*DIM...*VAL1*...*VALn##
 
+    // offsets recorded while parsing, used to build params and values only when requested
+    private int dimParamsStart = -1; // start of PAR1 in dimStr, -1 if DIM has not been parsed
+    private int dimValuesStart = -1; // start of VAL1 in frameValue, -1 if frame has no DIM part
+    private int dimValuesEnd = -1; // end of VALn in frameValue
+    private int whatParamsStart = -1; // start of PAR1 in whatStr, -1 if WHAT has not been parsed
+
     @Deprecated
     private int[] commandParams = null; // list of command parameters PAR1...PARn in the frame
     // *WHO*WHAT#PAR1...#PARn*WHERE##
@@ -114,59 +120,140 @@ public abstract class BaseOpenMessage extends OpenMessage {
         if (frame.length() > MAX_FRAME_LENGTH) {
             throw new MalformedFrameException("Frame length is > " + MAX_FRAME_LENGTH);
         }
-        // check if there are bad characters
-        for (char c : frame.toCharArray()) {
-            if (!Character.isDigit(c)) {
-                if (c != '#' && c != '*') {
-                    throw new MalformedFrameException("Frame can only contain '#', '*' or digits [0-9]");
-                }
-            }
+        // single scan to check characters and find parts
+        int[] parts = tokenize(frame, true);
+        if (parts[0] < 1) {
+            throw new MalformedFrameException("Invalid frame");
         }
-        String[] parts = getPartsStrings(frame);
-        // parts[0] is empty, first is WHO
-        String whoStr = parts[1];
+        // first part is WHO
+        int whoStart = parts[1] + 1;
         if (!isCmd) {
-            whoStr = parts[1].substring(1); // remove '#' from WHO part
+            whoStart++; // skip '#' from WHO part
         }
-        BaseOpenMessage baseMsg = parseWho(whoStr, frame);
+        BaseOpenMessage baseMsg = parseWho(frame, whoStart, parts[2]);
         baseMsg.isCommand = isCmd;
-        baseMsg.parseParts(parts);
+        baseMsg.parseParts(frame, parts);
         return baseMsg;
     }
 
-    private static String[] getPartsStrings(String frame) throws MalformedFrameException {
-        // remove trailing "##" and get frame parts separated by '*'
-        String[] parts = frame.substring(0, frame.length() - 2).split("\\*");
-        if (parts.length < 2) {
-            throw new MalformedFrameException("Invalid frame");
+    /**
+     * Scans the frame once, optionally checking that it contains only digits, '#' and '*', and finds the parts of the
+     * frame separated by '*'. As with {@link String#split(String)}, trailing empty parts are discarded.
+     *
+     * @param frame the frame String
+     * @param check if true checks characters in the frame
+     * @return an array with the number N of parts after the initial '*' in position 0, and the position of the '*'
+     *         before part i in position i (1 &lt;= i &lt;= N). Position N+1 contains the end of part N.
+     * @throws MalformedFrameException if check is true and frame contains bad characters
+     */
+    private static int[] tokenize(String frame, boolean check) throws MalformedFrameException {
+        int end = frame.length() - 2; // without trailing "##"
+        int[] parts = new int[8];
+        int n = 0;
+        for (int i = 0; i < end; i++) {
+            char c = frame.charAt(i);
+            if (c == '*') {
+                n++;
+                if (n + 1 >= parts.length) {
+                    parts = Arrays.copyOf(parts, parts.length * 2);
+                }
+                parts[n] = i;
+            } else if (check && (c < '0' || c > '9') && c != '#') {
+                throw new MalformedFrameException("Frame can only contain '#', '*' or digits [0-9]");
+            }
+        }
+        parts[n + 1] = end;
+        // discard trailing empty parts: the end of the previous part is the '*' of the discarded one
+        while (n > 0 && parts[n] + 1 == parts[n + 1]) {
+            n--;
         }
+        parts[0] = n;
         return parts;
     }
 
-    private void parseParts(String[] parts) throws MalformedFrameException {
+    private void parseParts(String frame, int[] parts) throws MalformedFrameException {
+        int n = parts[0];
         if (isCommand()) {
-            if (parts.length > 2) {
-                whatStr = parts[2]; // second part is WHAT
+            if (n >= 2) {
+                whatStr = part(frame, parts, 2); // second part is WHAT
             } else {
                 throw new MalformedFrameException("Cmd frames must contain a What part");
             }
-            if (parts.length > 3) {
-                whereStr = parts[3]; // third part is WHERE (optional)
+            if (n >= 3) {
+                whereStr = part(frame, parts, 3); // third part is WHERE (optional)
             }
         } else {
-            if (parts.length > 2 && !(parts[2].equals(""))) {
-                whereStr = parts[2]; // second part is WHERE
+            if (n >= 2 && parts[3] > parts[2] + 1) {
+                whereStr = part(frame, parts, 2); // second part is WHERE
             }
-            if (parts.length >= 4) {
-                dimStr = parts[3]; // third part is DIM
-                // copy last parts of this frame as DIM values
-                dimValues = Arrays.copyOfRange(parts, 4, parts.length);
+            if (n >= 3) {
+                dimStr = part(frame, parts, 3); // third part is DIM
+                // last parts of this frame are DIM values
+                dimValuesStart = (n >= 4 ? parts[4] + 1 : parts[4]);
+                dimValuesEnd = parts[n + 1];
             }
         }
     }
 
     private void parseParts() throws MalformedFrameException {
-        parseParts(getPartsStrings(frameValue));
+        int[] parts = tokenize(frameValue, false);
+        if (parts[0] < 1) {
+            throw new MalformedFrameException("Invalid frame");
+        }
+        parseParts(frameValue, parts);
+    }
+
+    private static String part(String frame, int[] parts, int i) {
+        return frame.substring(parts[i] + 1, parts[i + 1]);
+    }
+
+    /**
+     * Splits the substring str[start, end) around sep. As with {@link String#split(String)}, trailing empty strings
+     * are discarded.
+     */
+    private static String[] split(String str, int start, int end, char sep) {
+        while (end > start && str.charAt(end - 1) == sep) {
+            end--;
+        }
+        if (end <= start) {
+            return new String[0];
+        }
+        int count = 1;
+        for (int i = start; i < end; i++) {
+            if (str.charAt(i) == sep) {
+                count++;
+            }
+        }
+        String[] res = new String[count];
+        int k = 0;
+        for (int i = start; i < end; i++) {
+            if (str.charAt(i) == sep) {
+                res[k++] = str.substring(start, i);
+                start = i + 1;
+            }
+        }
+        res[k] = str.substring(start, end);
+        return res;
+    }
+
+    /**
+     * Parses the decimal integer in str[start, end) without creating substrings
+     *
+     * @throws NumberFormatException if the range is empty, contains non-digits or the value is too big
+     */
+    private static int parseInt(String str, int start, int end) throws NumberFormatException {
+        if (start >= end || end - start > 9) {
+            return Integer.parseInt(str.substring(start, end)); // let Integer handle errors and big values
+        }
+        int v = 0;
+        for (int i = start; i < end; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("For input string: \"" + str.substring(start, end) + "\"");
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
     }
 
     /**
@@ -248,70 +335,28 @@ public abstract class BaseOpenMessage extends OpenMessage {
     }
 
     /**
-     * Parse WHO from given whoPart and returns a BaseOpenMessage of the corresponding type
+     * Parse WHO from given part of the frame and returns a BaseOpenMessage of the corresponding type, created by the
+     * {@link WhoCodec} registered in {@link WhoCodecRegistry}
      *
-     * @param whoPart String containing the WHO
      * @param frame the frame string
+     * @param start start of the WHO part in frame
+     * @param end end of the WHO part in frame
      * @throws MalformedFrameException in case of error in frame
      */
-    private static BaseOpenMessage parseWho(String whoPart, String frame)
+    private static BaseOpenMessage parseWho(String frame, int start, int end)
             throws MalformedFrameException, UnsupportedFrameException {
         Who who = null;
         try {
-            int whoInt = Integer.parseInt(whoPart);
-            if (Who.isValidValue(whoInt)) {
-                who = Who.fromValue(whoInt);
-            } else {
-                throw new MalformedFrameException("WHO not recognized: " + whoPart);
-            }
+            who = Who.lookup(parseInt(frame, start, end));
         } catch (NumberFormatException nf) {
-            throw new MalformedFrameException("WHO not recognized: " + whoPart);
-        }
-
-        BaseOpenMessage baseopenmsg = null;
-        switch (who) {
-            case SCENARIO:
-                baseopenmsg = new Scenario(frame);
-                break;
-            case GATEWAY_MANAGEMENT:
-                baseopenmsg = new GatewayMgmt(frame);
-                break;
-            case LIGHTING:
-                baseopenmsg = new Lighting(frame);
-                break;
-            case AUTOMATION:
-                baseopenmsg = new Automation(frame);
-                break;
-            case ENERGY_MANAGEMENT:
-                baseopenmsg = new EnergyManagement(frame);
-                break;
-            case THERMOREGULATION:
-                baseopenmsg = new Thermoregulation(frame);
-                break;
-            case CEN_SCENARIO_SCHEDULER:
-                baseopenmsg = new CENScenario(frame);
-                break;
-            case CEN_PLUS_SCENARIO_SCHEDULER:
-                baseopenmsg = new CENPlusScenario(frame);
-                break;
-            case ENERGY_MANAGEMENT_DIAGNOSTIC:
-                baseopenmsg = new EnergyManagementDiagnostic(frame);
-                break;
-            case THERMOREGULATION_DIAGNOSTIC:
-                baseopenmsg = new ThermoregulationDiagnostic(frame);
-                break;
-            case AUX:
-                baseopenmsg = new Auxiliary(frame);
-                break;
-            case BURGLAR_ALARM:
-                baseopenmsg = new Alarm(frame);
-                break;
-            case SOUND_SYSTEM_2:
-                baseopenmsg = new SoundSystem(frame);
-                break;
-            default:
-                break;
+            // handled below
+        }
+        if (who == null) {
+            throw new MalformedFrameException("WHO not recognized: " + frame.substring(start, Math.max(start, end)));
         }
+
+        WhoCodec codec = WhoCodecRegistry.get(who);
+        BaseOpenMessage baseopenmsg = (codec != null ? codec.newMessage(frame) : null);
         if (baseopenmsg != null) {
             baseopenmsg.who = who;
             return baseopenmsg;
@@ -330,39 +375,43 @@ public abstract class BaseOpenMessage extends OpenMessage {
         if (whatStr == null) {
             return;
         }
-        String[] parts = whatStr.split("\\#");
-        if (parts != null) {
-            int partsIndex = 0;
-            try {
-                if ((Integer.parseInt(parts[partsIndex]) == What.WHAT_COMMAND_TRANSLATION) && parts.length > 1) {
-                    // commandTranslation: 1000#WHAT
-                    isCommandTranslation = true;
-                    partsIndex++; // skip first 1000 value
-                } else {
-                    isCommandTranslation = false;
-                }
-                commandParams = new int[0];
-                whatParams = new String[0];
-                what = whatFromValue(Integer.parseInt(parts[partsIndex]));
-                if (what == null) {
-                    throw new UnsupportedFrameException("Unsupported WHAT=" + whatStr);
+        int len = whatStr.length();
+        int start = 0;
+        int end = whatStr.indexOf('#');
+        if (end < 0) {
+            end = len;
+        }
+        try {
+            if (parseInt(whatStr, start, end) == What.WHAT_COMMAND_TRANSLATION && hasMoreParts(whatStr, end)) {
+                // commandTranslation: 1000#WHAT
+                isCommandTranslation = true;
+                start = end + 1; // skip first 1000 value
+                end = whatStr.indexOf('#', start);
+                if (end < 0) {
+                    end = len;
                 }
-                if (parts.length > 1) { // copy What parameters into whatParams
-                    commandParams = new int[parts.length - partsIndex - 1];
-                    for (int i = 0; i < commandParams.length; i++) {
-                        commandParams[i] = Integer.parseInt(parts[i + partsIndex + 1]);
-                    }
-
-                    whatParams = new String[parts.length - partsIndex - 1];
-                    for (int i = 0; i < whatParams.length; i++) {
-                        whatParams[i] = parts[i + partsIndex + 1];
-                    }
+            } else {
+                isCommandTranslation = false;
+            }
+            whatParamsStart = len; // no What parameters, unless WHAT is valid
+            what = whatFromValue(parseInt(whatStr, start, end));
+            if (what == null) {
+                throw new UnsupportedFrameException("Unsupported WHAT=" + whatStr);
+            }
+            whatParamsStart = Math.min(end + 1, len); // What parameters are parsed only if requested
+        } catch (NumberFormatException e) {
+            throw new MalformedFrameException("Invalid integer format in WHAT=" + whatStr);
+        }
+    }
 
-                }
-            } catch (NumberFormatException e) {
-                throw new MalformedFrameException("Invalid integer format in WHAT=" + whatStr);
+    /* true if str contains a non-empty '#'-separated part after position pos */
+    private static boolean hasMoreParts(String str, int pos) {
+        for (int i = pos + 1; i < str.length(); i++) {
+            if (str.charAt(i) != '#') {
+                return true;
             }
         }
+        return false;
     }
 
     /**
@@ -380,21 +429,24 @@ public abstract class BaseOpenMessage extends OpenMessage {
         if (dimStr == null) {
             return;
         }
-        String ds = dimStr;
-        if (ds.startsWith("#")) { // Dim writing
+        int start = 0;
+        if (dimStr.startsWith("#")) { // Dim writing
             isDimWriting = true;
-            ds = ds.substring(1);
+            start = 1;
         } else {
             isDimWriting = false;
         }
-        String[] dimParts = ds.split("#");
+        int end = dimStr.indexOf('#', start);
+        if (end < 0) {
+            end = dimStr.length();
+        }
         try {
-            dim = dimFromValue(Integer.parseInt(dimParts[0]));
+            dim = dimFromValue(parseInt(dimStr, start, end));
             if (dim == null) {
                 throw new UnsupportedFrameException("Unsupported DIM: " + dimStr);
             }
-            // copy last parts of dimStr as dim params
-            setDimParams(Arrays.copyOfRange(dimParts, 1, dimParts.length));
+            // last parts of dimStr are dim params, parsed only if requested
+            dimParamsStart = Math.min(end + 1, dimStr.length());
         } catch (NumberFormatException nfe) {
             throw new MalformedFrameException("Invalid DIM in frame: " + dimStr);
         }
@@ -445,7 +497,18 @@ public abstract class BaseOpenMessage extends OpenMessage {
     @Deprecated
     public int[] getCommandParams() throws FrameException {
         if (commandParams == null) {
-            getWhat();
+            String[] params = getWhatParams();
+            if (params != null) {
+                try {
+                    int[] cp = new int[params.length];
+                    for (int i = 0; i < cp.length; i++) {
+                        cp[i] = Integer.parseInt(params[i]);
+                    }
+                    commandParams = cp;
+                } catch (NumberFormatException e) {
+                    throw new MalformedFrameException("Invalid integer format in WHAT=" + whatStr);
+                }
+            }
         }
         return commandParams;
     }
@@ -460,6 +523,9 @@ public abstract class BaseOpenMessage extends OpenMessage {
     public String[] getWhatParams() throws FrameException {
         if (whatParams == null) {
             getWhat();
+            if (whatParamsStart >= 0) {
+                whatParams = split(whatStr, whatParamsStart, whatStr.length(), '#');
+            }
         }
         return whatParams;
     }
@@ -474,21 +540,22 @@ public abstract class BaseOpenMessage extends OpenMessage {
     public int[] getDimParams() throws FrameException {
         if (dimParams == null) {
             getDim();
+            if (dimParamsStart >= 0) {
+                String[] params = split(dimStr, dimParamsStart, dimStr.length(), '#');
+                try {
+                    int[] dp = new int[params.length];
+                    for (int i = 0; i < dp.length; i++) {
+                        dp[i] = Integer.parseInt(params[i]);
+                    }
+                    dimParams = dp;
+                } catch (NumberFormatException nfe) {
+                    throw new MalformedFrameException("Invalid DIM in frame: " + dimStr);
+                }
+            }
         }
         return dimParams;
     }
 
-    /**
-     * Set Dim params to given array
-     *
-     * @param params the String[] of Dim params
-     */
-    private void setDimParams(String[] params) throws NumberFormatException {
-        int[] tempArr = Arrays.stream(params).mapToInt(Integer::parseInt).toArray();
-
-        dimParams = tempArr;
-    }
-
     /**
      * Returns and array with DIM values, or empty array if no values are present
      *
@@ -498,6 +565,9 @@ public abstract class BaseOpenMessage extends OpenMessage {
     public String[] getDimValues() throws FrameException {
         if (dimValues == null) {
             getDim();
+            if (dimValuesStart >= 0) {
+                dimValues = split(frameValue, dimValuesStart, dimValuesEnd, '*');
+            }
         }
         return dimValues;
     }
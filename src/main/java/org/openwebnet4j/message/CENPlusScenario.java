@@ -16,9 +16,6 @@ package org.openwebnet4j.message;
 
 import static java.lang.String.format;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -38,7 +35,7 @@ public class CENPlusScenario extends CEN {
         ON_IR_DETECTION(31),
         OFF_IR_NO_DETECTION(32);
 
-        private static Map<Integer, WhatCENPlus> mapping;
+        private static final ValueLookup<WhatCENPlus> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -46,18 +43,8 @@ public class CENPlusScenario extends CEN {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatCENPlus>();
-            for (WhatCENPlus w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatCENPlus fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -72,7 +59,7 @@ public class CENPlusScenario extends CEN {
         EXTENDED_PRESSURE(WhatCENPlus.EXT_PRESSURE),
         RELEASE_EXTENDED_PRESSURE(WhatCENPlus.RELEASE_EXT_PRESSURE);
 
-        private static Map<WhatCENPlus, CENPlusPressure> mapping;
+        private static final ValueLookup<CENPlusPressure> LOOKUP = ValueLookup.of(values(), pr -> pr.value.value());
 
         private final WhatCENPlus value;
 
@@ -80,18 +67,8 @@ public class CENPlusScenario extends CEN {
             this.value = pr;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<WhatCENPlus, CENPlusPressure>();
-            for (CENPlusPressure pr : values()) {
-                mapping.put(pr.value, pr);
-            }
-        }
-
         public static CENPlusPressure fromValue(WhatCENPlus w) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(w);
+            return w == null ? null : LOOKUP.get(w.value());
         }
     }
 
@@ -105,6 +82,7 @@ public class CENPlusScenario extends CEN {
 
     protected CENPlusScenario(String value) {
         super(value);
+        this.who = Who.CEN_PLUS_SCENARIO_SCHEDULER;
     }
 
     @Override
@@ -243,7 +221,7 @@ public class CENPlusScenario extends CEN {
         } else {
             // TODO FIXME define e specific WhereCENPlus class to be returned here, according to
             // specs WHO 15/25 page 15
-            where = new WhereLightAutom(whereStr);
+            where = WhereLightAutom.of(whereStr);
         }
     }
 
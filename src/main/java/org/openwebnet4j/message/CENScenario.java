@@ -16,9 +16,6 @@ package org.openwebnet4j.message;
 
 import static java.lang.String.format;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -63,7 +60,7 @@ public class CENScenario extends CEN {
         BUTTON_30(30),
         BUTTON_31(31);
 
-        private static Map<Integer, WhatCEN> mapping;
+        private static final ValueLookup<WhatCEN> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -71,18 +68,8 @@ public class CENScenario extends CEN {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatCEN>();
-            for (WhatCEN w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatCEN fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -99,7 +86,7 @@ public class CENScenario extends CEN {
         RELEASE_EXTENDED_PRESSURE(2),
         EXTENDED_PRESSURE(3);
 
-        private static Map<Integer, CENPressure> mapping;
+        private static final ValueLookup<CENPressure> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -107,18 +94,8 @@ public class CENScenario extends CEN {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, CENPressure>();
-            for (CENPressure w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static CENPressure fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
     }
@@ -214,7 +191,7 @@ public class CENScenario extends CEN {
         if (whereStr == null) {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
-            where = new WhereLightAutom(whereStr);
+            where = WhereLightAutom.of(whereStr);
         }
     }
 
@@ -16,9 +16,6 @@ package org.openwebnet4j.message;
 
 import static java.lang.String.format;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -32,7 +29,7 @@ public class EnergyManagement extends BaseOpenMessage {
         AUTOMATIC_RESET_ON(26),
         AUTOMATIC_RESET_OFF(27);
 
-        private static Map<Integer, WhatEnergyMgmt> mapping;
+        private static final ValueLookup<WhatEnergyMgmt> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -40,18 +37,8 @@ public class EnergyManagement extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatEnergyMgmt>();
-            for (WhatEnergyMgmt w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatEnergyMgmt fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -66,7 +53,7 @@ public class EnergyManagement extends BaseOpenMessage {
         PARTIAL_TOTALIZER_CURRENT_MONTH(53),
         PARTIAL_TOTALIZER_CURRENT_DAY(54);
 
-        private static Map<Integer, DimEnergyMgmt> mapping;
+        private static final ValueLookup<DimEnergyMgmt> LOOKUP = ValueLookup.of(values(), d -> d.value);
 
         private final int value;
 
@@ -74,18 +61,8 @@ public class EnergyManagement extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, DimEnergyMgmt>();
-            for (DimEnergyMgmt d : values()) {
-                mapping.put(d.value, d);
-            }
-        }
-
         public static DimEnergyMgmt fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -107,9 +84,9 @@ public class EnergyManagement extends BaseOpenMessage {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
             if (whereStr.endsWith(WhereZigBee.ZB_NETWORK)) {
-                where = new WhereZigBee(whereStr);
+                where = WhereZigBee.of(whereStr);
             } else {
-                where = new WhereEnergyManagement(whereStr);
+                where = WhereEnergyManagement.of(whereStr);
             }
         }
     }
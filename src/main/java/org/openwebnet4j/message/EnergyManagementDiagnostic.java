@@ -49,9 +49,9 @@ public class EnergyManagementDiagnostic extends BaseOpenMessage {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
             if (whereStr.endsWith(WhereZigBee.ZB_NETWORK)) {
-                where = new WhereZigBee(whereStr);
+                where = WhereZigBee.of(whereStr);
             } else {
-                where = new WhereEnergyManagement(whereStr);
+                where = WhereEnergyManagement.of(whereStr);
             }
         }
     }
@@ -17,9 +17,6 @@ package org.openwebnet4j.message;
 import static java.lang.String.format;
 import static org.openwebnet4j.message.Who.GATEWAY_MANAGEMENT;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /** OpenWebNet GatewayManagmenet messages */
@@ -41,7 +38,7 @@ public class GatewayMgmt extends BaseOpenMessage {
         SUPERVISOR(66),
         TEST(9999); // not defined in OWN specs, only for testing
 
-        private static Map<Integer, WhatGatewayMgmt> mapping;
+        private static final ValueLookup<WhatGatewayMgmt> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -49,18 +46,8 @@ public class GatewayMgmt extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatGatewayMgmt>();
-            for (WhatGatewayMgmt w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatGatewayMgmt fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -85,7 +72,7 @@ public class GatewayMgmt extends BaseOpenMessage {
         IDENTIFY(70),
         ZIGBEE_CHANNEL(71);
 
-        private static Map<Integer, DimGatewayMgmt> mapping;
+        private static final ValueLookup<DimGatewayMgmt> LOOKUP = ValueLookup.of(values(), d -> d.value);
 
         private final int value;
 
@@ -93,18 +80,8 @@ public class GatewayMgmt extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, DimGatewayMgmt>();
-            for (DimGatewayMgmt d : values()) {
-                mapping.put(d.value, d);
-            }
-        }
-
         public static DimGatewayMgmt fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -225,7 +202,7 @@ public class GatewayMgmt extends BaseOpenMessage {
     @Override
     protected void parseWhere() throws FrameException {
         if (whereStr != null) {
-            where = new WhereZigBee(whereStr);
+            where = WhereZigBee.of(whereStr);
         }
     }
 
@@ -17,9 +17,6 @@ package org.openwebnet4j.message;
 import static java.lang.String.format;
 import static org.openwebnet4j.message.Who.LIGHTING;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -50,7 +47,7 @@ public class Lighting extends BaseOpenMessage {
         MOVEMENT_DETECTED(34),
         END_MOVEMENT_DETECTED(39);
 
-        private static Map<Integer, WhatLighting> mapping;
+        private static final ValueLookup<WhatLighting> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -58,18 +55,8 @@ public class Lighting extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatLighting>();
-            for (WhatLighting w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatLighting fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -86,7 +73,7 @@ public class Lighting extends BaseOpenMessage {
     public enum DimLighting implements Dim {
         DIMMER_LEVEL_100(1);
 
-        private static Map<Integer, DimLighting> mapping;
+        private static final ValueLookup<DimLighting> LOOKUP = ValueLookup.of(values(), d -> d.value);
 
         private final int value;
 
@@ -94,18 +81,8 @@ public class Lighting extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, DimLighting>();
-            for (DimLighting d : values()) {
-                mapping.put(d.value, d);
-            }
-        }
-
         public static DimLighting fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -268,9 +245,9 @@ public class Lighting extends BaseOpenMessage {
             throw new FrameException("Lighting frame has no WHERE part: " + whereStr);
         } else {
             if (whereStr.endsWith(WhereZigBee.ZB_NETWORK)) {
-                where = new WhereZigBee(whereStr);
+                where = WhereZigBee.of(whereStr);
             } else {
-                where = new WhereLightAutom(whereStr);
+                where = WhereLightAutom.of(whereStr);
             }
         }
     }
@@ -14,9 +14,6 @@
  */
 package org.openwebnet4j.message;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.openwebnet4j.OpenDeviceType;
 
 /**
@@ -60,7 +57,7 @@ public class Scenario extends BaseOpenMessage {
         UNAVAILABLE_SCENARIO_CU(45),
         MEMORY_FULL_CU(46);
 
-        private static Map<Integer, WhatScenario> mapping;
+        private static final ValueLookup<WhatScenario> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -68,18 +65,8 @@ public class Scenario extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatScenario>();
-            for (WhatScenario w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatScenario fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -112,7 +99,7 @@ public class Scenario extends BaseOpenMessage {
         if (whereStr == null) {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
-            where = new WhereLightAutom(whereStr);
+            where = WhereLightAutom.of(whereStr);
         }
     }
 
@@ -15,9 +15,6 @@ package org.openwebnet4j.message;
 
 import org.openwebnet4j.OpenDeviceType;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import static java.lang.String.format;
 import static org.openwebnet4j.message.Who.SOUND_SYSTEM_2;
 
@@ -57,7 +54,7 @@ public class SoundSystem extends BaseOpenMessage {
         NEXT_PRESET(55),
         PREVIOUS_PRESET(56);
 
-        private static Map<Integer, WhatSoundSystem> mapping;
+        private static final ValueLookup<WhatSoundSystem> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -65,18 +62,8 @@ public class SoundSystem extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatSoundSystem>();
-            for (WhatSoundSystem w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static WhatSoundSystem fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -107,7 +94,7 @@ public class SoundSystem extends BaseOpenMessage {
         SEVEN_HUNDRED_HZ(14),
         SEVEN_HUNDRED_FIFTY_HZ(15);
 
-        private static Map<Integer, FrequencyStepSoundSystem> mapping;
+        private static final ValueLookup<FrequencyStepSoundSystem> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -115,18 +102,8 @@ public class SoundSystem extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, FrequencyStepSoundSystem>();
-            for (FrequencyStepSoundSystem w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static FrequencyStepSoundSystem fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         public Integer value() {
@@ -146,7 +123,7 @@ public class SoundSystem extends BaseOpenMessage {
         UNKNOWN(10),
         ALL_SOURCE(11);
 
-        private static Map<Integer, MultimediaTypeSoundSystem> mapping;
+        private static final ValueLookup<MultimediaTypeSoundSystem> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -154,18 +131,8 @@ public class SoundSystem extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, MultimediaTypeSoundSystem>();
-            for (MultimediaTypeSoundSystem w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static MultimediaTypeSoundSystem fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         public Integer value() {
@@ -182,7 +149,7 @@ public class SoundSystem extends BaseOpenMessage {
         AM_MW(3),
         AM_SW(4);
 
-        private static Map<Integer, ModulationSoundSystem> mapping;
+        private static final ValueLookup<ModulationSoundSystem> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private final int value;
 
@@ -190,18 +157,8 @@ public class SoundSystem extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, ModulationSoundSystem>();
-            for (ModulationSoundSystem w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         public static ModulationSoundSystem fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         public Integer value() {
@@ -228,7 +185,7 @@ public class SoundSystem extends BaseOpenMessage {
         PRESET(19),
         LOUDNESS(20);
 
-        private static Map<Integer, DimSoundSystem> mapping;
+        private static final ValueLookup<DimSoundSystem> LOOKUP = ValueLookup.of(values(), d -> d.value);
 
         private final int value;
 
@@ -236,18 +193,8 @@ public class SoundSystem extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, DimSoundSystem>();
-            for (DimSoundSystem d : values()) {
-                mapping.put(d.value, d);
-            }
-        }
-
         public static DimSoundSystem fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -468,9 +415,9 @@ public class SoundSystem extends BaseOpenMessage {
             throw new FrameException("Sound System frame has no WHERE part: " + whereStr);
         } else {
             if (whereStr.endsWith(WhereZigBee.ZB_NETWORK)) {
-                where = new WhereZigBee(whereStr);
+                where = WhereZigBee.of(whereStr);
             } else {
-                where = new WhereSoundSystem(whereStr);
+                where = WhereSoundSystem.of(whereStr);
             }
         }
     }
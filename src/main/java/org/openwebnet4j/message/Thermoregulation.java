@@ -18,8 +18,6 @@ import static java.lang.String.format;
 import static org.openwebnet4j.message.Who.THERMOREGULATION;
 
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
 
 import org.openwebnet4j.OpenDeviceType;
@@ -94,7 +92,7 @@ public class Thermoregulation extends BaseOpenMessage {
         // TODO
         HOLIDAY(9006);
 
-        private static Map<Integer, WhatThermo> mapping;
+        private static final ValueLookup<WhatThermo> LOOKUP = ValueLookup.of(values(), w -> w.value);
 
         private int value;
         private Function function;
@@ -134,13 +132,6 @@ public class Thermoregulation extends BaseOpenMessage {
             return this.function;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, WhatThermo>();
-            for (WhatThermo w : values()) {
-                mapping.put(w.value, w);
-            }
-        }
-
         /**
          * Return a WhatThermo with OperationMode and the Function calculated from a WHAT int
          *
@@ -149,14 +140,11 @@ public class Thermoregulation extends BaseOpenMessage {
          *         OperationMode=SCENARIO_15(215))
          */
         public static WhatThermo fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
             WhatThermo result = WhatThermo.GENERIC;
             // WHAT less than 32 (defined in WhatThermo enum) represent states (e.g.: Battery KO (31))
             if (i < 32) {
                 // these are defined in the Enum
-                result = mapping.get(i);
+                result = LOOKUP.get(i);
                 // for WHAT=0 and WHAT=1 update Function field accordingly
                 if (result == WhatThermo.HEATING) {
                     result.setModeAndFuntion(OperationMode.MANUAL, Function.HEATING);
@@ -415,7 +403,7 @@ public class Thermoregulation extends BaseOpenMessage {
         VALVES_STATUS(19),
         ACTUATOR_STATUS(20);
 
-        private static Map<Integer, DimThermo> mapping;
+        private static final ValueLookup<DimThermo> LOOKUP = ValueLookup.of(values(), d -> d.value);
 
         private final int value;
 
@@ -423,18 +411,8 @@ public class Thermoregulation extends BaseOpenMessage {
             this.value = value;
         }
 
-        private static void initMapping() {
-            mapping = new HashMap<Integer, DimThermo>();
-            for (DimThermo d : values()) {
-                mapping.put(d.value, d);
-            }
-        }
-
         public static DimThermo fromValue(int i) {
-            if (mapping == null) {
-                initMapping();
-            }
-            return mapping.get(i);
+            return LOOKUP.get(i);
         }
 
         @Override
@@ -635,7 +613,7 @@ public class Thermoregulation extends BaseOpenMessage {
         if (whereStr == null) {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
-            where = new WhereThermo(whereStr);
+            where = WhereThermo.of(whereStr);
         }
     }
 
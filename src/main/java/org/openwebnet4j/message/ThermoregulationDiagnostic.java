@@ -48,9 +48,9 @@ public class ThermoregulationDiagnostic extends BaseOpenMessage {
             throw new FrameException("Frame has no WHERE part: " + whereStr);
         } else {
             if (whereStr.endsWith(WhereZigBee.ZB_NETWORK)) {
-                where = new WhereZigBee(whereStr);
+                where = WhereZigBee.of(whereStr);
             } else {
-                where = new WhereThermo(whereStr);
+                where = WhereThermo.of(whereStr);
             }
         }
     }
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.message;
+
+import java.util.Arrays;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable table to find enum constants (WHO, WHAT, DIM, ...) by their OpenWebNet integer value. Values in
+ * [0-{@value #DIRECT_SIZE}) are found by direct array index, other values by binary search on a sorted array. The
+ * table is built once when the enum is initialised, lookups do not allocate.
+ *
+ * @author M. Valla - Initial contribution
+ */
+final class ValueLookup<E extends Enum<E>> {
+
+    static final int DIRECT_SIZE = 256;
+
+    private final Object[] direct;
+    private final int[] otherValues;
+    private final Object[] others;
+
+    private ValueLookup(Object[] direct, int[] otherValues, Object[] others) {
+        this.direct = direct;
+        this.otherValues = otherValues;
+        this.others = others;
+    }
+
+    /**
+     * Builds the lookup table for the given enum constants. If more constants have the same value, the first one
+     * wins.
+     *
+     * @param constants the enum constants, usually from <code>values()</code>
+     * @param valueOf function returning the OpenWebNet value of a constant
+     * @return the lookup table
+     */
+    static <E extends Enum<E>> ValueLookup<E> of(E[] constants, ToIntFunction<E> valueOf) {
+        int max = -1;
+        int nOthers = 0;
+        for (E c : constants) {
+            int v = valueOf.applyAsInt(c);
+            if (v >= 0 && v < DIRECT_SIZE) {
+                max = Math.max(max, v);
+            } else {
+                nOthers++;
+            }
+        }
+        Object[] direct = new Object[max + 1];
+        long[] sorted = new long[nOthers]; // value in high bits, index in low bits, so that first wins after sort
+        int n = 0;
+        for (int i = 0; i < constants.length; i++) {
+            E c = constants[i];
+            int v = valueOf.applyAsInt(c);
+            if (v >= 0 && v < DIRECT_SIZE) {
+                if (direct[v] == null) {
+                    direct[v] = c;
+                }
+            } else {
+                sorted[n++] = ((long) v << 32) | i;
+            }
+        }
+        Arrays.sort(sorted);
+        int[] otherValues = new int[nOthers];
+        Object[] others = new Object[nOthers];
+        n = 0;
+        for (long s : sorted) {
+            int v = (int) (s >> 32);
+            if (n == 0 || otherValues[n - 1] != v) {
+                otherValues[n] = v;
+                others[n++] = constants[(int) s];
+            }
+        }
+        return new ValueLookup<>(direct, Arrays.copyOf(otherValues, n), Arrays.copyOf(others, n));
+    }
+
+    /**
+     * Returns the constant with the given value
+     *
+     * @param value the OpenWebNet value
+     * @return the constant, or null if no constant has the given value
+     */
+    @SuppressWarnings("unchecked")
+    E get(int value) {
+        if (value >= 0 && value < direct.length) {
+            return (E) direct[value];
+        }
+        int i = Arrays.binarySearch(otherValues, value);
+        return i >= 0 ? (E) others[i] : null;
+    }
+}
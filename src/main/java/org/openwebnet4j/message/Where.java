@@ -14,12 +14,20 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.function.Function;
+
 /**
- * Class to wrap WHERE part of frame
+ * Class to wrap WHERE part of frame. Where objects are immutable: each subclass provides a static {@code of(String)}
+ * method returning canonical instances from an interning cache, which should be preferred to constructors when
+ * parsing frames.
  *
  * @author M. Valla - Initial contribution
  */
 public abstract class Where {
+    // max number of instances interned by each subclass, so that the cache cannot grow unbounded with unusual frames
+    static final int MAX_INTERNED = 4096;
+
     protected final String whereStr;
 
     public Where(String w) throws NullPointerException, IllegalArgumentException {
@@ -58,6 +66,36 @@ public abstract class Where {
             return false;
         }
     }
+
+    @Override
+    public int hashCode() {
+        return whereStr.hashCode();
+    }
+
+    /**
+     * Returns the instance interned in cache for the WHERE string, creating it with factory if not present
+     *
+     * @param <W> the Where subclass
+     * @param cache the interning cache of the subclass
+     * @param w the WHERE string
+     * @param factory the constructor of the subclass
+     * @return the interned instance, or a new instance if the cache is full
+     * @throws NullPointerException if w is null
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    protected static <W extends Where> W intern(Map<String, W> cache, String w, Function<String, W> factory) {
+        W where = cache.get(w);
+        if (where == null) {
+            where = factory.apply(w);
+            if (cache.size() < MAX_INTERNED) {
+                W prev = cache.putIfAbsent(w, where);
+                if (prev != null) {
+                    where = prev;
+                }
+            }
+        }
+        return where;
+    }
 }
 
 /*
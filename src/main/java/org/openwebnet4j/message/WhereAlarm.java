@@ -14,6 +14,9 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * WHERE for Alarm frames
  * <p>
@@ -33,13 +36,26 @@ package org.openwebnet4j.message;
  */
 
 public class WhereAlarm extends Where {
-    public static final Where SYSTEM = new WhereAlarm("");
+    private static final Map<String, WhereAlarm> CACHE = new ConcurrentHashMap<>(); // must precede constants
+    public static final Where SYSTEM = WhereAlarm.of("");
     private final int zone;
     private final int sensor;
 
+    /**
+     * Returns the canonical {@link WhereAlarm} for a WHERE string. Instances are interned, so parsing the same WHERE
+     * again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereAlarm}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereAlarm of(String w) {
+        return intern(CACHE, w, WhereAlarm::new);
+    }
+
     public WhereAlarm(String w) throws IllegalArgumentException, NumberFormatException {
         super(w);
-        if (w == "") {
+        if (whereStr.isEmpty()) {
             zone = -1;
             sensor = -1;
         } else {
@@ -14,13 +14,29 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * WHERE for Auxiliary frames
  *
  * @author G.Fabiani- Initial contribution
  */
 public class WhereAuxiliary extends Where {
-    public static final Where GENERAL = new WhereAuxiliary("0");
+    private static final Map<String, WhereAuxiliary> CACHE = new ConcurrentHashMap<>(); // must precede constants
+    public static final Where GENERAL = WhereAuxiliary.of("0");
+
+    /**
+     * Returns the canonical {@link WhereAuxiliary} for a WHERE string. Instances are interned, so parsing the same
+     * WHERE again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereAuxiliary}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereAuxiliary of(String w) {
+        return intern(CACHE, w, WhereAuxiliary::new);
+    }
 
     public WhereAuxiliary(String w) throws NullPointerException {
         // TODO check range for WHERE
@@ -14,14 +14,30 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * WHERE for CEN/CEN+ scenarios and Dry Contact / IR frames
  *
  * @author M. Valla - Initial contribution
  */
 public class WhereCEN extends Where {
+    private static final Map<String, WhereCEN> CACHE = new ConcurrentHashMap<>(); // must precede constants
+
+    public static final Where GENERAL = WhereCEN.of("0");
 
-    public static final Where GENERAL = new WhereCEN("0");
+    /**
+     * Returns the canonical {@link WhereCEN} for a WHERE string. Instances are interned, so parsing the same WHERE
+     * again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereCEN}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereCEN of(String w) {
+        return intern(CACHE, w, WhereCEN::new);
+    }
 
     public WhereCEN(String w) throws NullPointerException {
         // TODO check range for WHERE
@@ -14,6 +14,9 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * WHERE for Energy Management frames
  *
@@ -34,8 +37,21 @@ package org.openwebnet4j.message;
  * @author Andrea Conte - Initial contribution
  */
 public class WhereEnergyManagement extends Where {
+    private static final Map<String, WhereEnergyManagement> CACHE = new ConcurrentHashMap<>(); // must precede constants
+
+    public static final Where GENERAL = WhereEnergyManagement.of("0");
 
-    public static final Where GENERAL = new WhereEnergyManagement("0");
+    /**
+     * Returns the canonical {@link WhereEnergyManagement} for a WHERE string. Instances are interned, so parsing the
+     * same WHERE again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereEnergyManagement}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereEnergyManagement of(String w) {
+        return intern(CACHE, w, WhereEnergyManagement::new);
+    }
 
     public WhereEnergyManagement(String w) throws NullPointerException, IllegalArgumentException {
         super(w);
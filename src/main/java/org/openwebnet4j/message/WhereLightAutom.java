@@ -14,17 +14,103 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * WHERE for Lighting and Automation frames
+ * WHERE for Lighting and Automation frames: <code>0</code> general, <code>A</code> area [1-9], <code>00</code> and
+ * <code>10</code> areas 00 and 10, <code>AP</code> area [0-9] and light point [1-9], <code>AAPP</code> area [01-10]
+ * and light point [01-15], <code>#G</code> group [1-255], optionally followed by <code>#4#I</code> for a local bus.
  *
  * @author M. Valla - Initial contribution
  */
 public class WhereLightAutom extends Where {
+    private static final Map<String, WhereLightAutom> CACHE = new ConcurrentHashMap<>(); // must precede constants
+
+    public static final Where GENERAL = WhereLightAutom.of("0");
+
+    /**
+     * Returns the canonical {@link WhereLightAutom} for a WHERE string. Instances are interned, so parsing the same
+     * WHERE again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereLightAutom}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereLightAutom of(String w) {
+        return intern(CACHE, w, WhereLightAutom::new);
+    }
 
-    public static final Where GENERAL = new WhereLightAutom("0");
+    private final int area;
+    private final int point;
+    private final int group;
 
     public WhereLightAutom(String w) throws NullPointerException {
         // TODO check range for WHERE
         super(w);
+        int a = -1, p = -1, g = -1;
+        int pos = whereStr.indexOf('#', 1);
+        String addr = (pos > 0 ? whereStr.substring(0, pos) : whereStr); // remove local bus part
+        if (addr.startsWith("#")) {
+            g = parseDigits(addr.substring(1));
+        } else if (addr.length() == 1) {
+            a = addr.charAt(0) - '0';
+        } else if (addr.length() == 2) {
+            if (addr.charAt(1) == '0') { // area 00 or 10
+                a = parseDigits(addr);
+            } else {
+                a = addr.charAt(0) - '0';
+                p = addr.charAt(1) - '0';
+            }
+        } else if (addr.length() == 4) {
+            a = parseDigits(addr.substring(0, 2));
+            p = parseDigits(addr.substring(2));
+        }
+        area = a;
+        point = p;
+        group = g;
+    }
+
+    /* returns the value of a string of (at most 9) digits, or -1 if s is empty, too long or contains a '#' */
+    private static int parseDigits(String s) {
+        if (s.isEmpty() || s.length() > 9) {
+            return -1;
+        }
+        int v = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    /**
+     * Returns the area (A) of this WHERE, 0 for general
+     *
+     * @return the area, or -1 if this WHERE is a group
+     */
+    public int getArea() {
+        return area;
+    }
+
+    /**
+     * Returns the light point (PL) of this WHERE
+     *
+     * @return the light point, or -1 if this WHERE is not a point-to-point address
+     */
+    public int getPoint() {
+        return point;
+    }
+
+    /**
+     * Returns the group (G) of this WHERE
+     *
+     * @return the group, or -1 if this WHERE is not a group address
+     */
+    public int getGroup() {
+        return group;
     }
 }
@@ -14,23 +14,39 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * WHERE for Sound System frames
  *
  * @author R. Marques - Initial contribution
  */
 public class WhereSoundSystem extends Where {
-    public static final WhereSoundSystem SOURCE = new WhereSoundSystem("2");
-    public static final WhereSoundSystem SPEAKER = new WhereSoundSystem("3");
-    public static final WhereSoundSystem SPEAKER_AREA = new WhereSoundSystem("4");
-    public static final WhereSoundSystem GENERAL = new WhereSoundSystem("5");
-    public static final WhereSoundSystem ALL_SOURCE = new WhereSoundSystem("6");
+    private static final Map<String, WhereSoundSystem> CACHE = new ConcurrentHashMap<>(); // must precede constants
+    public static final WhereSoundSystem SOURCE = WhereSoundSystem.of("2");
+    public static final WhereSoundSystem SPEAKER = WhereSoundSystem.of("3");
+    public static final WhereSoundSystem SPEAKER_AREA = WhereSoundSystem.of("4");
+    public static final WhereSoundSystem GENERAL = WhereSoundSystem.of("5");
+    public static final WhereSoundSystem ALL_SOURCE = WhereSoundSystem.of("6");
 
     public static final String FORMAT_SOURCE = "2#%s";
     public static final String FORMAT_SPEAKER = "3#%s#%s";
     public static final String FORMAT_SPEAKER_AREA = "4#%s";
     public static final String FORMAT_GENERAL = "5#%s"; // s is sender address e.g. 2#1
 
+    /**
+     * Returns the canonical {@link WhereSoundSystem} for a WHERE string. Instances are interned, so parsing the same
+     * WHERE again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereSoundSystem}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereSoundSystem of(String w) {
+        return intern(CACHE, w, WhereSoundSystem::new);
+    }
+
     public WhereSoundSystem(String w) throws NullPointerException {
         // TODO check range for WHERE
         super(w);
@@ -14,6 +14,9 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * WHERE for Thermoregulation frames
  *
@@ -33,13 +36,26 @@ package org.openwebnet4j.message;
  * @author M. Valla - Initial contribution
  */
 public class WhereThermo extends Where {
+    private static final Map<String, WhereThermo> CACHE = new ConcurrentHashMap<>(); // must precede constants
 
-    public static final Where ALL_MASTER_PROBES = new WhereThermo("0");
+    public static final Where ALL_MASTER_PROBES = WhereThermo.of("0");
     private final int zone;
     private final int probe;
     private final int actuator;
     private final boolean standalone;
 
+    /**
+     * Returns the canonical {@link WhereThermo} for a WHERE string. Instances are interned, so parsing the same WHERE
+     * again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereThermo}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereThermo of(String w) {
+        return intern(CACHE, w, WhereThermo::new);
+    }
+
     public WhereThermo(String w) throws NullPointerException, IllegalArgumentException {
         super(w);
         int z, p = -1, a = -1;
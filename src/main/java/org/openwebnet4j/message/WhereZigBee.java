@@ -14,20 +14,36 @@
  */
 package org.openwebnet4j.message;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * WHERE for ZigBee Lighting and Automation frames
  *
  * @author M. Valla - Initial contribution
  */
 public class WhereZigBee extends Where {
+    private static final Map<String, WhereZigBee> CACHE = new ConcurrentHashMap<>(); // must precede constants
 
     public static final String UNIT_01 = "01";
     public static final String UNIT_02 = "02";
     public static final String UNIT_ALL = "00";
     public static final String ZB_NETWORK = "#9";
 
-    private String unit = null; // UNIT part of the WHERE address
-    private String addr = null; // ADDR part of the WHERE address
+    private final String unit; // UNIT part of the WHERE address
+    private final String addr; // ADDR part of the WHERE address
+
+    /**
+     * Returns the canonical {@link WhereZigBee} for a WHERE string. Instances are interned, so parsing the same WHERE
+     * again does not allocate nor validate it again.
+     *
+     * @param w the WHERE string
+     * @return the {@link WhereZigBee}
+     * @throws IllegalArgumentException if w is not a valid WHERE
+     */
+    public static WhereZigBee of(String w) {
+        return intern(CACHE, w, WhereZigBee::new);
+    }
 
     public WhereZigBee(String w) throws IllegalArgumentException, NullPointerException {
         // TODO check range for WHERE
@@ -14,9 +14,9 @@
  */
 package org.openwebnet4j.message;
 
-import java.util.EnumSet;
-import java.util.Optional;
-import java.util.function.Predicate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * OpenWebNet WHO types.
@@ -62,6 +62,15 @@ public enum Who {
     DEVICE_DIAGNOSTIC(1013),
     UNKNOWN(9999);
 
+    private static final ValueLookup<Who> LOOKUP = ValueLookup.of(values(), Who::value);
+    private static final Map<String, Who> NAMES = new HashMap<>();
+
+    static {
+        for (Who w : values()) {
+            NAMES.put(w.name(), w);
+        }
+    }
+
     private final Integer value;
 
     Who(Integer value) {
@@ -73,35 +82,41 @@ public enum Who {
     }
 
     public static boolean isValidName(String name) {
-        return name != null && findWho(isEqualName(name)).isPresent();
+        return name != null && NAMES.containsKey(name);
     }
 
     public static boolean isValidValue(Integer value) {
-        return value != null && findWho(isEqualValue(value)).isPresent();
+        return value != null && lookup(value) != null;
     }
 
     public static Who fromName(String name) {
-        return findWho(isEqualName(name)).get();
+        Who w = (name != null ? NAMES.get(name) : null);
+        if (w == null) {
+            throw new NoSuchElementException("No value present");
+        }
+        return w;
     }
 
     public static Who fromValue(Integer value) {
-        return findWho(isEqualValue(value)).get();
+        Who w = lookup(value);
+        if (w == null) {
+            throw new NoSuchElementException("No value present");
+        }
+        return w;
+    }
+
+    /**
+     * Returns the WHO with the given value using a lookup table
+     *
+     * @param value the WHO value
+     * @return the WHO, or null if value is not a valid WHO
+     */
+    static Who lookup(int value) {
+        return LOOKUP.get(value);
     }
 
     @Override
     public String toString() {
         return name();
     }
-
-    private static Predicate<Who> isEqualName(String name) {
-        return who -> who.name().equals(name);
-    }
-
-    private static Predicate<Who> isEqualValue(Integer value) {
-        return who -> who.value().intValue() == value.intValue();
-    }
-
-    private static Optional<Who> findWho(Predicate<Who> isEqual) {
-        return EnumSet.allOf(Who.class).stream().filter(isEqual).findFirst();
-    }
 }
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.message;
+
+/**
+ * A WHO codec creates the {@link BaseOpenMessage} subclass handling frames of a given {@link Who}. Codecs are
+ * registered in the {@link WhoCodecRegistry}.
+ *
+ * @author M. Valla - Initial contribution
+ */
+@FunctionalInterface
+public interface WhoCodec {
+
+    /**
+     * Returns a new message for the given frame. The frame has already been checked to be a well-formed frame of
+     * the codec WHO; as for built-in messages the WHAT, WHERE and DIM parts should be parsed lazily when requested.
+     *
+     * @param frame the frame String
+     * @return the new message
+     */
+    BaseOpenMessage newMessage(String frame);
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.message;
+
+import java.util.Objects;
+
+/**
+ * Registry of the {@link WhoCodec}s used by {@link BaseOpenMessage#parse(String)} to create the message for a frame.
+ * Codecs are kept in an array indexed by {@link Who}, so that finding the codec for a frame does not allocate.
+ * Codecs for the WHOs supported by the library are registered when the class is initialised; codecs for other WHOs
+ * (for example {@link Who#DOOR_ENTRY_SYSTEM} or {@link Who#SCENARIO_PROGRAMMING}) can be registered by applications.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public final class WhoCodecRegistry {
+
+    private static volatile WhoCodec[] codecs = new WhoCodec[Who.values().length]; // copy-on-write, by Who ordinal
+
+    static {
+        register(Who.SCENARIO, Scenario::new);
+        register(Who.LIGHTING, Lighting::new);
+        register(Who.AUTOMATION, Automation::new);
+        register(Who.THERMOREGULATION, Thermoregulation::new);
+        register(Who.THERMOREGULATION_DIAGNOSTIC, ThermoregulationDiagnostic::new);
+        register(Who.BURGLAR_ALARM, Alarm::new);
+        register(Who.AUX, Auxiliary::new);
+        register(Who.GATEWAY_MANAGEMENT, GatewayMgmt::new);
+        register(Who.CEN_SCENARIO_SCHEDULER, CENScenario::new);
+        register(Who.CEN_PLUS_SCENARIO_SCHEDULER, CENPlusScenario::new);
+        register(Who.SOUND_SYSTEM_2, SoundSystem::new);
+        register(Who.ENERGY_MANAGEMENT, EnergyManagement::new);
+        register(Who.ENERGY_MANAGEMENT_DIAGNOSTIC, EnergyManagementDiagnostic::new);
+    }
+
+    private WhoCodecRegistry() {
+    }
+
+    /**
+     * Registers a codec for the given WHO, replacing the current one (built-in codecs included)
+     *
+     * @param who the WHO
+     * @param codec the codec
+     * @return the codec previously registered for the WHO, or null
+     * @throws IllegalArgumentException if who is {@link Who#UNKNOWN}
+     */
+    public static synchronized WhoCodec register(Who who, WhoCodec codec) {
+        Objects.requireNonNull(codec, "codec");
+        if (who == Who.UNKNOWN) {
+            throw new IllegalArgumentException("Cannot register a codec for WHO UNKNOWN");
+        }
+        return set(who, codec);
+    }
+
+    /**
+     * Unregisters the codec for the given WHO: frames of this WHO will be rejected as unsupported
+     *
+     * @param who the WHO
+     * @return the codec previously registered for the WHO, or null
+     */
+    public static synchronized WhoCodec unregister(Who who) {
+        return set(who, null);
+    }
+
+    /**
+     * Returns the codec registered for the given WHO
+     *
+     * @param who the WHO
+     * @return the codec, or null if no codec is registered for the WHO
+     */
+    public static WhoCodec get(Who who) {
+        return codecs[who.ordinal()];
+    }
+
+    /**
+     * Checks if a codec is registered for the given WHO
+     *
+     * @param who the WHO
+     * @return true if frames of this WHO can be parsed
+     */
+    public static boolean isSupported(Who who) {
+        return get(who) != null;
+    }
+
+    private static WhoCodec set(Who who, WhoCodec codec) {
+        WhoCodec[] c = codecs.clone();
+        WhoCodec previous = c[who.ordinal()];
+        c[who.ordinal()] = codec;
+        codecs = c;
+        return previous;
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+
+import org.openwebnet4j.message.Who;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * {@link OWNMetrics} publishing measurements to a Micrometer {@link MeterRegistry}. Requires micrometer-core on the
+ * classpath, which is an optional dependency of this library.
+ * <p>
+ * Meters published (all with the common tags given to the constructor, for example the gateway name):
+ * <ul>
+ * <li><code>openwebnet.command.latency</code> timer with histogram, tags <code>who</code>, <code>outcome</code></li>
+ * <li><code>openwebnet.events</code> counter, tag <code>who</code></li>
+ * <li><code>openwebnet.frames.rejected</code> counter, tag <code>reason</code> (invalid/unsupported)</li>
+ * <li><code>openwebnet.notifier.queue</code> gauge</li>
+ * <li><code>openwebnet.reconnect.attempts</code> counter, tag <code>result</code> (success/failure)</li>
+ * <li><code>openwebnet.handshake</code> timer, tags <code>type</code>, <code>result</code></li>
+ * </ul>
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class MicrometerMetrics implements OWNMetrics {
+
+    private static final String UNKNOWN = "UNKNOWN";
+
+    private final MeterRegistry registry;
+    private final Tags tags;
+
+    // meters are cached to avoid a registry lookup for each measurement
+    private final ConcurrentHashMap<String, Timer[]> commandTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Counter> eventCounters = new ConcurrentHashMap<>();
+    private final Counter invalidFrames;
+    private final Counter unsupportedFrames;
+    private final Counter reconnectSuccesses;
+    private final Counter reconnectFailures;
+    // the gauge reads the queue of the current connector, which changes if the gateway is connected again
+    private final AtomicReference<IntSupplier> notifierQueue = new AtomicReference<>(() -> 0);
+
+    /**
+     * Creates metrics publishing to registry
+     *
+     * @param registry the {@link MeterRegistry}
+     * @param tags tags added to all meters, for example <code>Tags.of("gateway", "home")</code>
+     */
+    public MicrometerMetrics(MeterRegistry registry, Tags tags) {
+        this.registry = registry;
+        this.tags = tags;
+        invalidFrames = Counter.builder("openwebnet.frames.rejected").tags(tags).tag("reason", "invalid")
+                .register(registry);
+        unsupportedFrames = Counter.builder("openwebnet.frames.rejected").tags(tags).tag("reason", "unsupported")
+                .register(registry);
+        reconnectSuccesses = Counter.builder("openwebnet.reconnect.attempts").tags(tags).tag("result", "success")
+                .register(registry);
+        reconnectFailures = Counter.builder("openwebnet.reconnect.attempts").tags(tags).tag("result", "failure")
+                .register(registry);
+        Gauge.builder("openwebnet.notifier.queue", notifierQueue, q -> q.get().getAsInt()).tags(tags)
+                .strongReference(true).register(registry);
+    }
+
+    /**
+     * Creates metrics publishing to registry, without common tags
+     *
+     * @param registry the {@link MeterRegistry}
+     */
+    public MicrometerMetrics(MeterRegistry registry) {
+        this(registry, Tags.empty());
+    }
+
+    private static String name(Who who) {
+        return (who != null ? who.name() : UNKNOWN);
+    }
+
+    @Override
+    public void commandCompleted(Who who, Outcome outcome, long durationNanos) {
+        String whoName = name(who);
+        Timer[] timers = commandTimers.computeIfAbsent(whoName, w -> new Timer[Outcome.values().length]);
+        Timer timer = timers[outcome.ordinal()];
+        if (timer == null) {
+            // registry returns the same timer if registered concurrently by another thread
+            timer = Timer.builder("openwebnet.command.latency").tags(tags).tag("who", whoName)
+                    .tag("outcome", outcome.name()).publishPercentileHistogram().register(registry);
+            timers[outcome.ordinal()] = timer;
+        }
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void eventReceived(Who who) {
+        eventCounters.computeIfAbsent(name(who),
+                w -> Counter.builder("openwebnet.events").tags(tags).tag("who", w).register(registry)).increment();
+    }
+
+    @Override
+    public void frameParseFailed(boolean unsupported) {
+        (unsupported ? unsupportedFrames : invalidFrames).increment();
+    }
+
+    @Override
+    public void registerNotifierQueue(IntSupplier depth) {
+        notifierQueue.set(depth);
+    }
+
+    @Override
+    public void reconnectAttempted(boolean success) {
+        (success ? reconnectSuccesses : reconnectFailures).increment();
+    }
+
+    @Override
+    public void handshakeCompleted(String type, long durationNanos, boolean success) {
+        Timer.builder("openwebnet.handshake").tags(tags).tag("type", type)
+                .tag("result", success ? "success" : "failure").register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+}
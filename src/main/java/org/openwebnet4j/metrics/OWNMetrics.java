@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.metrics;
+
+import java.util.function.IntSupplier;
+
+import org.openwebnet4j.message.Who;
+
+/**
+ * Receives measurements from an {@link org.openwebnet4j.OpenGateway} and its connector: command latencies, events
+ * received, invalid frames, notifier queue depth, reconnects and handshakes. Set an implementation with
+ * {@link org.openwebnet4j.OpenGateway#setMetrics(OWNMetrics)}; by default measurements are discarded
+ * ({@link #NOOP}). See {@link MicrometerMetrics} for an implementation publishing to a Micrometer MeterRegistry.
+ * <p>
+ * Methods are called on the threads sending commands and receiving frames, so implementations must be thread-safe
+ * and must not block.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public interface OWNMetrics {
+
+    /** Outcome of a command */
+    enum Outcome {
+        /** command answered with ACK */
+        ACK,
+        /** command answered with NACK (or another final response that is not ACK) */
+        NACK,
+        /** command answered with BUSY_NACK */
+        BUSY_NACK,
+        /** no final response received before the command timeout */
+        TIMEOUT,
+        /** command failed because of a connection error, or it was cancelled */
+        ERROR
+    }
+
+    /** Implementation that discards all measurements */
+    OWNMetrics NOOP = new OWNMetrics() {
+    };
+
+    /**
+     * Called when a command has been completed
+     *
+     * @param who the {@link Who} of the command, or null if unknown
+     * @param outcome the {@link Outcome} of the command
+     * @param durationNanos (ns) time from when the command was queued to when it was completed
+     */
+    default void commandCompleted(Who who, Outcome outcome, long durationNanos) {
+    }
+
+    /**
+     * Called for each event message received on the MON connection
+     *
+     * @param who the {@link Who} of the message, or null if unknown
+     */
+    default void eventReceived(Who who) {
+    }
+
+    /**
+     * Called when a frame received from the gateway cannot be parsed
+     *
+     * @param unsupported true if the frame is valid but not supported, false if it is invalid
+     */
+    default void frameParseFailed(boolean unsupported) {
+    }
+
+    /**
+     * Called when the metrics are set on a connector, to register the depth of the queue of messages waiting to be
+     * notified to the gateway. Called again with the new queue if the gateway creates a new connector.
+     *
+     * @param depth supplier of the current number of messages in the notifier queue
+     */
+    default void registerNotifierQueue(IntSupplier depth) {
+    }
+
+    /**
+     * Called after each reconnect attempt
+     *
+     * @param success true if the gateway has been reconnected
+     */
+    default void reconnectAttempted(boolean success) {
+    }
+
+    /**
+     * Called when opening a MON or CMD connection to the gateway has completed, successfully or not
+     *
+     * @param type the connection type ("MON" or "CMD")
+     * @param durationNanos (ns) time to connect and complete the handshake
+     * @param success true if the handshake has been completed
+     */
+    default void handshakeCompleted(String type, long durationNanos, boolean success) {
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the threads used by the library: Java 21 implementation, supporting virtual threads. See the Java 8
+ * implementation in the base directory of the multi-release JAR for the documentation of the methods.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public final class OWNThreads {
+
+    private static volatile boolean virtualThreads = false;
+
+    private OWNThreads() {
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        return true;
+    }
+
+    public static boolean isVirtualThreadsEnabled() {
+        return virtualThreads;
+    }
+
+    public static void setVirtualThreadsEnabled(boolean enabled) {
+        virtualThreads = enabled;
+    }
+
+    public static Thread newThread(String name, Runnable task) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name(name).unstarted(task);
+        }
+        return new Thread(task, name);
+    }
+
+    public static ThreadFactory newThreadFactory(String prefix) {
+        if (virtualThreads) {
+            return Thread.ofVirtual().name(prefix + "-", 1).factory();
+        }
+        AtomicInteger threadNum = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + threadNum.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.communication.GatewaySimulator;
+import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.Where;
+import org.openwebnet4j.message.Who;
+
+/**
+ * Tests for the discovery of {@link BUSGateway}, using a {@link GatewaySimulator}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class BUSGatewayDiscoveryTest {
+
+    /* records discovery notifications */
+    private static class DiscoveryListener implements GatewayListener {
+        final Map<Who, Integer> found = new ConcurrentHashMap<>();
+        final Map<Who, OWNException> errors = new ConcurrentHashMap<>();
+        final AtomicInteger newDevices = new AtomicInteger();
+        volatile CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void onConnected() {
+        }
+
+        @Override
+        public void onConnectionError(OWNException error) {
+        }
+
+        @Override
+        public void onConnectionClosed() {
+        }
+
+        @Override
+        public void onDisconnected(OWNException error) {
+        }
+
+        @Override
+        public void onReconnected() {
+        }
+
+        @Override
+        public void onEventMessage(OpenMessage msg) {
+        }
+
+        @Override
+        public void onNewDevice(Where where, OpenDeviceType deviceType, BaseOpenMessage message) {
+            newDevices.incrementAndGet();
+        }
+
+        @Override
+        public void onDiscoveryProgress(Who who, int devicesFound, OWNException error) {
+            found.put(who, devicesFound);
+            if (error != null) {
+                errors.put(who, error);
+            }
+        }
+
+        @Override
+        public void onDiscoveryCompleted() {
+            completed.countDown();
+        }
+
+        void reset() {
+            found.clear();
+            errors.clear();
+            newDevices.set(0);
+            completed = new CountDownLatch(1);
+        }
+    }
+
+    private GatewaySimulator sim;
+    private BUSGateway gw;
+    private final DiscoveryListener listener = new DiscoveryListener();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        sim = new GatewaySimulator(0);
+        sim.setDevices(3, 2, 2, 1);
+        sim.start();
+        gw = new BUSGateway("localhost", sim.getPort(), "12345");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gw.closeConnection();
+        sim.stop();
+    }
+
+    private void connect() throws OWNException {
+        gw.subscribe(listener);
+        gw.connect();
+    }
+
+    @Test
+    public void testFailedWhoDoesNotAbortDiscovery() throws Exception {
+        connect();
+        gw.discoverDevices();
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertFalse(gw.isDiscovering());
+
+        // one progress notification for each WHO, failures are reported for their WHO only
+        assertEquals(7, listener.found.size());
+        assertEquals(3, listener.found.get(Who.LIGHTING));
+        assertEquals(2, listener.found.get(Who.AUTOMATION));
+        assertEquals(2, listener.found.get(Who.THERMOREGULATION_DIAGNOSTIC));
+        assertEquals(1, listener.found.get(Who.ENERGY_MANAGEMENT_DIAGNOSTIC));
+        // simulated gateway answers NACK to CEN+, AUX and alarm requests
+        assertEquals(3, listener.errors.size());
+        assertTrue(listener.errors.containsKey(Who.BURGLAR_ALARM));
+        assertEquals(0, listener.found.get(Who.BURGLAR_ALARM));
+        assertEquals(8, listener.newDevices.get());
+        assertEquals(8, gw.getDiscoveredDevicesCount());
+    }
+
+    @Test
+    public void testAllFailedResetsDiscovering() throws Exception {
+        connect();
+        sim.setDropRate(1); // every CMD connection is closed instead of answering
+        assertThrows(OWNException.class, () -> gw.discoverDevices());
+        assertFalse(gw.isDiscovering());
+        waitFor(() -> listener.errors.size() == 7); // listeners are notified asynchronously
+        assertEquals(1, listener.completed.getCount()); // not completed
+
+        // next discovery is not skipped
+        sim.setDropRate(0);
+        listener.reset();
+        gw.discoverDevices();
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(8, listener.newDevices.get());
+    }
+
+    @Test
+    public void testIncrementalDiscovery() throws Exception {
+        connect();
+        gw.discoverDevices();
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(8, listener.newDevices.get());
+
+        // not incremental (default): all devices are notified again
+        listener.reset();
+        gw.discoverDevices();
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(8, listener.newDevices.get());
+
+        // incremental: only new devices are notified
+        gw.setIncrementalDiscovery(true);
+        listener.reset();
+        gw.discoverDevices();
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, listener.newDevices.get());
+        assertEquals(3, listener.found.get(Who.LIGHTING)); // progress still counts all devices found
+
+        gw.clearDiscoveredDevices();
+        listener.reset();
+        gw.discoverDevices();
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(8, listener.newDevices.get());
+    }
+
+    @Test
+    public void testParallelScansWithPool() throws Exception {
+        gw.setCmdPoolSize(7);
+        connect();
+        sim.setResponseDelay(500, 500);
+        long start = System.nanoTime();
+        gw.discoverDevices();
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue(elapsed < 2000, "discovery took " + elapsed + "ms"); // 7 * 500ms if sequential
+        assertTrue(listener.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(7, listener.found.size());
+    }
+}
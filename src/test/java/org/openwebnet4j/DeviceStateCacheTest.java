@@ -0,0 +1,216 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.communication.GatewaySimulator;
+import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.message.Automation;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.FrameException;
+import org.openwebnet4j.message.Lighting;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.Where;
+import org.openwebnet4j.message.Who;
+
+/**
+ * Tests for {@link DeviceStateCache}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class DeviceStateCacheTest {
+
+    private static BaseOpenMessage msg(String frame) throws FrameException {
+        return (BaseOpenMessage) BaseOpenMessage.parse(frame);
+    }
+
+    @Test
+    public void testStateMessages() throws FrameException {
+        DeviceStateCache cache = new DeviceStateCache(null);
+        cache.update(msg("*1*1*21##"));
+        cache.update(msg("*1*0*21##"));
+        cache.update(msg("*#4*1*0*0215##")); // thermo zone 1 temperature
+        assertEquals("*1*0*21##", cache.getState(Who.LIGHTING, "21").getFrameValue());
+        assertEquals(2, cache.size());
+
+        // button pressures and scenario activations are not device states
+        cache.update(msg("*15*1*21##"));
+        cache.update(msg("*25*21#1*212##"));
+        cache.update(msg("*0*1*21##"));
+        assertEquals(2, cache.size());
+        // dry contacts are
+        cache.update(msg("*25*31#1*312##"));
+        assertNotNull(cache.getState(Who.CEN_PLUS_SCENARIO_SCHEDULER, "312"));
+
+        // relative commands make the state unknown
+        cache.update(msg("*1*32*21##"));
+        assertNull(cache.getState(Who.LIGHTING, "21"));
+    }
+
+    @Test
+    public void testAreaAndGeneralInvalidation() throws FrameException {
+        DeviceStateCache cache = new DeviceStateCache(null);
+        cache.update(msg("*1*1*21##"));
+        cache.update(msg("*1*1*22##"));
+        cache.update(msg("*1*1*31##"));
+        cache.update(msg("*2*1*21##"));
+
+        cache.update(msg("*1*0*2##")); // area 2 OFF
+        assertNull(cache.getState(Who.LIGHTING, "21"));
+        assertNull(cache.getState(Who.LIGHTING, "22"));
+        assertNull(cache.getState(Who.LIGHTING, "2")); // area command is not stored
+        assertNotNull(cache.getState(Who.LIGHTING, "31"));
+        assertNotNull(cache.getState(Who.AUTOMATION, "21"));
+
+        cache.update(msg("*1*1*22##"));
+        cache.update(msg("*1*0*#5##")); // group: members are not known
+        assertNull(cache.getState(Who.LIGHTING, "22"));
+        assertNull(cache.getState(Who.LIGHTING, "31"));
+
+        cache.update(msg("*1*1*22##"));
+        cache.update(msg("*1*1*0##")); // general ON
+        assertEquals(1, cache.size());
+        assertNotNull(cache.getState(Who.AUTOMATION, "21"));
+        cache.update(msg("*2*0*0##"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testArea10Invalidation() throws FrameException {
+        DeviceStateCache cache = new DeviceStateCache(null);
+        cache.update(msg("*1*1*1001##"));
+        cache.update(msg("*1*1*1015##"));
+        cache.update(msg("*1*1*11##"));
+        cache.update(msg("*1*1*01##"));
+
+        cache.update(msg("*1*0*10##")); // area 10 OFF
+        assertNull(cache.getState(Who.LIGHTING, "10")); // area command is not stored
+        assertNull(cache.getState(Who.LIGHTING, "1001"));
+        assertNull(cache.getState(Who.LIGHTING, "1015"));
+        assertNotNull(cache.getState(Who.LIGHTING, "11"));
+        assertNotNull(cache.getState(Who.LIGHTING, "01"));
+
+        cache.update(msg("*1*0*00##")); // area 00 OFF
+        assertNull(cache.getState(Who.LIGHTING, "01"));
+        assertNotNull(cache.getState(Who.LIGHTING, "11"));
+    }
+
+    @Test
+    public void testCacheFailureDoesNotDropEvent() throws Exception {
+        BUSGateway gw = new BUSGateway("localhost", 20000, "12345");
+        BlockingQueue<OpenMessage> received = new LinkedBlockingQueue<>();
+        gw.subscribe(new GatewayListener() {
+            @Override
+            public void onEventMessage(OpenMessage msg) {
+                received.add(msg);
+            }
+
+            @Override
+            public void onConnected() {
+            }
+
+            @Override
+            public void onConnectionError(OWNException error) {
+            }
+
+            @Override
+            public void onConnectionClosed() {
+            }
+
+            @Override
+            public void onDisconnected(OWNException error) {
+            }
+
+            @Override
+            public void onReconnected() {
+            }
+
+            @Override
+            public void onNewDevice(Where where, OpenDeviceType deviceType, BaseOpenMessage message) {
+            }
+
+            @Override
+            public void onDiscoveryCompleted() {
+            }
+        });
+        // message making the cache fail while it is updated
+        OpenMessage failing = new Lighting("*1*1*21##") {
+            @Override
+            public Where getWhere() {
+                throw new IllegalStateException("broken WHERE");
+            }
+        };
+        gw.onMessage(failing);
+        gw.onMessage(msg("*1*1*22##"));
+        assertSame(failing, received.poll(5, TimeUnit.SECONDS));
+        assertEquals("*1*1*22##", received.poll(5, TimeUnit.SECONDS).getFrameValue());
+        assertNotNull(gw.getStateCache().getState(Who.LIGHTING, "22"));
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        GatewaySimulator sim = new GatewaySimulator(0);
+        sim.start();
+        BUSGateway gw = new BUSGateway("localhost", sim.getPort(), "12345");
+        try {
+            gw.connect();
+            DeviceStateCache cache = gw.getStateCache();
+            long commands = sim.getCommandCount();
+
+            // miss: request is sent and response merged
+            BaseOpenMessage state = cache.query(Lighting.requestStatus("11"), 60000);
+            assertEquals("*1*0*11##", state.getFrameValue());
+            assertEquals(commands + 1, sim.getCommandCount());
+            assertEquals(1, cache.getMisses());
+            // hit: no request sent
+            assertSame(state, cache.query(Lighting.requestStatus("11"), 60000));
+            assertEquals(commands + 1, sim.getCommandCount());
+            assertEquals(1, cache.getHits());
+
+            // state older than maxAge: request is sent again
+            Thread.sleep(50);
+            assertNotNull(cache.query(Lighting.requestStatus("11"), 10));
+            assertEquals(commands + 2, sim.getCommandCount());
+            assertEquals(2, cache.getMisses());
+
+            // events update the cache
+            sim.sendEvent("*1*1*11##");
+            waitFor(() -> "*1*1*11##".equals(cache.getState(Who.LIGHTING, "11").getFrameValue()));
+
+            // general request: null is returned, states of the single devices are merged
+            assertNull(cache.query(Automation.requestStatus("0"), 60000));
+            assertEquals("*2*0*33##", cache.getState(Who.AUTOMATION, "33").getFrameValue()); // first automation
+            assertNotNull(cache.getState(Who.AUTOMATION, "34"));
+            long sent = sim.getCommandCount();
+            assertNotNull(cache.query(Automation.requestStatus("34"), 60000));
+            assertEquals(sent, sim.getCommandCount());
+
+            // cache is cleared when MON is disconnected
+            assertTrue(cache.size() > 0);
+            sim.dropMonConnections();
+            waitFor(() -> cache.size() == 0);
+        } finally {
+            gw.closeConnection();
+            sim.stop();
+        }
+    }
+}
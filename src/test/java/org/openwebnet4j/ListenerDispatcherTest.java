@@ -0,0 +1,314 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.ListenerDispatcher.QueuePolicy;
+import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.Lighting;
+import org.openwebnet4j.message.Lighting.WhatLighting;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.Where;
+import org.openwebnet4j.message.Who;
+
+/**
+ * Tests for {@link ListenerDispatcher}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class ListenerDispatcherTest {
+
+    private static final long WAIT = 5; // s
+
+    /* listener passing event messages to a consumer */
+    private static class TestListener implements GatewayListener {
+        private final Consumer<OpenMessage> onEvent;
+
+        TestListener(Consumer<OpenMessage> onEvent) {
+            this.onEvent = onEvent;
+        }
+
+        @Override
+        public void onEventMessage(OpenMessage msg) {
+            onEvent.accept(msg);
+        }
+
+        @Override
+        public void onConnected() {
+        }
+
+        @Override
+        public void onConnectionError(OWNException error) {
+        }
+
+        @Override
+        public void onConnectionClosed() {
+        }
+
+        @Override
+        public void onDisconnected(OWNException error) {
+        }
+
+        @Override
+        public void onReconnected() {
+        }
+
+        @Override
+        public void onNewDevice(Where where, OpenDeviceType deviceType, BaseOpenMessage message) {
+        }
+
+        @Override
+        public void onDiscoveryCompleted() {
+        }
+    }
+
+    @Test
+    public void testPerListenerOrdering() throws Exception {
+        final int listenersNum = 4;
+        final int events = 2000;
+        ListenerDispatcher d = new ListenerDispatcher();
+        d.setPoolSize(3);
+        List<List<String>> received = new ArrayList<>();
+        AtomicBoolean overlap = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(listenersNum * events);
+        for (int i = 0; i < listenersNum; i++) {
+            List<String> rec = Collections.synchronizedList(new ArrayList<>());
+            received.add(rec);
+            AtomicInteger active = new AtomicInteger();
+            d.add(new TestListener(msg -> {
+                if (active.incrementAndGet() > 1) {
+                    overlap.set(true); // the same listener must never be notified in parallel
+                }
+                rec.add(msg.getFrameValue());
+                active.decrementAndGet();
+                done.countDown();
+            }));
+        }
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < events; i++) {
+            OpenMessage msg = Lighting.requestTurnOn(Integer.toString(11 + i % 80));
+            sent.add(msg.getFrameValue());
+            d.dispatchMessage(msg);
+        }
+        assertTrue(done.await(WAIT, TimeUnit.SECONDS));
+        assertFalse(overlap.get());
+        for (List<String> rec : received) {
+            assertEquals(sent, rec);
+        }
+        waitFor(() -> d.getQueuedEvents() == 0); // released after the listener returns
+    }
+
+    @Test
+    public void testBlockPolicy() throws Exception {
+        ListenerDispatcher d = new ListenerDispatcher();
+        d.setQueueCapacity(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger received = new AtomicInteger();
+        d.add(new TestListener(msg -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.incrementAndGet();
+        }));
+        d.dispatchMessage(Lighting.requestTurnOn("11"));
+        d.dispatchMessage(Lighting.requestTurnOn("12"));
+        assertEquals(2, d.getQueuedEvents());
+        Thread producer = new Thread(() -> d.dispatchMessage(Lighting.requestTurnOn("13")));
+        producer.start();
+        producer.join(300);
+        assertTrue(producer.isAlive(), "producer should wait for room in the queue");
+        release.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(WAIT));
+        assertFalse(producer.isAlive());
+        waitFor(() -> received.get() == 3);
+        assertEquals(0, d.getDiscardedEvents());
+    }
+
+    @Test
+    public void testDiscardPolicy() throws Exception {
+        ListenerDispatcher d = new ListenerDispatcher();
+        d.setQueueCapacity(2);
+        d.setQueuePolicy(QueuePolicy.DISCARD);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        d.add(new TestListener(msg -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.add(msg.getFrameValue());
+        }));
+        for (int i = 11; i <= 15; i++) {
+            d.dispatchMessage(Lighting.requestTurnOn(Integer.toString(i))); // never blocks
+        }
+        assertEquals(3, d.getDiscardedEvents());
+        release.countDown();
+        waitFor(() -> received.size() == 2);
+        assertEquals(Lighting.requestTurnOn("11").getFrameValue(), received.get(0));
+        assertEquals(Lighting.requestTurnOn("12").getFrameValue(), received.get(1));
+    }
+
+    @Test
+    public void testReentrantCallsFromDispatcherThread() throws Exception {
+        ListenerDispatcher d = new ListenerDispatcher();
+        d.setQueueCapacity(1);
+        AtomicInteger received = new AtomicInteger();
+        AtomicInteger others = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        TestListener other = new TestListener(msg -> {
+            others.incrementAndGet();
+            done.countDown();
+        });
+        TestListener[] self = new TestListener[1];
+        self[0] = new TestListener(msg -> {
+            received.incrementAndGet();
+            // unsubscribing and dispatching from a listener must not deadlock, even with a full queue
+            d.remove(self[0]);
+            d.add(other);
+            d.dispatchMessage(Lighting.requestTurnOff("11"));
+        });
+        d.add(self[0]);
+        d.dispatchMessage(Lighting.requestTurnOn("11"));
+        assertTrue(done.await(WAIT, TimeUnit.SECONDS));
+        d.dispatchMessage(Lighting.requestTurnOn("12"));
+        waitFor(() -> others.get() == 2);
+        assertEquals(1, received.get()); // no more events after unsubscribing
+    }
+
+    @Test
+    public void testFilterIndexRouting() throws Exception {
+        ListenerDispatcher d = new ListenerDispatcher();
+        String[] frames = { "*1*1*21##", "*1*0*22##", "*1*1*31##", "*1*0*31##", "*2*1*21##", "*1*1*2##" };
+        List<List<String>> received = new ArrayList<>();
+        List<TestListener> listeners = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            List<String> rec = Collections.synchronizedList(new ArrayList<>());
+            received.add(rec);
+            listeners.add(new TestListener(msg -> rec.add(msg.getFrameValue())));
+        }
+        d.add(listeners.get(0)); // all messages
+        d.add(EventFilter.forWho(Who.LIGHTING), listeners.get(1));
+        d.add(EventFilter.forWho(Who.LIGHTING).where("21"), listeners.get(2));
+        d.add(EventFilter.forWho(Who.LIGHTING).whereStartsWith("2"), listeners.get(3));
+        d.add(EventFilter.forWho(Who.LIGHTING).whereStartsWith("3").what(WhatLighting.ON), listeners.get(4));
+        d.add(EventFilter.forWho(Who.LIGHTING).where("21"), listeners.get(5)); // overlapping filters
+        d.add(EventFilter.forWho(Who.LIGHTING).whereStartsWith("2"), listeners.get(5));
+        d.add(EventFilter.forWho(Who.AUTOMATION), listeners.get(6));
+        for (String f : frames) {
+            d.dispatchMessage(BaseOpenMessage.parse(f));
+        }
+        List<List<String>> expected = new ArrayList<>();
+        expected.add(new ArrayList<>(Arrays.asList(frames)));
+        expected.add(new ArrayList<>(Arrays.asList(frames[0], frames[1], frames[2], frames[3], frames[5])));
+        expected.add(new ArrayList<>(Arrays.asList(frames[0])));
+        expected.add(new ArrayList<>(Arrays.asList(frames[0], frames[1], frames[5])));
+        expected.add(new ArrayList<>(Arrays.asList(frames[2])));
+        expected.add(new ArrayList<>(Arrays.asList(frames[0], frames[1], frames[5]))); // each message once
+        expected.add(new ArrayList<>(Arrays.asList(frames[4])));
+        checkReceived(expected, received);
+
+        d.remove(listeners.get(3));
+        d.dispatchMessage(BaseOpenMessage.parse(frames[1]));
+        expected.get(0).add(frames[1]);
+        expected.get(1).add(frames[1]);
+        expected.get(5).add(frames[1]);
+        checkReceived(expected, received);
+    }
+
+    @Test
+    public void testAreaGroupIndexRouting() throws Exception {
+        ListenerDispatcher d = new ListenerDispatcher();
+        String[] frames = { "*1*1*21##", "*1*1*0201##", "*1*1*1001##", "*1*0*10##", "*1*1*15##", "*1*1*#1##",
+                "*1*1*#10##", "*2*1*21##" };
+        List<List<String>> received = new ArrayList<>();
+        List<TestListener> listeners = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            List<String> rec = Collections.synchronizedList(new ArrayList<>());
+            received.add(rec);
+            listeners.add(new TestListener(msg -> rec.add(msg.getFrameValue())));
+        }
+        d.add(EventFilter.forWho(Who.LIGHTING).area(2), listeners.get(0));
+        d.add(EventFilter.forWho(Who.LIGHTING).area(10), listeners.get(1));
+        d.add(EventFilter.forWho(Who.LIGHTING).area(1), listeners.get(2));
+        d.add(EventFilter.forWho(Who.LIGHTING).group(1), listeners.get(3));
+        d.add(EventFilter.forWho(Who.LIGHTING).area(2).what(WhatLighting.ON), listeners.get(4));
+        d.add(EventFilter.forWho(Who.AUTOMATION).area(2), listeners.get(4));
+        for (String f : frames) {
+            d.dispatchMessage(BaseOpenMessage.parse(f));
+        }
+        List<List<String>> expected = new ArrayList<>();
+        expected.add(Arrays.asList(frames[0], frames[1]));
+        expected.add(Arrays.asList(frames[2], frames[3]));
+        expected.add(Arrays.asList(frames[4]));
+        expected.add(Arrays.asList(frames[5]));
+        expected.add(Arrays.asList(frames[0], frames[1], frames[7]));
+        checkReceived(expected, received);
+    }
+
+    private static void checkReceived(List<List<String>> expected, List<List<String>> received) throws Exception {
+        for (int i = 0; i < expected.size(); i++) {
+            List<String> exp = expected.get(i);
+            List<String> rec = received.get(i);
+            waitFor(() -> rec.size() >= exp.size());
+        }
+        Thread.sleep(100); // no other message delivered
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), received.get(i), "listener " + i);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedListenersView() {
+        OpenGateway gw = new OpenGateway() {
+            @Override
+            protected void initConnector() {
+            }
+
+            @Override
+            public boolean isCmdConnectionReady() {
+                return false;
+            }
+
+            @Override
+            protected void discoverDevicesInternal() {
+            }
+        };
+        TestListener l = new TestListener(msg -> {
+        });
+        gw.subscribe(l);
+        gw.subscribe(EventFilter.forWho(Who.LIGHTING), l);
+        assertEquals(Collections.singletonList(l), gw.listeners);
+        gw.unsubscribe(l);
+        assertTrue(gw.listeners.isEmpty());
+    }
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.communication.CommandPriority;
+import org.openwebnet4j.communication.ManualConnector;
+import org.openwebnet4j.communication.OWNAuthException;
+import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.communication.OpenConnector;
+import org.openwebnet4j.communication.Response;
+import org.openwebnet4j.message.OpenMessage;
+
+/**
+ * Tests for {@link ReconnectManager}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class ReconnectManagerTest {
+
+    /* connector failing to open MON (or CMD) a given number of times */
+    private static class FailingConnector extends ManualConnector {
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicInteger cmdAttempts = new AtomicInteger();
+        volatile int failures;
+        volatile int cmdFailures = 0;
+        volatile boolean authError = false;
+
+        FailingConnector(int failures) {
+            this.failures = failures;
+            isCmdConnected = false;
+        }
+
+        @Override
+        public void openMonConn() throws OWNException {
+            attempts.incrementAndGet();
+            if (authError) {
+                throw new OWNAuthException("wrong password");
+            } else if (failures > 0) {
+                failures--;
+                throw new OWNException("gateway not reachable");
+            }
+            isMonConnected = true;
+        }
+
+        @Override
+        public void openCmdConn() throws OWNException {
+            cmdAttempts.incrementAndGet();
+            if (cmdFailures > 0) {
+                cmdFailures--;
+                throw new OWNException("CMD not reachable");
+            }
+            isCmdConnected = true;
+        }
+    }
+
+    /* scheduler keeping scheduled attempts until the test runs them */
+    private static class ManualScheduler implements ReconnectManager.AttemptScheduler {
+        final List<Long> delays = new ArrayList<>();
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<Void> schedule(Runnable task, long delay) {
+            delays.add(delay);
+            tasks.add(task);
+            CompletableFuture<Void> f = new CompletableFuture<>();
+            futures.add(f);
+            return f;
+        }
+
+        /* runs the last scheduled task, unless it has been cancelled */
+        void runLast() {
+            int i = tasks.size() - 1;
+            if (!futures.get(i).isCancelled()) {
+                try {
+                    tasks.get(i).run();
+                    futures.get(i).complete(null);
+                } catch (RuntimeException e) {
+                    futures.get(i).completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private static class TestGateway extends OpenGateway {
+        volatile boolean parallel = false;
+        volatile int completeFailures = 0; // unchecked exceptions thrown by completeReconnect()
+
+        TestGateway(OpenConnector connector, ManualScheduler scheduler, double random) {
+            this.connector = connector;
+            reconnectManager = new ReconnectManager(this, scheduler, () -> random);
+        }
+
+        @Override
+        protected boolean isParallelConnectSupported() {
+            return parallel;
+        }
+
+        @Override
+        void completeReconnect() throws OWNException {
+            if (completeFailures > 0) {
+                completeFailures--;
+                throw new IllegalStateException("unexpected");
+            }
+            super.completeReconnect();
+        }
+
+        @Override
+        protected void initConnector() {
+        }
+
+        @Override
+        public boolean isCmdConnectionReady() {
+            return isConnected;
+        }
+
+        @Override
+        protected void discoverDevicesInternal() {
+        }
+
+        @Override
+        protected Response sendInternal(OpenMessage msg, CommandPriority priority) {
+            return new Response(msg); // management dimensions requested after reconnecting
+        }
+    }
+
+    @Test
+    public void testBackoffGrowth() {
+        FailingConnector conn = new FailingConnector(7);
+        ManualScheduler sched = new ManualScheduler();
+        TestGateway gw = new TestGateway(conn, sched, 0); // random 0: no jitter
+        CompletableFuture<Void> cycle = gw.reconnectAsync();
+        assertSame(cycle, gw.reconnectAsync()); // cycle already started
+        for (int i = 0; i < 8; i++) {
+            sched.runLast();
+        }
+        assertEquals(Arrays.asList(2500L, 5000L, 10000L, 20000L, 40000L, 60000L, 60000L, 60000L), sched.delays);
+        assertEquals(8, conn.attempts.get());
+        assertTrue(cycle.isDone() && !cycle.isCompletedExceptionally());
+        assertTrue(gw.isConnected());
+
+        // a new cycle starts again from the initial interval
+        gw.isConnected = false;
+        conn.failures = 1;
+        CompletableFuture<Void> cycle2 = gw.reconnectAsync();
+        assertNotSame(cycle, cycle2);
+        sched.runLast();
+        sched.runLast();
+        assertEquals(Arrays.asList(2500L, 5000L), sched.delays.subList(8, 10));
+        assertTrue(cycle2.isDone());
+    }
+
+    @Test
+    public void testJitterBounds() {
+        ReconnectManager rm = new ReconnectManager(new TestGateway(null, null, 0));
+        for (double jitter : new double[] { 0, 0.2, 0.5, 1 }) {
+            rm.setJitter(jitter);
+            for (int i = 0; i < 1000; i++) {
+                long d = rm.jittered(10000);
+                assertTrue(d >= (long) (10000 * (1 - jitter)) && d <= 10000, "delay " + d + " jitter " + jitter);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> rm.setJitter(1.5));
+
+        ManualScheduler sched = new ManualScheduler();
+        TestGateway gw = new TestGateway(new FailingConnector(1), sched, 0.999);
+        gw.setReconnectJitter(0.5);
+        gw.reconnectAsync();
+        sched.runLast();
+        assertEquals(Arrays.asList(1252L, 2503L), sched.delays); // (1 - 0.5 * 0.999) * interval
+    }
+
+    @Test
+    public void testStopOnCloseConnection() {
+        FailingConnector conn = new FailingConnector(100);
+        ManualScheduler sched = new ManualScheduler();
+        TestGateway gw = new TestGateway(conn, sched, 0);
+        CompletableFuture<Void> cycle = gw.reconnectAsync();
+        sched.runLast();
+        assertEquals(1, conn.attempts.get());
+        assertEquals(2, sched.tasks.size());
+
+        gw.closeConnection();
+        assertTrue(cycle.isCancelled());
+        assertTrue(sched.futures.get(1).isCancelled()); // next attempt is cancelled
+        sched.tasks.get(1).run(); // an attempt already started when stopping
+        assertEquals(1, conn.attempts.get());
+        assertEquals(2, sched.tasks.size()); // no more attempts scheduled
+    }
+
+    @Test
+    public void testStopOnAuthError() {
+        FailingConnector conn = new FailingConnector(0);
+        conn.authError = true;
+        ManualScheduler sched = new ManualScheduler();
+        CompletableFuture<Void> cycle = new TestGateway(conn, sched, 0).reconnectAsync();
+        sched.runLast();
+        assertTrue(cycle.isCompletedExceptionally());
+        assertEquals(1, sched.tasks.size());
+    }
+
+    @Test
+    public void testParallelConnect() {
+        FailingConnector conn = new FailingConnector(0);
+        conn.cmdFailures = 1;
+        ManualScheduler sched = new ManualScheduler();
+        TestGateway gw = new TestGateway(conn, sched, 0);
+        gw.parallel = true;
+        CompletableFuture<Void> cycle = gw.reconnectAsync();
+
+        // CMD is opened by a task submitted to the same scheduler, not waited for by the attempt
+        sched.runLast();
+        assertEquals(1, conn.attempts.get());
+        assertEquals(0, conn.cmdAttempts.get());
+        assertEquals(Arrays.asList(2500L, 0L), sched.delays);
+        assertFalse(cycle.isDone());
+
+        // CMD fails: next attempt is scheduled with backoff
+        sched.runLast();
+        assertEquals(1, conn.cmdAttempts.get());
+        assertEquals(Arrays.asList(2500L, 0L, 5000L), sched.delays);
+        assertFalse(cycle.isDone());
+
+        sched.runLast();
+        sched.runLast();
+        assertEquals(2, conn.cmdAttempts.get());
+        assertTrue(cycle.isDone() && !cycle.isCompletedExceptionally());
+        assertTrue(gw.isConnected());
+    }
+
+    @Test
+    public void testUncheckedExceptionReschedules() {
+        FailingConnector conn = new FailingConnector(0);
+        ManualScheduler sched = new ManualScheduler();
+        TestGateway gw = new TestGateway(conn, sched, 0);
+        gw.completeFailures = 1;
+        CompletableFuture<Void> cycle = gw.reconnectAsync();
+        sched.runLast();
+        assertFalse(cycle.isDone());
+        assertEquals(Arrays.asList(2500L, 5000L), sched.delays); // re-scheduled, not stopped
+
+        sched.runLast();
+        assertTrue(cycle.isDone() && !cycle.isCompletedExceptionally());
+        assertTrue(gw.isConnected());
+    }
+}
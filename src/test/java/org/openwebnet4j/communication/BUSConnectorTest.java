@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.communication.GatewaySimulator.AuthMode;
+import org.openwebnet4j.message.Automation;
+import org.openwebnet4j.message.Lighting;
+import org.openwebnet4j.message.Who;
+
+/**
+ * Tests for the CMD connections pool of {@link BUSConnector}, using a {@link GatewaySimulator}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class BUSConnectorTest {
+
+    private static final String CMD = Lighting.requestTurnOn("11").getFrameValue();
+
+    private GatewaySimulator sim;
+    private BUSConnector conn;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        sim = new GatewaySimulator(0);
+        sim.setCmdIdleTimeout(0); // simulated gateway never closes idle CMD connections
+        sim.start();
+        conn = new BUSConnector("localhost", sim.getPort(), "12345");
+        conn.openCmdConn();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        conn.disconnect();
+        sim.stop();
+    }
+
+    @Test
+    public void testIdleSessionEviction() throws Exception {
+        conn.setCmdSessionIdleTimeout(300);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(1, sim.getHandshakeCount()); // session re-used
+        assertEquals(1, sim.getCmdSessions());
+
+        Thread.sleep(600);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount()); // idle session evicted and replaced by a new one
+        waitFor(() -> sim.getCmdSessions() == 1); // evicted session has been closed
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+    }
+
+    @Test
+    public void testSessionClosedAfterTimeout() throws Exception {
+        conn.getCommandTimeouts().setDefaultTimeout(200);
+        sim.setResponseDelay(600, 600);
+        assertThrows(OWNTimeoutException.class, () -> conn.sendCommandSynch(CMD));
+        assertEquals(1, sim.getHandshakeCount());
+
+        // the late response could arrive on the timed out session: it must be closed, not re-used
+        sim.setResponseDelay(0, 0);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+        waitFor(() -> sim.getCmdSessions() == 1);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+    }
+
+    @Test
+    public void testAsyncTimeoutClosesSession() throws Exception {
+        sim.setResponseDelay(600, 600);
+        CompletableFuture<Response> future = conn.sendCommandAsync(CMD, 200, TimeUnit.MILLISECONDS);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof OWNTimeoutException, e.getCause().toString());
+
+        // the session that timed out is closed, next command is sent on a new one
+        sim.setResponseDelay(0, 0);
+        assertTrue(conn.sendCommandAsync(CMD, 5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+        waitFor(() -> sim.getCmdSessions() == 1);
+    }
+
+    @Test
+    public void testTimeoutPerWho() throws Exception {
+        conn.getCommandTimeouts().setDefaultTimeout(5000);
+        conn.getCommandTimeouts().setTimeout(Who.LIGHTING, 300);
+        sim.setResponseDelay(1000, 1000);
+        long start = System.nanoTime();
+        OWNTimeoutException e = assertThrows(OWNTimeoutException.class, () -> conn.sendCommandSynch(CMD));
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue(elapsed >= 300 && elapsed < 1000, "timeout after " + elapsed + "ms");
+        assertTrue(e.getMessage().contains("300ms"), e.getMessage());
+
+        // the CMD session has been freed (pool size is 1): other WHOs use the default timeout and do not fail
+        String automation = Automation.requestStop("21").getFrameValue();
+        start = System.nanoTime();
+        assertTrue(conn.sendCommandSynch(automation).isSuccess());
+        elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue(elapsed >= 1000, "response after " + elapsed + "ms");
+        assertEquals(2, sim.getHandshakeCount());
+    }
+
+    @Test
+    public void testStandbyUsedOnPoolMiss() throws Exception {
+        conn.setCmdStandby(true);
+        waitFor(() -> sim.getHandshakeCount() == 2 && sim.getCmdSessions() == 2);
+
+        // pool session closed after a timeout
+        conn.getCommandTimeouts().setDefaultTimeout(200);
+        sim.setResponseDelay(600, 600);
+        assertThrows(OWNTimeoutException.class, () -> conn.sendCommandSynch(CMD));
+        sim.setResponseDelay(0, 0);
+        // new connections would now fail: command can only be sent on the standby connection
+        sim.setAuth(AuthMode.OPEN, "99999");
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+        waitFor(() -> sim.getAuthFailureCount() >= 1); // standby refill has been tried
+    }
+
+    @Test
+    public void testStandbyRefreshed() throws Exception {
+        conn.setCmdStandbyRefresh(300, 50);
+        conn.setCmdStandby(true);
+        waitFor(() -> sim.getHandshakeCount() == 2);
+
+        // standby connection older than refresh time is replaced, the old one closed
+        waitFor(() -> sim.getHandshakeCount() >= 3);
+        waitFor(() -> sim.getCmdSessions() == 2);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+    }
+
+    @Test
+    public void testStandbyDisabled() throws Exception {
+        conn.setCmdStandby(true);
+        assertTrue(conn.isCmdStandby());
+        waitFor(() -> sim.getCmdSessions() == 2);
+
+        conn.setCmdStandby(false);
+        assertFalse(conn.isCmdStandby());
+        waitFor(() -> sim.getCmdSessions() == 1); // standby connection closed
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+    }
+}
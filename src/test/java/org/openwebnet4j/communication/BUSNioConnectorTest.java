@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.communication.GatewaySimulator.AuthMode;
+import org.openwebnet4j.message.Lighting;
+import org.openwebnet4j.message.OpenMessage;
+
+/**
+ * Tests for {@link BUSNioConnector} and its {@link NioEventLoop}, using a {@link GatewaySimulator}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class BUSNioConnectorTest {
+
+    private static final String CMD = Lighting.requestTurnOn("11").getFrameValue();
+    private static final String CMD_NACK = "*1*11*11##"; // WHAT not supported by simulated lights
+
+    private GatewaySimulator sim;
+    private NioEventLoop loop;
+    private BUSNioConnector conn;
+    private final BlockingQueue<OpenMessage> received = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        sim = new GatewaySimulator(0);
+        sim.setCmdIdleTimeout(0); // simulated gateway never closes idle CMD connections
+        loop = new NioEventLoop("OWN-NIO-test");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (conn != null) {
+            conn.disconnect();
+        }
+        sim.stop();
+        loop.shutdown();
+    }
+
+    private void connect(AuthMode mode, String simPwd, String pwd) throws Exception {
+        sim.setAuth(mode, simPwd);
+        sim.start();
+        conn = new BUSNioConnector("localhost", sim.getPort(), pwd, loop);
+        conn.setListener(new ConnectorListener() {
+            @Override
+            public void onMessage(OpenMessage message) {
+                received.add(message);
+            }
+
+            @Override
+            public void onMonDisconnected(OWNException e) {
+            }
+        });
+    }
+
+    @Test
+    public void testOpenHandshake() throws Exception {
+        connect(AuthMode.OPEN, "12345", "12345");
+        conn.openCmdConn();
+        conn.openMonConn();
+        assertTrue(conn.isCmdConnected());
+        assertTrue(conn.isMonConnected());
+        waitFor(() -> sim.getHandshakeCount() == 2);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+    }
+
+    @Test
+    public void testHmacHandshake() throws Exception {
+        connect(AuthMode.HMAC_SHA2, "abcde", "abcde");
+        conn.openCmdConn();
+        waitFor(() -> sim.getHandshakeCount() == 1); // final ACK from client is read by gateway after handshake
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+    }
+
+    @Test
+    public void testWrongPassword() throws Exception {
+        connect(AuthMode.HMAC_SHA1, "abcde", "wrong");
+        assertThrows(OWNAuthException.class, () -> conn.openCmdConn());
+        assertFalse(conn.isCmdConnected());
+        waitFor(() -> sim.getAuthFailureCount() == 1);
+    }
+
+    @Test
+    public void testAckAndNack() throws Exception {
+        connect(AuthMode.NONE, "12345", "12345");
+        conn.openCmdConn();
+        Response res = conn.sendCommandSynch(CMD);
+        assertTrue(res.isSuccess());
+        assertTrue(res.getFinalResponse().isACK());
+
+        res = conn.sendCommandSynch(CMD_NACK);
+        assertFalse(res.isSuccess());
+        assertTrue(res.getFinalResponse().isNACK());
+
+        // status request: all response frames are collected before the final ACK
+        res = conn.sendCommandSynch(Lighting.requestStatus("11").getFrameValue());
+        assertTrue(res.isSuccess());
+        assertEquals("*1*1*11##", res.getResponseMessages().get(0).getFrameValue());
+        assertEquals(1, sim.getHandshakeCount()); // CMD session re-used
+    }
+
+    @Test
+    public void testTimeoutClosesSession() throws Exception {
+        connect(AuthMode.NONE, "12345", "12345");
+        conn.openCmdConn();
+        conn.getCommandTimeouts().setDefaultTimeout(200);
+        sim.setResponseDelay(600, 600);
+        assertThrows(OWNTimeoutException.class, () -> conn.sendCommandSynch(CMD));
+        assertEquals(1, sim.getHandshakeCount());
+
+        // the late response could arrive on the timed out session: it must be closed, not re-used
+        sim.setResponseDelay(0, 0);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+        waitFor(() -> sim.getCmdSessions() == 1);
+    }
+
+    @Test
+    public void testMonEvents() throws Exception {
+        connect(AuthMode.NONE, "12345", "12345");
+        conn.openMonConn();
+        conn.openCmdConn();
+        waitFor(() -> sim.getMonSessions() == 1);
+
+        sim.sendEvent("*1*0*12##");
+        OpenMessage msg = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(msg);
+        assertEquals("*1*0*12##", msg.getFrameValue());
+
+        // commands changing a device state are notified on MON
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        msg = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(msg);
+        assertEquals(CMD, msg.getFrameValue());
+    }
+
+    @Test
+    public void testDroppedSessionRetried() throws Exception {
+        connect(AuthMode.NONE, "12345", "12345");
+        conn.openCmdConn();
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+
+        // idle CMD session closed by gateway: a new one is opened for next command
+        sim.dropConnections();
+        waitFor(() -> sim.getCmdSessions() == 0);
+        assertTrue(conn.sendCommandSynch(CMD).isSuccess());
+        assertEquals(2, sim.getHandshakeCount());
+
+        // CMD session closed while waiting for the response: command is sent again on a new session
+        sim.setResponseDelay(500, 500);
+        CompletableFuture<Response> future = conn.sendCommandAsync(CMD);
+        waitFor(() -> sim.getCommandCount() == 3);
+        sim.dropConnections();
+        assertTrue(future.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(3, sim.getHandshakeCount());
+        assertEquals(4, sim.getCommandCount());
+    }
+}
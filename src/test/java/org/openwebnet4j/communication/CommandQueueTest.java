@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CommandQueue}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class CommandQueueTest {
+
+    private static PendingCommand cmd(String frame, CommandPriority priority) {
+        return new PendingCommand(frame, priority, new CompletableFuture<>());
+    }
+
+    /* a command created age ms ago */
+    private static PendingCommand cmd(String frame, CommandPriority priority, long age) {
+        return new PendingCommand(frame, priority, new CompletableFuture<>(), System.currentTimeMillis() - age);
+    }
+
+    private static String pollFrames(CommandQueue q) {
+        StringBuilder sb = new StringBuilder();
+        PendingCommand c;
+        while ((c = q.poll()) != null) {
+            sb.append(c.frame);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testPriorityOrder() {
+        CommandQueue q = new CommandQueue();
+        q.add(cmd("L1", CommandPriority.LOW));
+        q.add(cmd("N1", CommandPriority.NORMAL));
+        q.add(cmd("H1", CommandPriority.HIGH));
+        q.add(cmd("N2", CommandPriority.NORMAL));
+        q.addFirst(cmd("N0", CommandPriority.NORMAL));
+        PendingCommand cancelled = cmd("H2", CommandPriority.HIGH);
+        q.add(cancelled);
+        cancelled.future.cancel(false);
+        assertEquals(3, q.getDepth(CommandPriority.NORMAL));
+        assertEquals("H1N0N1N2L1", pollFrames(q)); // cancelled command is discarded
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void testPromotionAfterMaxWait() {
+        CommandQueue q = new CommandQueue();
+        q.setMaxWaitTime(5000);
+        q.add(cmd("H1", CommandPriority.HIGH));
+        q.add(cmd("H2", CommandPriority.HIGH));
+        q.add(cmd("N1", CommandPriority.NORMAL, 6000));
+        q.add(cmd("L1", CommandPriority.LOW, 10000));
+        q.add(cmd("L2", CommandPriority.LOW, 1000));
+        // waiting for more than maxWait: sent first, older first. L2 has not waited enough
+        assertEquals("L1N1H1H2L2", pollFrames(q));
+        assertTrue(q.getMaxWaitTime(CommandPriority.LOW) >= 10000);
+        assertTrue(q.getAverageWaitTime(CommandPriority.LOW) >= 5500);
+        assertEquals(2, q.getSentCount(CommandPriority.HIGH));
+
+        // with a larger maxWait no command is promoted
+        q.setMaxWaitTime(60000);
+        q.add(cmd("H1", CommandPriority.HIGH));
+        q.add(cmd("L1", CommandPriority.LOW, 10000));
+        assertEquals("H1L1", pollFrames(q));
+    }
+
+    @Test
+    public void testBurstLimit() {
+        CommandQueue q = new CommandQueue();
+        q.setMaxBurst(2);
+        for (int i = 1; i <= 5; i++) {
+            q.add(cmd("H" + i, CommandPriority.HIGH));
+        }
+        q.add(cmd("L1", CommandPriority.LOW));
+        q.add(cmd("L2", CommandPriority.LOW));
+        // after 2 consecutive HIGH commands a waiting LOW command is sent
+        assertEquals("H1H2L1H3H4L2H5", pollFrames(q));
+
+        // no burst limit when lower levels are not waiting
+        for (int i = 1; i <= 5; i++) {
+            q.add(cmd("H" + i, CommandPriority.HIGH));
+        }
+        assertEquals("H1H2H3H4H5", pollFrames(q));
+        q.add(cmd("H6", CommandPriority.HIGH));
+        q.add(cmd("N1", CommandPriority.NORMAL));
+        q.add(cmd("H7", CommandPriority.HIGH));
+        assertEquals("H6H7N1", pollFrames(q)); // previous burst was reset: new burst can start
+
+        assertThrows(IllegalArgumentException.class, () -> q.setMaxBurst(0));
+        assertEquals(12, q.getSentCount(CommandPriority.HIGH));
+    }
+}
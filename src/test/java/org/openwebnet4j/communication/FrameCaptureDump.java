@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Command line tool printing the frames of a capture file recorded by {@link FrameCapture}:
+ * <code>java -cp ... org.openwebnet4j.communication.FrameCaptureDump &lt;capture file&gt;</code>
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class FrameCaptureDump {
+
+    /**
+     * Prints the frames of a capture file
+     *
+     * @param args the capture file path
+     * @throws IOException if the capture file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: FrameCaptureDump <capture file>");
+            return;
+        }
+        new FrameReplayer(Paths.get(args[0])).dump(System.out);
+    }
+}
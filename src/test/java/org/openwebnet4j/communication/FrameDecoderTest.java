@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link FrameDecoder} and frame reading in {@link FrameChannel}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class FrameDecoderTest {
+
+    /* InputStream returning each chunk with a separate read() call, then end of stream */
+    private static class ChunkedInputStream extends InputStream {
+        private final LinkedList<byte[]> chunks = new LinkedList<>();
+        private int reads = 0;
+
+        ChunkedInputStream(String... chunks) {
+            for (String c : chunks) {
+                this.chunks.add(c.getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0];
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            reads++;
+            byte[] chunk = chunks.poll();
+            if (chunk == null) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length);
+            System.arraycopy(chunk, 0, b, off, n);
+            if (n < chunk.length) {
+                chunks.addFirst(Arrays.copyOfRange(chunk, n, chunk.length));
+            }
+            return n;
+        }
+    }
+
+    @Test
+    public void testFrameSplitAcrossReads() throws IOException {
+        FrameDecoder dec = new FrameDecoder();
+        ChunkedInputStream in = new ChunkedInputStream("*1*1*2", "1#", "#*1*0*22#", "#");
+        assertEquals(6, dec.fill(in));
+        assertNull(dec.nextFrame());
+        assertTrue(dec.hasData());
+        dec.fill(in);
+        assertNull(dec.nextFrame()); // "*1*1*21#"
+        dec.fill(in);
+        assertEquals("*1*1*21##", dec.nextFrame()); // delimiter split between two reads is found
+        assertNull(dec.nextFrame());
+        dec.fill(in);
+        assertEquals("*1*0*22##", dec.nextFrame());
+        assertFalse(dec.hasData());
+    }
+
+    @Test
+    public void testSeveralFramesInOneRead() throws IOException {
+        FrameDecoder dec = new FrameDecoder();
+        ChunkedInputStream in = new ChunkedInputStream("*#*1##*1*1*21##*#1*22*0##*1*0");
+        assertEquals(29, dec.fill(in));
+        assertEquals("*#*1##", dec.nextFrame());
+        assertEquals("*1*1*21##", dec.nextFrame());
+        assertEquals("*#1*22*0##", dec.nextFrame());
+        assertNull(dec.nextFrame());
+        assertTrue(dec.hasData());
+        assertEquals(1, in.reads);
+    }
+
+    @Test
+    public void testCompactionAndFrameTooLong() throws IOException {
+        FrameDecoder dec = new FrameDecoder(16);
+        ChunkedInputStream in = new ChunkedInputStream("*1*1*21##*1*0*22", "##");
+        assertEquals(16, dec.fill(in)); // buffer full
+        assertEquals("*1*1*21##", dec.nextFrame());
+        assertNull(dec.nextFrame());
+        assertEquals(2, dec.fill(in)); // partial frame is moved at the beginning of the buffer
+        assertEquals("*1*0*22##", dec.nextFrame());
+
+        FrameDecoder small = new FrameDecoder(8);
+        ChunkedInputStream longFrame = new ChunkedInputStream("*1*1*2111##");
+        small.fill(longFrame);
+        assertNull(small.nextFrame());
+        assertThrows(IOException.class, () -> small.fill(longFrame)); // no delimiter in a full buffer
+    }
+
+    @Test
+    public void testEndOfStreamWithPartialData() throws IOException {
+        FrameDecoder dec = new FrameDecoder();
+        ChunkedInputStream in = new ChunkedInputStream("*1*1*21##*1*0");
+        dec.fill(in);
+        assertEquals("*1*1*21##", dec.nextFrame());
+        assertNull(dec.nextFrame());
+        assertEquals(-1, dec.fill(in));
+        assertEquals("*1*0", dec.remaining());
+        assertFalse(dec.hasData());
+        assertNull(dec.remaining());
+
+        // FrameChannel returns the partial data and then signals end of stream with null
+        FrameChannel fc = new FrameChannel(new ChunkedInputStream("*1*1*2", "1##*1*0"), new ByteArrayOutputStream(),
+                "TEST");
+        assertEquals("*1*1*21##", fc.readFrames());
+        assertThrows(IOException.class, () -> fc.readFrames()); // "*1*0" has no delimiter
+        assertNull(fc.readFrames());
+        assertFalse(fc.hasPendingData());
+    }
+
+    @Test
+    public void testZigBeeDeviceInfoAckQuirk() throws IOException {
+        // older ZigBee gateways send an ACK after each unit of the same device, and not only at the end
+        String unit1 = "*#1*702053501#9*66*1*0*0*0*0##";
+        String unit2 = "*#1*702053502#9*66*2*0*0*0*0##";
+        FrameChannel fc = new FrameChannel(new ChunkedInputStream(unit1 + "*#*1##", unit2 + "*#*1##"),
+                new ByteArrayOutputStream(), "TEST");
+        assertEquals(unit1, fc.readFrames());
+        assertEquals(unit2, fc.readFrames()); // intermediate ACK is removed
+        assertEquals("*#*1##", fc.readFrames());
+        assertNull(fc.readFrames());
+
+        // the ACK after a unit followed by a frame of another device is kept
+        String other = "*#1*11*0*0##";
+        fc = new FrameChannel(new ChunkedInputStream(unit1 + "*#*1##" + other), new ByteArrayOutputStream(), "TEST");
+        assertEquals(unit1, fc.readFrames());
+        assertEquals("*#*1##", fc.readFrames());
+        assertEquals(other, fc.readFrames());
+        assertFalse(fc.hasPendingData());
+    }
+}
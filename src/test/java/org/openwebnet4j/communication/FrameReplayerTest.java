@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link FrameCapture} and {@link FrameReplayer}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class FrameReplayerTest {
+
+    private static final String MON = "BUS-MON";
+    private static final String CMD = "BUS-CMD-1";
+    private static final long GAP1 = 100; // ms
+    private static final long GAP2 = 200; // ms
+
+    @TempDir
+    Path tempDir;
+
+    /* connector recording frames passed to processFrame() and the time they were received */
+    private static class RecordingConnector extends ManualConnector {
+        final List<String> frames = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+        final long start = System.nanoTime();
+
+        @Override
+        protected void processFrame(String newFrame) {
+            frames.add(newFrame);
+            times.add(System.nanoTime());
+        }
+
+        /* time from connector creation (just before replay) to frame i */
+        long offsetMillis(int i) {
+            return TimeUnit.NANOSECONDS.toMillis(times.get(i) - start);
+        }
+    }
+
+    private Path capture() throws Exception {
+        Path file = tempDir.resolve("test.owncap");
+        try (FrameCapture cap = new FrameCapture(file)) {
+            cap.record(MON, true, true, "*99*1##");
+            cap.record(MON, false, true, "*#*1##");
+            cap.record(MON, false, false, "*1*1*11##");
+            Thread.sleep(GAP1);
+            cap.record(CMD, true, false, "*#1*12##");
+            cap.record(CMD, false, false, "*1*0*12##");
+            cap.record(MON, false, false, "*1*0*12##");
+            Thread.sleep(GAP2);
+            cap.record(MON, false, false, "*#4*1*0*0215##");
+            assertEquals(7, cap.getFrameCount());
+        }
+        return file;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path file = capture();
+        FrameReplayer replayer = new FrameReplayer(file);
+        RecordingConnector conn = new RecordingConnector();
+        assertEquals(3, replayer.replay(conn));
+        // handshake frames, frames sent and frames received on CMD are not replayed
+        assertEquals(Arrays.asList("*1*1*11##", "*1*0*12##", "*#4*1*0*0215##"), conn.frames);
+        // relative timing at original speed
+        assertTrue(conn.offsetMillis(1) >= GAP1 - 5, "offset 1: " + conn.offsetMillis(1));
+        assertTrue(conn.offsetMillis(2) >= GAP1 + GAP2 - 5, "offset 2: " + conn.offsetMillis(2));
+        assertTrue(conn.offsetMillis(2) < GAP1 + GAP2 + 200, "offset 2: " + conn.offsetMillis(2));
+
+        // accelerated
+        replayer.setSpeed(10);
+        conn = new RecordingConnector();
+        assertEquals(3, replayer.replay(conn));
+        assertTrue(conn.offsetMillis(2) >= (GAP1 + GAP2) / 10 - 5, "offset 2: " + conn.offsetMillis(2));
+        assertTrue(conn.offsetMillis(2) < GAP1 + GAP2, "offset 2: " + conn.offsetMillis(2));
+
+        // single channel, max speed
+        replayer.setSpeed(FrameReplayer.MAX_SPEED);
+        replayer.setChannel(CMD);
+        conn = new RecordingConnector();
+        assertEquals(1, replayer.replay(conn));
+        assertEquals(Arrays.asList("*1*0*12##"), conn.frames);
+    }
+
+    @Test
+    public void testAppendAndDump() throws Exception {
+        Path file = capture();
+        try (FrameCapture cap = new FrameCapture(file)) { // appending starts a new session
+            cap.record(MON, false, false, "*2*1*51##");
+        }
+        RecordingConnector conn = new RecordingConnector();
+        FrameReplayer replayer = new FrameReplayer(file);
+        replayer.setSpeed(FrameReplayer.MAX_SPEED);
+        assertEquals(4, replayer.replay(conn));
+        assertEquals("*2*1*51##", conn.frames.get(3));
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        replayer.dump(new PrintStream(bos, true, "UTF-8"));
+        String[] lines = new String(bos.toByteArray(), StandardCharsets.UTF_8).split("\\R");
+        assertEquals(8, lines.length);
+        assertTrue(lines[0].contains("*99*1## (HS)"));
+        assertTrue(lines[3].contains(CMD) && lines[3].contains("------->") && lines[3].contains("*#1*12##"));
+        assertTrue(lines[7].contains("*2*1*51##"));
+    }
+
+    @Test
+    public void testAppendedSessionTimeline() throws Exception {
+        Path file = capture();
+        Thread.sleep(600);
+        try (FrameCapture cap = new FrameCapture(file)) {
+            cap.record(MON, false, false, "*2*1*51##");
+        }
+        RecordingConnector conn = new RecordingConnector();
+        assertEquals(4, new FrameReplayer(file).replay(conn));
+        // the time between the two capture sessions is not replayed
+        assertTrue(conn.offsetMillis(3) >= GAP1 + GAP2 - 5, "offset 3: " + conn.offsetMillis(3));
+        assertTrue(conn.offsetMillis(3) < GAP1 + GAP2 + 200, "offset 3: " + conn.offsetMillis(3));
+    }
+}
@@ -0,0 +1,733 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openwebnet4j.message.OpenMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simulator of a BUS gateway, to test the library (load, soak and latency tests) without real hardware. It listens on
+ * a local port and implements the server side of the OpenWebNet protocol: ACK greeting, CMD ({@code *99*0##},
+ * {@code *99*9##}) and MON ({@code *99*1##}) sessions, authentication (none, OPEN or HMAC, as expected by
+ * {@link BUSHandshake}) and a simple device model (lights, automations, thermo zones, energy meters) answering
+ * commands and requests. Commands that change a device state are notified as events on all MON sessions.
+ * <p>
+ * Events can also be generated at a configurable rate ({@link #addEventGenerator(double)}), and faults can be
+ * injected: response latency, BUSY_NACK answers and connection drops.
+ * <p>
+ * The simulator can be embedded in tests or run as a standalone process, see {@link #main(String[])}.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class GatewaySimulator {
+
+    /** Authentication required by the simulated gateway */
+    public enum AuthMode {
+        NONE,
+        OPEN,
+        HMAC_SHA1,
+        HMAC_SHA2
+    }
+
+    private static final Pattern HMAC_CLIENT_PATTERN = Pattern.compile("\\*#(\\d+)\\*(\\d+)##");
+    private static final String HMAC_A = "736F70653E";
+    private static final String HMAC_B = "636F70653E";
+
+    private static final long GENERATOR_TICK = 10; // ms
+
+    private final Logger logger = LoggerFactory.getLogger(GatewaySimulator.class);
+
+    private final int port;
+    private volatile String password = "12345";
+    private volatile AuthMode authMode = AuthMode.NONE;
+    private volatile int cmdIdleTimeout = 120000; // ms, like real gateways
+    private volatile long minResponseDelay = 0;
+    private volatile long maxResponseDelay = 0;
+    private volatile double busyNackRate = 0;
+    private volatile double dropRate = 0;
+
+    private SimulatedDevices devices = new SimulatedDevices(20, 10, 4, 2);
+
+    private final Set<SimSession> sessions = ConcurrentHashMap.newKeySet();
+    private final List<EventGenerator> generators = new CopyOnWriteArrayList<>();
+
+    private ServerSocket serverSocket;
+    private ExecutorService sessionExecutor;
+    private ScheduledExecutorService eventScheduler;
+
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong busyNacks = new AtomicLong();
+    private final AtomicLong drops = new AtomicLong();
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong authFailures = new AtomicLong();
+
+    /**
+     * Creates a simulator listening on the given port
+     *
+     * @param port the TCP port, 0 to use any free port (see {@link #getPort()})
+     */
+    public GatewaySimulator(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Sets the authentication required by the simulated gateway (default: {@link AuthMode#NONE})
+     *
+     * @param mode the authentication mode
+     * @param pwd the gateway password (digits only for {@link AuthMode#OPEN})
+     */
+    public void setAuth(AuthMode mode, String pwd) {
+        this.authMode = mode;
+        this.password = pwd;
+    }
+
+    /**
+     * Sets the number of simulated devices (default: 20 lights, 10 automations, 4 thermo zones, 2 energy meters).
+     * Must be called before {@link #start()}.
+     *
+     * @param lights number of lights
+     * @param automations number of automations
+     * @param zones number of thermo zones
+     * @param meters number of energy meters
+     */
+    public synchronized void setDevices(int lights, int automations, int zones, int meters) {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Simulator already started");
+        }
+        devices = new SimulatedDevices(lights, automations, zones, meters);
+    }
+
+    /**
+     * Sets the delay before each command is answered, chosen at random between min and max (default: 0)
+     *
+     * @param min minimum delay (ms)
+     * @param max maximum delay (ms)
+     */
+    public void setResponseDelay(long min, long max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Invalid response delay: " + min + "-" + max);
+        }
+        this.minResponseDelay = min;
+        this.maxResponseDelay = max;
+    }
+
+    /**
+     * Sets the probability that a command is answered with BUSY_NACK (default: 0)
+     *
+     * @param rate probability between 0 and 1
+     */
+    public void setBusyNackRate(double rate) {
+        this.busyNackRate = checkRate(rate);
+    }
+
+    /**
+     * Sets the probability that the CMD connection is closed by the gateway instead of answering a command (default:
+     * 0)
+     *
+     * @param rate probability between 0 and 1
+     */
+    public void setDropRate(double rate) {
+        this.dropRate = checkRate(rate);
+    }
+
+    /**
+     * Sets the time after which idle CMD connections are closed by the gateway (default: 120000ms)
+     *
+     * @param timeout timeout (ms), 0 to never close idle connections
+     */
+    public void setCmdIdleTimeout(int timeout) {
+        this.cmdIdleTimeout = timeout;
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) {
+            throw new IllegalArgumentException("Rate must be between 0 and 1: " + rate);
+        }
+        return rate;
+    }
+
+    /**
+     * Adds a generator of events for random state changes of the simulated devices
+     *
+     * @param eventsPerSecond rate of the events sent on each MON session
+     */
+    public void addEventGenerator(double eventsPerSecond) {
+        generators.add(new EventGenerator(null, eventsPerSecond));
+    }
+
+    /**
+     * Adds a generator of events that sends the given frames in a loop
+     *
+     * @param frames the event frames
+     * @param eventsPerSecond rate of the events sent on each MON session
+     */
+    public void addEventGenerator(List<String> frames, double eventsPerSecond) {
+        if (frames.isEmpty()) {
+            throw new IllegalArgumentException("frames cannot be empty");
+        }
+        generators.add(new EventGenerator(new ArrayList<>(frames), eventsPerSecond));
+    }
+
+    /** Removes all event generators */
+    public void clearEventGenerators() {
+        generators.clear();
+    }
+
+    /**
+     * Starts the simulator
+     *
+     * @throws IOException if the server socket cannot be opened
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            return;
+        }
+        ServerSocket ss = new ServerSocket();
+        ss.setReuseAddress(true);
+        ss.bind(new InetSocketAddress(port), 500);
+        serverSocket = ss;
+        sessionExecutor = Executors.newCachedThreadPool(OWNThreads.newThreadFactory("OWN-sim-session"));
+        eventScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "OWN-sim-events");
+            t.setDaemon(true);
+            return t;
+        });
+        eventScheduler.scheduleAtFixedRate(this::runGenerators, GENERATOR_TICK, GENERATOR_TICK,
+                TimeUnit.MILLISECONDS);
+        Thread acceptThread = new Thread(() -> acceptLoop(ss), "OWN-sim-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.info("##SIM## gateway simulator listening on port {} (auth={})", ss.getLocalPort(), authMode);
+    }
+
+    /** Stops the simulator, closing all sessions */
+    public synchronized void stop() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.debug("##SIM## exception while closing server socket: {}", e.getMessage());
+        }
+        serverSocket = null;
+        eventScheduler.shutdownNow();
+        dropConnections();
+        sessionExecutor.shutdownNow();
+        logger.info("##SIM## gateway simulator stopped");
+    }
+
+    /**
+     * Returns the port the simulator is listening on
+     *
+     * @return the local port, or -1 if the simulator is not started
+     */
+    public synchronized int getPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    /** Closes all CMD and MON connections currently open, as a gateway reboot would do */
+    public void dropConnections() {
+        for (SimSession s : sessions) {
+            s.close();
+        }
+    }
+
+    /** Closes all MON connections currently open */
+    public void dropMonConnections() {
+        for (SimSession s : sessions) {
+            if (s.mon) {
+                s.close();
+            }
+        }
+    }
+
+    /**
+     * Sends an event on all MON sessions
+     *
+     * @param frame the event frame
+     */
+    public void sendEvent(String frame) {
+        for (SimSession s : sessions) {
+            if (s.mon) {
+                s.trySend(frame);
+                events.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of MON sessions currently open
+     *
+     * @return number of MON sessions
+     */
+    public int getMonSessions() {
+        return (int) sessions.stream().filter(s -> s.mon).count();
+    }
+
+    /**
+     * Returns the number of CMD sessions currently open
+     *
+     * @return number of CMD sessions
+     */
+    public int getCmdSessions() {
+        return (int) sessions.stream().filter(s -> s.cmd).count();
+    }
+
+    /**
+     * Returns the number of commands received on CMD sessions
+     *
+     * @return number of commands
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * Returns the number of event frames sent, counting each MON session separately
+     *
+     * @return number of events sent
+     */
+    public long getEventCount() {
+        return events.get();
+    }
+
+    /**
+     * Returns the number of commands answered with BUSY_NACK
+     *
+     * @return number of BUSY_NACK answers
+     */
+    public long getBusyNackCount() {
+        return busyNacks.get();
+    }
+
+    /**
+     * Returns the number of CMD connections dropped on a command
+     *
+     * @return number of dropped connections
+     */
+    public long getDropCount() {
+        return drops.get();
+    }
+
+    /**
+     * Returns the number of handshakes completed successfully
+     *
+     * @return number of handshakes
+     */
+    public long getHandshakeCount() {
+        return handshakes.get();
+    }
+
+    /**
+     * Returns the number of handshakes failed
+     *
+     * @return number of failed handshakes
+     */
+    public long getAuthFailureCount() {
+        return authFailures.get();
+    }
+
+    private void acceptLoop(ServerSocket ss) {
+        while (!ss.isClosed()) {
+            try {
+                Socket sk = ss.accept();
+                sk.setTcpNoDelay(true);
+                SimSession session = new SimSession(sk);
+                sessions.add(session);
+                sessionExecutor.execute(session);
+            } catch (IOException e) {
+                if (!ss.isClosed()) {
+                    logger.warn("##SIM## exception while accepting connection: {}", e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                logger.debug("##SIM## cannot start session: {}", e.getMessage()); // executor shut down
+            }
+        }
+    }
+
+    private void runGenerators() {
+        long now = System.nanoTime();
+        for (EventGenerator g : generators) {
+            for (long n = g.due(now); n > 0; n--) {
+                String frame = g.next();
+                if (frame != null) {
+                    sendEvent(frame);
+                }
+            }
+        }
+    }
+
+    /* generates events at a fixed average rate, each tick sending the events due since the previous one */
+    private class EventGenerator {
+        private final List<String> frames; // null: random device events
+        private final double rate;
+        private final long startTs = System.nanoTime();
+        private long generated = 0;
+        private int index = 0;
+
+        EventGenerator(List<String> frames, double eventsPerSecond) {
+            if (eventsPerSecond <= 0) {
+                throw new IllegalArgumentException("eventsPerSecond must be > 0");
+            }
+            this.frames = frames;
+            this.rate = eventsPerSecond;
+        }
+
+        long due(long now) {
+            long total = (long) ((now - startTs) * rate / TimeUnit.SECONDS.toNanos(1));
+            long n = total - generated;
+            generated = total;
+            return n;
+        }
+
+        String next() {
+            if (frames == null) {
+                return devices.randomEvent();
+            }
+            String frame = frames.get(index);
+            index = (index + 1) % frames.size();
+            return frame;
+        }
+    }
+
+    /* a CMD or MON connection from a client, served by a dedicated thread */
+    private class SimSession implements Runnable {
+        private final Socket sk;
+        private final FrameDecoder decoder = new FrameDecoder();
+        private InputStream in;
+        private OutputStream out;
+        private volatile boolean mon = false;
+        private volatile boolean cmd = false;
+
+        SimSession(Socket sk) {
+            this.sk = sk;
+        }
+
+        @Override
+        public void run() {
+            try {
+                in = sk.getInputStream();
+                out = sk.getOutputStream();
+                sk.setSoTimeout(cmdIdleTimeout);
+                send(OpenMessage.FRAME_ACK);
+                String session = read();
+                boolean isMon = BUSConnector.MON_SESSION.equals(session);
+                if (!isMon && !BUSConnector.CMD_SESSION.equals(session)
+                        && !BUSConnector.CMD_SESSION_ALT.equals(session)) {
+                    logger.debug("##SIM## invalid session request: {}", session);
+                    send(OpenMessage.FRAME_NACK);
+                    return;
+                }
+                if (!authenticate()) {
+                    authFailures.incrementAndGet();
+                    return;
+                }
+                handshakes.incrementAndGet();
+                if (isMon) {
+                    sk.setSoTimeout(0);
+                    mon = true;
+                    while (read() != null) {
+                        // MON keepalive ACKs from client are ignored
+                    }
+                } else {
+                    cmd = true;
+                    serveCommands();
+                }
+            } catch (SocketTimeoutException e) {
+                logger.debug("##SIM## closing idle CMD connection");
+            } catch (IOException e) {
+                logger.debug("##SIM## session closed: {}", e.getMessage());
+            } finally {
+                close();
+            }
+        }
+
+        private boolean authenticate() throws IOException {
+            switch (authMode) {
+                case NONE:
+                    send(OpenMessage.FRAME_ACK);
+                    return true;
+                case OPEN:
+                    return openAuth();
+                default:
+                    return hmacAuth(authMode == AuthMode.HMAC_SHA2);
+            }
+        }
+
+        private boolean openAuth() throws IOException {
+            String nonce = String.valueOf(100000000 + ThreadLocalRandom.current().nextInt(900000000));
+            send(OpenMessage.FRAME_START_DIM + nonce + OpenMessage.FRAME_END);
+            String expected = OpenMessage.FRAME_START_DIM + Auth.calcOpenPass(password, nonce) + OpenMessage.FRAME_END;
+            return checkAuth(expected.equals(read()));
+        }
+
+        private boolean hmacAuth(boolean sha2) throws IOException {
+            send(sha2 ? BUSConnector.HMAC_SHA2 : BUSConnector.HMAC_SHA1);
+            if (!OpenMessage.FRAME_ACK.equals(read())) {
+                return checkAuth(false);
+            }
+            String ra = Auth.calcHmacRb(); // random 256 bits
+            if (!sha2) {
+                ra = ra.substring(0, 40); // 160 bits
+            }
+            send(OpenMessage.FRAME_START_DIM + Auth.hexToDigit(ra) + OpenMessage.FRAME_END);
+            String fr = read();
+            Matcher m = HMAC_CLIENT_PATTERN.matcher(fr == null ? "" : fr);
+            if (!m.matches()) {
+                return checkAuth(false);
+            }
+            String rb = Auth.digitToHex(m.group(1));
+            String kab = Auth.calcSHA256(password);
+            if (!Auth.calcSHA256(ra + rb + HMAC_A + HMAC_B + kab).equals(Auth.digitToHex(m.group(2)))) {
+                return checkAuth(false);
+            }
+            send(OpenMessage.FRAME_START_DIM + Auth.hexToDigit(Auth.calcSHA256(ra + rb + kab))
+                    + OpenMessage.FRAME_END);
+            return OpenMessage.FRAME_ACK.equals(read());
+        }
+
+        private boolean checkAuth(boolean ok) throws IOException {
+            if (ok) {
+                send(OpenMessage.FRAME_ACK);
+            } else {
+                logger.debug("##SIM## authentication failed");
+                send(OpenMessage.FRAME_NACK);
+            }
+            return ok;
+        }
+
+        private void serveCommands() throws IOException {
+            List<String> responses = new ArrayList<>();
+            List<String> newEvents = new ArrayList<>();
+            String fr;
+            while ((fr = read()) != null) {
+                commands.incrementAndGet();
+                long max = maxResponseDelay;
+                if (max > 0) {
+                    long min = minResponseDelay;
+                    sleep(min == max ? min : ThreadLocalRandom.current().nextLong(min, max + 1));
+                }
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                if (dropRate > 0 && rnd.nextDouble() < dropRate) {
+                    drops.incrementAndGet();
+                    logger.debug("##SIM## dropping CMD connection on command {}", fr);
+                    return;
+                }
+                if (busyNackRate > 0 && rnd.nextDouble() < busyNackRate) {
+                    busyNacks.incrementAndGet();
+                    send(OpenMessage.FRAME_BUSY_NACK);
+                    continue;
+                }
+                responses.clear();
+                newEvents.clear();
+                if (devices.handle(fr, responses, newEvents)) {
+                    responses.add(OpenMessage.FRAME_ACK);
+                } else {
+                    responses.add(OpenMessage.FRAME_NACK);
+                }
+                send(responses);
+                for (String ev : newEvents) {
+                    sendEvent(ev);
+                }
+            }
+        }
+
+        private void sleep(long ms) throws IOException {
+            try {
+                Thread.sleep(ms);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted");
+            }
+        }
+
+        private String read() throws IOException {
+            String fr;
+            while ((fr = decoder.nextFrame()) == null) {
+                if (decoder.fill(in) < 0) {
+                    return null;
+                }
+            }
+            return fr;
+        }
+
+        private void send(String frame) throws IOException {
+            send(Collections.singletonList(frame));
+        }
+
+        /* frames are written all at once, as a gateway does with multi-frame responses */
+        private synchronized void send(List<String> frames) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (String f : frames) {
+                sb.append(f);
+            }
+            out.write(sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+
+        private void trySend(String frame) {
+            try {
+                send(frame);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            sessions.remove(this);
+            mon = false;
+            cmd = false;
+            try {
+                sk.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Runs the simulator as a standalone process. Options:
+     *
+     * <pre>
+     * --port N             TCP port (default: 20000)
+     * --auth MODE          none|open|hmac1|hmac2 (default: none)
+     * --pwd PWD            gateway password (default: 12345)
+     * --devices L,A,Z,M    number of lights, automations, thermo zones, energy meters (default: 20,10,4,2)
+     * --events N           random device events per second on each MON session (default: 0)
+     * --delay MIN[,MAX]    command response delay in ms (default: 0)
+     * --busy RATE          probability of BUSY_NACK answers (default: 0)
+     * --drop RATE          probability of dropping the CMD connection on a command (default: 0)
+     * --stats SECONDS      statistics interval (default: 10)
+     * </pre>
+     *
+     * @param args command line options
+     * @throws Exception in case of errors
+     */
+    public static void main(String[] args) throws Exception {
+        int port = 20000;
+        int statsInterval = 10;
+        String auth = "none";
+        String pwd = "12345";
+        String devices = null;
+        double eventRate = 0;
+        String delay = null;
+        double busy = 0;
+        double drop = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(v);
+                    break;
+                case "--auth":
+                    auth = v;
+                    break;
+                case "--pwd":
+                    pwd = v;
+                    break;
+                case "--devices":
+                    devices = v;
+                    break;
+                case "--events":
+                    eventRate = Double.parseDouble(v);
+                    break;
+                case "--delay":
+                    delay = v;
+                    break;
+                case "--busy":
+                    busy = Double.parseDouble(v);
+                    break;
+                case "--drop":
+                    drop = Double.parseDouble(v);
+                    break;
+                case "--stats":
+                    statsInterval = Integer.parseInt(v);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        GatewaySimulator sim = new GatewaySimulator(port);
+        switch (auth) {
+            case "open":
+                sim.setAuth(AuthMode.OPEN, pwd);
+                break;
+            case "hmac1":
+                sim.setAuth(AuthMode.HMAC_SHA1, pwd);
+                break;
+            case "hmac2":
+                sim.setAuth(AuthMode.HMAC_SHA2, pwd);
+                break;
+            default:
+                sim.setAuth(AuthMode.NONE, pwd);
+        }
+        if (devices != null) {
+            int[] n = Arrays.stream(devices.split(",")).mapToInt(Integer::parseInt).toArray();
+            sim.setDevices(n[0], n[1], n[2], n[3]);
+        }
+        if (delay != null) {
+            String[] d = delay.split(",");
+            long min = Long.parseLong(d[0]);
+            sim.setResponseDelay(min, d.length > 1 ? Long.parseLong(d[1]) : min);
+        }
+        if (eventRate > 0) {
+            sim.addEventGenerator(eventRate);
+        }
+        sim.setBusyNackRate(busy);
+        sim.setDropRate(drop);
+        sim.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(sim::stop));
+        long lastCommands = 0;
+        long lastEvents = 0;
+        while (true) {
+            Thread.sleep(statsInterval * 1000L);
+            long c = sim.getCommandCount();
+            long e = sim.getEventCount();
+            System.out.printf("sessions: CMD=%d MON=%d | commands/s=%.1f events/s=%.1f | busy=%d drops=%d authFail=%d%n",
+                    sim.getCmdSessions(), sim.getMonSessions(), (c - lastCommands) / (double) statsInterval,
+                    (e - lastEvents) / (double) statsInterval, sim.getBusyNackCount(), sim.getDropCount(),
+                    sim.getAuthFailureCount());
+            lastCommands = c;
+            lastEvents = e;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.io.IOException;
+
+import org.openwebnet4j.message.AckOpenMessage;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.FrameException;
+
+/**
+ * {@link OpenConnector} for tests, not connected to any gateway. CMD is reported as connected when it is created.
+ * <p>
+ * By default queued commands are not sent: the test takes them from the queue with {@link #sendNext()} and answers
+ * them with {@link #answer(PendingCommand, String...)}, in any order, as if they were sent on parallel sessions.
+ * Subclasses created with <code>dispatch</code> true have commands sent by the dispatcher as usual, and override
+ * {@link #sendCommandSynchInternal(String, long)}.
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class ManualConnector extends OpenConnector {
+
+    private final boolean dispatch;
+
+    /** Creates a connector where commands are sent by the test */
+    public ManualConnector() {
+        this(false);
+    }
+
+    /**
+     * Creates a connector
+     *
+     * @param dispatch true if queued commands are sent by the dispatcher, false if they are sent by the test
+     */
+    protected ManualConnector(boolean dispatch) {
+        this.dispatch = dispatch;
+        isCmdConnected = true;
+    }
+
+    @Override
+    protected void commandQueued() {
+        if (dispatch) {
+            super.commandQueued();
+        }
+    }
+
+    /* takes the next command from the queue, waiting for it */
+    PendingCommand sendNext() throws InterruptedException {
+        TestUtils.waitFor(() -> !cmdQueue.isEmpty());
+        return cmdQueue.poll();
+    }
+
+    /* completes a command with the given response frames and ACK */
+    void answer(PendingCommand cmd, String... frames) throws FrameException {
+        Response res = new Response(BaseOpenMessage.parse(cmd.frame));
+        for (String f : frames) {
+            res.addResponse(BaseOpenMessage.parse(f));
+        }
+        res.addResponse(AckOpenMessage.ACK);
+        cmd.future.complete(res);
+    }
+
+    /* completes a command with ACK or NACK */
+    void answer(PendingCommand cmd, boolean ack) throws FrameException {
+        Response res = new Response(BaseOpenMessage.parse(cmd.frame));
+        res.addResponse(ack ? AckOpenMessage.ACK : AckOpenMessage.NACK);
+        cmd.future.complete(res);
+    }
+
+    @Override
+    public void openCmdConn() throws OWNException {
+    }
+
+    @Override
+    public void openMonConn() throws OWNException {
+    }
+
+    @Override
+    protected Response sendCommandSynchInternal(String frame, long timeout) throws IOException, FrameException {
+        throw new UnsupportedOperationException("commands are sent by the test");
+    }
+
+    @Override
+    protected void processFrame(String newFrame) {
+    }
+}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.message.AckOpenMessage;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.FrameException;
+
+/**
+ * Tests for the {@link CommandQueue} dispatching and request coalescing of {@link OpenConnector}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class OpenConnectorTest {
+
+    private static final String CMD_A = "*1*1*11##";
+    private static final String CMD_B = "*1*0*13##";
+    private static final String CMD_C = "*1*0*14##";
+    private static final String REQ = "*#1*12##";
+
+    /*
+     * connector that answers ACK to each command only when a permit is released. If no permit is released within the
+     * command timeout it fails like a real connector, which closes the connection and opens a new one for next command
+     */
+    private static class GatedConnector extends ManualConnector {
+        final List<String> sent = new ArrayList<>(); // guarded by itself
+        final Semaphore gate = new Semaphore(0);
+        final AtomicInteger recycled = new AtomicInteger();
+        volatile long lastTimeout;
+
+        GatedConnector() {
+            super(true);
+        }
+
+        @Override
+        protected Response sendCommandSynchInternal(String frame, long timeout) throws IOException, FrameException {
+            synchronized (sent) {
+                sent.add(frame);
+            }
+            lastTimeout = timeout;
+            try {
+                if (!gate.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    recycled.incrementAndGet();
+                    throw new SocketTimeoutException("no response");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            Response res = new Response(BaseOpenMessage.parse(frame));
+            res.addResponse(AckOpenMessage.ACK);
+            return res;
+        }
+
+        List<String> getSent() {
+            synchronized (sent) {
+                return new ArrayList<>(sent);
+            }
+        }
+
+        int sentCount() {
+            synchronized (sent) {
+                return sent.size();
+            }
+        }
+    }
+
+    private GatedConnector conn;
+
+    @BeforeEach
+    public void setUp() {
+        conn = new GatedConnector();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        conn.gate.release(100);
+        conn.disconnect();
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        CompletableFuture<Response> a = conn.sendCommandAsync(CMD_A);
+        waitFor(() -> conn.sentCount() == 1); // dispatcher is busy with CMD_A
+        CompletableFuture<Response> r1 = conn.sendCommandAsync(REQ);
+        CompletableFuture<Response> r2 = conn.sendCommandAsync(REQ);
+        CompletableFuture<Response> b1 = conn.sendCommandAsync(CMD_B);
+        CompletableFuture<Response> b2 = conn.sendCommandAsync(CMD_B); // commands are never coalesced
+        assertNotSame(r1, r2); // each caller gets its own future
+        assertEquals(1, conn.getCoalescedRequests());
+
+        conn.gate.release(4);
+        assertTrue(a.get(5, TimeUnit.SECONDS).isSuccess());
+        assertSame(r1.get(5, TimeUnit.SECONDS), r2.get(5, TimeUnit.SECONDS));
+        b1.get(5, TimeUnit.SECONDS);
+        b2.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(CMD_A, REQ, CMD_B, CMD_B), conn.getSent());
+
+        // once the response has been received the request is sent again
+        conn.gate.release(1);
+        conn.sendCommandAsync(REQ).get(5, TimeUnit.SECONDS);
+        assertEquals(5, conn.sentCount());
+        assertEquals(1, conn.getCoalescedRequests());
+
+        conn.setCoalesceRequests(false);
+        conn.gate.release(2);
+        CompletableFuture<Response> r3 = conn.sendCommandAsync(REQ);
+        conn.sendCommandAsync(REQ).get(5, TimeUnit.SECONDS);
+        r3.get(5, TimeUnit.SECONDS);
+        assertEquals(7, conn.sentCount());
+        assertEquals(1, conn.getCoalescedRequests());
+    }
+
+    @Test
+    public void testPromotion() throws Exception {
+        conn.sendCommandAsync(CMD_A);
+        waitFor(() -> conn.sentCount() == 1);
+        CompletableFuture<Response> low = conn.sendCommandAsync(REQ, CommandPriority.LOW);
+        CompletableFuture<Response> normal = conn.sendCommandAsync(CMD_B, CommandPriority.NORMAL);
+        CompletableFuture<Response> high = conn.sendCommandAsync(REQ, CommandPriority.HIGH);
+        // the request still in queue is moved to the priority of the new caller
+        assertEquals(1, conn.getCommandQueue().getDepth(CommandPriority.HIGH));
+        assertEquals(0, conn.getCommandQueue().getDepth(CommandPriority.LOW));
+        CompletableFuture<Response> other = conn.sendCommandAsync(REQ, CommandPriority.LOW); // no demotion
+        assertEquals(1, conn.getCommandQueue().getDepth(CommandPriority.HIGH));
+        assertEquals(2, conn.getCoalescedRequests());
+
+        conn.gate.release(3);
+        assertSame(high.get(5, TimeUnit.SECONDS), low.get(5, TimeUnit.SECONDS));
+        assertSame(high.get(), other.get(5, TimeUnit.SECONDS));
+        normal.get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(CMD_A, REQ, CMD_B), conn.getSent());
+    }
+
+    @Test
+    public void testCancelCallers() throws Exception {
+        conn.sendCommandAsync(CMD_A);
+        waitFor(() -> conn.sentCount() == 1);
+        CompletableFuture<Response> q1 = conn.sendCommandAsync(REQ);
+        CompletableFuture<Response> q2 = conn.sendCommandAsync(REQ);
+        // a caller leaving does not cancel the request for the others
+        assertTrue(q1.cancel(false));
+        conn.gate.release(2);
+        assertTrue(q2.get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(Arrays.asList(CMD_A, REQ), conn.getSent());
+
+        conn.sendCommandAsync(CMD_B);
+        waitFor(() -> conn.sentCount() == 3);
+        CompletableFuture<Response> q3 = conn.sendCommandAsync(REQ);
+        CompletableFuture<Response> q4 = conn.sendCommandAsync(REQ);
+        assertEquals(2, conn.getCoalescedRequests());
+        // the last caller leaving cancels the request: it is removed from queue
+        q3.cancel(false);
+        q4.cancel(false);
+        // a new caller does not join the cancelled request, a new one is sent
+        CompletableFuture<Response> q5 = conn.sendCommandAsync(REQ);
+        assertEquals(2, conn.getCoalescedRequests());
+        conn.gate.release(2);
+        assertTrue(q5.get(5, TimeUnit.SECONDS).isSuccess());
+        waitFor(() -> conn.getCommandQueue().isEmpty());
+        assertEquals(Arrays.asList(CMD_A, REQ, CMD_B, REQ), conn.getSent());
+        assertTrue(q3.isCancelled() && q4.isCancelled());
+    }
+
+    @Test
+    public void testAsyncTimeoutAndCancelBeforeSent() throws Exception {
+        CompletableFuture<Response> a = conn.sendCommandAsync(CMD_A);
+        waitFor(() -> conn.sentCount() == 1); // dispatcher is busy with CMD_A
+        CompletableFuture<Response> b = conn.sendCommandAsync(CMD_B, 200, TimeUnit.MILLISECONDS);
+        CompletableFuture<Response> c = conn.sendCommandAsync(CMD_C, 5, TimeUnit.SECONDS);
+        assertTrue(c.cancel(false));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> b.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof OWNTimeoutException, e.getCause().toString());
+        // expired and cancelled commands are never sent
+        conn.gate.release(1);
+        assertTrue(a.get(5, TimeUnit.SECONDS).isSuccess());
+        conn.gate.release(1);
+        assertTrue(conn.sendCommandAsync(REQ).get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(Arrays.asList(CMD_A, REQ), conn.getSent());
+        assertTrue(c.isCancelled());
+        assertEquals(0, conn.recycled.get());
+    }
+
+    @Test
+    public void testAsyncTimeoutAfterSent() throws Exception {
+        long start = System.nanoTime();
+        CompletableFuture<Response> a = conn.sendCommandAsync(CMD_A, 300, TimeUnit.MILLISECONDS);
+        waitFor(() -> conn.sentCount() == 1);
+        // the connector waits for the response only until the deadline of the command
+        assertTrue(conn.lastTimeout > 0 && conn.lastTimeout <= 300, "timeout: " + conn.lastTimeout);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> a.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof OWNTimeoutException, e.getCause().toString());
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed >= 290 && elapsed < 3000, "timeout after " + elapsed + "ms");
+        // the late response is not waited for: the connection is recycled and next command is sent
+        waitFor(() -> conn.recycled.get() == 1);
+        conn.gate.release(1);
+        assertTrue(conn.sendCommandAsync(CMD_B).get(5, TimeUnit.SECONDS).isSuccess());
+        assertEquals(Arrays.asList(CMD_A, CMD_B), conn.getSent());
+    }
+}
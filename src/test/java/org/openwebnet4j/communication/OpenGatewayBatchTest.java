@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.OpenGateway;
+import org.openwebnet4j.OpenGateway.BatchPolicy;
+import org.openwebnet4j.message.Lighting;
+import org.openwebnet4j.message.OpenMessage;
+
+/**
+ * Tests for {@link OpenGateway#sendBatch(List, int, BatchPolicy)}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class OpenGatewayBatchTest {
+
+    private static class TestGateway extends OpenGateway {
+
+        TestGateway(OpenConnector connector) {
+            this.connector = connector;
+            isConnected = true;
+        }
+
+        @Override
+        protected void initConnector() {
+        }
+
+        @Override
+        public boolean isCmdConnectionReady() {
+            return true;
+        }
+
+        @Override
+        protected void discoverDevicesInternal() {
+        }
+    }
+
+    private static List<OpenMessage> messages(int n) {
+        List<OpenMessage> msgs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            msgs.add(Lighting.requestTurnOn("1" + (i + 1)));
+        }
+        return msgs;
+    }
+
+    private static CompletableFuture<List<Response>> sendBatch(OpenGateway gw, List<OpenMessage> msgs, int window,
+            BatchPolicy policy) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return gw.sendBatch(msgs, window, policy);
+            } catch (OWNException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Test
+    public void testStopOnNack() throws Exception {
+        ManualConnector conn = new ManualConnector();
+        CompletableFuture<List<Response>> batch = sendBatch(new TestGateway(conn), messages(6), 4,
+                BatchPolicy.STOP_ON_NACK);
+        waitFor(() -> conn.getCommandQueue().getDepth(CommandPriority.NORMAL) == 4); // window
+        PendingCommand c0 = conn.sendNext();
+        PendingCommand c1 = conn.sendNext();
+        PendingCommand c2 = conn.sendNext();
+        conn.answer(c1, false);
+        conn.answer(c0, true);
+        // messages 3 and 4 are removed from queue, message 2 has already been sent: its response is collected
+        waitFor(() -> conn.getCommandQueue().isEmpty());
+        assertFalse(c2.isDone());
+        assertFalse(batch.isDone());
+        conn.answer(c2, true);
+
+        List<Response> res = batch.get(5, TimeUnit.SECONDS);
+        assertEquals(6, res.size());
+        assertTrue(res.get(0).isSuccess());
+        assertFalse(res.get(1).isSuccess());
+        assertTrue(res.get(2).isSuccess());
+        for (int i = 3; i < 6; i++) {
+            assertNull(res.get(i), "message " + i);
+        }
+        assertEquals(3, conn.getCommandQueue().getSentCount(CommandPriority.NORMAL));
+    }
+
+    @Test
+    public void testContinueOnNack() throws Exception {
+        ManualConnector conn = new ManualConnector();
+        CompletableFuture<List<Response>> batch = sendBatch(new TestGateway(conn), messages(4), 2,
+                BatchPolicy.CONTINUE_ON_NACK);
+        PendingCommand c0 = conn.sendNext();
+        c0.future.cancel(false); // cancelled outside the batch
+        conn.answer(conn.sendNext(), false);
+        conn.answer(conn.sendNext(), true);
+        conn.answer(conn.sendNext(), true);
+
+        List<Response> res = batch.get(5, TimeUnit.SECONDS);
+        assertNull(res.get(0));
+        assertFalse(res.get(1).isSuccess());
+        assertTrue(res.get(2).isSuccess());
+        assertTrue(res.get(3).isSuccess());
+    }
+}
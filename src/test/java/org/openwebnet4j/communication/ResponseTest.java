@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.BUSGateway;
+import org.openwebnet4j.message.AckOpenMessage;
+import org.openwebnet4j.message.Lighting;
+
+/**
+ * Tests for {@link Response}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class ResponseTest {
+
+    @Test
+    public void testFinalResponses() throws Exception {
+        Response ack = new Response(Lighting.requestTurnOn("11"));
+        assertFalse(ack.hasFinalResponse());
+        ack.addResponse(AckOpenMessage.ACK);
+        assertTrue(ack.hasFinalResponse());
+        assertTrue(ack.isSuccess());
+
+        Response nack = new Response(Lighting.requestTurnOn("11"));
+        nack.addResponse(AckOpenMessage.NACK);
+        assertTrue(nack.hasFinalResponse());
+        assertFalse(nack.isSuccess());
+
+        Response busy = new Response(Lighting.requestTurnOn("11"));
+        busy.addResponse(AckOpenMessage.BUSY_NACK);
+        assertTrue(busy.hasFinalResponse());
+        assertFalse(busy.isSuccess());
+        assertTrue(busy.waitResponse(10)); // no need to wait
+        assertTrue(busy.getFinalResponse().isBUSY_NACK());
+    }
+
+    @Test
+    public void testBusyNackDoesNotWaitTimeout() throws Exception {
+        GatewaySimulator sim = new GatewaySimulator(0);
+        sim.start();
+        BUSGateway gw = new BUSGateway("localhost", sim.getPort(), "12345");
+        try {
+            gw.connect();
+            gw.getCommandTimeouts().setDefaultTimeout(10000);
+            sim.setBusyNackRate(1);
+            long start = System.nanoTime();
+            Response res = gw.send(Lighting.requestTurnOn("11"));
+            long elapsed = (System.nanoTime() - start) / 1000000;
+            assertTrue(res.getFinalResponse().isBUSY_NACK());
+            assertFalse(res.isSuccess());
+            assertTrue(elapsed < 5000, "BUSY_NACK response took " + elapsed + "ms");
+            assertEquals(1, sim.getBusyNackCount());
+        } finally {
+            gw.closeConnection();
+            sim.stop();
+        }
+    }
+}
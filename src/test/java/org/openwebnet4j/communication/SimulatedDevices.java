@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openwebnet4j.message.OpenMessage;
+
+/**
+ * Device model used by {@link GatewaySimulator}: keeps the state of simulated lights, automations, thermo zones and
+ * energy meters and answers the OpenWebNet commands, status and dimension requests addressed to them. Each state
+ * change produces the corresponding event, to be sent on the MON sessions.
+ *
+ * @author M. Valla - Initial contribution
+ */
+class SimulatedDevices {
+
+    static final int MAX_LIGHT_AUTOM = 81 + 150; // APL 11-99 + 0101-1015
+
+    private static final String DIAG_BITS = "00000000000000000000000000000000";
+
+    // WHERE -> WHAT (lights: 0=off, 1=on, 2-10=dimmer level; automations: 0=stop, 1=up, 2=down)
+    private final Map<String, Integer> lights = new ConcurrentHashMap<>();
+    private final Map<String, Integer> automations = new ConcurrentHashMap<>();
+    // WHERE -> {temperature, setpoint} in tenths of degree
+    private final Map<String, int[]> zones = new ConcurrentHashMap<>();
+    // WHERE -> active power (W)
+    private final Map<String, Integer> meters = new ConcurrentHashMap<>();
+
+    private final String[] lightWheres;
+    private final String[] automationWheres;
+    private final String[] zoneWheres;
+    private final String[] meterWheres;
+
+    /**
+     * Creates the device model
+     *
+     * @param nLights number of lights (WHERE 11, 12, ...)
+     * @param nAutomations number of automations (WHERE following the lights)
+     * @param nZones number of thermo zones (WHERE 1-99)
+     * @param nMeters number of energy meters (WHERE 51-5255)
+     */
+    SimulatedDevices(int nLights, int nAutomations, int nZones, int nMeters) {
+        if (nLights < 0 || nAutomations < 0 || nLights + nAutomations > MAX_LIGHT_AUTOM) {
+            throw new IllegalArgumentException("lights + automations must be between 0 and " + MAX_LIGHT_AUTOM);
+        }
+        if (nZones < 0 || nZones > 99 || nMeters < 0 || nMeters > 255) {
+            throw new IllegalArgumentException("zones must be between 0 and 99, meters between 0 and 255");
+        }
+        lightWheres = new String[nLights];
+        for (int i = 0; i < nLights; i++) {
+            lightWheres[i] = lightAutomWhere(i);
+            lights.put(lightWheres[i], 0);
+        }
+        automationWheres = new String[nAutomations];
+        for (int i = 0; i < nAutomations; i++) {
+            automationWheres[i] = lightAutomWhere(nLights + i);
+            automations.put(automationWheres[i], 0);
+        }
+        zoneWheres = new String[nZones];
+        for (int i = 0; i < nZones; i++) {
+            zoneWheres[i] = String.valueOf(i + 1);
+            zones.put(zoneWheres[i], new int[] { 200 + i, 210 });
+        }
+        meterWheres = new String[nMeters];
+        for (int i = 0; i < nMeters; i++) {
+            meterWheres[i] = "5" + (i + 1);
+            meters.put(meterWheres[i], 100 * (i + 1));
+        }
+    }
+
+    /* A=1-9 PL=1-9 for the first 81 devices, then A=01-10 PL=01-15 */
+    private static String lightAutomWhere(int i) {
+        if (i < 81) {
+            return "" + (i / 9 + 1) + (i % 9 + 1);
+        }
+        i -= 81;
+        return String.format("%02d%02d", i / 15 + 1, i % 15 + 1);
+    }
+
+    /**
+     * Handles a frame received on a CMD session
+     *
+     * @param frame the frame received
+     * @param responses the list where response frames (ACK/NACK excluded) are added
+     * @param events the list where events caused by the command are added
+     * @return true if the request was accepted (ACK), false otherwise (NACK)
+     */
+    boolean handle(String frame, List<String> responses, List<String> events) {
+        if (!frame.startsWith(OpenMessage.FRAME_START) || !frame.endsWith(OpenMessage.FRAME_END)) {
+            return false;
+        }
+        boolean request = frame.startsWith(OpenMessage.FRAME_START_DIM);
+        String[] p = frame.substring(request ? 2 : 1, frame.length() - 2).split("\\*", -1);
+        try {
+            if (request) {
+                return handleRequest(p, responses, events);
+            } else {
+                return handleCommand(p, events);
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    /* *WHO*WHAT*WHERE## */
+    private boolean handleCommand(String[] p, List<String> events) {
+        if (p.length != 3) {
+            return false;
+        }
+        int what = Integer.parseInt(stripParams(p[1]));
+        String where = p[2];
+        switch (p[0]) {
+            case "1":
+                if (what < 0 || what > 10) {
+                    return false;
+                }
+                return setState(lights, "1", what, where, events);
+            case "2":
+                if (what < 0 || what > 2) {
+                    return false;
+                }
+                return setState(automations, "2", what, where, events);
+            case "13":
+                return true; // keep connect
+            default:
+                return false;
+        }
+    }
+
+    private boolean setState(Map<String, Integer> devices, String who, int what, String where, List<String> events) {
+        if ("0".equals(where)) {
+            devices.replaceAll((w, v) -> what);
+        } else {
+            devices.put(where, what); // unknown WHERE: the device is added to the model
+        }
+        events.add("*" + who + "*" + what + "*" + where + "##");
+        return true;
+    }
+
+    /* *#WHO*WHERE## or *#WHO*WHERE*DIM## or *#WHO*WHERE*#DIM*VAL1*..## */
+    private boolean handleRequest(String[] p, List<String> responses, List<String> events) {
+        if (p.length < 2) {
+            return false;
+        }
+        String where = p[1];
+        switch (p[0]) {
+            case "1":
+                return p.length == 2 && status(lights, "1", where, responses);
+            case "2":
+                return p.length == 2 && status(automations, "2", where, responses);
+            case "4":
+                return thermo(p, responses, events);
+            case "18":
+                if (p.length == 3 && "113".equals(p[2])) {
+                    for (String w : select(meters, meterWheres, where)) {
+                        responses.add("*#18*" + w + "*113*" + meters.get(w) + "##");
+                    }
+                    return true;
+                }
+                return false;
+            case "1004":
+                return diagnostic("1004", zones, zoneWheres, p, responses);
+            case "1018":
+                return diagnostic("1018", meters, meterWheres, p, responses);
+            case "13":
+                return gatewayMgmt(p, responses);
+            default:
+                return false;
+        }
+    }
+
+    private boolean status(Map<String, Integer> devices, String who, String where, List<String> responses) {
+        if ("0".equals(where)) {
+            devices.forEach((w, v) -> responses.add("*" + who + "*" + v + "*" + w + "##"));
+        } else {
+            Integer v = devices.get(where);
+            if (v != null) {
+                responses.add("*" + who + "*" + v + "*" + where + "##");
+            }
+        }
+        return true;
+    }
+
+    private boolean thermo(String[] p, List<String> responses, List<String> events) {
+        String where = p[1];
+        if (p.length == 2) {
+            for (String w : select(zones, zoneWheres, where)) {
+                responses.add("*4*1*" + w + "##"); // heating mode
+            }
+            return true;
+        }
+        if ("0".equals(p[2]) && p.length == 3) {
+            for (String w : select(zones, zoneWheres, where)) {
+                responses.add("*#4*" + w + "*0*" + temperature(zones.get(w)[0]) + "##");
+            }
+            return true;
+        }
+        if ("14".equals(p[2]) && p.length == 3) {
+            for (String w : select(zones, zoneWheres, where)) {
+                responses.add("*#4*" + w + "*14*" + temperature(zones.get(w)[1]) + "*3##");
+            }
+            return true;
+        }
+        if ("#14".equals(p[2]) && p.length >= 4) {
+            int[] zone = zones.get(where);
+            if (zone == null) {
+                return false;
+            }
+            zone[1] = Integer.parseInt(p[3].substring(1)) * (p[3].charAt(0) == '1' ? -1 : 1);
+            events.add("*#4*" + where + "*14*" + temperature(zone[1]) + "*3##");
+            return true;
+        }
+        return false;
+    }
+
+    private boolean diagnostic(String who, Map<String, ?> devices, String[] wheres, String[] p,
+            List<String> responses) {
+        if (p.length != 3 || !"7".equals(p[2])) {
+            return false;
+        }
+        for (String w : select(devices, wheres, p[1])) {
+            responses.add("*#" + who + "*" + w + "*7*" + DIAG_BITS + "##");
+        }
+        return true;
+    }
+
+    private boolean gatewayMgmt(String[] p, List<String> responses) {
+        if (p.length != 3 || !p[1].isEmpty()) {
+            return false;
+        }
+        switch (p[2]) {
+            case "12": // MAC address
+                responses.add("*#13**12*0*3*80*0*0*1##");
+                return true;
+            case "15": // model: F454
+                responses.add("*#13**15*200##");
+                return true;
+            case "16": // firmware version
+                responses.add("*#13**16*1*0*0##");
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static List<String> select(Map<String, ?> devices, String[] wheres, String where) {
+        List<String> list = new ArrayList<>(1);
+        if ("0".equals(where)) {
+            for (String w : wheres) {
+                list.add(w);
+            }
+        } else if (devices.containsKey(where)) {
+            list.add(where);
+        }
+        return list;
+    }
+
+    /* removes parameters from WHAT (WHAT#PAR1#PAR2) */
+    private static String stripParams(String what) {
+        int i = what.indexOf('#');
+        return i < 0 ? what : what.substring(0, i);
+    }
+
+    /* OWN temperature format: sign digit (0=+, 1=-) followed by 3 digits in tenths of degree */
+    private static String temperature(int tenths) {
+        return String.format("%s%03d", tenths < 0 ? "1" : "0", Math.abs(tenths));
+    }
+
+    /**
+     * Changes the state of a random device, as if it was operated on the BUS, and returns the corresponding event
+     *
+     * @return the event frame, or null if the model has no devices
+     */
+    String randomEvent() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int total = lightWheres.length + automationWheres.length + zoneWheres.length + meterWheres.length;
+        if (total == 0) {
+            return null;
+        }
+        int i = rnd.nextInt(total);
+        if (i < lightWheres.length) {
+            String w = lightWheres[i];
+            int what = lights.merge(w, 1, (old, one) -> old == 0 ? 1 : 0);
+            return "*1*" + what + "*" + w + "##";
+        }
+        i -= lightWheres.length;
+        if (i < automationWheres.length) {
+            String w = automationWheres[i];
+            int what = rnd.nextInt(3);
+            automations.put(w, what);
+            return "*2*" + what + "*" + w + "##";
+        }
+        i -= automationWheres.length;
+        if (i < zoneWheres.length) {
+            String w = zoneWheres[i];
+            int[] zone = zones.get(w);
+            zone[0] += rnd.nextInt(3) - 1;
+            return "*#4*" + w + "*0*" + temperature(zone[0]) + "##";
+        }
+        i -= zoneWheres.length;
+        String w = meterWheres[i];
+        int power = rnd.nextInt(3000);
+        meters.put(w, power);
+        return "*#18*" + w + "*113*" + power + "##";
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Helpers shared by tests
+ *
+ * @author M. Valla - Initial contribution
+ */
+public final class TestUtils {
+
+    /** Time to wait for a condition before failing the test */
+    public static final long WAIT_TIMEOUT = 5000; // ms
+
+    private TestUtils() {
+    }
+
+    /**
+     * Waits until condition is true, failing the test if it is not met within {@link #WAIT_TIMEOUT}
+     *
+     * @param condition the condition
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within " + WAIT_TIMEOUT + "ms");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.communication;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.GatewayListener;
+import org.openwebnet4j.OpenDeviceType;
+import org.openwebnet4j.USBGateway;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.FrameException;
+import org.openwebnet4j.message.GatewayMgmt;
+import org.openwebnet4j.message.OpenMessage;
+import org.openwebnet4j.message.Where;
+
+/**
+ * Tests for the asynchronous ZigBee device discovery of {@link USBGateway}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class USBGatewayDiscoveryTest {
+
+    private static class TestUSBGateway extends USBGateway {
+
+        TestUSBGateway(OpenConnector connector) {
+            super("test");
+            this.connector = connector;
+            isConnected = true;
+        }
+
+        @Override
+        protected void initConnector() {
+        }
+    }
+
+    private static class DiscoveryListener implements GatewayListener {
+        final AtomicInteger newDevices = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+
+        @Override
+        public void onConnected() {
+        }
+
+        @Override
+        public void onConnectionError(OWNException error) {
+        }
+
+        @Override
+        public void onConnectionClosed() {
+        }
+
+        @Override
+        public void onDisconnected(OWNException error) {
+        }
+
+        @Override
+        public void onReconnected() {
+        }
+
+        @Override
+        public void onEventMessage(OpenMessage msg) {
+        }
+
+        @Override
+        public void onNewDevice(Where where, OpenDeviceType deviceType, BaseOpenMessage message) {
+            assertEquals(OpenDeviceType.ZIGBEE_ON_OFF_SWITCH, deviceType);
+            newDevices.incrementAndGet();
+        }
+
+        @Override
+        public void onDiscoveryCompleted() {
+            completed.incrementAndGet();
+        }
+    }
+
+    /* starts a discovery and answers the scan request */
+    private static void startDiscovery(USBGateway gw, ManualConnector conn) throws Exception {
+        CompletableFuture<Void> discovery = CompletableFuture.runAsync(() -> {
+            try {
+                gw.discoverDevices();
+            } catch (OWNException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        PendingCommand scan = conn.sendNext();
+        assertEquals(GatewayMgmt.requestScanNetwork().getFrameValue(), scan.frame);
+        conn.answer(scan);
+        discovery.get(5, TimeUnit.SECONDS);
+        assertTrue(gw.isDiscovering());
+    }
+
+    /* answers a product info request with a ZigBee on/off switch */
+    private static void answerProduct(ManualConnector conn, PendingCommand cmd) throws FrameException {
+        assertTrue(cmd.frame.startsWith("*#13**66*"), cmd.frame);
+        int index = Integer.parseInt(cmd.frame.substring(9, cmd.frame.length() - 2));
+        conn.answer(cmd, "*#13*70205350" + index + "#9*66*0*0*0*0*256##");
+    }
+
+    private static void productsFound(USBGateway gw, int n) throws FrameException {
+        gw.onMessage(BaseOpenMessage.parse("*#13**67*" + n + "##"));
+    }
+
+    @Test
+    public void testDiscoveryWindow() throws Exception {
+        ManualConnector conn = new ManualConnector();
+        USBGateway gw = new TestUSBGateway(conn);
+        DiscoveryListener l = new DiscoveryListener();
+        gw.subscribe(l);
+        startDiscovery(gw, conn);
+
+        productsFound(gw, 6);
+        // requests are sent asynchronously with low priority, at most 4 at the same time
+        waitFor(() -> conn.getCommandQueue().getDepth(CommandPriority.LOW) == 4);
+        for (int i = 0; i < 6; i++) {
+            answerProduct(conn, conn.sendNext());
+        }
+        waitFor(() -> l.completed.get() == 1);
+        assertEquals(6, l.newDevices.get());
+        assertFalse(gw.isDiscovering());
+        assertTrue(conn.getCommandQueue().isEmpty());
+    }
+
+    @Test
+    public void testNoProducts() throws Exception {
+        ManualConnector conn = new ManualConnector();
+        USBGateway gw = new TestUSBGateway(conn);
+        DiscoveryListener l = new DiscoveryListener();
+        gw.subscribe(l);
+        startDiscovery(gw, conn);
+
+        productsFound(gw, 0);
+        waitFor(() -> l.completed.get() == 1);
+        assertFalse(gw.isDiscovering());
+    }
+
+    @Test
+    public void testNewDiscoveryIgnoresOldCompletions() throws Exception {
+        ManualConnector conn = new ManualConnector();
+        USBGateway gw = new TestUSBGateway(conn);
+        DiscoveryListener l = new DiscoveryListener();
+        gw.subscribe(l);
+        startDiscovery(gw, conn);
+
+        productsFound(gw, 3);
+        waitFor(() -> conn.getCommandQueue().getDepth(CommandPriority.LOW) == 3);
+        PendingCommand old0 = conn.sendNext();
+        PendingCommand old1 = conn.sendNext();
+        PendingCommand old2 = conn.sendNext();
+        answerProduct(conn, old0);
+
+        // a new NB_NETW_PROD event arrives while requests of the previous one are still in flight
+        productsFound(gw, 2);
+        waitFor(() -> conn.getCommandQueue().getDepth(CommandPriority.LOW) == 2);
+        PendingCommand new0 = conn.sendNext();
+        PendingCommand new1 = conn.sendNext();
+        answerProduct(conn, old1);
+        answerProduct(conn, old2);
+        answerProduct(conn, new0);
+        assertEquals(0, l.completed.get());
+        assertTrue(gw.isDiscovering());
+        assertTrue(conn.getCommandQueue().isEmpty()); // old completions do not request other products
+
+        answerProduct(conn, new1);
+        waitFor(() -> l.completed.get() == 1);
+        assertEquals(3, l.newDevices.get()); // old0, new0, new1
+        assertFalse(gw.isDiscovering());
+        Thread.sleep(100);
+        assertEquals(1, l.completed.get()); // completed once
+    }
+}
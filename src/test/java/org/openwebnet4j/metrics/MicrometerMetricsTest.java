@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2020-2023 Contributors to the openwebnet4j project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License 2.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ */
+package org.openwebnet4j.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.openwebnet4j.communication.TestUtils.waitFor;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openwebnet4j.BUSGateway;
+import org.openwebnet4j.communication.GatewaySimulator;
+import org.openwebnet4j.communication.NioEventLoop;
+import org.openwebnet4j.communication.OWNException;
+import org.openwebnet4j.communication.OWNTimeoutException;
+import org.openwebnet4j.message.BaseOpenMessage;
+import org.openwebnet4j.message.Lighting;
+import org.openwebnet4j.message.OpenMessage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests for {@link MicrometerMetrics} and the measurements sent to it by a {@link BUSGateway}, using a
+ * {@link GatewaySimulator}
+ *
+ * @author M. Valla - Initial contribution
+ */
+public class MicrometerMetricsTest {
+
+    private static final OpenMessage CMD = Lighting.requestTurnOn("11");
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MicrometerMetrics metrics = new MicrometerMetrics(registry, Tags.of("gateway", "test"));
+    private GatewaySimulator sim;
+    private BUSGateway gw;
+    private NioEventLoop loop;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        sim = new GatewaySimulator(0);
+        sim.setCmdIdleTimeout(0); // simulated gateway never closes idle CMD connections
+        sim.start();
+        gw = new BUSGateway("localhost", sim.getPort(), "12345");
+        gw.setMetrics(metrics);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gw.closeConnection();
+        sim.stop();
+        if (loop != null) {
+            loop.shutdown();
+        }
+    }
+
+    private Timer commandTimer(String outcome) {
+        return registry.find("openwebnet.command.latency")
+                .tags("gateway", "test", "who", "LIGHTING", "outcome", outcome).timer();
+    }
+
+    private double counter(String name, String... tags) {
+        Counter c = registry.find(name).tags(tags).counter();
+        return c != null ? c.count() : 0;
+    }
+
+    private double handshakes(String type, String result) {
+        Timer t = registry.find("openwebnet.handshake").tags("type", type, "result", result).timer();
+        return t != null ? t.count() : 0;
+    }
+
+    @Test
+    public void testCommandLatency() throws Exception {
+        gw.connect();
+        assertTrue(gw.send(CMD).isSuccess());
+        assertTrue(gw.send(CMD).isSuccess());
+        waitFor(() -> commandTimer("ACK") != null && commandTimer("ACK").count() == 2);
+        assertTrue(commandTimer("ACK").totalTime(TimeUnit.NANOSECONDS) > 0);
+
+        // WHAT not supported by simulated lights
+        assertFalse(gw.send(BaseOpenMessage.parse("*1*11*11##")).isSuccess());
+        waitFor(() -> commandTimer("NACK") != null && commandTimer("NACK").count() == 1);
+
+        sim.setBusyNackRate(1);
+        assertFalse(gw.send(CMD).isSuccess());
+        waitFor(() -> commandTimer("BUSY_NACK") != null && commandTimer("BUSY_NACK").count() == 1);
+        sim.setBusyNackRate(0);
+
+        gw.getCommandTimeouts().setDefaultTimeout(200);
+        sim.setResponseDelay(600, 600);
+        assertThrows(OWNTimeoutException.class, () -> gw.send(CMD));
+        waitFor(() -> commandTimer("TIMEOUT") != null && commandTimer("TIMEOUT").count() == 1);
+        assertTrue(commandTimer("TIMEOUT").totalTime(TimeUnit.MILLISECONDS) >= 200);
+        assertEquals(2, commandTimer("ACK").count());
+    }
+
+    @Test
+    public void testEventsAndRejectedFrames() throws Exception {
+        gw.connect();
+        sim.sendEvent("*1*1*12##");
+        sim.sendEvent("*1*0*12##");
+        sim.sendEvent("*2*0*21##");
+        waitFor(() -> counter("openwebnet.events", "who", "LIGHTING") == 2
+                && counter("openwebnet.events", "who", "AUTOMATION") == 1);
+        assertEquals(0, counter("openwebnet.events", "who", "THERMOREGULATION"));
+
+        sim.sendEvent("*6*1*11##"); // door entry system: valid WHO, no codec
+        sim.sendEvent("*8*1*11##"); // unknown WHO
+        sim.sendEvent("*8*1*11##");
+        waitFor(() -> counter("openwebnet.frames.rejected", "reason", "unsupported") == 1
+                && counter("openwebnet.frames.rejected", "reason", "invalid") == 2);
+    }
+
+    @Test
+    public void testHandshakes() throws Exception {
+        gw.connect();
+        waitFor(() -> handshakes("MON", "success") == 1 && handshakes("CMD", "success") == 1);
+        gw.closeConnection();
+
+        sim.setAuth(GatewaySimulator.AuthMode.OPEN, "99999");
+        gw = new BUSGateway("localhost", sim.getPort(), "12345");
+        gw.setMetrics(metrics);
+        assertThrows(OWNException.class, () -> gw.connect());
+        waitFor(() -> handshakes("MON", "failure") == 1);
+    }
+
+    @Test
+    public void testNioConnector() throws Exception {
+        loop = new NioEventLoop("OWN-NIO-test");
+        gw.setEventLoop(loop);
+        gw.connect();
+        waitFor(() -> handshakes("MON", "success") == 1 && handshakes("CMD", "success") == 1);
+        sim.sendEvent("*6*1*11##");
+        sim.sendEvent("*8*1*11##");
+        waitFor(() -> counter("openwebnet.frames.rejected", "reason", "unsupported") == 1
+                && counter("openwebnet.frames.rejected", "reason", "invalid") == 1);
+        assertTrue(gw.send(CMD).isSuccess());
+        waitFor(() -> commandTimer("ACK") != null && commandTimer("ACK").count() == 1);
+    }
+
+    @Test
+    public void testNotifierQueueGauge() throws Exception {
+        Gauge gauge = registry.find("openwebnet.notifier.queue").tags("gateway", "test").gauge();
+        assertNotNull(gauge);
+        metrics.registerNotifierQueue(() -> 5);
+        assertEquals(5, gauge.value());
+
+        // connecting registers the queue of the new connector
+        gw.connect();
+        assertEquals(0, gauge.value());
+        metrics.reconnectAttempted(false);
+        metrics.reconnectAttempted(true);
+        assertEquals(1, counter("openwebnet.reconnect.attempts", "result", "failure"));
+        assertEquals(1, counter("openwebnet.reconnect.attempts", "result", "success"));
+    }
+}
@@ -18,6 +18,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.openwebnet4j.EventFilter;
+import org.openwebnet4j.OpenDeviceType;
 import org.openwebnet4j.message.Alarm;
 import org.openwebnet4j.message.Automation;
 import org.openwebnet4j.message.Auxiliary;
@@ -28,6 +30,7 @@ import org.openwebnet4j.message.CENPlusScenario.WhatCENPlus;
 import org.openwebnet4j.message.CENScenario;
 import org.openwebnet4j.message.CENScenario.CENPressure;
 import org.openwebnet4j.message.CENScenario.WhatCEN;
+import org.openwebnet4j.message.Dim;
 import org.openwebnet4j.message.EnergyManagement;
 import org.openwebnet4j.message.FrameException;
 import org.openwebnet4j.message.GatewayMgmt;
@@ -40,11 +43,13 @@ import org.openwebnet4j.message.Thermoregulation.Function;
 import org.openwebnet4j.message.Thermoregulation.OperationMode;
 import org.openwebnet4j.message.Thermoregulation.WhatThermo;
 import org.openwebnet4j.message.UnsupportedFrameException;
+import org.openwebnet4j.message.What;
 import org.openwebnet4j.message.WhereAlarm;
 import org.openwebnet4j.message.WhereLightAutom;
 import org.openwebnet4j.message.WhereThermo;
 import org.openwebnet4j.message.WhereZigBee;
 import org.openwebnet4j.message.Who;
+import org.openwebnet4j.message.WhoCodecRegistry;
 
 /**
  * Tests for {@link BaseOpenMessage} and subclasses.
@@ -63,6 +68,52 @@ public class MessageTest {
         // TODO add more tests
     }
 
+    @Test
+    public void testWhereInterning() {
+        WhereLightAutom w = WhereLightAutom.of("0311");
+        assertSame(w, WhereLightAutom.of("0311"));
+        assertEquals(new WhereLightAutom("0311"), w);
+        assertEquals(new WhereLightAutom("0311").hashCode(), w.hashCode());
+        assertEquals(3, w.getArea());
+        assertEquals(11, w.getPoint());
+        assertEquals(-1, w.getGroup());
+        assertEquals(5, WhereLightAutom.of("#5").getGroup());
+        // 2-digit addresses with point 0 are areas 10 and 00
+        assertEquals(10, WhereLightAutom.of("10").getArea());
+        assertEquals(-1, WhereLightAutom.of("10").getPoint());
+        assertEquals(0, WhereLightAutom.of("00").getArea());
+        assertEquals(-1, WhereLightAutom.of("00").getPoint());
+        assertEquals(1, WhereLightAutom.of("11").getArea());
+        assertEquals(1, WhereLightAutom.of("11").getPoint());
+        assertEquals(10, WhereLightAutom.of("1001").getArea());
+        assertEquals(1, WhereLightAutom.of("1001").getPoint());
+        // oversized digits: WHERE is returned, without group or area
+        try {
+            WhereLightAutom g = whereOf("*1*1*#99999999999##");
+            assertNotNull(g);
+            assertEquals(-1, g.getGroup());
+            g = whereOf("*2*1*#999999999999##");
+            assertNotNull(g);
+            assertEquals(-1, g.getGroup());
+            g = whereOf("*1*1*99999999999999##");
+            assertNotNull(g);
+            assertEquals(-1, g.getArea());
+        } catch (FrameException e) {
+            Assertions.fail();
+        }
+        assertEquals(-1, WhereLightAutom.of("#1234567890").getGroup());
+        try {
+            Lighting lm = (Lighting) BaseOpenMessage.parse("*1*1*0311##");
+            assertSame(w, lm.getWhere());
+        } catch (FrameException e) {
+            Assertions.fail();
+        }
+    }
+
+    private static WhereLightAutom whereOf(String frame) throws FrameException {
+        return (WhereLightAutom) ((BaseOpenMessage) BaseOpenMessage.parse(frame)).getWhere();
+    }
+
     @Test
     public void testLightingOn() {
 
@@ -435,6 +486,53 @@ public class MessageTest {
         assertNull(msg);
     }
 
+    private static class ScenarioProgramming extends BaseOpenMessage {
+
+        ScenarioProgramming(String frame) {
+            super(frame);
+        }
+
+        @Override
+        protected void parseWhere() {
+            where = WhereLightAutom.of(whereStr);
+        }
+
+        @Override
+        protected Dim dimFromValue(int i) {
+            return null;
+        }
+
+        @Override
+        protected What whatFromValue(int i) {
+            return null;
+        }
+
+        @Override
+        public OpenDeviceType detectDeviceType() {
+            return null;
+        }
+    }
+
+    @Test
+    public void testWhoCodecRegistry() {
+        assertTrue(WhoCodecRegistry.isSupported(Who.LIGHTING));
+        assertFalse(WhoCodecRegistry.isSupported(Who.SCENARIO_PROGRAMMING));
+        assertThrows(UnsupportedFrameException.class, () -> BaseOpenMessage.parse("*17*1*12##"));
+        assertThrows(IllegalArgumentException.class, () -> WhoCodecRegistry.register(Who.UNKNOWN, f -> null));
+        assertNull(WhoCodecRegistry.register(Who.SCENARIO_PROGRAMMING, ScenarioProgramming::new));
+        try {
+            OpenMessage msg = BaseOpenMessage.parse("*17*1*12##");
+            assertTrue(msg instanceof ScenarioProgramming);
+            assertEquals(Who.SCENARIO_PROGRAMMING, ((BaseOpenMessage) msg).getWho());
+            assertEquals("12", ((BaseOpenMessage) msg).getWhere().value());
+        } catch (FrameException e) {
+            Assertions.fail();
+        } finally {
+            WhoCodecRegistry.unregister(Who.SCENARIO_PROGRAMMING);
+        }
+        assertFalse(WhoCodecRegistry.isSupported(Who.SCENARIO_PROGRAMMING));
+    }
+
     @Test
     public void testUnsupportedWhat() {
         OpenMessage msg = null;
@@ -578,4 +676,93 @@ public class MessageTest {
             Assertions.fail();
         }
     }
+
+    @Test
+    public void testEventFilter() {
+        try {
+            OpenMessage light21 = BaseOpenMessage.parse("*1*1*21##");
+            OpenMessage light51 = BaseOpenMessage.parse("*1*0*51##");
+            OpenMessage temp = BaseOpenMessage.parse("*#4*1*0*0215##");
+            OpenMessage ack = BaseOpenMessage.parse(OpenMessage.FRAME_ACK);
+
+            assertTrue(EventFilter.ALL.matches(light21));
+            assertTrue(EventFilter.ALL.matches(ack));
+
+            EventFilter lights = EventFilter.forWho(Who.LIGHTING);
+            assertTrue(lights.matches(light21));
+            assertFalse(lights.matches(temp));
+            assertFalse(lights.matches(ack));
+
+            EventFilter area2 = lights.whereStartsWith("2");
+            assertTrue(area2.matches(light21));
+            assertFalse(area2.matches(light51));
+            assertTrue(lights.where("51").matches(light51));
+            assertFalse(lights.where("5").matches(light51));
+            assertTrue(lights.what(Lighting.WhatLighting.OFF).matches(light51));
+            assertFalse(lights.what(Lighting.WhatLighting.OFF).matches(light21));
+
+            EventFilter temperature = EventFilter.forWho(Who.THERMOREGULATION)
+                    .dim(Thermoregulation.DimThermo.TEMPERATURE);
+            assertTrue(temperature.matches(temp));
+            assertTrue(temperature.where("1").matches(temp));
+            assertFalse(temperature.where("2").matches(temp));
+            assertEquals(area2, EventFilter.forWho(Who.LIGHTING).whereStartsWith("2"));
+
+            // area and group filters use the parsed WHERE, not a string prefix
+            EventFilter byArea2 = lights.area(2);
+            assertTrue(byArea2.matches(light21));
+            assertTrue(byArea2.matches(BaseOpenMessage.parse("*1*1*0201##")));
+            assertTrue(byArea2.matches(BaseOpenMessage.parse("*1*1*2##")));
+            assertFalse(byArea2.matches(light51));
+            assertFalse(byArea2.matches(BaseOpenMessage.parse("*1*1*0#4#02##"))); // general on local bus
+            EventFilter area1 = lights.area(1);
+            assertTrue(area1.matches(BaseOpenMessage.parse("*1*1*15##")));
+            assertFalse(area1.matches(BaseOpenMessage.parse("*1*1*1001##")));
+            assertTrue(lights.area(10).matches(BaseOpenMessage.parse("*1*1*1001##")));
+            assertTrue(lights.area(10).matches(BaseOpenMessage.parse("*1*0*10##")));
+            assertFalse(lights.area(0).matches(BaseOpenMessage.parse("*1*0*0##"))); // general is not area 0
+            assertFalse(area1.matches(temp));
+            EventFilter group1 = lights.group(1);
+            assertTrue(group1.matches(BaseOpenMessage.parse("*1*1*#1##")));
+            assertFalse(group1.matches(BaseOpenMessage.parse("*1*1*#10##")));
+            assertFalse(group1.matches(BaseOpenMessage.parse("*1*1*#100##")));
+            assertFalse(group1.matches(BaseOpenMessage.parse("*1*1*1##")));
+            assertEquals(group1, EventFilter.forWho(Who.LIGHTING).group(1));
+            assertNotEquals(group1, lights.area(1));
+            assertThrows(IllegalArgumentException.class, () -> lights.area(11));
+            assertThrows(IllegalArgumentException.class, () -> lights.group(0));
+        } catch (FrameException e) {
+            System.out.println(e.getMessage());
+            Assertions.fail();
+        }
+    }
+
+    @Test
+    public void testParseParts() {
+        try {
+            BaseOpenMessage msg = (BaseOpenMessage) BaseOpenMessage.parse("*2*1000#1*51##");
+            assertTrue(msg.isCommandTranslation());
+            assertEquals(Automation.WhatAutomation.UP, msg.getWhat());
+            assertEquals(0, msg.getWhatParams().length);
+            msg = (BaseOpenMessage) BaseOpenMessage.parse("*1*1#2#3*21##");
+            assertArrayEquals(new String[] { "2", "3" }, msg.getWhatParams());
+            assertArrayEquals(new int[] { 2, 3 }, msg.getCommandParams());
+            msg = (BaseOpenMessage) BaseOpenMessage.parse("*#13**16*1*2*3##");
+            assertNull(msg.getWhere());
+            assertArrayEquals(new String[] { "1", "2", "3" }, msg.getDimValues());
+            msg = (BaseOpenMessage) BaseOpenMessage.parse("*#4*1*#14#1*0215**##");
+            assertTrue(msg.isDimWriting());
+            assertArrayEquals(new int[] { 1 }, msg.getDimParams());
+            assertArrayEquals(new String[] { "0215" }, msg.getDimValues()); // trailing empty values are discarded
+            msg = (BaseOpenMessage) BaseOpenMessage.parse("*#1004*1*7*1##");
+            assertEquals(Who.THERMOREGULATION_DIAGNOSTIC, msg.getWho());
+        } catch (FrameException e) {
+            System.out.println(e.getMessage());
+            Assertions.fail();
+        }
+        assertThrows(MalformedFrameException.class, () -> BaseOpenMessage.parse("*1*1*2-1##"));
+        assertThrows(MalformedFrameException.class, () -> BaseOpenMessage.parse("*99*1*21##"));
+        assertThrows(MalformedFrameException.class, () -> BaseOpenMessage.parse("*1##"));
+        assertThrows(MalformedFrameException.class, () -> BaseOpenMessage.parse("**##"));
+    }
 }